@@ -0,0 +1,46 @@
+package com.flipkart.perf.core;
+
+import com.flipkart.perf.util.Histogram;
+import com.flipkart.perf.util.Timer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Metrics of loader framework itself, kept per group (if group asks for them) under a built in function so that they
+ * get dumped and crunched like any user function's timers and histograms. They tell whether generator (and not the
+ * system under test) is the bottleneck :
+ *
+ *  frameworkTime   : time of an iteration spent outside user functions (function context, parameters, stats recording).
+ *                    Handing over stats is part of it, so it is recorded with the next iteration
+ *  pacerLateness   : how late an iteration started compared to when pacer intended to start it
+ *  sleepOvershoot  : how much longer pacer slept than it asked for
+ *  statsQueueDepth : group stats waiting in GroupStatsQueue to be written
+ *  statsSpilled, statsDropped, statsBackPressureMS : what GroupStatsQueue overflow did (counters, per its policy).
+ *                    These are dumped for every group, framework metrics or not, along with conf/statsQueueConf
+ */
+public final class FrameworkMetrics {
+    public static final String FUNCTION_NAME = "loaderFramework";
+    public static final String FRAMEWORK_TIME = "frameworkTime";
+    public static final String PACER_LATENESS = "pacerLateness";
+    public static final String SLEEP_OVERSHOOT = "sleepOvershoot";
+    public static final String STATS_QUEUE_DEPTH = "statsQueueDepth";
+    public static final String STATS_SPILLED = "statsSpilled";
+    public static final String STATS_DROPPED = "statsDropped";
+    public static final String STATS_BACKPRESSURE_MS = "statsBackPressureMS";
+    public static final String[] TIMERS = {FRAMEWORK_TIME, PACER_LATENESS, SLEEP_OVERSHOOT};
+
+    private FrameworkMetrics() {
+    }
+
+    public static Map<String, Timer> buildTimers(String groupName) {
+        Map<String, Timer> timersMap = new HashMap<String, Timer>();
+        for(String timerName : TIMERS)
+            timersMap.put(timerName, new Timer(groupName, FUNCTION_NAME, timerName));
+        return timersMap;
+    }
+
+    public static Histogram buildStatsQueueDepthHistogram(String groupName) {
+        return new Histogram(groupName, FUNCTION_NAME, STATS_QUEUE_DEPTH);
+    }
+}
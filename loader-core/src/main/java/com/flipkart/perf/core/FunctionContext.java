@@ -335,6 +335,16 @@ public class FunctionContext {
         return context;
     }
 
+    /**
+     * Adds a time taken elsewhere (like in a completion callback) to custom timer
+     */
+    public FunctionContext recordTime(String timerName, long timeStampMS, long timeNS) {
+        Timer timer = this.timers.get(timerName);
+        if(timer != null)
+            timer.add(timeStampMS, timeNS);
+        return this;
+    }
+
     public FunctionContext updateHistogram(String histogramName, double value) {
         Histogram histogram = this.histograms.get(histogramName);
         if(histogram != null)
@@ -0,0 +1,122 @@
+package com.flipkart.perf.core;
+
+import com.flipkart.perf.domain.GeneratorLimits;
+import com.flipkart.perf.util.JobHealthRing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Closed loop throughput control of load generating process. Health samples are checked against generator limits
+ * over windows. A saturated window caps throughput of running groups below what they achieved in that window and
+ * marks groups as generator saturated, which goes in their stats. Once process stays healthy for a few windows, cap
+ * is raised step by step till it is back at configured throughput.
+ */
+public class GeneratorGovernor {
+    private static final float MIN_THROUGHPUT = 1f;
+    private static Logger logger = LoggerFactory.getLogger(GeneratorGovernor.class);
+
+    private final GeneratorLimits limits;
+    private final List<GroupController> groupControllers;
+    private final Map<GroupController, Long> windowStartRequests = new HashMap<GroupController, Long>();
+
+    private long windowStartTime = -1, windowStartGcTimeMS;
+    private int windowSamples, healthyWindows;
+    private float windowCpuUsage;
+    private long windowSchedulingLagMS;
+
+    public GeneratorGovernor(GeneratorLimits limits, List<GroupController> groupControllers) {
+        this.limits = limits;
+        this.groupControllers = groupControllers;
+    }
+
+    public void govern(JobHealthRing.Sample sample) {
+        if(windowStartTime < 0) {
+            startWindow(sample);
+            return;
+        }
+
+        windowSamples++;
+        windowCpuUsage += sample.getCpuUsage();
+        windowSchedulingLagMS = Math.max(windowSchedulingLagMS, sample.getSchedulingLagMS());
+
+        long windowMS = sample.getTime() - windowStartTime;
+        if(windowMS < limits.getWindowMS())
+            return;
+
+        float cpuUsage = windowCpuUsage / windowSamples;
+        float gcTimePercentage = (sample.getGcTimeMS() - windowStartGcTimeMS) * 100f / windowMS;
+        String saturation = saturation(cpuUsage, gcTimePercentage, windowSchedulingLagMS);
+
+        if(saturation != null) {
+            healthyWindows = 0;
+            backOff(saturation, windowMS);
+        }
+        else if(++healthyWindows >= limits.getRecoveryWindows()) {
+            healthyWindows = 0;
+            recover();
+        }
+        startWindow(sample);
+    }
+
+    private void startWindow(JobHealthRing.Sample sample) {
+        windowStartTime = sample.getTime();
+        windowStartGcTimeMS = sample.getGcTimeMS();
+        windowSamples = 0;
+        windowCpuUsage = 0;
+        windowSchedulingLagMS = 0;
+        for(GroupController groupController : groupControllers)
+            windowStartRequests.put(groupController, groupController.requestsIssued());
+    }
+
+    /**
+     * @return why generator is saturated, null if it isn't
+     */
+    private String saturation(float cpuUsage, float gcTimePercentage, long schedulingLagMS) {
+        if(limits.getMaxCpuUsage() > 0 && cpuUsage > limits.getMaxCpuUsage())
+            return "cpu usage "+cpuUsage+"%";
+        if(limits.getMaxGcTimePercentage() > 0 && gcTimePercentage > limits.getMaxGcTimePercentage())
+            return "gc time "+gcTimePercentage+"%";
+        if(limits.getMaxSchedulingLagMS() > 0 && schedulingLagMS > limits.getMaxSchedulingLagMS())
+            return "scheduling lag "+schedulingLagMS+"ms";
+        return null;
+    }
+
+    private void backOff(String saturation, long windowMS) {
+        for(GroupController groupController : groupControllers) {
+            if(!groupController.started() || groupController.isDead())
+                continue;
+
+            float achievedThroughput = (groupController.requestsIssued() - windowStartRequests.get(groupController)) * 1000f / windowMS;
+            float throughput = groupController.effectiveThroughput();
+            // Nothing achieved (warm up, pause) tells nothing about what generator can do. Back off from current cap then
+            if(achievedThroughput > 0)
+                throughput = Math.min(throughput, achievedThroughput);
+            float cap = Math.max(MIN_THROUGHPUT, throughput * limits.getBackOffFactor());
+
+            groupController.capThroughput(cap);
+            groupController.markGeneratorSaturated();
+            logger.warn("Generator saturated ("+saturation+"). Group "+groupController.getGroupName()+" capped at "+cap+" per second");
+        }
+    }
+
+    private void recover() {
+        for(GroupController groupController : groupControllers) {
+            float cap = groupController.getThroughputCap();
+            if(cap < 0)
+                continue;
+            cap *= limits.getRecoveryFactor();
+            if(groupController.isDead() || cap >= groupController.configuredThroughput()) {
+                groupController.removeThroughputCap();
+                logger.info("Group "+groupController.getGroupName()+" back at configured throughput");
+            }
+            else {
+                groupController.capThroughput(cap);
+                logger.info("Group "+groupController.getGroupName()+" cap raised to "+cap+" per second");
+            }
+        }
+    }
+}
@@ -33,6 +33,8 @@ public class GroupController {
     private String basePath;
     private final List<String> ignoreDumpFunctions;
     private final HashMap<String, DataGenerator> groupDataGenerators;
+    private volatile float throughputCap = -1;
+    private volatile long generatorSaturatedTimeMS = -1;
 
     public GroupController(String jobId, Group group) {
         this.basePath = System.getProperty("BASE_PATH","./");
@@ -140,7 +142,9 @@ public class GroupController {
             // This endTime would be updated once warmUp is over
         }
 
-        this.groupStatsQueue = new GroupStatsQueue();
+        this.groupStatsQueue = new GroupStatsQueue(this.groupName,
+                this.group.getStatsQueue(),
+                new File(this.basePath, GroupStatsQueue.SPILL_FILE_NAME));
 
         this.started = true;
         this.sequentialFEs = new ArrayList<SequentialFunctionExecutor>();
@@ -170,7 +174,8 @@ public class GroupController {
                 this.functionCounters,
                 this.group,
                 this.customCounters,
-                this.startTimeMS);
+                this.startTimeMS,
+                this);
 
         this.statsCollectorThread.start();
     }
@@ -197,7 +202,7 @@ public class GroupController {
                 this.customCounters,
                 this.groupStatsQueue,
                 this.ignoreDumpFunctions,
-                this.group.getThroughput() / group.getThreads(),
+                effectiveThroughput() / group.getThreads(),
                 this.groupDataGenerators);
     }
 
@@ -253,9 +258,7 @@ public class GroupController {
                 }
             }
             this.group.setThreads(newThreads);
-            for(SequentialFunctionExecutor sfe : this.sequentialFEs) {
-                sfe.setThroughput(this.group.getThroughput() / group.getThreads());
-            }
+            applyThroughput();
         }
 
         logger.info("Total Threads running "+this.sequentialFEs.size()+"(In List) "+this.group.getThreads()+"(ThreadCount)");
@@ -303,6 +306,11 @@ public class GroupController {
         }
     }
 
+    public int statsQueueDepth() {
+        GroupStatsQueue groupStatsQueue = this.groupStatsQueue;
+        return groupStatsQueue == null ? 0 : groupStatsQueue.size();
+    }
+
     public long getRunTimeMS() {
         return Clock.milliTick() - this.startTimeMS;
     }
@@ -326,4 +334,58 @@ public class GroupController {
     public void setThroughput(float throughput) {
         this.group.setThroughput(throughput);
     }
+
+    public float configuredThroughput() {
+        return this.group.getThroughput();
+    }
+
+    /**
+     * Throughput executors are paced at. Configured one, unless generator governor has capped it
+     */
+    public float effectiveThroughput() {
+        float cap = this.throughputCap;
+        return cap < 0 ? this.group.getThroughput() : Math.min(cap, this.group.getThroughput());
+    }
+
+    /**
+     * @return -1 if throughput isn't capped
+     */
+    public float getThroughputCap() {
+        return throughputCap;
+    }
+
+    public void capThroughput(float cap) {
+        synchronized (this.sequentialFEs) {
+            this.throughputCap = cap;
+            applyThroughput();
+        }
+    }
+
+    public void removeThroughputCap() {
+        synchronized (this.sequentialFEs) {
+            this.throughputCap = -1;
+            applyThroughput();
+        }
+    }
+
+    private void applyThroughput() {
+        for(SequentialFunctionExecutor sfe : this.sequentialFEs) {
+            sfe.setThroughput(effectiveThroughput() / group.getThreads());
+        }
+    }
+
+    public void markGeneratorSaturated() {
+        this.generatorSaturatedTimeMS = Clock.milliTick();
+    }
+
+    /**
+     * @return true if generator was found saturated after given time
+     */
+    public boolean generatorSaturatedSince(long timeMS) {
+        return this.generatorSaturatedTimeMS >= timeMS;
+    }
+
+    public long requestsIssued() {
+        return this.requestQueue.requestsIssued();
+    }
 }
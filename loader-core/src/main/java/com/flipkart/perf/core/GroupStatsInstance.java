@@ -12,11 +12,17 @@ public class GroupStatsInstance {
     private Map<String, Timer> customTimers;
     private Map<String, Timer> functionTimers; // Map of Function and (timestamp and execution time taken)
     private final Map<String, Histogram> functionHistograms;
+    private final Map<String, Timer> frameworkTimers;
 
     public GroupStatsInstance(Map<String, Timer> customTimers, Map<String, Timer> functionTimers, Map<String, Histogram> functionHistograms) {
+        this(customTimers, functionTimers, functionHistograms, new HashMap<String, Timer>());
+    }
+
+    public GroupStatsInstance(Map<String, Timer> customTimers, Map<String, Timer> functionTimers, Map<String, Histogram> functionHistograms, Map<String, Timer> frameworkTimers) {
         this.customTimers = customTimers;
         this.functionTimers = functionTimers;
         this.functionHistograms = functionHistograms;
+        this.frameworkTimers = frameworkTimers;
     }
 
     public Map<String, Timer> getCustomTimers() {
@@ -35,4 +41,11 @@ public class GroupStatsInstance {
     public Map<String, Histogram> getFunctionHistograms() {
         return functionHistograms;
     }
+
+    /**
+     * Timers of FrameworkMetrics, empty if group doesn't collect them
+     */
+    public Map<String, Timer> getFrameworkTimers() {
+        return frameworkTimers;
+    }
 }
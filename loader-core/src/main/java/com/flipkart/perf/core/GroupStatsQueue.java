@@ -1,59 +1,215 @@
 package com.flipkart.perf.core;
 
+import com.flipkart.perf.domain.StatsQueueConfig;
+import com.flipkart.perf.util.Counter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * Its an abstraction over queues that allow add and set operations on circularly changing queues.
- * It provides optimization where writer and reader(drainer) will never be using the same queue and hence less synchronization
+ * Bounded queue of group stats between executor threads (many producers) and stats collector (single consumer).
+ * Its a ring preallocated at group start : producers claim a slot by moving tail with a CAS and publish the instance in
+ * it, collector takes instances from head and clears their slots. A claimed slot isn't visible to collector till
+ * producer publishes it. When ring is full, StatsQueueConfig.OverflowPolicy decides what happens.
+ *
+ * What overflow did goes in FrameworkMetrics counters of the group, named after the policy in effect :
+ *  statsSpilled (SPILL), statsDropped (SAMPLE, or SPILL when spilling fails), statsBackPressureMS (BACKPRESSURE)
  */
 final public class GroupStatsQueue {
-    private LinkedBlockingQueue<GroupStatsInstance> groupWriteQueue;
-    private LinkedBlockingQueue<GroupStatsInstance> groupReadQueue;
-    private LinkedBlockingQueue<GroupStatsInstance> groupWriteQueueLink;
-    private LinkedBlockingQueue<GroupStatsInstance> groupReadQueueLink;
-    private boolean oppositeQueue = true;
+    public static final String SPILL_FILE_NAME = "statsOverflow";
+    private static final long BACKPRESSURE_PARK_NS = 100000;
     private static Logger logger = LoggerFactory.getLogger(GroupStatsQueue.class);
 
-    public GroupStatsQueue() {
-        this.groupWriteQueue = new LinkedBlockingQueue<GroupStatsInstance>();
-        this.groupReadQueue = new LinkedBlockingQueue<GroupStatsInstance>();
-        this.groupWriteQueueLink = this.groupWriteQueue;
-        this.groupReadQueueLink = this.groupReadQueue;
+    private final AtomicReferenceArray<GroupStatsInstance> slots;
+    private final int capacity, mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final StatsQueueConfig.OverflowPolicy overflowPolicy;
+    private final int sampleRate, sampleWatermark;
+    private final AtomicLong sampled = new AtomicLong();
+    private final GroupStatsSpill spill;
+
+    private final Counter droppedCounter, spilledCounter, backPressureCounter;
+    private volatile boolean overflowed;
+
+    /**
+     * @param spillFile overflow file, used only with SPILL policy
+     */
+    public GroupStatsQueue(String groupName, StatsQueueConfig config, File spillFile) {
+        int capacity = 1;
+        while(capacity < config.getCapacity())
+            capacity <<= 1;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<GroupStatsInstance>(capacity);
+
+        this.overflowPolicy = config.getOverflowPolicy();
+        this.sampleRate = Math.max(1, config.getSampleRate());
+        this.sampleWatermark = capacity - capacity / 4;
+        this.spill = overflowPolicy == StatsQueueConfig.OverflowPolicy.SPILL ? new GroupStatsSpill(spillFile) : null;
+
+        this.droppedCounter = new Counter(groupName, FrameworkMetrics.FUNCTION_NAME, FrameworkMetrics.STATS_DROPPED);
+        this.spilledCounter = new Counter(groupName, FrameworkMetrics.FUNCTION_NAME, FrameworkMetrics.STATS_SPILLED);
+        this.backPressureCounter = new Counter(groupName, FrameworkMetrics.FUNCTION_NAME, FrameworkMetrics.STATS_BACKPRESSURE_MS);
+        logger.info("Group "+groupName+" stats queue of "+capacity+" with "+overflowPolicy+" on overflow");
     }
 
     /**
-     * Add to the Queue
+     * Add to the Queue. Depending upon overflow policy, blocks or doesn't add at all when queue is full
      * @param groupStatsInstance
      * @return
      */
     public GroupStatsQueue addGroupStats(GroupStatsInstance groupStatsInstance) {
-        this.groupWriteQueueLink.offer(groupStatsInstance);
+        switch (overflowPolicy) {
+            case SAMPLE:
+                if(tail.get() - head >= sampleWatermark && sampled.incrementAndGet() % sampleRate != 0) {
+                    overflow(droppedCounter);
+                    return this;
+                }
+                if(!offer(groupStatsInstance))
+                    overflow(droppedCounter);
+                break;
+
+            case SPILL:
+                // Once spilling, everything goes to spill file till it is drained, else newer stats would overtake
+                if(spill.pending() > 0 || !offer(groupStatsInstance))
+                    spill(groupStatsInstance);
+                break;
+
+            case BACKPRESSURE:
+                if(!offer(groupStatsInstance)) {
+                    long waitStartNS = System.nanoTime();
+                    do {
+                        LockSupport.parkNanos(BACKPRESSURE_PARK_NS);
+                    } while(!offer(groupStatsInstance));
+                    overflow(backPressureCounter, (System.nanoTime() - waitStartNS + 999999) / 1000000);
+                }
+                break;
+        }
         return this;
     }
 
     /**
-     * Remove and return
-     * @return
+     * Remove and return. Only stats collector should call it
+     * @return null if nothing is waiting
      */
     public GroupStatsInstance getGroupStats() {
-        return this.groupReadQueueLink.poll();
+        long head = this.head;
+        int slot = (int) (head & mask);
+        GroupStatsInstance groupStatsInstance = slots.get(slot);
+        if(groupStatsInstance != null) {
+            slots.lazySet(slot, null);
+            this.head = head + 1;
+            return groupStatsInstance;
+        }
+
+        // Slot is claimed but not published yet. It is older than what is spilled
+        if(tail.get() != head)
+            return null;
+
+        if(spill != null) {
+            try {
+                return spill.read();
+            } catch (IOException e) {
+                logger.error("Couldn't read spilled group stats", e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Group stats waiting to be drained, in queue and spill file
+     * @return
+     */
+    public int size() {
+        long size = tail.get() - head;
+        if(spill != null)
+            size += spill.pending();
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, size));
     }
 
-    public void swapQueues() {
-        logger.debug("Swapping Stats Queue");
-        if(oppositeQueue) {
-            this.groupWriteQueueLink = this.groupReadQueue;
-            this.groupReadQueueLink = this.groupWriteQueue;
+    public int capacity() {
+        return capacity;
+    }
+
+    public StatsQueueConfig.OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Counters telling what overflow did, to be dumped with group stats
+     */
+    public List<Counter> overflowCounters() {
+        List<Counter> counters = new ArrayList<Counter>();
+        switch (overflowPolicy) {
+            case SPILL:
+                counters.add(spilledCounter);
+                counters.add(droppedCounter);
+                break;
+            case SAMPLE:
+                counters.add(droppedCounter);
+                break;
+            case BACKPRESSURE:
+                counters.add(backPressureCounter);
+                break;
+        }
+        return counters;
+    }
+
+    /**
+     * Deletes spill file. Queue shouldn't be used after it
+     */
+    public void close() {
+        if(spill != null) {
+            try {
+                spill.close();
+            } catch (IOException e) {
+                logger.warn("Couldn't close group stats spill file. "+e.getMessage());
+            }
+        }
+    }
+
+    private boolean offer(GroupStatsInstance groupStatsInstance) {
+        long tail;
+        do {
+            tail = this.tail.get();
+            if(tail - head >= capacity)
+                return false;
+        } while(!this.tail.compareAndSet(tail, tail + 1));
+        slots.lazySet((int) (tail & mask), groupStatsInstance);
+        return true;
+    }
+
+    private void spill(GroupStatsInstance groupStatsInstance) {
+        try {
+            if(spill.write(groupStatsInstance)) {
+                overflow(spilledCounter);
+                return;
+            }
+        } catch (IOException e) {
+            logger.error("Couldn't spill group stats", e);
         }
-        else {
-            this.groupWriteQueueLink = this.groupWriteQueue;
-            this.groupReadQueueLink = this.groupReadQueue;
+        overflow(droppedCounter);
+    }
+
+    private void overflow(Counter counter) {
+        overflow(counter, 1);
+    }
+
+    private void overflow(Counter counter, long by) {
+        counter.increment(by);
+        if(!overflowed) {
+            overflowed = true;
+            logger.warn("Stats queue of group "+counter.getGroupName()+" is full. Stats collector isn't keeping up, " +
+                    overflowPolicy+" in effect");
         }
-        oppositeQueue = !oppositeQueue;
-        logger.debug("GroupStats Instances in Read Queue :"+this.groupReadQueueLink.size());
-        logger.debug("GroupStats Instances in Write Queue :"+this.groupWriteQueueLink.size());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,183 @@
+package com.flipkart.perf.core;
+
+import com.flipkart.perf.common.util.TimeInstance;
+import com.flipkart.perf.util.Histogram;
+import com.flipkart.perf.util.HistogramInstance;
+import com.flipkart.perf.util.Timer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory mapped overflow file of GroupStatsQueue. Group stats instances are appended as records in fixed size
+ * segments, and read back in the order they were written. Once reader catches up with writer, file is truncated and
+ * reused. Writes come from many executor threads but only when queue is full, so a lock is good enough.
+ *
+ * Record : int length followed by length bytes. A 0 length marks rest of the segment as unused.
+ */
+class GroupStatsSpill {
+    private static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private final File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private ByteBuffer writeSegment, readSegment;
+    private long writeSegmentNo = -1, readSegmentNo = -1;
+    private int pending;
+
+    GroupStatsSpill(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return false if instance is too big to fit a segment
+     */
+    synchronized boolean write(GroupStatsInstance groupStatsInstance) throws IOException {
+        byte[] record = serialize(groupStatsInstance);
+        if(record.length + 8 > SEGMENT_SIZE)
+            return false;
+
+        if(channel == null) {
+            file.getParentFile().mkdirs();
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            channel = randomAccessFile.getChannel();
+        }
+
+        if(writeSegment == null || writeSegment.remaining() < record.length + 4) {
+            if(writeSegment != null && writeSegment.remaining() >= 4)
+                writeSegment.putInt(0);
+            writeSegmentNo++;
+            writeSegment = channel.map(FileChannel.MapMode.READ_WRITE, writeSegmentNo * SEGMENT_SIZE, SEGMENT_SIZE);
+        }
+        writeSegment.putInt(record.length);
+        writeSegment.put(record);
+        pending++;
+        return true;
+    }
+
+    /**
+     * @return oldest spilled instance, null if nothing is spilled
+     */
+    synchronized GroupStatsInstance read() throws IOException {
+        if(pending == 0) {
+            if(writeSegment != null)
+                reset();
+            return null;
+        }
+
+        if(readSegment == null || readSegment.remaining() < 4 || peekLength() == 0) {
+            readSegmentNo++;
+            // Segment being written is read through writer's mapping, so that reader sees what writer wrote
+            readSegment = readSegmentNo == writeSegmentNo
+                    ? (ByteBuffer) writeSegment.duplicate().position(0)
+                    : channel.map(FileChannel.MapMode.READ_ONLY, readSegmentNo * SEGMENT_SIZE, SEGMENT_SIZE);
+        }
+        byte[] record = new byte[readSegment.getInt()];
+        readSegment.get(record);
+        pending--;
+        return deserialize(record);
+    }
+
+    synchronized int pending() {
+        return pending;
+    }
+
+    synchronized void close() throws IOException {
+        if(channel != null) {
+            writeSegment = readSegment = null;
+            channel.close();
+            randomAccessFile.close();
+            channel = null;
+        }
+        file.delete();
+    }
+
+    private int peekLength() {
+        return readSegment.getInt(readSegment.position());
+    }
+
+    private void reset() throws IOException {
+        writeSegment = readSegment = null;
+        writeSegmentNo = readSegmentNo = -1;
+        channel.truncate(0);
+    }
+
+    private byte[] serialize(GroupStatsInstance groupStatsInstance) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeTimers(out, groupStatsInstance.getCustomTimers());
+        writeTimers(out, groupStatsInstance.getFunctionTimers());
+        writeTimers(out, groupStatsInstance.getFrameworkTimers());
+
+        out.writeInt(groupStatsInstance.getFunctionHistograms().size());
+        for(Map.Entry<String, Histogram> entry : groupStatsInstance.getFunctionHistograms().entrySet()) {
+            Histogram histogram = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeUTF(histogram.getGroupName());
+            out.writeUTF(histogram.getFunctionName());
+            out.writeUTF(histogram.getName());
+            List<HistogramInstance> instances = histogram.getInstances();
+            out.writeInt(instances.size());
+            for(HistogramInstance instance : instances) {
+                out.writeLong(instance.getAtTime());
+                out.writeDouble(instance.getValue());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void writeTimers(DataOutputStream out, Map<String, Timer> timers) throws IOException {
+        out.writeInt(timers.size());
+        for(Map.Entry<String, Timer> entry : timers.entrySet()) {
+            Timer timer = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeUTF(timer.getGroupName());
+            out.writeUTF(timer.getFunctionName());
+            out.writeUTF(timer.getTimerName());
+            List<TimeInstance> timeList = timer.getTimeList();
+            out.writeInt(timeList.size());
+            for(TimeInstance timeInstance : timeList) {
+                out.writeLong(timeInstance.getAtTime());
+                out.writeLong(timeInstance.getHowMuchTime());
+            }
+        }
+    }
+
+    private GroupStatsInstance deserialize(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        Map<String, Timer> customTimers = readTimers(in);
+        Map<String, Timer> functionTimers = readTimers(in);
+        Map<String, Timer> frameworkTimers = readTimers(in);
+
+        Map<String, Histogram> functionHistograms = new HashMap<String, Histogram>();
+        int histograms = in.readInt();
+        for(int i=0; i<histograms; i++) {
+            String key = in.readUTF();
+            Histogram histogram = new Histogram(in.readUTF(), in.readUTF(), in.readUTF());
+            int instances = in.readInt();
+            for(int j=0; j<instances; j++)
+                histogram.getInstances().add(new HistogramInstance(in.readLong(), in.readDouble()));
+            functionHistograms.put(key, histogram);
+        }
+        return new GroupStatsInstance(customTimers, functionTimers, functionHistograms, frameworkTimers);
+    }
+
+    private Map<String, Timer> readTimers(DataInputStream in) throws IOException {
+        Map<String, Timer> timers = new HashMap<String, Timer>();
+        int count = in.readInt();
+        for(int i=0; i<count; i++) {
+            String key = in.readUTF();
+            Timer timer = new Timer(in.readUTF(), in.readUTF(), in.readUTF());
+            int times = in.readInt();
+            for(int j=0; j<times; j++)
+                timer.add(in.readLong(), in.readLong());
+            timers.put(key, timer);
+        }
+        return timers;
+    }
+}
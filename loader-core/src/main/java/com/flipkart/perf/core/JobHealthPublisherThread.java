@@ -0,0 +1,129 @@
+package com.flipkart.perf.core;
+
+import com.flipkart.perf.common.util.Clock;
+import com.flipkart.perf.util.JobHealthRing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.*;
+import java.util.List;
+
+/**
+ * Samples health of job process (cpu, heap, gc, scheduling lag, stats queue depths) and publishes it in a memory
+ * mapped ring file in job folder, from where Loader agent reads it. Deadlock detection is costly (it pauses the
+ * process), so it runs at a much lower rate than sampling. Samples also drive generator governor, if job has one.
+ */
+public class JobHealthPublisherThread extends Thread {
+    private static final int SAMPLE_INTERVAL_MS = 100;
+    private static final int RING_SLOTS = 600; // A minute of samples
+    private static final int DEADLOCK_CHECK_INTERVAL_MS = 10000;
+    private static Logger logger = LoggerFactory.getLogger(JobHealthPublisherThread.class);
+
+    private final JobHealthRing ring;
+    private final List<GroupController> groupControllers;
+    private final GeneratorGovernor governor;
+    private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final List<GarbageCollectorMXBean> gcMXBeans = ManagementFactory.getGarbageCollectorMXBeans();
+    private final OperatingSystemMXBean osMXBean = ManagementFactory.getOperatingSystemMXBean();
+    private final int processors = Runtime.getRuntime().availableProcessors();
+    private volatile boolean keepRunning = true;
+
+    private long previousCpuTimeNS = -1, previousSampleTimeNS;
+    private long lastDeadlockCheckTime;
+    private int deadLockedThreads;
+
+    /**
+     * @param governor gets every sample, null if job has no generator limits
+     */
+    public JobHealthPublisherThread(String jobId, List<GroupController> groupControllers, GeneratorGovernor governor) throws IOException {
+        this.setName("Thread-JobHealthPublisher");
+        this.setDaemon(true);
+        String basePath = System.getProperty("BASE_PATH","./");
+        this.ring = JobHealthRing.create(new File(basePath + jobId + File.separator + JobHealthRing.FILE_NAME), RING_SLOTS);
+        this.groupControllers = groupControllers;
+        this.governor = governor;
+    }
+
+    public void run() {
+        long nextSampleTimeNS = Clock.nsTick();
+        while(keepRunning) {
+            long schedulingLagMS = Math.max(0, (Clock.nsTick() - nextSampleTimeNS) / 1000000);
+            try {
+                JobHealthRing.Sample sample = sample(schedulingLagMS);
+                ring.write(sample);
+                if(governor != null)
+                    governor.govern(sample);
+            }
+            catch (Exception e) {
+                logger.warn("Couldn't publish job health. "+e.getMessage());
+            }
+
+            nextSampleTimeNS = Clock.nsTick() + SAMPLE_INTERVAL_MS * 1000000L;
+            try {
+                Clock.sleep(SAMPLE_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        try {
+            ring.close();
+        } catch (IOException e) {
+            logger.warn("Couldn't close job health ring. "+e.getMessage());
+        }
+    }
+
+    private JobHealthRing.Sample sample(long schedulingLagMS) {
+        MemoryUsage heapUsage = memoryMXBean.getHeapMemoryUsage();
+        long gcCount = 0, gcTimeMS = 0;
+        for(GarbageCollectorMXBean gcMXBean : gcMXBeans) {
+            gcCount += Math.max(0, gcMXBean.getCollectionCount());
+            gcTimeMS += Math.max(0, gcMXBean.getCollectionTime());
+        }
+
+        if(System.currentTimeMillis() - lastDeadlockCheckTime >= DEADLOCK_CHECK_INTERVAL_MS) {
+            long[] deadlockedThreadIds = threadMXBean.findDeadlockedThreads();
+            deadLockedThreads = deadlockedThreadIds != null ? deadlockedThreadIds.length : 0;
+            lastDeadlockCheckTime = System.currentTimeMillis();
+        }
+
+        long statsQueueDepth = 0;
+        for(GroupController groupController : groupControllers)
+            statsQueueDepth += groupController.statsQueueDepth();
+
+        return new JobHealthRing.Sample().
+                setTime(System.currentTimeMillis()).
+                setCpuUsage(cpuUsage()).
+                setHeapUsed(heapUsage.getUsed()).
+                setHeapMax(heapUsage.getMax()).
+                setGcCount(gcCount).
+                setGcTimeMS(gcTimeMS).
+                setSchedulingLagMS(schedulingLagMS).
+                setLiveThreads(threadMXBean.getThreadCount()).
+                setDeadLockedThreads(deadLockedThreads).
+                setStatsQueueDepth(statsQueueDepth);
+    }
+
+    /**
+     * Process cpu usage since previous sample in %age of all cpus. 0 if jvm doesn't expose process cpu time
+     */
+    private float cpuUsage() {
+        if(!(osMXBean instanceof com.sun.management.OperatingSystemMXBean))
+            return 0;
+        long cpuTimeNS = ((com.sun.management.OperatingSystemMXBean) osMXBean).getProcessCpuTime();
+        long sampleTimeNS = Clock.nsTick();
+        float cpuUsage = 0;
+        if(previousCpuTimeNS >= 0 && sampleTimeNS > previousSampleTimeNS)
+            cpuUsage = Math.min(100F, (cpuTimeNS - previousCpuTimeNS) * 100F / ((sampleTimeNS - previousSampleTimeNS) * processors));
+        previousCpuTimeNS = cpuTimeNS;
+        previousSampleTimeNS = sampleTimeNS;
+        return cpuUsage;
+    }
+
+    public void stopIt() {
+        this.keepRunning = false;
+        this.interrupt();
+    }
+}
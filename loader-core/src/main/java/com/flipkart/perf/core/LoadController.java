@@ -49,8 +49,10 @@ public class LoadController extends Thread{
             this.addGroup(group);
 
             for(GroupFunction groupFunction : group.getFunctions()) {
-                Object object = ClassHelper.getClassInstance(groupFunction.getFunctionClass(), new Class[]{}, new Object[]{});
-                Method method = ClassHelper.getMethod(groupFunction.getFunctionClass() , "sharedData", new Class[]{});
+                // Function classes come from job class loader, which is set as context class loader of job thread
+                ClassLoader jobClassLoader = Thread.currentThread().getContextClassLoader();
+                Object object = ClassHelper.getClassInstance(groupFunction.getFunctionClass(), new Class[]{}, new Object[]{}, jobClassLoader);
+                Method method = ClassHelper.getMethod(groupFunction.getFunctionClass() , "sharedData", new Class[]{}, jobClassLoader);
                 sharedDataInfoMap.putAll((LinkedHashMap<String, SharedDataInfo>) method.invoke(object, new Object[]{}));
             }
         }
@@ -155,6 +157,14 @@ public class LoadController extends Thread{
         return dependencyFlow;
     }
 
+    /**
+     * Group controllers of this load. Copy, as finished groups get removed from controller's own map
+     * @return
+     */
+    public List<GroupController> groupControllers() {
+        return new ArrayList<GroupController>(this.groupControllersMap.values());
+    }
+
     /**
      * Function that starts the load generation
      */
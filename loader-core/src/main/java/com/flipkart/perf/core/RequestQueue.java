@@ -48,4 +48,11 @@ public class RequestQueue {
     synchronized public long requestsPending() {
         return counter.count();
     }
+
+    /**
+     * Requests handed out so far
+     */
+    synchronized public long requestsIssued() {
+        return howManyRequests - Math.max(0, counter.count());
+    }
 }
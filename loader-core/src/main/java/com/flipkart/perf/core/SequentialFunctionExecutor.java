@@ -46,6 +46,11 @@ public class SequentialFunctionExecutor extends Thread {
     private long accumulatedSleepIntervalNS; // When This accumulated Sleep Interval Goes above 1 ms then sleep for near by ms value
     private int threadStartDelay;
     private final Map<String, DataGenerator> groupDataGenerators;
+    private final boolean frameworkMetrics;
+    private volatile long intendedStartTimeNS = -1; // When pacer wants next iteration to start, -1 till there is a schedule
+    private long sleepOvershootNS = -1;    // Overshoot of last sleep, recorded with next iteration
+    private long frameworkTimeNS = -1;     // Framework time of last iteration, recorded with next iteration as it
+    private long frameworkTimeStampMS;     // takes in handing over stats of the iteration
 
     public SequentialFunctionExecutor(String threadExecutorName,
                                       Group group,
@@ -60,7 +65,7 @@ public class SequentialFunctionExecutor extends Thread {
 
         super(threadExecutorName);
         this.group = group;
-        this.throughput = group.getThroughput() / group.getThreads();
+        this.throughput = throughput;
         this.forcedDurationPerIterationNS = (long)((1000 / this.throughput) * 1000000);
 
         this.ignoreDumpFunctions = ignoreDumpFunctions;
@@ -74,6 +79,7 @@ public class SequentialFunctionExecutor extends Thread {
         this.customCounters = customCounters;
         this.threadResources = new HashMap<String, Object>();
         this.groupDataGenerators = groupDataGenerators;
+        this.frameworkMetrics = group.isFrameworkMetrics();
         this.fExecutors = buildFunctionExecutors();
     }
 
@@ -99,7 +105,8 @@ public class SequentialFunctionExecutor extends Thread {
                 Object functionClassObject = ClassHelper.getClassInstance(
                         groupFunction.getFunctionClass(),
                         new Class[]{},
-                        new Object[]{});
+                        new Object[]{},
+                        Thread.currentThread().getContextClassLoader());
 
                 fExecutors.add(
                         new SyncFunctionExecutor(
@@ -134,6 +141,7 @@ public class SequentialFunctionExecutor extends Thread {
         Counter repeatCounter = new Counter(this.group.getName(), this.getName(), this.getName());
         while(canRepeat(this.requestQueue)) {
             if(this.isPaused()) {
+                this.intendedStartTimeNS = -1;
                 logger.info(this.getName()+" is paused");
                 try {
                     Clock.sleep(PAUSE_CHECK_DELAY);
@@ -150,13 +158,15 @@ public class SequentialFunctionExecutor extends Thread {
             Map<String, Timer> customTimers = buildCustomTimers();
             Map<String, Timer> functionTimers = buildFunctionTimers();
             Map<String, Histogram> functionHistograms = buildCustomHistograms();
+            Map<String, Timer> frameworkTimers = buildFrameworkTimers(iterationStartTimeNS);
+            long userFunctionsTimeNS = 0;
 
             FunctionContext functionContext = new FunctionContext(customTimers, this.customCounters, functionHistograms, this.groupDataGenerators).
                     updateParameters(this.groupParams).
                     updateParameters(this.threadResources).
                     setMyThread(this);
 
-            GroupStatsInstance groupStatsInstance = new GroupStatsInstance(customTimers, functionTimers, functionHistograms);
+            GroupStatsInstance groupStatsInstance = new GroupStatsInstance(customTimers, functionTimers, functionHistograms, frameworkTimers);
 
             for(int functionNo = 0; functionNo < this.groupFunctions.size(); functionNo++) {
                 GroupFunction groupFunction =   this.groupFunctions.get(functionNo);
@@ -178,6 +188,7 @@ public class SequentialFunctionExecutor extends Thread {
                     }
 
                     fe.execute();
+                    userFunctionsTimeNS += fe.getExecutionTimeNS();
 
                     functionCounter.executed();
                     if(!this.ignoreDumpFunctions.contains(functionalityName)) {
@@ -210,6 +221,14 @@ public class SequentialFunctionExecutor extends Thread {
                 }
             }
             groupStatsQueue.addGroupStats(groupStatsInstance);
+            if(this.frameworkMetrics) {
+                long iterationEndTimeNS = Clock.nsTick();
+                this.frameworkTimeNS = Math.max(0, iterationEndTimeNS - iterationStartTimeNS - userFunctionsTimeNS);
+                this.frameworkTimeStampMS = Clock.milliTick();
+                // Next iteration is due one pacing interval after this one was due, but never before this one ended
+                long scheduledStartTimeNS = (this.intendedStartTimeNS < 0 ? iterationStartTimeNS : this.intendedStartTimeNS) + this.forcedDurationPerIterationNS;
+                this.intendedStartTimeNS = Math.max(scheduledStartTimeNS, iterationEndTimeNS);
+            }
             long iterationTimeNS = Clock.nsTick() - iterationStartTimeNS;
             long iterationSleepIntervalNS   = this.forcedDurationPerIterationNS - iterationTimeNS;
             if(iterationSleepIntervalNS > 0)
@@ -336,6 +355,28 @@ public class SequentialFunctionExecutor extends Thread {
         return timersMap;
     }
 
+    /**
+     * Framework timers of an iteration, with lateness of its start, overshoot of the sleep before it and framework
+     * time of the iteration before it
+     */
+    private Map<String, Timer> buildFrameworkTimers(long iterationStartTimeNS) {
+        if(!this.frameworkMetrics)
+            return new HashMap<String, Timer>();
+
+        Map<String, Timer> frameworkTimers = FrameworkMetrics.buildTimers(group.getName());
+        if(this.intendedStartTimeNS >= 0)
+            frameworkTimers.get(FrameworkMetrics.PACER_LATENESS).add(Math.max(0, iterationStartTimeNS - this.intendedStartTimeNS));
+        if(this.sleepOvershootNS >= 0) {
+            frameworkTimers.get(FrameworkMetrics.SLEEP_OVERSHOOT).add(this.sleepOvershootNS);
+            this.sleepOvershootNS = -1;
+        }
+        if(this.frameworkTimeNS >= 0) {
+            frameworkTimers.get(FrameworkMetrics.FRAMEWORK_TIME).add(this.frameworkTimeStampMS, this.frameworkTimeNS);
+            this.frameworkTimeNS = -1;
+        }
+        return frameworkTimers;
+    }
+
     private Map<String, Timer> buildCustomTimers() {
         Map<String, Timer> timersMap = new HashMap<String, Timer>();
         for(GroupFunction groupFunction : group.getFunctions()) {
@@ -368,6 +409,7 @@ public class SequentialFunctionExecutor extends Thread {
         this.accumulatedSleepIntervalNS = this.forcedDurationPerIterationNS % MILLION;
 
         logger.debug("Going to Sleep for "+timeToSleepMS +" ms");
+        long sleepStartTimeNS = Clock.nsTick();
         synchronized (this) {
             try {
                 Clock.sleep(timeToSleepMS);
@@ -375,6 +417,8 @@ public class SequentialFunctionExecutor extends Thread {
                 logger.error("", e);
             }
         }
+        if(this.frameworkMetrics)
+            this.sleepOvershootNS = Math.max(0, Clock.nsTick() - sleepStartTimeNS - (long) timeToSleepMS * MILLION);
         logger.debug("Coming out of sleep");
     }
 
@@ -434,6 +478,8 @@ public class SequentialFunctionExecutor extends Thread {
 
     public void setThroughput(float throughput) {
         this.throughput = throughput;
+        // New pace, new schedule
+        this.intendedStartTimeNS = -1;
         this.forcedDurationPerIterationNS = (int)((MathConstant.THOUSAND / this.throughput) * MathConstant.MILLION);
         logger.info(this.getName()+" Expected Throughput :"+this.throughput+ "forcedDurationPerIterationNS: "+this.forcedDurationPerIterationNS);
     }
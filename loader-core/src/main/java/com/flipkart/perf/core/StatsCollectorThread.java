@@ -17,7 +17,6 @@ import java.util.*;
 
 public class StatsCollectorThread extends Thread{
     private static final int STATS_QUEUE_POLL_INTERVAL = 5000; // ms
-    private static final int SWAP_QUEUE_INTERVAL = 5000; // ms
     private static final int BULK_WRITE_SIZE = 100;
 
     private boolean keepRunning = true;
@@ -26,27 +25,32 @@ public class StatsCollectorThread extends Thread{
 
     private static Logger logger = LoggerFactory.getLogger(StatsCollectorThread.class);
 
-    private long lastQueueSwapTime;
     private boolean collectingStats;
     private List<Counter> allCounters;
     private final String statsBasePath;
     private final long startTimeMS;
     private final Map<String,BufferedWriter> fileWriterMap;
     private final Group group;
+    private final GroupController groupController;
+    private long lastRealTimeConfDumpTime;
+    private Histogram statsQueueDepthHistogram;
 
     public StatsCollectorThread(String statsBasePath,
                                 GroupStatsQueue groupStatsQueue,
                                 Map<String, FunctionCounter> functionCounters,
                                 Group group,
                                 Map<String, Counter> customCounters,
-                                long startTimeMS) throws FileNotFoundException {
+                                long startTimeMS,
+                                GroupController groupController) throws FileNotFoundException {
         this.statsBasePath = statsBasePath;
         this.groupStatsQueue = groupStatsQueue;
-        this.lastQueueSwapTime = Clock.milliTick();
         this.statsFileWritersMap = new LinkedHashMap<String, BufferedWriter>();
         this.allCounters = new ArrayList<Counter>();
         this.startTimeMS = startTimeMS;
         this.group = group;
+        this.groupController = groupController;
+        this.lastRealTimeConfDumpTime = Clock.milliTick();
+        this.statsQueueDepthHistogram = FrameworkMetrics.buildStatsQueueDepthHistogram(group.getName());
 
         for(String counter : customCounters.keySet()) {
             Counter customCounter = customCounters.get(counter);
@@ -60,6 +64,9 @@ public class StatsCollectorThread extends Thread{
             this.allCounters.add(functionCounter.getFailureCounter());
             this.allCounters.add(functionCounter.getSkipCounter());
         }
+
+        // Whatever stats queue overflow did goes in stats, framework metrics or not
+        this.allCounters.addAll(groupStatsQueue.overflowCounters());
         this.fileWriterMap = new HashMap<String, BufferedWriter>();
     }
 
@@ -145,7 +152,59 @@ public class StatsCollectorThread extends Thread{
             }
         }
 
+        if(group.isFrameworkMetrics()) {
+            // Creating File Writers for Framework Metrics. They are laid out like a function's timers and histograms
+            for(String frameworkTimerName : FrameworkMetrics.TIMERS) {
+                filePath = statsBasePath
+                        + File.separator + "functions" + File.separator + FrameworkMetrics.FUNCTION_NAME
+                        + File.separator + "timers" + File.separator + frameworkTimerName
+                        + ".part" + filePartId;
+
+                FileHelper.createFilePath(filePath);
+                bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath)));
+                this.statsFileWritersMap.put(FrameworkMetrics.FUNCTION_NAME + "." + frameworkTimerName, bw);
+                this.fileWriterMap.put(filePath, bw);
+            }
+
+            filePath = statsBasePath
+                    + File.separator + "functions" + File.separator + FrameworkMetrics.FUNCTION_NAME
+                    + File.separator + "histograms" + File.separator + FrameworkMetrics.STATS_QUEUE_DEPTH
+                    + ".part" + filePartId;
+
+            FileHelper.createFilePath(filePath);
+            bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath)));
+            this.statsFileWritersMap.put(FrameworkMetrics.FUNCTION_NAME + "." + FrameworkMetrics.STATS_QUEUE_DEPTH, bw);
+            this.fileWriterMap.put(filePath, bw);
+        }
+
+        // Creating File Writers for Stats Queue Overflow Counters, which are there for every group
+        for(Counter overflowCounter : this.groupStatsQueue.overflowCounters()) {
+            filePath = statsBasePath
+                    + File.separator + "functions" + File.separator + FrameworkMetrics.FUNCTION_NAME
+                    + File.separator + "counters" + File.separator + overflowCounter.getCounterName()
+                    + ".part" + filePartId;
+
+            FileHelper.createFilePath(filePath);
+            bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath)));
+            this.statsFileWritersMap.put(FrameworkMetrics.FUNCTION_NAME + "." + overflowCounter.getCounterName(), bw);
+            this.fileWriterMap.put(filePath, bw);
+        }
+
         if(filePartId == 0) {
+            // Stats queue configuration : time,capacity,overflow policy
+            filePath = statsBasePath
+                    + File.separator + "conf"
+                    + File.separator + "statsQueueConf"
+                    + ".part" + filePartId;
+
+            FileHelper.createFilePath(filePath);
+            bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath)));
+            this.fileWriterMap.put(filePath, bw);
+            writeToFile(bw, startTimeMS
+                    + "," + this.groupStatsQueue.capacity()
+                    + "," + this.groupStatsQueue.getOverflowPolicy()
+                    + "\n");
+
             // initialize Counter file
             for(Counter counter : this.allCounters) {
                 bw = this.statsFileWritersMap.get(counter.getFunctionName() + "." + counter.getCounterName());
@@ -171,9 +230,8 @@ public class StatsCollectorThread extends Thread{
         }
         waitForCollectionToGetOver();
         collectStats(collectionCount++);
-        swapQueues();
-        collectStats(collectionCount++);
         closeFiles();
+        groupStatsQueue.close();
     }
 
     private void completeFileWriters() throws IOException {
@@ -196,10 +254,6 @@ public class StatsCollectorThread extends Thread{
         }
     }
 
-    private void swapQueues() {
-        groupStatsQueue.swapQueues();
-    }
-
     private void closeFiles() {
         for(BufferedWriter bw : this.statsFileWritersMap.values())
             try {
@@ -221,11 +275,7 @@ public class StatsCollectorThread extends Thread{
                 throw new RuntimeException(e);
             }
             totalDelay += granularDelay;
-
-            if(Clock.milliTick() - this.lastQueueSwapTime > this.SWAP_QUEUE_INTERVAL && canSwapQueues()) {
-                swapQueues();
-                this.lastQueueSwapTime = Clock.milliTick();
-            }
+            this.statsQueueDepthHistogram.addValue(this.groupStatsQueue.size());
         }
     }
 
@@ -235,11 +285,15 @@ public class StatsCollectorThread extends Thread{
             createFileWriters(collectionCount);
             this.collectingStats = true;
             GroupStatsInstance groupStatsInstance = null;
-            while((groupStatsInstance = this.groupStatsQueue.getGroupStats()) != null) {
+            // Only what is there now, else a busy group would keep collector in this loop forever
+            int toCollect = this.groupStatsQueue.size();
+            while(toCollect-- > 0 && (groupStatsInstance = this.groupStatsQueue.getGroupStats()) != null) {
                 dumpTimers(groupStatsInstance.getCustomTimers());
                 dumpTimers(groupStatsInstance.getFunctionTimers());
                 dumpHistograms(groupStatsInstance.getFunctionHistograms());
+                dumpTimers(groupStatsInstance.getFrameworkTimers());
             }
+            dumpStatsQueueDepth();
             dumpCounters();
             dumpRealTimeGroupConf();
             this.collectingStats = false;
@@ -255,16 +309,19 @@ public class StatsCollectorThread extends Thread{
         logger.debug("Time To Print Stats :" + (Clock.milliTick() - collectionStartTime));
     }
 
-    private boolean canSwapQueues() {
-        return !this.collectingStats;
-    }
-
+    /**
+     * time,threads,expected throughput,generator saturated (1 if generator governor found process saturated since
+     * previous dump, numbers of this interval are then suspect)
+     */
     private void dumpRealTimeGroupConf() {
         BufferedWriter bw = this.statsFileWritersMap.get("realTimeConf");
-        writeToFile(bw, Clock.milliTick()
+        long dumpTime = Clock.milliTick();
+        writeToFile(bw, dumpTime
                 + "," + this.group.getThreads()
-                + "," + this.group.getThroughput()
+                + "," + this.groupController.effectiveThroughput()
+                + "," + (this.groupController.generatorSaturatedSince(this.lastRealTimeConfDumpTime) ? 1 : 0)
                 + "\n");
+        this.lastRealTimeConfDumpTime = dumpTime;
     }
 
     private void dumpCounters(){
@@ -326,6 +383,13 @@ public class StatsCollectorThread extends Thread{
         }
     }
 
+    private void dumpStatsQueueDepth() {
+        Map<String, Histogram> histograms = new HashMap<String, Histogram>();
+        histograms.put(FrameworkMetrics.STATS_QUEUE_DEPTH, this.statsQueueDepthHistogram);
+        this.statsQueueDepthHistogram = FrameworkMetrics.buildStatsQueueDepthHistogram(group.getName());
+        dumpHistograms(histograms);
+    }
+
     private void writeToFile(BufferedWriter bw, String content) {
         try {
             bw.write(content);
@@ -0,0 +1,82 @@
+package com.flipkart.perf.domain;
+
+/**
+ * Limits beyond which load generating process itself is considered saturated. Once crossed, group throughputs are
+ * backed off, as numbers collected from a saturated generator mostly show generator side queuing. A limit <= 0 is off.
+ */
+public class GeneratorLimits {
+    private float maxCpuUsage = -1;          // %age of all cpus
+    private float maxGcTimePercentage = -1;  // %age of wall time spent in gc
+    private long maxSchedulingLagMS = -1;
+    private int windowMS = 1000;            // limits are checked over windows of this length
+    private float backOffFactor = 0.8f;     // saturated window caps throughput at this fraction of achieved throughput
+    private float recoveryFactor = 1.1f;    // cap goes up by this factor after enough healthy windows
+    private int recoveryWindows = 5;
+
+    public boolean enabled() {
+        return maxCpuUsage > 0 || maxGcTimePercentage > 0 || maxSchedulingLagMS > 0;
+    }
+
+    public float getMaxCpuUsage() {
+        return maxCpuUsage;
+    }
+
+    public GeneratorLimits setMaxCpuUsage(float maxCpuUsage) {
+        this.maxCpuUsage = maxCpuUsage;
+        return this;
+    }
+
+    public float getMaxGcTimePercentage() {
+        return maxGcTimePercentage;
+    }
+
+    public GeneratorLimits setMaxGcTimePercentage(float maxGcTimePercentage) {
+        this.maxGcTimePercentage = maxGcTimePercentage;
+        return this;
+    }
+
+    public long getMaxSchedulingLagMS() {
+        return maxSchedulingLagMS;
+    }
+
+    public GeneratorLimits setMaxSchedulingLagMS(long maxSchedulingLagMS) {
+        this.maxSchedulingLagMS = maxSchedulingLagMS;
+        return this;
+    }
+
+    public int getWindowMS() {
+        return windowMS;
+    }
+
+    public GeneratorLimits setWindowMS(int windowMS) {
+        this.windowMS = windowMS;
+        return this;
+    }
+
+    public float getBackOffFactor() {
+        return backOffFactor;
+    }
+
+    public GeneratorLimits setBackOffFactor(float backOffFactor) {
+        this.backOffFactor = backOffFactor;
+        return this;
+    }
+
+    public float getRecoveryFactor() {
+        return recoveryFactor;
+    }
+
+    public GeneratorLimits setRecoveryFactor(float recoveryFactor) {
+        this.recoveryFactor = recoveryFactor;
+        return this;
+    }
+
+    public int getRecoveryWindows() {
+        return recoveryWindows;
+    }
+
+    public GeneratorLimits setRecoveryWindows(int recoveryWindows) {
+        this.recoveryWindows = recoveryWindows;
+        return this;
+    }
+}
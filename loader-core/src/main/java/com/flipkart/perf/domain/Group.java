@@ -17,6 +17,8 @@ public class Group {
     private long duration;
     private int threads ;
     private int warmUpRepeats ;
+    private boolean frameworkMetrics ;
+    private StatsQueueConfig statsQueue;
 
     private List<GroupFunction> functions;
     private List<String> dependOnGroups;
@@ -42,6 +44,8 @@ public class Group {
         this.repeats =  -1;
         this.threads = 1;
         this.warmUpRepeats = -1;
+        this.frameworkMetrics = false;
+        this.statsQueue = new StatsQueueConfig();
         this.customTimers = new ArrayList<String>();
         this.customCounters = new ArrayList<String>();
         this.dataGenerators = new HashMap<String, DataGeneratorInfo>();
@@ -158,6 +162,28 @@ public class Group {
         return this;
     }
 
+    /**
+     * Whether to collect loader framework's own metrics (com.flipkart.perf.core.FrameworkMetrics) for the group.
+     * Off by default, they cost every iteration a few timers. Stats queue overflow counters are dumped either way
+     */
+    public boolean isFrameworkMetrics() {
+        return frameworkMetrics;
+    }
+
+    public Group setFrameworkMetrics(boolean frameworkMetrics) {
+        this.frameworkMetrics = frameworkMetrics;
+        return this;
+    }
+
+    public StatsQueueConfig getStatsQueue() {
+        return statsQueue;
+    }
+
+    public Group setStatsQueue(StatsQueueConfig statsQueue) {
+        this.statsQueue = statsQueue;
+        return this;
+    }
+
     public List<Map<String, Object>> getThreadResources() {
         return threadResources;
     }
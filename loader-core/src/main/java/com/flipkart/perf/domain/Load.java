@@ -3,6 +3,9 @@ package com.flipkart.perf.domain;
 import ch.qos.logback.classic.Level;
 import com.flipkart.perf.common.jackson.ObjectMapperUtil;
 import com.flipkart.perf.controller.JobController;
+import com.flipkart.perf.core.GeneratorGovernor;
+import com.flipkart.perf.core.GroupController;
+import com.flipkart.perf.core.JobHealthPublisherThread;
 import com.flipkart.perf.core.LoadController;
 import com.flipkart.perf.datagenerator.DataGeneratorInfo;
 import com.flipkart.perf.inmemorydata.SharedDataInfo;
@@ -26,6 +29,7 @@ public class Load {
     private Group setupGroup;
     private List<Group> groups;
     private Group tearDownGroup;
+    private GeneratorLimits generatorLimits;
 
     private static Logger logger = LoggerFactory.getLogger(Load.class);
     private Map<String, DataGeneratorInfo> dataGenerators;
@@ -33,6 +37,7 @@ public class Load {
     public Load() {
         this.groups = new ArrayList<Group>();
         this.dataGenerators = new LinkedHashMap<String, DataGeneratorInfo>();
+        this.generatorLimits = new GeneratorLimits();
     }
 
     /**
@@ -54,9 +59,11 @@ public class Load {
         // Validate if anything is wrong with the Load Configuration
         validate();
         RestExpress server = initializeHttpServer(httpPort);
+        JobHealthPublisherThread healthPublisher = null;
         try {
             // Start the Load Controller and Wait for Completion
             LoadController loadController =  new LoadController(jobId, this);
+            healthPublisher = startHealthPublisher(jobId, loadController, generatorLimits);
             loadController.start();
             loadController.join();
         }
@@ -65,11 +72,33 @@ public class Load {
             throw e;
         }
         finally {
+            if(healthPublisher != null)
+                healthPublisher.stopIt();
             server.shutdown();
         }
         return this;
     }
 
+    /**
+     * Health publishing is an aid to agent (and feeds generator governor), job goes on without it
+     */
+    private static JobHealthPublisherThread startHealthPublisher(String jobId, LoadController loadController, GeneratorLimits generatorLimits) {
+        try {
+            List<GroupController> groupControllers = loadController.groupControllers();
+            GeneratorGovernor governor = null;
+            if(generatorLimits != null && generatorLimits.enabled())
+                governor = new GeneratorGovernor(generatorLimits, groupControllers);
+
+            JobHealthPublisherThread healthPublisher = new JobHealthPublisherThread(jobId, groupControllers, governor);
+            healthPublisher.start();
+            return healthPublisher;
+        }
+        catch (IOException e) {
+            logger.warn("Couldn't start job health publisher. "+e.getMessage());
+            return null;
+        }
+    }
+
     private static RestExpress initializeHttpServer(int httpPort) {
         RestExpress server = new RestExpress();
         server.putResponseProcessor(Format.JSON, ResponseProcessor.defaultJsonProcessor());
@@ -138,6 +167,15 @@ public class Load {
         this.tearDownGroup = tearDownGroup;
     }
 
+    public GeneratorLimits getGeneratorLimits() {
+        return generatorLimits;
+    }
+
+    public Load setGeneratorLimits(GeneratorLimits generatorLimits) {
+        this.generatorLimits = generatorLimits;
+        return this;
+    }
+
     public Map<String, DataGeneratorInfo> getDataGenerators() {
         return dataGenerators;
     }
@@ -0,0 +1,45 @@
+package com.flipkart.perf.domain;
+
+/**
+ * Sizing of a group's stats queue and what to do when stats collector falls so far behind that it fills up :
+ *
+ *  SPILL        : write overflowing stats to a memory mapped file in group folder, collector drains it after the queue.
+ *                 Nothing is lost and load isn't touched, at the cost of disk
+ *  SAMPLE       : once queue is 3/4 full keep only 1 in sampleRate iterations' stats, drop the rest (and all of them
+ *                 once it is full). Load isn't touched, stats of that period are a sample
+ *  BACKPRESSURE : executor threads wait for room in the queue. Nothing is lost, load drops to what collector keeps up with
+ */
+public class StatsQueueConfig {
+    public enum OverflowPolicy {SPILL, SAMPLE, BACKPRESSURE}
+
+    private int capacity = 262144;          // group stats instances, rounded up to a power of 2
+    private OverflowPolicy overflowPolicy = OverflowPolicy.SPILL;
+    private int sampleRate = 10;
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public StatsQueueConfig setCapacity(int capacity) {
+        this.capacity = capacity;
+        return this;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public StatsQueueConfig setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public StatsQueueConfig setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+        return this;
+    }
+}
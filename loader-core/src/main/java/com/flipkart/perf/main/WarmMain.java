@@ -0,0 +1,219 @@
+package com.flipkart.perf.main;
+
+import com.flipkart.perf.common.jackson.ObjectMapperUtil;
+import com.flipkart.perf.domain.Group;
+import com.flipkart.perf.domain.GroupFunction;
+import com.flipkart.perf.domain.Load;
+import com.strategicgains.restexpress.Format;
+import com.strategicgains.restexpress.RestExpress;
+import com.strategicgains.restexpress.response.ResponseProcessor;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.*;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Pre started load generating process kept in a pool by Loader agent. Process starts with platform libs on classpath,
+ * warms them up (class loading, json binding, http server setup) and waits on a local control socket for one job:
+ *
+ *  agent reads "WARM_JVM_READY <controlPort>" from stdout, connects to 127.0.0.1:controlPort and sends one json line
+ *  {"jobId":..,"jobFile":..,"classpath":..,"httpPort":..,"statsFolder":..,"logFile":..}. Process replies "OK", runs
+ *  the job with udf libs in a job specific class loader and exits once job is over.
+ *
+ * Core keeps job state in statics, so a process runs only one job. Agent replaces it with a fresh one. Process exits
+ * if agent goes away (stdin closed) while it is waiting.
+ *
+ * With -warmUpOnly [udfClassPath] process just warms up (loading udf classes too) and exits. Agent runs it that way to
+ * dump class data sharing archives.
+ */
+public class WarmMain {
+    public static final String READY = "WARM_JVM_READY";
+    private static Logger logger = LoggerFactory.getLogger(WarmMain.class);
+    private static ObjectMapper objectMapper = ObjectMapperUtil.instance();
+
+    public static void main(String[] args) throws Exception {
+        warmUp();
+        if(args.length > 0 && args[0].equals("-warmUpOnly")) {
+            // Used by agent to have jvm dump class data archive of whatever got loaded. Udf libs can be passed along
+            if(args.length > 1)
+                for(URL url : classpathURLs(args[1]))
+                    loadClasses(new File(url.getPath()));
+            System.exit(0);
+        }
+
+        final ServerSocket controlSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        watchAgent(controlSocket);
+        System.out.println(READY + " " + controlSocket.getLocalPort());
+        System.out.flush();
+
+        Map<String, Object> jobRequest;
+        Socket agent = controlSocket.accept();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(agent.getInputStream(), "UTF-8"));
+            jobRequest = objectMapper.readValue(reader.readLine(), Map.class);
+            Writer writer = new OutputStreamWriter(agent.getOutputStream(), "UTF-8");
+            writer.write("OK\n");
+            writer.flush();
+        }
+        finally {
+            agent.close();
+            controlSocket.close();
+        }
+
+        System.exit(runJob(jobRequest));
+    }
+
+    private static int runJob(Map<String, Object> jobRequest) {
+        String jobId = jobRequest.get("jobId").toString();
+        URLClassLoader jobClassLoader = null;
+        try {
+            if(jobRequest.get("logFile") != null)
+                System.setOut(new PrintStream(new FileOutputStream(jobRequest.get("logFile").toString(), true), true));
+            System.setProperty("BASE_PATH", jobRequest.get("statsFolder") == null ? "/tmp/" : jobRequest.get("statsFolder").toString());
+
+            jobClassLoader = new URLClassLoader(classpathURLs(jobRequest.get("classpath")), WarmMain.class.getClassLoader());
+            // Threads spawned by job inherit this loader, which is what function executors resolve udf classes from
+            Thread.currentThread().setContextClassLoader(jobClassLoader);
+
+            Load load = objectMapper.readValue(new FileInputStream(jobRequest.get("jobFile").toString()), Load.class);
+            logger.info("Running job "+jobId+" in warm process");
+            load.start(jobId, Integer.parseInt(jobRequest.get("httpPort").toString()));
+            return 0;
+        }
+        catch (Exception e) {
+            logger.error("Error while running job "+jobId, e);
+            return 1;
+        }
+        finally {
+            Thread.currentThread().setContextClassLoader(WarmMain.class.getClassLoader());
+            close(jobClassLoader);
+        }
+    }
+
+    private static URL[] classpathURLs(Object classpath) throws MalformedURLException {
+        List<URL> urls = new ArrayList<URL>();
+        if(classpath != null)
+            for(String path : classpath.toString().split(File.pathSeparator))
+                if(!path.trim().equals(""))
+                    urls.add(new File(path.trim()).toURI().toURL());
+        return urls.toArray(new URL[urls.size()]);
+    }
+
+    /**
+     * Load framework classes, bind a sample load through json and build (not bind) http server, so that these costs
+     * are paid before job arrives
+     */
+    private static void warmUp() {
+        long startTime = System.currentTimeMillis();
+        int classes = 0;
+        try {
+            classes = loadClasses(new File(WarmMain.class.getProtectionDomain().getCodeSource().getLocation().toURI()));
+
+            Load sampleLoad = new Load().
+                    addGroup(new Group().
+                            setName("warmUp").
+                            setThreads(1).
+                            setRepeats(1).
+                            addFunction(new GroupFunction("warmUp")));
+            objectMapper.readValue(objectMapper.writeValueAsString(sampleLoad), Load.class);
+
+            new RestExpress().putResponseProcessor(Format.JSON, ResponseProcessor.defaultJsonProcessor());
+        }
+        catch (Exception e) {
+            logger.warn("Warm up incomplete. "+e.getMessage());
+        }
+        logger.info("Warmed up in "+(System.currentTimeMillis() - startTime)+"ms. Loaded "+classes+" classes");
+    }
+
+    /**
+     * Load (without initializing) all classes of a jar or class folder
+     * @return number of classes loaded
+     */
+    private static int loadClasses(File codeSource) throws IOException {
+        int classes = 0;
+        for(String className : classNames(codeSource)) {
+            try {
+                Class.forName(className, false, WarmMain.class.getClassLoader());
+                classes++;
+            }
+            catch (Throwable t) {
+                logger.debug("Couldn't load "+className+" while warming up. "+t.getMessage());
+            }
+        }
+        return classes;
+    }
+
+    private static List<String> classNames(File codeSource) throws IOException {
+        List<String> classNames = new ArrayList<String>();
+        if(codeSource.isDirectory()) {
+            collectClassNames(codeSource, "", classNames);
+        }
+        else {
+            JarFile jar = new JarFile(codeSource);
+            try {
+                Enumeration<JarEntry> entries = jar.entries();
+                while(entries.hasMoreElements()) {
+                    String entryName = entries.nextElement().getName();
+                    if(entryName.endsWith(".class"))
+                        classNames.add(entryName.substring(0, entryName.length() - 6).replace('/', '.'));
+                }
+            }
+            finally {
+                jar.close();
+            }
+        }
+        return classNames;
+    }
+
+    private static void collectClassNames(File folder, String packagePrefix, List<String> classNames) {
+        File[] files = folder.listFiles();
+        if(files == null)
+            return;
+        for(File file : files) {
+            if(file.isDirectory())
+                collectClassNames(file, packagePrefix + file.getName() + ".", classNames);
+            else if(file.getName().endsWith(".class"))
+                classNames.add(packagePrefix + file.getName().substring(0, file.getName().length() - 6));
+        }
+    }
+
+    /**
+     * Agent holds the other end of stdin. Once it is closed while still waiting for a job, nobody would ever send one
+     */
+    private static void watchAgent(final ServerSocket controlSocket) {
+        Thread watcher = new Thread("WarmJvmAgentWatcher") {
+            public void run() {
+                try {
+                    while(System.in.read() != -1);
+                }
+                catch (IOException e) {
+                }
+                if(!controlSocket.isClosed()) {
+                    logger.info("Agent went away before sending a job. Exiting");
+                    System.exit(0);
+                }
+            }
+        };
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private static void close(URLClassLoader classLoader) {
+        if(classLoader instanceof Closeable) {
+            try {
+                ((Closeable) classLoader).close();
+            }
+            catch (IOException e) {
+                logger.warn("Couldn't close job class loader. "+e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.flipkart.perf.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memory mapped ring of job health samples. Job process writes a sample every few ms, Loader agent maps same file and
+ * reads samples without any rpc to the job.
+ *
+ * Layout : header (magic, version, slots, slot size, samples written so far) followed by fixed size slots. Sample n
+ * goes to slot (n-1) % slots. Slot carries sample number as stamp, which writer clears before and sets after writing
+ * the slot, so that reader can drop slots which got overwritten while being read.
+ */
+public class JobHealthRing {
+    public static final String FILE_NAME = "health";
+
+    private static final int MAGIC = 0x4A484C52;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 128;
+    private static final int SAMPLES_OFFSET = 16;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int slots;
+    private long samples;
+
+    private JobHealthRing(RandomAccessFile file, MappedByteBuffer buffer, int slots) {
+        this.file = file;
+        this.buffer = buffer;
+        this.slots = slots;
+    }
+
+    /**
+     * Create (or recreate) ring for writing
+     */
+    public static JobHealthRing create(File ringFile, int slots) throws IOException {
+        ringFile.getParentFile().mkdirs();
+        RandomAccessFile file = new RandomAccessFile(ringFile, "rw");
+        int size = HEADER_SIZE + slots * SLOT_SIZE;
+        file.setLength(0);
+        file.setLength(size);
+        MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, slots);
+        buffer.putInt(12, SLOT_SIZE);
+        buffer.putLong(SAMPLES_OFFSET, 0);
+        // Magic goes last, reader doesn't trust the file till it is there
+        buffer.putInt(0, MAGIC);
+        return new JobHealthRing(file, buffer, slots);
+    }
+
+    /**
+     * Open ring written by another process
+     * @return null if ring isn't (fully) created yet
+     */
+    public static JobHealthRing open(File ringFile) throws IOException {
+        if(!ringFile.exists() || ringFile.length() < HEADER_SIZE)
+            return null;
+        RandomAccessFile file = new RandomAccessFile(ringFile, "r");
+        MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(12) != SLOT_SIZE
+                || buffer.capacity() < HEADER_SIZE + buffer.getInt(8) * SLOT_SIZE) {
+            file.close();
+            return null;
+        }
+        return new JobHealthRing(file, buffer, buffer.getInt(8));
+    }
+
+    synchronized public void write(Sample sample) {
+        long sampleNo = ++samples;
+        int slot = slotOffset(sampleNo);
+        buffer.putLong(slot, -1);
+        buffer.putLong(slot + 8, sample.time);
+        buffer.putFloat(slot + 16, sample.cpuUsage);
+        buffer.putLong(slot + 20, sample.heapUsed);
+        buffer.putLong(slot + 28, sample.heapMax);
+        buffer.putLong(slot + 36, sample.gcCount);
+        buffer.putLong(slot + 44, sample.gcTimeMS);
+        buffer.putLong(slot + 52, sample.schedulingLagMS);
+        buffer.putInt(slot + 60, sample.liveThreads);
+        buffer.putInt(slot + 64, sample.deadLockedThreads);
+        buffer.putLong(slot + 68, sample.statsQueueDepth);
+        buffer.putLong(slot, sampleNo);
+        buffer.putLong(SAMPLES_OFFSET, sampleNo);
+    }
+
+    /**
+     * @return number of samples written so far
+     */
+    public long samples() {
+        return buffer.getLong(SAMPLES_OFFSET);
+    }
+
+    /**
+     * Samples written after given sample number, oldest first. Samples already overwritten are skipped
+     */
+    public List<Sample> readSince(long sampleNo) {
+        List<Sample> samplesRead = new ArrayList<Sample>();
+        long lastSampleNo = samples();
+        for(long n = Math.max(sampleNo + 1, lastSampleNo - slots + 1); n <= lastSampleNo; n++) {
+            int slot = slotOffset(n);
+            if(buffer.getLong(slot) != n)
+                continue;
+            Sample sample = new Sample().
+                    setSampleNo(n).
+                    setTime(buffer.getLong(slot + 8)).
+                    setCpuUsage(buffer.getFloat(slot + 16)).
+                    setHeapUsed(buffer.getLong(slot + 20)).
+                    setHeapMax(buffer.getLong(slot + 28)).
+                    setGcCount(buffer.getLong(slot + 36)).
+                    setGcTimeMS(buffer.getLong(slot + 44)).
+                    setSchedulingLagMS(buffer.getLong(slot + 52)).
+                    setLiveThreads(buffer.getInt(slot + 60)).
+                    setDeadLockedThreads(buffer.getInt(slot + 64)).
+                    setStatsQueueDepth(buffer.getLong(slot + 68));
+            // Writer got to this slot while it was being read
+            if(buffer.getLong(slot) != n)
+                continue;
+            samplesRead.add(sample);
+        }
+        return samplesRead;
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private int slotOffset(long sampleNo) {
+        return HEADER_SIZE + (int)((sampleNo - 1) % slots) * SLOT_SIZE;
+    }
+
+    public static class Sample {
+        private long sampleNo, time;
+        private float cpuUsage;
+        private long heapUsed, heapMax;
+        private long gcCount, gcTimeMS;
+        private long schedulingLagMS;
+        private int liveThreads, deadLockedThreads;
+        private long statsQueueDepth;
+
+        public long getSampleNo() {
+            return sampleNo;
+        }
+
+        public Sample setSampleNo(long sampleNo) {
+            this.sampleNo = sampleNo;
+            return this;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public Sample setTime(long time) {
+            this.time = time;
+            return this;
+        }
+
+        /**
+         * Process cpu usage in %age of all cpus, since previous sample
+         */
+        public float getCpuUsage() {
+            return cpuUsage;
+        }
+
+        public Sample setCpuUsage(float cpuUsage) {
+            this.cpuUsage = cpuUsage;
+            return this;
+        }
+
+        public long getHeapUsed() {
+            return heapUsed;
+        }
+
+        public Sample setHeapUsed(long heapUsed) {
+            this.heapUsed = heapUsed;
+            return this;
+        }
+
+        public long getHeapMax() {
+            return heapMax;
+        }
+
+        public Sample setHeapMax(long heapMax) {
+            this.heapMax = heapMax;
+            return this;
+        }
+
+        /**
+         * Collections since process start, summed over all collectors
+         */
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        public Sample setGcCount(long gcCount) {
+            this.gcCount = gcCount;
+            return this;
+        }
+
+        /**
+         * Time spent in collections since process start, summed over all collectors
+         */
+        public long getGcTimeMS() {
+            return gcTimeMS;
+        }
+
+        public Sample setGcTimeMS(long gcTimeMS) {
+            this.gcTimeMS = gcTimeMS;
+            return this;
+        }
+
+        /**
+         * How late sampler woke up compared to when it asked to be woken up. Goes up when process is starved of cpu or
+         * paused
+         */
+        public long getSchedulingLagMS() {
+            return schedulingLagMS;
+        }
+
+        public Sample setSchedulingLagMS(long schedulingLagMS) {
+            this.schedulingLagMS = schedulingLagMS;
+            return this;
+        }
+
+        public int getLiveThreads() {
+            return liveThreads;
+        }
+
+        public Sample setLiveThreads(int liveThreads) {
+            this.liveThreads = liveThreads;
+            return this;
+        }
+
+        public int getDeadLockedThreads() {
+            return deadLockedThreads;
+        }
+
+        public Sample setDeadLockedThreads(int deadLockedThreads) {
+            this.deadLockedThreads = deadLockedThreads;
+            return this;
+        }
+
+        /**
+         * Group stats waiting in stats queues to be written to files
+         */
+        public long getStatsQueueDepth() {
+            return statsQueueDepth;
+        }
+
+        public Sample setStatsQueueDepth(long statsQueueDepth) {
+            this.statsQueueDepth = statsQueueDepth;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.flipkart.perf.core;
+
+import com.flipkart.perf.datagenerator.DataGenerator;
+import com.flipkart.perf.domain.Group;
+import com.flipkart.perf.domain.GroupFunction;
+import com.flipkart.perf.function.PerformanceFunction;
+import com.flipkart.perf.util.Counter;
+import com.flipkart.perf.util.Timer;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+public class TestFrameworkMetrics {
+    private static final int REPEATS = 30;
+
+    public static class NoOpFunction extends PerformanceFunction {
+        @Override
+        public void execute(FunctionContext context) throws Exception {
+        }
+    }
+
+    @Test
+    public void testIterationsCarryFrameworkTimers() throws InterruptedException {
+        List<GroupStatsInstance> iterations = runGroup(true);
+
+        assertThat(iterations.size(), is(REPEATS));
+        long frameworkTimes = 0, pacerLatenesses = 0, sleepOvershoots = 0;
+        for(GroupStatsInstance iteration : iterations) {
+            Map<String, Timer> frameworkTimers = iteration.getFrameworkTimers();
+            frameworkTimes += frameworkTimers.get(FrameworkMetrics.FRAMEWORK_TIME).size();
+            pacerLatenesses += frameworkTimers.get(FrameworkMetrics.PACER_LATENESS).size();
+            sleepOvershoots += frameworkTimers.get(FrameworkMetrics.SLEEP_OVERSHOOT).size();
+            for(Timer timer : frameworkTimers.values())
+                assertThat(timer.getFunctionName(), is(FrameworkMetrics.FUNCTION_NAME));
+        }
+
+        // Framework time of an iteration goes with the next one, last iteration has none after it
+        assertThat(frameworkTimes, is((long) REPEATS - 1));
+        // First iteration has no schedule to be late against
+        assertThat(pacerLatenesses, is((long) REPEATS - 1));
+        // 200 per second paces with a sleep every few iterations
+        assertThat(sleepOvershoots, greaterThan(0L));
+    }
+
+    @Test
+    public void testFrameworkMetricsOffByDefault() {
+        assertThat(new Group("default").isFrameworkMetrics(), is(false));
+    }
+
+    @Test
+    public void testNoFrameworkTimersWhenDisabled() throws InterruptedException {
+        List<GroupStatsInstance> iterations = runGroup(false);
+
+        assertThat(iterations.size(), is(REPEATS));
+        for(GroupStatsInstance iteration : iterations)
+            assertThat(iteration.getFrameworkTimers().size(), is(0));
+    }
+
+    private List<GroupStatsInstance> runGroup(boolean frameworkMetrics) throws InterruptedException {
+        GroupFunction groupFunction = new GroupFunction("noOp").setFunctionClass(NoOpFunction.class.getName());
+        Group group = new Group("frameworkMetrics").
+                setThreads(1).
+                setThroughput(200).
+                setFrameworkMetrics(frameworkMetrics).
+                addFunction(groupFunction);
+
+        Map<String, FunctionCounter> functionCounters = new HashMap<String, FunctionCounter>();
+        functionCounters.put("noOp", new FunctionCounter(group.getName(), "noOp"));
+        GroupStatsQueue groupStatsQueue = new GroupStatsQueue(group.getName(), group.getStatsQueue(), null);
+
+        SequentialFunctionExecutor sfe = new SequentialFunctionExecutor(group.getName() + "-0",
+                group,
+                new RequestQueue(group.getName(), REPEATS),
+                new RequestQueue(group.getName(), 0),
+                functionCounters,
+                new HashMap<String, Counter>(),
+                groupStatsQueue,
+                new ArrayList<String>(),
+                group.getThroughput(),
+                new HashMap<String, DataGenerator>());
+        sfe.start();
+        sfe.join();
+
+        List<GroupStatsInstance> iterations = new ArrayList<GroupStatsInstance>();
+        GroupStatsInstance groupStatsInstance;
+        while((groupStatsInstance = groupStatsQueue.getGroupStats()) != null)
+            iterations.add(groupStatsInstance);
+        return iterations;
+    }
+}
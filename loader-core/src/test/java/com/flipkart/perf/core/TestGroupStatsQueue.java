@@ -0,0 +1,167 @@
+package com.flipkart.perf.core;
+
+import com.flipkart.perf.common.util.TimeInstance;
+import com.flipkart.perf.domain.StatsQueueConfig;
+import com.flipkart.perf.util.Counter;
+import com.flipkart.perf.util.Histogram;
+import com.flipkart.perf.util.Timer;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TestGroupStatsQueue {
+    private static final String GROUP = "statsQueue";
+
+    @Test
+    public void testCapacityIsRoundedUpToPowerOf2() {
+        GroupStatsQueue queue = queue(5, StatsQueueConfig.OverflowPolicy.SAMPLE, null);
+        assertThat(queue.capacity(), is(8));
+    }
+
+    @Test
+    public void testSpillKeepsEverythingInOrder() throws IOException {
+        File spillFile = File.createTempFile("statsOverflow", "");
+        GroupStatsQueue queue = queue(4, StatsQueueConfig.OverflowPolicy.SPILL, spillFile);
+
+        for(int i=0; i<20; i++)
+            queue.addGroupStats(instance(i));
+        assertThat(queue.size(), is(20));
+        assertThat(counter(queue, FrameworkMetrics.STATS_SPILLED).count(), is(16L));
+        assertThat(counter(queue, FrameworkMetrics.STATS_DROPPED).count(), is(0L));
+
+        for(int i=0; i<20; i++) {
+            GroupStatsInstance instance = queue.getGroupStats();
+            TimeInstance timeInstance = (TimeInstance) instance.getFunctionTimers().get("f").getTimeList().get(0);
+            assertThat(timeInstance.getAtTime(), is((long) i));
+            assertThat(timeInstance.getHowMuchTime(), is(i * 1000L));
+            assertThat(instance.getFunctionHistograms().get("h").getInstances().get(0).getValue(), is((double) i));
+            assertThat(instance.getFrameworkTimers().get(FrameworkMetrics.FRAMEWORK_TIME).getFunctionName(),
+                    is(FrameworkMetrics.FUNCTION_NAME));
+        }
+        assertThat(queue.getGroupStats(), is(nullValue()));
+        assertThat(queue.size(), is(0));
+
+        // Spill file is reused once drained
+        for(int i=0; i<10; i++)
+            queue.addGroupStats(instance(i));
+        int drained = 0;
+        while(queue.getGroupStats() != null)
+            drained++;
+        assertThat(drained, is(10));
+
+        queue.close();
+        assertThat(spillFile.exists(), is(false));
+    }
+
+    @Test
+    public void testSpillStaysInOrderWhileDraining() throws IOException {
+        File spillFile = File.createTempFile("statsOverflow", "");
+        GroupStatsQueue queue = queue(4, StatsQueueConfig.OverflowPolicy.SPILL, spillFile);
+
+        int added = 0, drained = 0;
+        // Queue fills up and spills, then draining makes room in queue while spill file still has older stats
+        for(int round=0; round<10; round++) {
+            for(int i=0; i<5; i++)
+                queue.addGroupStats(instance(added++));
+            for(int i=0; i<3; i++)
+                assertThat(atTime(queue.getGroupStats()), is((long) drained++));
+        }
+
+        GroupStatsInstance instance;
+        while((instance = queue.getGroupStats()) != null)
+            assertThat(atTime(instance), is((long) drained++));
+        assertThat(drained, is(added));
+
+        // With spill file drained, queue takes stats again
+        long spilled = counter(queue, FrameworkMetrics.STATS_SPILLED).count();
+        for(int i=0; i<4; i++)
+            queue.addGroupStats(instance(added++));
+        assertThat(counter(queue, FrameworkMetrics.STATS_SPILLED).count(), is(spilled));
+        while((instance = queue.getGroupStats()) != null)
+            assertThat(atTime(instance), is((long) drained++));
+        assertThat(drained, is(added));
+
+        queue.close();
+    }
+
+    @Test
+    public void testSampleDropsOnceQueueFillsUp() {
+        GroupStatsQueue queue = new GroupStatsQueue(GROUP,
+                new StatsQueueConfig().setCapacity(8).setOverflowPolicy(StatsQueueConfig.OverflowPolicy.SAMPLE).setSampleRate(2),
+                null);
+        // Everything till 3/4 full, then every 2nd till full, then nothing
+        for(int i=0; i<100; i++)
+            queue.addGroupStats(instance(i));
+
+        assertThat(queue.size(), is(8));
+        assertThat(counter(queue, FrameworkMetrics.STATS_DROPPED).count(), is(92L));
+        assertThat(queue.overflowCounters().size(), is(1));
+    }
+
+    @Test
+    public void testBackPressureLosesNothingWithManyProducers() throws InterruptedException {
+        final GroupStatsQueue queue = queue(16, StatsQueueConfig.OverflowPolicy.BACKPRESSURE, null);
+        final int producers = 4, perProducer = 5000;
+        final CountDownLatch done = new CountDownLatch(producers);
+        for(int p=0; p<producers; p++) {
+            new Thread() {
+                public void run() {
+                    for(int i=0; i<perProducer; i++)
+                        queue.addGroupStats(instance(i));
+                    done.countDown();
+                }
+            }.start();
+        }
+
+        int drained = 0;
+        while(drained < producers * perProducer) {
+            if(queue.getGroupStats() != null)
+                drained++;
+            else
+                Thread.sleep(1);
+        }
+        done.await();
+
+        assertThat(queue.getGroupStats(), is(nullValue()));
+        assertThat(queue.size(), is(0));
+        assertThat(counter(queue, FrameworkMetrics.STATS_BACKPRESSURE_MS).count(), greaterThan(0L));
+    }
+
+    private GroupStatsQueue queue(int capacity, StatsQueueConfig.OverflowPolicy policy, File spillFile) {
+        return new GroupStatsQueue(GROUP,
+                new StatsQueueConfig().setCapacity(capacity).setOverflowPolicy(policy),
+                spillFile);
+    }
+
+    private static GroupStatsInstance instance(int i) {
+        Map<String, Timer> functionTimers = new HashMap<String, Timer>();
+        Timer timer = new Timer(GROUP, "f", "f");
+        timer.add(i, i * 1000L);
+        functionTimers.put("f", timer);
+
+        Map<String, Histogram> histograms = new HashMap<String, Histogram>();
+        Histogram histogram = new Histogram(GROUP, "f", "h");
+        histogram.addValue(i);
+        histograms.put("h", histogram);
+
+        return new GroupStatsInstance(new HashMap<String, Timer>(), functionTimers, histograms,
+                FrameworkMetrics.buildTimers(GROUP));
+    }
+
+    private static long atTime(GroupStatsInstance instance) {
+        return ((TimeInstance) instance.getFunctionTimers().get("f").getTimeList().get(0)).getAtTime();
+    }
+
+    private Counter counter(GroupStatsQueue queue, String name) {
+        for(Counter counter : queue.overflowCounters())
+            if(counter.getCounterName().equals(name))
+                return counter;
+        throw new IllegalArgumentException(name);
+    }
+}
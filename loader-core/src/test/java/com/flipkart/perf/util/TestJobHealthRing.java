@@ -0,0 +1,70 @@
+package com.flipkart.perf.util;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TestJobHealthRing {
+    @Test
+    public void testReaderSeesWrittenSamples() throws IOException {
+        File ringFile = File.createTempFile("health", ".ring");
+        JobHealthRing writer = JobHealthRing.create(ringFile, 8);
+        JobHealthRing reader = JobHealthRing.open(ringFile);
+
+        writer.write(new JobHealthRing.Sample().setTime(1000).setCpuUsage(42.5f).setHeapUsed(10).setHeapMax(100).
+                setGcTimeMS(7).setSchedulingLagMS(3).setDeadLockedThreads(2).setStatsQueueDepth(11));
+        List<JobHealthRing.Sample> samples = reader.readSince(0);
+
+        assertThat(samples.size(), is(1));
+        JobHealthRing.Sample sample = samples.get(0);
+        assertThat(sample.getSampleNo(), is(1L));
+        assertThat(sample.getTime(), is(1000L));
+        assertThat(sample.getCpuUsage(), is(42.5f));
+        assertThat(sample.getHeapUsed(), is(10L));
+        assertThat(sample.getHeapMax(), is(100L));
+        assertThat(sample.getGcTimeMS(), is(7L));
+        assertThat(sample.getSchedulingLagMS(), is(3L));
+        assertThat(sample.getDeadLockedThreads(), is(2));
+        assertThat(sample.getStatsQueueDepth(), is(11L));
+        assertThat(reader.readSince(1).size(), is(0));
+
+        writer.close();
+        reader.close();
+        ringFile.delete();
+    }
+
+    @Test
+    public void testReaderSkipsOverwrittenSamples() throws IOException {
+        File ringFile = File.createTempFile("health", ".ring");
+        JobHealthRing writer = JobHealthRing.create(ringFile, 4);
+        JobHealthRing reader = JobHealthRing.open(ringFile);
+
+        for(int i = 1; i <= 10; i++)
+            writer.write(new JobHealthRing.Sample().setTime(i));
+        List<JobHealthRing.Sample> samples = reader.readSince(0);
+
+        assertThat(reader.samples(), is(10L));
+        assertThat(samples.size(), is(4));
+        for(int i = 0; i < 4; i++) {
+            assertThat(samples.get(i).getSampleNo(), is(7L + i));
+            assertThat(samples.get(i).getTime(), is(7L + i));
+        }
+
+        writer.close();
+        reader.close();
+        ringFile.delete();
+    }
+
+    @Test
+    public void testIncompleteRingIsNotOpened() throws IOException {
+        File ringFile = File.createTempFile("health", ".ring");
+        assertThat(JobHealthRing.open(ringFile), is(nullValue()));
+        ringFile.delete();
+    }
+}
@@ -21,4 +21,17 @@ public interface Constants {
     public static final String IP_BODY_STRING = "bodyString";
     public static final String IP_BODY_FILE = "bodyFile";
     public static final String IP_BODY_ENCODING = "bodyEncoding";
+    public static final String IP_IN_FLIGHT = "inFlight";
+    public static final String IP_MAX_CONNECTIONS = "maxConnections";
+    public static final String IP_MAX_CONNECTIONS_PER_HOST = "maxConnectionsPerHost";
+    public static final String IP_CONNECT_TIMEOUT = "connectTimeoutMS";
+    public static final String IP_READ_TIMEOUT = "readTimeoutMS";
+    public static final String IP_REQUEST_TIMEOUT = "requestTimeoutMS";
+    public static final String IP_PHASE_TIMERS = "phaseTimers";
+    public static final String TIMER_RESPONSE_TIME = "response-time";
+    public static final String TIMER_PHASE_CONNECT = "phase-connect";
+    public static final String TIMER_PHASE_WRITE = "phase-write";
+    public static final String TIMER_PHASE_FIRST_BYTE = "phase-first-byte";
+    public static final String TIMER_PHASE_BODY_READ = "phase-body-read";
+    public static final String COUNTER_FAILED_REQUESTS = "failed-requests";
 }
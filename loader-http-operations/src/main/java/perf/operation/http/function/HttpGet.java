@@ -8,7 +8,10 @@ import com.flipkart.perf.function.PerformanceFunction;
 import perf.operation.http.constant.Constants;
 import perf.operation.http.util.HttpRequestHelper;
 import perf.operation.http.util.HttpResponseHelper;
+import perf.operation.http.util.InFlightWindow;
+import perf.operation.http.util.PhaseTimingHandler;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -19,10 +22,13 @@ import java.util.List;
 
 public class HttpGet extends PerformanceFunction implements Constants {
     private AsyncHttpClient asyncHttpClient;
+    private InFlightWindow window;
+    private final PhaseTimingHandler handler = new PhaseTimingHandler();
 
     @Override
-    public void init(FunctionContext context) {
-        this.asyncHttpClient = HttpRequestHelper.buildClient();
+    public void init(FunctionContext context) throws IOException {
+        this.asyncHttpClient = HttpRequestHelper.buildClient(context);
+        this.window = HttpRequestHelper.buildWindow(context);
     }
 
     @Override
@@ -32,18 +38,25 @@ public class HttpGet extends PerformanceFunction implements Constants {
 
         HttpRequestHelper.enhanceRequest(context, requestBuilder);
 
-        Response response = HttpRequestHelper.executeRequest(context, requestBuilder);
+        if(window != null) {
+            HttpRequestHelper.executeInWindow(context, window, requestBuilder);
+            return;
+        }
+
+        Response response = HttpRequestHelper.executeRequest(context, requestBuilder, handler);
 
         if(HttpResponseHelper.successfulRequest(context, response)) {
-            context.updateHistogram("body-size", response.getResponseBody().length());
+            context.updateHistogram("body-size", handler.getBodySize());
             HttpResponseHelper.passOnResponse(context, response);
         }
     }
 
     @Override
-    public void end(FunctionContext context) {
+    public void end(FunctionContext context) throws InterruptedException {
+        if(window != null)
+            window.close();
         logger.info("Closing Connection");
-        HttpRequestHelper.closeConnection();
+        HttpRequestHelper.closeConnection(asyncHttpClient);
     }
 
     @Override
@@ -57,6 +70,14 @@ public class HttpGet extends PerformanceFunction implements Constants {
         HttpRequestHelper.addInputQueryParameters(parameters);
         HttpRequestHelper.addInputProxy(parameters);
         HttpRequestHelper.addInputCookies(parameters);
+        HttpRequestHelper.addInputPassOnBody(parameters);
+        HttpRequestHelper.addInputInFlight(parameters);
+        HttpRequestHelper.addInputPhaseTimers(parameters);
+        HttpRequestHelper.addInputMaxConnections(parameters);
+        HttpRequestHelper.addInputMaxConnectionsPerHost(parameters);
+        HttpRequestHelper.addInputConnectTimeout(parameters);
+        HttpRequestHelper.addInputReadTimeout(parameters);
+        HttpRequestHelper.addInputRequestTimeout(parameters);
         return parameters;
     }
 
@@ -64,10 +85,25 @@ public class HttpGet extends PerformanceFunction implements Constants {
     public List<String> description() {
         return Arrays.asList(new String[]{
                 "This Performance function is useful in doing Http Get Operation",
-                "Time out for request is 120seconds"
+                "Time out for request is 120seconds, unless '" + IP_REQUEST_TIMEOUT + "' says otherwise",
+                "With '" + IP_IN_FLIGHT + "' more than 1, keeps that many requests outstanding per thread on keep alive connections"
         });
     }
 
+    @Override
+    public List<String> customTimers() {
+        return Arrays.asList(new String[]{TIMER_RESPONSE_TIME,
+                TIMER_PHASE_CONNECT,
+                TIMER_PHASE_WRITE,
+                TIMER_PHASE_FIRST_BYTE,
+                TIMER_PHASE_BODY_READ});
+    }
+
+    @Override
+    public List<String> customCounters() {
+        return Arrays.asList(new String[]{COUNTER_FAILED_REQUESTS});
+    }
+
     @Override
     public List<String> customHistograms() {
         return Arrays.asList(new String[]{"body-size"});
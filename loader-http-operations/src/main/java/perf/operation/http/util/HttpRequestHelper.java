@@ -16,26 +16,65 @@ import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class HttpRequestHelper {
+    private static final int DEFAULT_MAX_CONNECTIONS = 1000;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = -1;
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 60000;
+    private static final int DEFAULT_READ_TIMEOUT_MS = 60000;
+    private static final int DEFAULT_REQUEST_TIMEOUT_MS = 120000;
+
     private static ObjectMapper objectMapper = ObjectMapperUtil.instance();
-    private static AsyncHttpClient asyncHttpClient;
-    private static AtomicInteger counter = new AtomicInteger(0);
+    private static Map<String, AsyncHttpClient> clients = new HashMap<String, AsyncHttpClient>();
+    private static Map<AsyncHttpClient, AtomicInteger> clientUsers = new HashMap<AsyncHttpClient, AtomicInteger>();
+
+    /**
+     * Functions asking for same pool size and timeouts share a client, and with it the keep alive connections
+     */
+    public synchronized static AsyncHttpClient buildClient(FunctionContext context) throws IOException {
+        int maxConnections = context.getParameterAsInteger(Constants.IP_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS);
+        int maxConnectionsPerHost = context.getParameterAsInteger(Constants.IP_MAX_CONNECTIONS_PER_HOST, DEFAULT_MAX_CONNECTIONS_PER_HOST);
+        int connectTimeoutMS = context.getParameterAsInteger(Constants.IP_CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT_MS);
+        int readTimeoutMS = context.getParameterAsInteger(Constants.IP_READ_TIMEOUT, DEFAULT_READ_TIMEOUT_MS);
+        int requestTimeoutMS = context.getParameterAsInteger(Constants.IP_REQUEST_TIMEOUT, DEFAULT_REQUEST_TIMEOUT_MS);
 
-    public synchronized static AsyncHttpClient buildClient() {
-        if(counter.incrementAndGet() == 1) {
+        String clientKey = maxConnections + ":" + maxConnectionsPerHost + ":" + connectTimeoutMS + ":" + readTimeoutMS + ":" + requestTimeoutMS;
+        AsyncHttpClient asyncHttpClient = clients.get(clientKey);
+        if(asyncHttpClient == null) {
             AsyncHttpClientConfig.Builder builder = new AsyncHttpClientConfig.Builder();
             builder.setAllowPoolingConnection(true).
-                    setMaximumConnectionsTotal(1000).
+                    setMaximumConnectionsTotal(maxConnections).
+                    setMaximumConnectionsPerHost(maxConnectionsPerHost).
+                    setConnectionTimeoutInMs(connectTimeoutMS).
+                    setIdleConnectionTimeoutInMs(readTimeoutMS).
                     setCompressionEnabled(true).
-                    setRequestTimeoutInMs(120000);
+                    setRequestTimeoutInMs(requestTimeoutMS);
             asyncHttpClient = new AsyncHttpClient(builder.build());
+            clients.put(clientKey, asyncHttpClient);
+            clientUsers.put(asyncHttpClient, new AtomicInteger(0));
         }
 
+        clientUsers.get(asyncHttpClient).incrementAndGet();
         return asyncHttpClient;
     }
 
-    public synchronized static void closeConnection() {
-        if(counter.decrementAndGet() == 0)
+    public synchronized static void closeConnection(AsyncHttpClient asyncHttpClient) {
+        AtomicInteger users = clientUsers.get(asyncHttpClient);
+        if(users != null && users.decrementAndGet() == 0) {
+            clientUsers.remove(asyncHttpClient);
+            clients.values().remove(asyncHttpClient);
             asyncHttpClient.close();
+        }
+    }
+
+    /**
+     * @return null if function isn't asked to keep more than one request outstanding
+     */
+    public static InFlightWindow buildWindow(FunctionContext context) throws IOException {
+        int inFlight = context.getParameterAsInteger(Constants.IP_IN_FLIGHT, 1);
+        if(inFlight <= 1)
+            return null;
+        return new InFlightWindow(inFlight,
+                context.getParameterAsInteger(Constants.IP_REQUEST_TIMEOUT, DEFAULT_REQUEST_TIMEOUT_MS),
+                context.getParameterAsBoolean(Constants.IP_PHASE_TIMERS));
     }
 
     public static Response executeRequest(FunctionContext context, AsyncHttpClient.BoundRequestBuilder requestBuilder) throws IOException, InterruptedException, ExecutionException {
@@ -46,6 +85,29 @@ public class HttpRequestHelper {
         return response;
     }
 
+    /**
+     * Same as executeRequest, with response read by given handler. Handler notes phases of the request, which go to
+     * phase timers if function is asked for them. Response has body only if it is to be passed on, size of the body
+     * is there with handler either way
+     */
+    public static Response executeRequest(FunctionContext context, AsyncHttpClient.BoundRequestBuilder requestBuilder, PhaseTimingHandler handler) throws IOException, InterruptedException, ExecutionException {
+        context.startMe();
+        Future<Response> responseF = requestBuilder.execute(handler.start(context.getParameterAsBoolean(Constants.IP_PASS_ON_BODY)));
+        Response response = responseF.get();
+        context.endMe();
+        if(context.getParameterAsBoolean(Constants.IP_PHASE_TIMERS))
+            handler.recordPhases(context);
+        return response;
+    }
+
+    /**
+     * Records requests of the window that have completed, then sends this one without waiting for its response
+     */
+    public static void executeInWindow(FunctionContext context, InFlightWindow window, AsyncHttpClient.BoundRequestBuilder requestBuilder) throws IOException, InterruptedException {
+        window.drain(context, context.getParameterAsInteger(Constants.IP_EXPECTED_STATUS_CODE));
+        window.execute(requestBuilder);
+    }
+
     public static void enhanceRequest(FunctionContext context, AsyncHttpClient.BoundRequestBuilder requestBuilder) throws IOException {
         addHeaders(context, requestBuilder);
         addQueryParameters(context, requestBuilder);
@@ -262,6 +324,73 @@ public class HttpRequestHelper {
                         setName(Constants.IP_PASS_ON_BODY).
                         setMandatory(true).
                         setDefaultValue(false).
-                        setDescription("If you want to pass the response body to next function"));
+                        setDescription("If you want to pass the response body to next function. Body is read and dropped otherwise"));
+    }
+
+    public static void addInputInFlight(LinkedHashMap<String, FunctionParameter> parameters) {
+        parameters.put(Constants.IP_IN_FLIGHT,
+                new FunctionParameter().
+                        setName(Constants.IP_IN_FLIGHT).
+                        setMandatory(false).
+                        setDefaultValue(1).
+                        setDescription("Requests each thread keeps outstanding. More than 1 doesn't wait for response : " +
+                                "latency goes to '" + Constants.TIMER_RESPONSE_TIME + "' timer, failures to '" +
+                                Constants.COUNTER_FAILED_REQUESTS + "' counter and response isn't passed on"));
+    }
+
+    public static void addInputPhaseTimers(LinkedHashMap<String, FunctionParameter> parameters) {
+        parameters.put(Constants.IP_PHASE_TIMERS,
+                new FunctionParameter().
+                        setName(Constants.IP_PHASE_TIMERS).
+                        setMandatory(false).
+                        setDefaultValue(false).
+                        setDescription("If you want time of every request broken into phases : '" +
+                                Constants.TIMER_PHASE_CONNECT + "', '" + Constants.TIMER_PHASE_WRITE + "', '" +
+                                Constants.TIMER_PHASE_FIRST_BYTE + "' and '" + Constants.TIMER_PHASE_BODY_READ + "' timers"));
+    }
+
+    public static void addInputMaxConnections(LinkedHashMap<String, FunctionParameter> parameters) {
+        parameters.put(Constants.IP_MAX_CONNECTIONS,
+                new FunctionParameter().
+                        setName(Constants.IP_MAX_CONNECTIONS).
+                        setMandatory(false).
+                        setDefaultValue(DEFAULT_MAX_CONNECTIONS).
+                        setDescription("Keep alive connections in the pool"));
+    }
+
+    public static void addInputMaxConnectionsPerHost(LinkedHashMap<String, FunctionParameter> parameters) {
+        parameters.put(Constants.IP_MAX_CONNECTIONS_PER_HOST,
+                new FunctionParameter().
+                        setName(Constants.IP_MAX_CONNECTIONS_PER_HOST).
+                        setMandatory(false).
+                        setDefaultValue(DEFAULT_MAX_CONNECTIONS_PER_HOST).
+                        setDescription("Keep alive connections to a host. -1 for no limit"));
+    }
+
+    public static void addInputConnectTimeout(LinkedHashMap<String, FunctionParameter> parameters) {
+        parameters.put(Constants.IP_CONNECT_TIMEOUT,
+                new FunctionParameter().
+                        setName(Constants.IP_CONNECT_TIMEOUT).
+                        setMandatory(false).
+                        setDefaultValue(DEFAULT_CONNECT_TIMEOUT_MS).
+                        setDescription("Connect time out in ms"));
+    }
+
+    public static void addInputReadTimeout(LinkedHashMap<String, FunctionParameter> parameters) {
+        parameters.put(Constants.IP_READ_TIMEOUT,
+                new FunctionParameter().
+                        setName(Constants.IP_READ_TIMEOUT).
+                        setMandatory(false).
+                        setDefaultValue(DEFAULT_READ_TIMEOUT_MS).
+                        setDescription("Read time out in ms : longest a connection can go without receiving anything"));
+    }
+
+    public static void addInputRequestTimeout(LinkedHashMap<String, FunctionParameter> parameters) {
+        parameters.put(Constants.IP_REQUEST_TIMEOUT,
+                new FunctionParameter().
+                        setName(Constants.IP_REQUEST_TIMEOUT).
+                        setMandatory(false).
+                        setDefaultValue(DEFAULT_REQUEST_TIMEOUT_MS).
+                        setDescription("Request time out in ms"));
     }
 }
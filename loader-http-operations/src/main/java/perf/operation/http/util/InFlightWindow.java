@@ -0,0 +1,135 @@
+package perf.operation.http.util;
+
+import com.flipkart.perf.core.FunctionContext;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import perf.operation.http.constant.Constants;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps up to 'size' requests of an executor outstanding, instead of waiting for every response. A request goes out as
+ * soon as a slot is free and its latency is taken in the completion callback, on io thread of the client.
+ *
+ * Callbacks only queue what they saw. Executor records it into the iteration it is running (drain), as stats of an
+ * iteration are handed over once the iteration is done.
+ */
+public class InFlightWindow implements Constants {
+    private static Logger logger = LoggerFactory.getLogger(InFlightWindow.class);
+
+    private final int size;
+    private final long closeTimeoutMS;
+    private final boolean phaseTimers;
+    private final Semaphore slots;
+    private final ConcurrentLinkedQueue<WindowHandler> completions;
+
+    /**
+     * Handler of a request, queued as it is once request is over. Frees slot of the request exactly once, client may
+     * report a request both completed and failed
+     */
+    private class WindowHandler extends PhaseTimingHandler {
+        private final AtomicBoolean done = new AtomicBoolean(false);
+        private int statusCode = -1;
+        private Throwable error;
+
+        @Override
+        protected Response completed(Response response) throws Exception {
+            statusCode = response.getStatusCode();
+            finish(true);
+            return response;
+        }
+
+        @Override
+        protected void failed(Throwable t) {
+            error = t;
+            finish(true);
+        }
+
+        private void finish(boolean record) {
+            if(done.compareAndSet(false, true)) {
+                if(record)
+                    completions.add(this);
+                slots.release();
+            }
+        }
+    }
+
+    /**
+     * @param size requests to keep outstanding
+     * @param closeTimeoutMS how long close waits for outstanding requests
+     * @param phaseTimers whether to record phases of requests too
+     */
+    public InFlightWindow(int size, long closeTimeoutMS, boolean phaseTimers) {
+        this.size = size;
+        this.closeTimeoutMS = closeTimeoutMS;
+        this.phaseTimers = phaseTimers;
+        this.slots = new Semaphore(size);
+        this.completions = new ConcurrentLinkedQueue<WindowHandler>();
+    }
+
+    /**
+     * Sends the request once a slot is free. Doesn't wait for response, whose body is counted and dropped
+     */
+    public void execute(AsyncHttpClient.BoundRequestBuilder requestBuilder) throws IOException, InterruptedException {
+        slots.acquire();
+        WindowHandler handler = new WindowHandler();
+        try {
+            requestBuilder.execute(handler.start(false));
+        }
+        catch (IOException e) {
+            handler.finish(false);
+            throw e;
+        }
+        catch (RuntimeException e) {
+            handler.finish(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Records requests completed so far into stats of current iteration : latency in TIMER_RESPONSE_TIME, size of body
+     * in "body-size" histogram and failures (error or unexpected status code) in COUNTER_FAILED_REQUESTS
+     * @return requests recorded
+     */
+    public int drain(FunctionContext context, int expectedStatusCode) {
+        int drained = 0;
+        WindowHandler completion;
+        while((completion = completions.poll()) != null) {
+            drained++;
+            if(completion.error != null) {
+                logger.debug("Request failed", completion.error);
+                context.incrementCounter(COUNTER_FAILED_REQUESTS);
+                continue;
+            }
+
+            context.recordTime(TIMER_RESPONSE_TIME, completion.getStartTimeMS(), completion.getTimeNS());
+            if(phaseTimers)
+                completion.recordPhases(context);
+            if(completion.statusCode == expectedStatusCode)
+                context.updateHistogram("body-size", completion.getBodySize());
+            else
+                context.incrementCounter(COUNTER_FAILED_REQUESTS);
+        }
+        return drained;
+    }
+
+    /**
+     * Waits (at most closeTimeoutMS) for outstanding requests. What completes after last iteration has no stats to go in
+     */
+    public void close() throws InterruptedException {
+        if(!slots.tryAcquire(size, closeTimeoutMS, TimeUnit.MILLISECONDS))
+            logger.warn("Requests still outstanding after " + closeTimeoutMS + "ms");
+        else
+            slots.release(size);
+
+        if(completions.size() > 0)
+            logger.info(completions.size() + " requests completed after last iteration, not recorded");
+        completions.clear();
+    }
+}
@@ -0,0 +1,160 @@
+package perf.operation.http.util;
+
+import com.flipkart.perf.common.util.Clock;
+import com.flipkart.perf.core.FunctionContext;
+import com.ning.http.client.*;
+import perf.operation.http.constant.Constants;
+
+import java.io.OutputStream;
+
+/**
+ * Response handler that notes when each phase of a request ends, from callbacks of the client :
+ *   connect    : till request headers are written. Covers getting a pooled connection, or connecting (and tls
+ *                handshake) when there is none
+ *   write      : writing request body, when client sends it apart from headers (like a body from file)
+ *   first byte : till status line of response arrives, mostly time server took
+ *   body read  : reading rest of the response
+ *
+ * Phases are kept as plain longs. A function reuses one handler for its requests, as it has one outstanding at a
+ * time : start() readies it for the next request.
+ *
+ * Body is kept only if asked for. Otherwise bytes are counted as they arrive and dropped, straight from buffers of
+ * the client : large responses don't end up on heap, and response has status and headers only.
+ */
+public class PhaseTimingHandler implements ProgressAsyncHandler<Response>, Constants {
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private final Response.ResponseBuilder builder = new Response.ResponseBuilder();
+    private boolean bufferBody;
+    private volatile long bodySize;
+    private long startTimeMS;
+    private long startNS;
+    // Since start, -1 till phase is over
+    private volatile long headerWrittenNS, contentWrittenNS, statusNS, completedNS;
+
+    /**
+     * Response of the last request is good only till then, client builds it on body parts handler keeps
+     * @param bufferBody whether response should have the body. Only bytes are counted if not
+     */
+    public PhaseTimingHandler start(boolean bufferBody) {
+        builder.reset();
+        this.bufferBody = bufferBody;
+        bodySize = 0;
+        headerWrittenNS = contentWrittenNS = statusNS = completedNS = -1;
+        startTimeMS = System.currentTimeMillis();
+        startNS = Clock.nsTick();
+        return this;
+    }
+
+    @Override
+    public STATE onHeaderWriteCompleted() {
+        headerWrittenNS = sinceStart();
+        return STATE.CONTINUE;
+    }
+
+    @Override
+    public STATE onContentWriteCompleted() {
+        contentWrittenNS = sinceStart();
+        return STATE.CONTINUE;
+    }
+
+    @Override
+    public STATE onContentWriteProgress(long amount, long current, long total) {
+        return STATE.CONTINUE;
+    }
+
+    @Override
+    public STATE onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+        statusNS = sinceStart();
+        builder.accumulate(responseStatus);
+        return STATE.CONTINUE;
+    }
+
+    @Override
+    public STATE onHeadersReceived(HttpResponseHeaders headers) throws Exception {
+        builder.accumulate(headers);
+        return STATE.CONTINUE;
+    }
+
+    @Override
+    public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+        if(bufferBody) {
+            bodySize += bodyPart.getBodyPartBytes().length;
+            builder.accumulate(bodyPart);
+        }
+        else {
+            bodySize += bodyPart.writeTo(DISCARD);
+        }
+        return STATE.CONTINUE;
+    }
+
+    @Override
+    public Response onCompleted() throws Exception {
+        completedNS = sinceStart();
+        return completed(builder.build());
+    }
+
+    @Override
+    public void onThrowable(Throwable t) {
+        failed(t);
+    }
+
+    /**
+     * Called on io thread of the client once response is read
+     */
+    protected Response completed(Response response) throws Exception {
+        return response;
+    }
+
+    /**
+     * Called on io thread of the client when request fails
+     */
+    protected void failed(Throwable t) {
+    }
+
+    public long getStartTimeMS() {
+        return startTimeMS;
+    }
+
+    /**
+     * Bytes of response body, buffered or not
+     */
+    public long getBodySize() {
+        return bodySize;
+    }
+
+    /**
+     * Time from start till response was read
+     */
+    public long getTimeNS() {
+        return completedNS;
+    }
+
+    /**
+     * Adds phases request went through to phase timers of the iteration. Phases client didn't report are skipped
+     */
+    public void recordPhases(FunctionContext context) {
+        long writtenNS = contentWrittenNS >= 0 ? contentWrittenNS : headerWrittenNS;
+        record(context, TIMER_PHASE_CONNECT, 0, headerWrittenNS);
+        record(context, TIMER_PHASE_WRITE, headerWrittenNS, contentWrittenNS);
+        record(context, TIMER_PHASE_FIRST_BYTE, writtenNS, statusNS);
+        record(context, TIMER_PHASE_BODY_READ, statusNS, completedNS);
+    }
+
+    private void record(FunctionContext context, String timerName, long fromNS, long toNS) {
+        if(fromNS >= 0 && toNS >= fromNS)
+            context.recordTime(timerName, startTimeMS, toNS - fromNS);
+    }
+
+    private long sinceStart() {
+        return Clock.nsTick() - startNS;
+    }
+}
@@ -4,6 +4,7 @@ package com.flipkart.perf;
  * NitinK.Agarwal@yahoo.com
  */
 
+import com.flipkart.perf.agent.cache.ClassDataArchiveCache;
 import com.flipkart.perf.agent.cache.LibCache;
 import com.flipkart.perf.agent.client.LoaderServerClient;
 import com.flipkart.perf.agent.config.LoaderAgentConfiguration;
@@ -12,9 +13,14 @@ import com.flipkart.perf.agent.daemon.JobHealthCheckThread;
 import com.flipkart.perf.agent.daemon.JobProcessorThread;
 import com.flipkart.perf.agent.daemon.JobStatsSyncThread;
 import com.flipkart.perf.agent.health.JobProcessorHealthCheck;
+import com.flipkart.perf.agent.job.WarmJvmPool;
+import com.flipkart.perf.common.util.FileWatcher;
 import com.flipkart.perf.server.cache.AgentsCache;
+import com.flipkart.perf.server.cache.JobSearchIndex;
+import com.flipkart.perf.server.cache.JobStatsMetaCache;
 import com.flipkart.perf.server.cache.JobsCache;
 import com.flipkart.perf.server.config.LoaderServerConfiguration;
+import com.flipkart.perf.server.config.ScheduledExecutorConfig;
 import com.flipkart.perf.server.daemon.*;
 import com.flipkart.perf.server.dataFix.DataFixRunner;
 import com.flipkart.perf.server.domain.WorkflowScheduler;
@@ -98,20 +104,30 @@ public class LoaderNode extends Application<LoaderNodeConfiguration> {
 
             // Cache Initialization
             JobsCache.initiateCache(serverConfiguration.getJobFSConfig());
+            JobStatsMetaCache.initiateCache(serverConfiguration.getJobFSConfig());
+            JobSearchIndex.initialize(serverConfiguration.getJobFSConfig());
             com.flipkart.perf.server.cache.LibCache.initialize(serverConfiguration.getResourceStorageFSConfig());
             AgentsCache.initialize(serverConfiguration.getAgentConfig());
 
-            JobStatsHelper.build(serverConfiguration.getJobFSConfig(), serverConfiguration.getAgentConfig(), serverConfiguration.getMonitoringAgentConfig());
+            // Watches job stats files for crunch daemons
+            ScheduledExecutorConfig scheduledExecutorConfig = serverConfiguration.getScheduledExecutorConfig();
+            FileWatcher jobStatsWatcher = new FileWatcher("JobStatsWatcher",
+                    scheduledExecutorConfig.getFileWatchInterval(),
+                    scheduledExecutorConfig.getFileReconcileInterval());
+            jobStatsWatcher.start();
+
+            JobStatsHelper.build(serverConfiguration.getJobFSConfig(), serverConfiguration.getAgentConfig(), serverConfiguration.getMonitoringAgentConfig(), jobStatsWatcher);
 
             // Start the Scheduled Executor
             this.scheduledExecutorService = Executors.newScheduledThreadPool(serverConfiguration.getScheduledExecutorConfig().getThreadPoolSize());
             // initialize Daemon Services
 
-            HistogramComputationThread.initialize(serverConfiguration.getJobFSConfig(), 10000).start();
-            CounterCompoundThread.initialize(scheduledExecutorService, serverConfiguration.getJobFSConfig(), serverConfiguration.getScheduledExecutorConfig().getCounterCompoundThreadInterval());
-            GroupConfConsolidationThread.initialize(scheduledExecutorService, serverConfiguration.getJobFSConfig(), serverConfiguration.getScheduledExecutorConfig().getGroupConfConsolidationThreadInterval());
+            CrunchExecutor.initialize(serverConfiguration.getScheduledExecutorConfig().getCrunchThreads());
+            HistogramComputationThread.initialize(serverConfiguration.getJobFSConfig(), 10000, jobStatsWatcher).start();
+            CounterCompoundThread.initialize(scheduledExecutorService, serverConfiguration.getJobFSConfig(), serverConfiguration.getScheduledExecutorConfig().getCounterCompoundThreadInterval(), jobStatsWatcher);
+            GroupConfConsolidationThread.initialize(scheduledExecutorService, serverConfiguration.getJobFSConfig(), serverConfiguration.getScheduledExecutorConfig().getGroupConfConsolidationThreadInterval(), jobStatsWatcher);
             JobDispatcherThread.initialize(scheduledExecutorService, serverConfiguration.getScheduledExecutorConfig().getJobDispatcherThreadInterval());
-            TimerComputationThread.initialize(scheduledExecutorService, serverConfiguration.getJobFSConfig(), serverConfiguration.getScheduledExecutorConfig().getTimerComputationThreadInterval());
+            TimerComputationThread.initialize(scheduledExecutorService, serverConfiguration.getJobFSConfig(), serverConfiguration.getScheduledExecutorConfig().getTimerComputationThreadInterval(), jobStatsWatcher);
 
             DeploymentHelper.initialize(serverConfiguration.getAgentConfig(),
                     serverConfiguration.getResourceStorageFSConfig());
@@ -162,6 +178,11 @@ public class LoaderNode extends Application<LoaderNodeConfiguration> {
             JobProcessorThread.initialize(agentConfiguration.getJobProcessorConfig(),
                     agentConfiguration.getJobFSConfig());
 
+            if(agentConfiguration.getJobProcessorConfig().isClassDataSharing())
+                ClassDataArchiveCache.initialize(agentConfiguration.getJobProcessorConfig());
+
+            WarmJvmPool.initialize(agentConfiguration.getJobProcessorConfig());
+
             environment.jersey().register(new com.flipkart.perf.agent.resource.DeployResourcesResource(agentConfiguration.getResourceStorageFSConfig()));
             environment.jersey().register(new com.flipkart.perf.agent.resource.AdminResource(agentConfiguration));
             environment.jersey().register(new com.flipkart.perf.agent.resource.JobResource(agentConfiguration.getJobProcessorConfig(),
@@ -179,6 +200,8 @@ public class LoaderNode extends Application<LoaderNodeConfiguration> {
         Runtime.getRuntime().addShutdownHook(new Thread(){
             public void run() {
                 logger.info("DeRegistering from server");
+                if(WarmJvmPool.instance() != null)
+                    WarmJvmPool.instance().shutdown();
                 try {
                     LoaderServerClient.buildClient(configuration.getServerInfo()).deRegister();
                     AsyncHttpClientUtil.close();
@@ -0,0 +1,169 @@
+package com.flipkart.perf.agent.cache;
+
+import com.flipkart.perf.agent.config.JobProcessorConfig;
+import com.flipkart.perf.common.util.FileHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps class data sharing archives of job class paths (platform libs + udf libs), so that job processes map already
+ * parsed and verified classes instead of loading them from jars. Archives are keyed by content hash of class path
+ * entries, so redeploying same libs reuses archive and changed libs get a new one. Archive missing for a class path
+ * is dumped in background, jobs started meanwhile run without it.
+ */
+public class ClassDataArchiveCache {
+    private static Logger logger = LoggerFactory.getLogger(ClassDataArchiveCache.class);
+    private static ClassDataArchiveCache instance;
+    private static final String ARCHIVE_OPTION = "-XX:SharedArchiveFile=";
+
+    private final JobProcessorConfig config;
+    private final ExecutorService dumper = Executors.newSingleThreadExecutor();
+    // class path entry -> {length:lastModified, content hash}
+    private final Map<String, String[]> entryHashes = new ConcurrentHashMap<String, String[]>();
+    private final Set<String> dumpingArchives = Collections.synchronizedSet(new HashSet<String>());
+    private final Set<String> failedArchives = Collections.synchronizedSet(new HashSet<String>());
+
+    private ClassDataArchiveCache(JobProcessorConfig config) {
+        this.config = config;
+        FileHelper.createFilePath(config.getClassDataArchivesPath() + File.separator + "archive");
+    }
+
+    public static ClassDataArchiveCache initialize(JobProcessorConfig config) {
+        if(instance == null)
+            instance = new ClassDataArchiveCache(config);
+        return instance;
+    }
+
+    /**
+     * Put class data sharing options in place of {cdsOptions}. Options are empty if sharing is disabled or archive for
+     * class path isn't ready yet
+     * @param udfClassPath part of classPath with udf libs. Its classes are loaded while dumping archive
+     */
+    public static String replaceOptions(String cmdFormat, String classPath, String udfClassPath) {
+        String options = "";
+        if(instance != null && cmdFormat.contains("{cdsOptions}")) {
+            try {
+                options = instance.jvmOptions(classPath, udfClassPath);
+            }
+            catch (IOException e) {
+                logger.warn("Couldn't look up class data archive. Starting without it", e);
+            }
+        }
+        return cmdFormat.replace("{cdsOptions}", options);
+    }
+
+    /**
+     * @return archive a command was built with, null if none
+     */
+    public static String archiveInUse(String cmd) {
+        int optionIndex = cmd.indexOf(ARCHIVE_OPTION);
+        if(optionIndex < 0)
+            return null;
+        String archive = cmd.substring(optionIndex + ARCHIVE_OPTION.length());
+        return archive.split("\\s+")[0];
+    }
+
+    public String jvmOptions(String classPath, String udfClassPath) throws IOException {
+        if(!config.isClassDataSharing())
+            return "";
+
+        String archiveKey = archiveKey(classPath);
+        if(archiveKey == null)
+            return "";
+        File archive = archiveFile(archiveKey);
+        if(archive.exists())
+            return ARCHIVE_OPTION + archive.getAbsolutePath();
+
+        if(!failedArchives.contains(archiveKey) && dumpingArchives.add(archiveKey))
+            dumper.submit(new ArchiveDumper(archiveKey, classPath, udfClassPath));
+        return "";
+    }
+
+    /**
+     * Content hash over class path entries, in class path order as jvm validates archive against class path
+     * @return null if class path can't be archived. Jvm accepts only jars (or empty folders) in archived class path
+     */
+    private String archiveKey(String classPath) throws IOException {
+        StringBuilder entries = new StringBuilder();
+        for(String entry : classPath.split(File.pathSeparator)) {
+            if(entry.trim().equals(""))
+                continue;
+            File entryFile = new File(entry.trim());
+            if(entryFile.isDirectory()) {
+                String[] folderFiles = entryFile.list();
+                if(folderFiles != null && folderFiles.length > 0)
+                    return null;
+                continue;
+            }
+            entries.append(entryFile.getName()).append('=').append(entryHash(entryFile)).append('\n');
+        }
+        return FileHelper.contentHash(entries.toString().getBytes("UTF-8"));
+    }
+
+    private String entryHash(File entryFile) throws IOException {
+        if(!entryFile.exists())
+            return "missing";
+
+        String entryVersion = entryFile.length() + ":" + entryFile.lastModified();
+        String[] cachedHash = entryHashes.get(entryFile.getAbsolutePath());
+        if(cachedHash != null && cachedHash[0].equals(entryVersion))
+            return cachedHash[1];
+
+        String hash = FileHelper.contentHash(entryFile);
+        entryHashes.put(entryFile.getAbsolutePath(), new String[]{entryVersion, hash});
+        return hash;
+    }
+
+    private File archiveFile(String archiveKey) {
+        return new File(config.getClassDataArchivesPath() + File.separator + archiveKey + ".jsa");
+    }
+
+    private class ArchiveDumper implements Runnable {
+        private final String archiveKey, classPath, udfClassPath;
+
+        private ArchiveDumper(String archiveKey, String classPath, String udfClassPath) {
+            this.archiveKey = archiveKey;
+            this.classPath = classPath;
+            this.udfClassPath = udfClassPath;
+        }
+
+        public void run() {
+            File archive = archiveFile(archiveKey);
+            File tmpArchive = new File(archive.getAbsolutePath() + ".tmp");
+            String dumpCmd = config.getClassDataDumpCLIFormat().
+                    replace("{archive}", tmpArchive.getAbsolutePath()).
+                    replace("{classpath}", classPath).
+                    replace("{udfClasspath}", udfClassPath == null || udfClassPath.equals("") ? "" : "'" + udfClassPath + "'");
+            long startTime = System.currentTimeMillis();
+            try {
+                logger.info("Dumping class data archive "+archiveKey+" \n"+dumpCmd);
+                Process process = Runtime.getRuntime().exec(new String[]{"/bin/sh", "-c", dumpCmd + " > /dev/null 2>&1"});
+                int exitValue = process.waitFor();
+                if(exitValue == 0 && tmpArchive.exists() && tmpArchive.length() > 0) {
+                    FileHelper.move(tmpArchive.getAbsolutePath(), archive.getAbsolutePath());
+                    logger.info("Class data archive "+archiveKey+" dumped in "+(System.currentTimeMillis() - startTime)+"ms");
+                }
+                else {
+                    // Most likely jvm doesn't support dynamic archives. Don't keep trying for same class path
+                    failedArchives.add(archiveKey);
+                    tmpArchive.delete();
+                    logger.warn("Class data archive "+archiveKey+" couldn't be dumped (exit value "+exitValue+"). Jobs with this class path would start without it");
+                }
+            }
+            catch (Exception e) {
+                failedArchives.add(archiveKey);
+                logger.error("Error while dumping class data archive "+archiveKey, e);
+            }
+            finally {
+                dumpingArchives.remove(archiveKey);
+            }
+        }
+    }
+}
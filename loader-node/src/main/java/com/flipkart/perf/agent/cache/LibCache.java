@@ -72,8 +72,18 @@ public class LibCache {
     }
 
     public String buildJobClassPath(List<String> classList) throws IOException {
+        String udfClassPath = buildUDFClassPath(classList);
+        return udfClassPath.length() > 0 ?
+                platformLibClassPath + File.pathSeparator + udfClassPath :
+                platformLibClassPath;
+    }
+
+    /**
+     * Class path of just the udf libs having given classes
+     */
+    public String buildUDFClassPath(List<String> classList) throws IOException {
         Set<String> libs = new HashSet<String>();
-        String classPath = platformLibClassPath + File.pathSeparator;
+        String classPath = "";
 
         for(String className : classList) {
             String libPath = classLibMap.get(className);
@@ -91,6 +101,10 @@ public class LibCache {
                 classPath;
     }
 
+    public String getPlatformLibClassPath() {
+        return platformLibClassPath;
+    }
+
     public List getPlatformLibs() {
         return Arrays.asList(platformLibClassPath.split(File.pathSeparator));
     }
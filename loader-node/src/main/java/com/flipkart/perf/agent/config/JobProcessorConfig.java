@@ -11,6 +11,11 @@ public class JobProcessorConfig {
     private int maxJobs, pendingJobCheckInterval,healthCheckInterval;
     private float memoryUsageThreshold, cpuUsageThreshold;
     private String jobCLIFormat;
+    private int warmJvmPoolSize = 0;
+    private String warmJvmCLIFormat;
+    private boolean classDataSharing = false;
+    private String classDataArchivesPath;
+    private String classDataDumpCLIFormat;
 
     public int getMaxJobs() {
         return maxJobs;
@@ -59,4 +64,58 @@ public class JobProcessorConfig {
     public void setCpuUsageThreshold(float cpuUsageThreshold) {
         this.cpuUsageThreshold = cpuUsageThreshold;
     }
+
+    /**
+     * Number of pre started job processes to keep ready. 0 disables the pool and every job starts a new process
+     */
+    public int getWarmJvmPoolSize() {
+        return warmJvmPoolSize;
+    }
+
+    public void setWarmJvmPoolSize(int warmJvmPoolSize) {
+        this.warmJvmPoolSize = warmJvmPoolSize;
+    }
+
+    /**
+     * Command to start a pooled job process. Same as jobCLIFormat minus job specific bits ({jobJson}, {jobId},
+     * {httpPort}, log redirection), as those are sent once a job is handed to the process
+     */
+    public String getWarmJvmCLIFormat() {
+        return warmJvmCLIFormat;
+    }
+
+    public void setWarmJvmCLIFormat(String warmJvmCLIFormat) {
+        this.warmJvmCLIFormat = warmJvmCLIFormat;
+    }
+
+    /**
+     * If true, job processes are started with a class data sharing archive of their class path ({cdsOptions} in
+     * jobCLIFormat and warmJvmCLIFormat). Needs a jvm supporting dynamic archives (jdk 13+)
+     */
+    public boolean isClassDataSharing() {
+        return classDataSharing;
+    }
+
+    public void setClassDataSharing(boolean classDataSharing) {
+        this.classDataSharing = classDataSharing;
+    }
+
+    public String getClassDataArchivesPath() {
+        return classDataArchivesPath;
+    }
+
+    public void setClassDataArchivesPath(String classDataArchivesPath) {
+        this.classDataArchivesPath = classDataArchivesPath;
+    }
+
+    /**
+     * Command which loads classes of {classpath} and dumps them in {archive} on exit
+     */
+    public String getClassDataDumpCLIFormat() {
+        return classDataDumpCLIFormat;
+    }
+
+    public void setClassDataDumpCLIFormat(String classDataDumpCLIFormat) {
+        this.classDataDumpCLIFormat = classDataDumpCLIFormat;
+    }
 }
@@ -10,6 +10,7 @@ package com.flipkart.perf.agent.config;
 public class JobStatSyncConfig {
     private int syncInterval;
     private int linesToSyncInOneGo;
+    private int reconcileInterval = 60000;  // How often all job files are listed again, to catch anything missed
 
     public int getSyncInterval() {
         return syncInterval;
@@ -28,4 +29,13 @@ public class JobStatSyncConfig {
         this.linesToSyncInOneGo = linesToSyncInOneGo;
         return this;
     }
+
+    public int getReconcileInterval() {
+        return reconcileInterval;
+    }
+
+    public JobStatSyncConfig setReconcileInterval(int reconcileInterval) {
+        this.reconcileInterval = reconcileInterval;
+        return this;
+    }
 }
@@ -1,10 +1,13 @@
 package com.flipkart.perf.agent.config;
 
+import java.io.File;
+
 public class ResourceStorageFSConfig {
     private String mappingFile;
     private String udfLibsPath;
     private String platformLibPath;
     private String inputFilePath;
+    private String uploadsPath;
 
     public String getUdfLibsPath() {
         return udfLibsPath;
@@ -41,4 +44,18 @@ public class ResourceStorageFSConfig {
         this.inputFilePath = inputFilePath;
         return this;
     }
+
+    /**
+     * Folder where artifacts are received (possibly over multiple requests) before being deployed
+     */
+    public String getUploadsPath() {
+        if(uploadsPath == null)
+            return new File(platformLibPath).getParent() + File.separator + "uploads";
+        return uploadsPath;
+    }
+
+    public ResourceStorageFSConfig setUploadsPath(String uploadsPath) {
+        this.uploadsPath = uploadsPath;
+        return this;
+    }
 }
@@ -2,26 +2,34 @@ package com.flipkart.perf.agent.daemon;
 
 import com.flipkart.perf.agent.client.LoaderServerClient;
 import com.flipkart.perf.agent.config.JobProcessorConfig;
+import com.flipkart.perf.agent.config.LoaderAgentConfiguration;
 import com.flipkart.perf.agent.job.AgentJob;
 import com.flipkart.perf.agent.util.SystemInfo;
 import com.flipkart.perf.common.jackson.ObjectMapperUtil;
-import com.flipkart.perf.common.jmx.JMXConnection;
 import com.flipkart.perf.common.util.Clock;
+import com.flipkart.perf.util.JobHealthRing;
 import org.codehaus.jackson.annotate.JsonIgnore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
-import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 
+/**
+ * Watches health of running jobs. Jobs publish health samples in a memory mapped ring file in their job folder
+ * (com.flipkart.perf.util.JobHealthRing), which this thread reads every health check interval. Server is notified while
+ * a job is in stress and once it recovers.
+ */
 public class JobHealthCheckThread extends Thread {
+    private static final int STRESS_NOTIFY_INTERVAL_MS = 1000;
     private List<AgentJob> agentJobs;
-    private Map<String, JMXConnection> jobJmxConnectionMap;
+    private Map<String, JobHealthRing> jobHealthRingMap;
     private Map<String, JobHealthStatus> jobHealthStatusMap;
     private final LoaderServerClient serverClient;
     private static JobHealthCheckThread instance;
@@ -30,7 +38,7 @@ public class JobHealthCheckThread extends Thread {
 
     private JobHealthCheckThread(LoaderServerClient serverClient, JobProcessorConfig jobProcessorConfig) {
         this.agentJobs = new LinkedList<AgentJob>();
-        this.jobJmxConnectionMap = new ConcurrentHashMap<String, JMXConnection>();
+        this.jobHealthRingMap = new ConcurrentHashMap<String, JobHealthRing>();
         this.jobHealthStatusMap = new ConcurrentHashMap<String, JobHealthStatus>();
         this.serverClient = serverClient;
         this.jobProcessorConfig = jobProcessorConfig;
@@ -50,76 +58,20 @@ public class JobHealthCheckThread extends Thread {
 
     public void run() {
         while(true) {
-            for(AgentJob agentJob : agentJobs) {
-                JMXConnection jobJMXConnection = jobJmxConnectionMap.get(agentJob.getJobId());
-                if(jobJMXConnection == null) {
-                    try {
-                        jobJMXConnection = new JMXConnection("localhost", agentJob.getJmxPort());
-                        jobJmxConnectionMap.put(agentJob.getJobId(), jobJMXConnection);
-                        JobHealthStatus jobHealthStatus = new JobHealthStatus();
-
-                        jobHealthStatus.
-                                setPreviousUpTime(jobJMXConnection.getRuntimeMXBean().getUptime()).
-                                setPreviousProcessCpuTime(jobJMXConnection.getOperatingSystemMXBean().getProcessCpuTime());
-
-                        jobHealthStatusMap.put(agentJob.getJobId(), jobHealthStatus);
-
-                    } catch (IOException e) {
-                        logger.error("", e);
-                    }
-                }
-                else {
-
-                    JobHealthStatus jobHealthStatus = jobHealthStatusMap.get(agentJob.getJobId());
-                    boolean jobWasInStress = jobHealthStatus.inStress;
-                    jobHealthStatus.setInStress(false);
-
-                    try {
-                        long currentUpTime = jobJMXConnection.getRuntimeMXBean().getUptime();
-                        long currentProcessCpuTime = jobJMXConnection.getOperatingSystemMXBean().getProcessCpuTime();
-
-                        // Calculation happens only from next iteration
-                        // Calculate CPU Utilization
-                        if (jobHealthStatus.getPreviousUpTime() > 0L && currentUpTime > jobHealthStatus.getPreviousUpTime()) {
-                            // elapsedCpu is in ns and elapsedTime is in ms.
-                            long elapsedCpu = currentProcessCpuTime - jobHealthStatus.getPreviousProcessCpuTime();
-                            long elapsedTime = currentUpTime - jobHealthStatus.getPreviousUpTime();
-
-                            jobHealthStatus.setCpuUsage(Math.min(100F,
-                                    elapsedCpu / (elapsedTime * 10000F * JobHealthStatus.getNoOfCPUs())));
-                        }
-
-                        //Calculate Memory Utilization
-                        MemoryUsage memoryUsage = jobJMXConnection.getMemoryMXBean().getHeapMemoryUsage();
-                        jobHealthStatus.setMemoryUsage(memoryUsage.getUsed() * 100f / memoryUsage.getMax());
-
-                        //Find DeadLocked Threads count
-                        long[] deadlockedThreads = jobJMXConnection.getThreadMXBean().findDeadlockedThreads();
-                        jobHealthStatus.setDeadLockedThreads(deadlockedThreads != null ? deadlockedThreads.length : 0);
-
-                        jobHealthStatus.
-                                setPreviousUpTime(currentUpTime).
-                                setPreviousProcessCpuTime(currentProcessCpuTime).
-                                setTime(System.currentTimeMillis());
-
-
-                        // Publish job health status if required
-                        if(jobHealthStatus.inStress) {
-                            serverClient.notifyJobHealth(agentJob.getJobId(), ObjectMapperUtil.instance().writeValueAsString(jobHealthStatus));
-                        }
-                        else {
-                            if(jobWasInStress) {
-                                serverClient.notifyJobHealth(agentJob.getJobId(), ObjectMapperUtil.instance().writeValueAsString(jobHealthStatus));
-                            }
-                        }
-
-                    } catch (IOException e) {
-                        logger.error("", e);
-                    } catch (InterruptedException e) {
-                        logger.error("", e);
-                    } catch (ExecutionException e) {
-                        logger.error("", e);
-                    }
+            List<AgentJob> jobsToCheck;
+            synchronized (agentJobs) {
+                jobsToCheck = new ArrayList<AgentJob>(agentJobs);
+            }
+
+            for(AgentJob agentJob : jobsToCheck) {
+                try {
+                    checkJob(agentJob);
+                } catch (IOException e) {
+                    logger.error("", e);
+                } catch (InterruptedException e) {
+                    logger.error("", e);
+                } catch (ExecutionException e) {
+                    logger.error("", e);
                 }
             }
             try {
@@ -130,6 +82,69 @@ public class JobHealthCheckThread extends Thread {
         }
     }
 
+    private void checkJob(AgentJob agentJob) throws IOException, ExecutionException, InterruptedException {
+        JobHealthRing jobHealthRing = jobHealthRingMap.get(agentJob.getJobId());
+        if(jobHealthRing == null) {
+            // Job process creates the ring once it starts generating load
+            jobHealthRing = JobHealthRing.open(healthRingFile(agentJob.getJobId()));
+            if(jobHealthRing == null)
+                return;
+            jobHealthRingMap.put(agentJob.getJobId(), jobHealthRing);
+            jobHealthStatusMap.put(agentJob.getJobId(), new JobHealthStatus());
+        }
+
+        JobHealthStatus jobHealthStatus = jobHealthStatusMap.get(agentJob.getJobId());
+        List<JobHealthRing.Sample> samples = jobHealthRing.readSince(jobHealthStatus.getLastSampleNo());
+        if(samples.size() == 0)
+            return;
+
+        boolean jobWasInStress = jobHealthStatus.inStress;
+        jobHealthStatus.setInStress(false);
+
+        JobHealthRing.Sample latestSample = samples.get(samples.size() - 1);
+        long schedulingLagMS = 0;
+        for(JobHealthRing.Sample sample : samples)
+            schedulingLagMS = Math.max(schedulingLagMS, sample.getSchedulingLagMS());
+
+        jobHealthStatus.
+                setCpuUsage(latestSample.getCpuUsage()).
+                setMemoryUsage(latestSample.getHeapMax() > 0 ? latestSample.getHeapUsed() * 100f / latestSample.getHeapMax() : 0).
+                setDeadLockedThreads(latestSample.getDeadLockedThreads()).
+                setGcPauseMS(jobHealthStatus.getLastSampleNo() > 0 ? latestSample.getGcTimeMS() - jobHealthStatus.getPreviousGcTimeMS() : 0).
+                setSchedulingLagMS(schedulingLagMS).
+                setLiveThreads(latestSample.getLiveThreads()).
+                setStatsQueueDepth(latestSample.getStatsQueueDepth()).
+                setPreviousGcTimeMS(latestSample.getGcTimeMS()).
+                setLastSampleNo(latestSample.getSampleNo()).
+                setTime(latestSample.getTime());
+
+        // Publish job health status if required. While stress lasts, server is reminded at a bounded rate
+        if(jobHealthStatus.inStress) {
+            if(!jobWasInStress || System.currentTimeMillis() - jobHealthStatus.getLastNotifiedTime() >= STRESS_NOTIFY_INTERVAL_MS)
+                notifyJobHealth(agentJob, jobHealthStatus);
+        }
+        else {
+            if(jobWasInStress)
+                notifyJobHealth(agentJob, jobHealthStatus);
+        }
+    }
+
+    private void notifyJobHealth(AgentJob agentJob, JobHealthStatus jobHealthStatus) throws IOException, ExecutionException, InterruptedException {
+        serverClient.notifyJobHealth(agentJob.getJobId(), ObjectMapperUtil.instance().writeValueAsString(jobHealthStatus));
+        jobHealthStatus.setLastNotifiedTime(System.currentTimeMillis());
+    }
+
+    private File healthRingFile(String jobId) {
+        return new File(LoaderAgentConfiguration.instance().getJobFSConfig().getJobPath(jobId) + File.separator + JobHealthRing.FILE_NAME);
+    }
+
+    /**
+     * Latest health of a running job, null if job hasn't published any yet
+     */
+    public JobHealthStatus jobHealth(String jobId) {
+        return jobHealthStatusMap.get(jobId);
+    }
+
     public static JobHealthCheckThread instance() {
         return instance;
     }
@@ -144,6 +159,15 @@ public class JobHealthCheckThread extends Thread {
         synchronized (agentJobs) {
             agentJobs.remove(agentJob);
         }
+        jobHealthStatusMap.remove(agentJob.getJobId());
+        JobHealthRing jobHealthRing = jobHealthRingMap.remove(agentJob.getJobId());
+        if(jobHealthRing != null) {
+            try {
+                jobHealthRing.close();
+            } catch (IOException e) {
+                logger.warn("Couldn't close health ring of job "+agentJob.getJobId()+". "+e.getMessage());
+            }
+        }
     }
 
     public static class JobHealthStatus {
@@ -159,9 +183,10 @@ public class JobHealthCheckThread extends Thread {
         }
 
         private long time;
-        private long previousUpTime = -1L, previousProcessCpuTime = -1L;
+        private long lastSampleNo, previousGcTimeMS, lastNotifiedTime;
         private float cpuUsage, memoryUsage;
-        private int deadLockedThreads;
+        private int deadLockedThreads, liveThreads;
+        private long gcPauseMS, schedulingLagMS, statsQueueDepth;
         private boolean inStress = false;
 
         public float getCpuUsage() {
@@ -202,23 +227,75 @@ public class JobHealthCheckThread extends Thread {
             JobHealthStatus.noOfCPUs = noOfCPUs;
         }
 
+        /**
+         * Time spent in gc since previous check
+         */
+        public long getGcPauseMS() {
+            return gcPauseMS;
+        }
+
+        public JobHealthStatus setGcPauseMS(long gcPauseMS) {
+            this.gcPauseMS = gcPauseMS;
+            return this;
+        }
+
+        /**
+         * Worst scheduling lag of job process since previous check
+         */
+        public long getSchedulingLagMS() {
+            return schedulingLagMS;
+        }
+
+        public JobHealthStatus setSchedulingLagMS(long schedulingLagMS) {
+            this.schedulingLagMS = schedulingLagMS;
+            return this;
+        }
+
+        public int getLiveThreads() {
+            return liveThreads;
+        }
+
+        public JobHealthStatus setLiveThreads(int liveThreads) {
+            this.liveThreads = liveThreads;
+            return this;
+        }
+
+        public long getStatsQueueDepth() {
+            return statsQueueDepth;
+        }
+
+        public JobHealthStatus setStatsQueueDepth(long statsQueueDepth) {
+            this.statsQueueDepth = statsQueueDepth;
+            return this;
+        }
+
+        @JsonIgnore
+        public long getLastSampleNo() {
+            return lastSampleNo;
+        }
+
+        public JobHealthStatus setLastSampleNo(long lastSampleNo) {
+            this.lastSampleNo = lastSampleNo;
+            return this;
+        }
+
         @JsonIgnore
-        public long getPreviousUpTime() {
-            return previousUpTime;
+        public long getPreviousGcTimeMS() {
+            return previousGcTimeMS;
         }
 
-        public JobHealthStatus setPreviousUpTime(long previousUpTime) {
-            this.previousUpTime = previousUpTime;
+        public JobHealthStatus setPreviousGcTimeMS(long previousGcTimeMS) {
+            this.previousGcTimeMS = previousGcTimeMS;
             return this;
         }
 
         @JsonIgnore
-        public long getPreviousProcessCpuTime() {
-            return previousProcessCpuTime;
+        public long getLastNotifiedTime() {
+            return lastNotifiedTime;
         }
 
-        public JobHealthStatus setPreviousProcessCpuTime(long previousProcessCpuTime) {
-            this.previousProcessCpuTime = previousProcessCpuTime;
+        public JobHealthStatus setLastNotifiedTime(long lastNotifiedTime) {
+            this.lastNotifiedTime = lastNotifiedTime;
             return this;
         }
 
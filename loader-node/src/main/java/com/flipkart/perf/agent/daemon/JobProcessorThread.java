@@ -37,6 +37,8 @@ public class JobProcessorThread extends Thread{
         //60% of system heap
         int maxJobHeapSize = (int)(SystemInfo.getTotalPhysicalMemorySize() /1024 / 1024 * 60 / 100);
         this.config.setJobCLIFormat(this.config.getJobCLIFormat().replace("{MAX_HEAP_MB}",""+maxJobHeapSize));
+        if(this.config.getWarmJvmCLIFormat() != null)
+            this.config.setWarmJvmCLIFormat(this.config.getWarmJvmCLIFormat().replace("{MAX_HEAP_MB}",""+maxJobHeapSize));
         start();
     }
 
@@ -4,19 +4,20 @@ import com.flipkart.perf.agent.client.LoaderServerClient;
 import com.flipkart.perf.agent.config.JobFSConfig;
 import com.flipkart.perf.agent.config.JobStatSyncConfig;
 import com.flipkart.perf.common.util.Clock;
-import com.flipkart.perf.common.util.FileHelper;
+import com.flipkart.perf.common.util.FileWatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 
 /**
- * Agent Thread which is responsible for pushing all job stats back to server
+ * Agent Thread which is responsible for pushing all job stats back to server.
+ * Job folders are walked once when job is added. After that FileWatcher tells which stats files are done, checking
+ * only folders that changed, and listing every folder once in a reconcile interval
  */
 public class JobStatsSyncThread extends Thread{
     private List<String> jobIds;
@@ -25,6 +26,8 @@ public class JobStatsSyncThread extends Thread{
     private static Logger logger = LoggerFactory.getLogger(JobStatsSyncThread.class);
     private LoaderServerClient serverClient;
     private final JobFSConfig jobFSConfig;
+    private final FileWatcher watcher;
+    private final Map<String, Set<File>> jobDoneFilesMap;   // Stats files done and not yet published, per job
 
     public static JobStatsSyncThread initialize(JobStatSyncConfig config,
                                                 JobFSConfig jobFSConfig,
@@ -45,19 +48,38 @@ public class JobStatsSyncThread extends Thread{
         this.jobIds = new ArrayList<String>();
         this.jobFSConfig = jobFSConfig;
         this.serverClient = serverClient;
+        this.jobDoneFilesMap = new ConcurrentHashMap<String, Set<File>>();
+        this.watcher = new FileWatcher("JobStatsSyncWatcher", config.getSyncInterval(), config.getReconcileInterval());
+        this.watcher.route(new FileWatcher.Route() {
+            public boolean accept(String jobId, File file) {
+                return file.getName().endsWith("done");
+            }
+
+            public void changed(String jobId, File file) {
+                Set<File> doneFiles = jobDoneFilesMap.get(jobId);
+                if(doneFiles != null)
+                    doneFiles.add(file);
+            }
+        });
     }
 
     public void addJob(String jobId) {
         synchronized (jobIds) {
             this.jobIds.add(jobId);
+            this.jobDoneFilesMap.put(jobId, Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>()));
+            this.watcher.watch(jobId, jobFSConfig.getJobPath(jobId));
         }
     }
 
     public void removeJob(String jobId) {
         synchronized (jobIds) {
             if(jobIds.contains(jobId)) {
+                // Job is over, nothing should be left behind
+                this.watcher.reconcile(jobId);
                 syncJobStatFiles(jobId);
                 this.jobIds.remove(jobId);
+                this.watcher.unwatch(jobId);
+                this.jobDoneFilesMap.remove(jobId);
             }
         }
     }
@@ -66,6 +88,7 @@ public class JobStatsSyncThread extends Thread{
         while(true) {
             synchronized (jobIds) {
                 for(String jobId : jobIds) {
+                    this.watcher.check(jobId);
                     syncJobStatFiles(jobId);
                 }
             }
@@ -78,32 +101,41 @@ public class JobStatsSyncThread extends Thread{
     }
 
     private void syncJobStatFiles(String jobId) {
-        String jobPath = jobFSConfig.getJobPath(jobId);
+        Set<File> doneFiles = this.jobDoneFilesMap.get(jobId);
+        if(doneFiles == null)
+            return;
 
-        List<File> jobFiles = FileHelper.pathFiles(jobPath, true);
+        List<File> jobFiles = new ArrayList<File>(doneFiles);
         Collections.sort(jobFiles);
         logger.info("Job "+jobId+" Files to Read and may have to publish "+jobFiles.size());
         for(File jobFile : jobFiles) {
-            if(jobFile.getAbsolutePath().endsWith("done"))
-                publishAndDelete(jobId, jobFile);
+            // Watcher won't report a file again unless it changes, so file stays till its published and deleted
+            if(!jobFile.exists() || publishAndDelete(jobId, jobFile))
+                doneFiles.remove(jobFile);
         }
     }
 
-    private void publishAndDelete(String jobId, File jobFile) {
+    /**
+     * @return true if file was published and deleted. Else its tried again in next sync
+     */
+    private boolean publishAndDelete(String jobId, File jobFile) {
         try {
             if(jobFile.length() > 0) {
                 this.serverClient.publishJobStats(jobId,
                         jobFile.getAbsolutePath(),
                         trimFileName(jobFile.getAbsolutePath()));
             }
-            jobFile.delete();
+            if(jobFile.delete())
+                return true;
+            logger.warn("Job "+jobId+" couldn't delete published stats file "+jobFile.getAbsolutePath());
         } catch (IOException e) {
-            e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
+            logger.error("Job "+jobId+" failed to publish stats file "+jobFile.getAbsolutePath(), e);
         } catch (ExecutionException e) {
-            e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
+            logger.error("Job "+jobId+" failed to publish stats file "+jobFile.getAbsolutePath(), e);
         } catch (InterruptedException e) {
-            e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
+            logger.error("Job "+jobId+" interrupted while publishing stats file "+jobFile.getAbsolutePath(), e);
         }
+        return false;
     }
 
     private String trimFileName(String absoluteFileName) {
@@ -36,6 +36,10 @@ public class AgentJob {
     private long startTime, endTime;
     private int jmxPort;
     private int httpPort;
+    private String jobJsonFile, udfClassPath;
+    private boolean warmStarted;
+    private String classDataArchive;
+    private long startupTime = -1;
 
     public String getJobId() {
         return jobId;
@@ -73,6 +77,66 @@ public class AgentJob {
         return httpPort;
     }
 
+    public String getJobJsonFile() {
+        return jobJsonFile;
+    }
+
+    public AgentJob setJobJsonFile(String jobJsonFile) {
+        this.jobJsonFile = jobJsonFile;
+        return this;
+    }
+
+    public String getUdfClassPath() {
+        return udfClassPath;
+    }
+
+    public AgentJob setUdfClassPath(String udfClassPath) {
+        this.udfClassPath = udfClassPath;
+        return this;
+    }
+
+    /**
+     * True if job was handed to a pre started process instead of starting one with job command
+     */
+    public boolean isWarmStarted() {
+        return warmStarted;
+    }
+
+    public AgentJob setWarmStarted(boolean warmStarted) {
+        this.warmStarted = warmStarted;
+        return this;
+    }
+
+    /**
+     * Class data sharing archive job process was started with, null if none
+     */
+    public String getClassDataArchive() {
+        return classDataArchive;
+    }
+
+    public AgentJob setClassDataArchive(String classDataArchive) {
+        this.classDataArchive = classDataArchive;
+        return this;
+    }
+
+    /**
+     * Milli seconds from process start (or hand over to warm process) till job started listening on its http port,
+     * which happens right before load generation starts. -1 till then
+     */
+    public long getStartupTime() {
+        return startupTime;
+    }
+
+    public AgentJob setStartupTime(long startupTime) {
+        this.startupTime = startupTime;
+        return this;
+    }
+
+    public void startedUp(long startupTime) throws IOException {
+        this.startupTime = startupTime;
+        persist();
+    }
+
     public JOB_STATUS getJobStatus() {
         return jobStatus;
     }
@@ -7,8 +7,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * Runs a Performance Job and Monitor it till it gets over
@@ -19,6 +24,9 @@ public class JobRunnerThread extends Thread{
     private boolean running = false;
 
     private static Logger logger = LoggerFactory.getLogger(JobRunnerThread.class);
+    private static final Map<Integer, Long> reservedPorts = new HashMap<Integer, Long>();
+    private static final long PORT_RESERVATION_MS = 30000;
+    private static final long STARTUP_WATCH_MS = 5 * 60 * 1000;
     private final JobFSConfig jobFSConfig;
 
     public JobRunnerThread(AgentJob agentJob, JobFSConfig jobFSConfig) {
@@ -31,22 +39,43 @@ public class JobRunnerThread extends Thread{
         logger.info("Running Job :"+ agentJob.getJobId());
         this.running = true;
         try {
-            this.agentJob.setJmxPort(SocketHelper.getFreePort(10000, 10010));
-            this.agentJob.setHttpPort(SocketHelper.getFreePort(this.agentJob.getJmxPort()+1, 10010));
-            agentJob.setJobCmd(
-                    agentJob.getJobCmd().
-                            replace("{jmxPort}", String.valueOf(agentJob.getJmxPort())).
-                            replace("{httpPort}", String.valueOf(agentJob.getHttpPort())).
-                            replace("{jobId}", agentJob.getJobId()));
-
+            long processStartTime = System.currentTimeMillis();
             FileHelper.createFilePath(jobFSConfig.getJobLogFile(agentJob.getJobId()));
-            logger.info("Running Command \n"+ agentJob.getJobCmd());
-            jobProcess = Runtime.getRuntime().exec(new String[]{
-                    "/bin/sh",
-                    "-c",
-                    agentJob.getJobCmd()});
+            WarmJvmPool.WarmJvm warmJvm = WarmJvmPool.instance() == null ? null : WarmJvmPool.instance().take();
+            if(warmJvm != null) {
+                try {
+                    this.agentJob.setJmxPort(warmJvm.getJmxPort());
+                    this.agentJob.setHttpPort(reserveFreePort(this.agentJob.getJmxPort()+1));
+                    warmJvm.runJob(agentJob, jobFSConfig.getJobLogFile(agentJob.getJobId()), jobFSConfig.getJobBasePath() + File.separator);
+                    jobProcess = warmJvm.getProcess();
+                    this.agentJob.setWarmStarted(true).setClassDataArchive(warmJvm.getClassDataArchive());
+                    logger.info("Job "+agentJob.getJobId()+" handed to warm process with jmx port "+warmJvm.getJmxPort());
+                }
+                catch (IOException e) {
+                    logger.warn("Couldn't hand job "+agentJob.getJobId()+" to warm process. Starting a new one", e);
+                    warmJvm.destroy();
+                    warmJvm = null;
+                }
+            }
+
+            if(warmJvm == null) {
+                this.agentJob.setJmxPort(reserveFreePort(10000));
+                this.agentJob.setHttpPort(reserveFreePort(this.agentJob.getJmxPort()+1));
+                agentJob.setJobCmd(
+                        agentJob.getJobCmd().
+                                replace("{jmxPort}", String.valueOf(agentJob.getJmxPort())).
+                                replace("{httpPort}", String.valueOf(agentJob.getHttpPort())).
+                                replace("{jobId}", agentJob.getJobId()));
+
+                logger.info("Running Command \n"+ agentJob.getJobCmd());
+                jobProcess = Runtime.getRuntime().exec(new String[]{
+                        "/bin/sh",
+                        "-c",
+                        agentJob.getJobCmd()});
+            }
 
             this.agentJob.started();
+            new JobStartupWatchThread(processStartTime);
             new JobStdOutThread();
             new JobStdErrThread();
             jobProcess.waitFor();
@@ -63,10 +92,66 @@ public class JobRunnerThread extends Thread{
         }
     }
 
+    /**
+     * Free port in [startPort, 10010] not handed out in last few seconds. Ports are bound by job processes a little
+     * after being picked, so job runners and warm jvm pool picking ports concurrently could otherwise get same one
+     */
+    static synchronized int reserveFreePort(int startPort) {
+        long now = System.currentTimeMillis();
+        for(Iterator<Map.Entry<Integer, Long>> it = reservedPorts.entrySet().iterator(); it.hasNext();)
+            if(now - it.next().getValue() > PORT_RESERVATION_MS)
+                it.remove();
+
+        int port = startPort;
+        while(true) {
+            port = SocketHelper.getFreePort(port, 10010);
+            if(!reservedPorts.containsKey(port))
+                break;
+            port++;
+        }
+        reservedPorts.put(port, now);
+        return port;
+    }
+
     public boolean running() {
         return this.running;  //To change body of created methods use File | Settings | File Templates.
     }
 
+    /**
+     * Job binds its http port right before it starts generating load. Time till then is job's startup time, which is
+     * what warm processes and class data archives cut down
+     */
+    class JobStartupWatchThread extends Thread {
+        private final long processStartTime;
+
+        public JobStartupWatchThread(long processStartTime) {
+            this.processStartTime = processStartTime;
+            start();
+        }
+
+        public void run() {
+            while(running && System.currentTimeMillis() - processStartTime < STARTUP_WATCH_MS) {
+                try {
+                    new Socket("localhost", agentJob.getHttpPort()).close();
+                    long startupTime = System.currentTimeMillis() - processStartTime;
+                    agentJob.startedUp(startupTime);
+                    logger.info("Job "+agentJob.getJobId()+" started up in "+startupTime+"ms. Warm process : "+agentJob.isWarmStarted()+
+                            ", Class data archive : "+agentJob.getClassDataArchive());
+                    return;
+                }
+                catch (IOException e) {
+                    // Not listening yet
+                }
+                try {
+                    Thread.sleep(20);
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
     class JobStdOutThread extends Thread {
         public JobStdOutThread() {
             start();
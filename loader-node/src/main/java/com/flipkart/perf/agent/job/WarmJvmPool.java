@@ -0,0 +1,244 @@
+package com.flipkart.perf.agent.job;
+
+import com.flipkart.perf.agent.cache.ClassDataArchiveCache;
+import com.flipkart.perf.agent.cache.LibCache;
+import com.flipkart.perf.agent.config.JobProcessorConfig;
+import com.flipkart.perf.common.jackson.ObjectMapperUtil;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Keeps a few job processes started with platform libs and warmed up (com.flipkart.perf.main.WarmMain), so that a job
+ * starts generating load as soon as it is handed over instead of paying jvm start up every time. A process runs one
+ * job and exits, pool starts a fresh one in its place. Processes started with older platform libs are discarded.
+ */
+public class WarmJvmPool extends Thread {
+    private static Logger logger = LoggerFactory.getLogger(WarmJvmPool.class);
+    private static ObjectMapper objectMapper = ObjectMapperUtil.instance();
+    private static WarmJvmPool instance;
+    private static final int CONTROL_TIMEOUT_MS = 10000;
+    private static final int REFILL_INTERVAL_MS = 1000;
+
+    private final JobProcessorConfig config;
+    private final Queue<WarmJvm> readyJvms = new LinkedBlockingQueue<WarmJvm>();
+    private volatile boolean stopped;
+
+    public static class WarmJvm {
+        private final Process process;
+        private final int jmxPort;
+        private final String platformLibClassPath;
+        private int controlPort;
+        private String classDataArchive;
+
+        private WarmJvm(Process process, int jmxPort, String platformLibClassPath) {
+            this.process = process;
+            this.jmxPort = jmxPort;
+            this.platformLibClassPath = platformLibClassPath;
+        }
+
+        public Process getProcess() {
+            return process;
+        }
+
+        public int getJmxPort() {
+            return jmxPort;
+        }
+
+        public String getClassDataArchive() {
+            return classDataArchive;
+        }
+
+        public boolean alive() {
+            try {
+                process.exitValue();
+                return false;
+            }
+            catch (IllegalThreadStateException e) {
+                return true;
+            }
+        }
+
+        /**
+         * Hand job over to the process. Process owns it from here, till it exits
+         */
+        public void runJob(AgentJob agentJob, String logFile, String statsFolder) throws IOException {
+            Map<String, Object> jobRequest = new LinkedHashMap<String, Object>();
+            jobRequest.put("jobId", agentJob.getJobId());
+            jobRequest.put("jobFile", agentJob.getJobJsonFile());
+            jobRequest.put("classpath", agentJob.getUdfClassPath());
+            jobRequest.put("httpPort", agentJob.getHttpPort());
+            jobRequest.put("statsFolder", statsFolder);
+            jobRequest.put("logFile", logFile);
+
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress("127.0.0.1", controlPort), CONTROL_TIMEOUT_MS);
+                socket.setSoTimeout(CONTROL_TIMEOUT_MS);
+                Writer writer = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+                writer.write(objectMapper.writeValueAsString(jobRequest) + "\n");
+                writer.flush();
+                String reply = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8")).readLine();
+                if(!"OK".equals(reply))
+                    throw new IOException("Warm process didn't accept job "+agentJob.getJobId()+". Replied "+reply);
+            }
+            finally {
+                socket.close();
+            }
+        }
+
+        public void destroy() {
+            process.destroy();
+        }
+    }
+
+    private WarmJvmPool(JobProcessorConfig config) {
+        this.config = config;
+        this.setName("WarmJvmPool");
+        this.setDaemon(true);
+        start();
+    }
+
+    public static WarmJvmPool initialize(JobProcessorConfig config) {
+        if(instance == null && config.getWarmJvmPoolSize() > 0 && config.getWarmJvmCLIFormat() != null) {
+            synchronized (WarmJvmPool.class) {
+                if(instance == null)
+                    instance = new WarmJvmPool(config);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return null if pool is disabled
+     */
+    public static WarmJvmPool instance() {
+        return instance;
+    }
+
+    public void run() {
+        while(!stopped) {
+            try {
+                discardUnusable();
+                while(!stopped && readyJvms.size() < config.getWarmJvmPoolSize())
+                    readyJvms.add(startJvm());
+            }
+            catch (Exception e) {
+                logger.error("Couldn't start warm job process", e);
+            }
+            try {
+                Thread.sleep(REFILL_INTERVAL_MS);
+            }
+            catch (InterruptedException e) {
+                logger.warn("Warm jvm pool interrupted");
+            }
+        }
+    }
+
+    /**
+     * @return a ready process with current platform libs, null if none is ready yet
+     */
+    public WarmJvm take() {
+        WarmJvm warmJvm;
+        while((warmJvm = readyJvms.poll()) != null) {
+            if(usable(warmJvm))
+                return warmJvm;
+            warmJvm.destroy();
+        }
+        return null;
+    }
+
+    /**
+     * Discard ready processes, for example after platform libs change. Pool refills with fresh ones
+     */
+    public void recycle() {
+        WarmJvm warmJvm;
+        while((warmJvm = readyJvms.poll()) != null)
+            warmJvm.destroy();
+        logger.info("Warm job processes recycled");
+    }
+
+    public void shutdown() {
+        stopped = true;
+        recycle();
+    }
+
+    private void discardUnusable() {
+        for(WarmJvm warmJvm : new ArrayList<WarmJvm>(readyJvms)) {
+            if(!usable(warmJvm) && readyJvms.remove(warmJvm)) {
+                logger.info("Discarding warm job process with jmx port "+warmJvm.getJmxPort());
+                warmJvm.destroy();
+            }
+        }
+    }
+
+    private boolean usable(WarmJvm warmJvm) {
+        return warmJvm.alive() && warmJvm.platformLibClassPath.equals(LibCache.getInstance().getPlatformLibClassPath());
+    }
+
+    private WarmJvm startJvm() throws IOException {
+        String platformLibClassPath = LibCache.getInstance().getPlatformLibClassPath();
+        int jmxPort = JobRunnerThread.reserveFreePort(10000);
+        String jvmCmd = ClassDataArchiveCache.replaceOptions(config.getWarmJvmCLIFormat(), platformLibClassPath, "").
+                replace("{jmxPort}", String.valueOf(jmxPort)).
+                replace("{classpath}", platformLibClassPath);
+
+        logger.info("Starting warm job process \n"+jvmCmd);
+        // exec so that destroying process kills the jvm and not just the shell
+        Process process = Runtime.getRuntime().exec(new String[]{
+                "/bin/sh",
+                "-c",
+                "exec " + jvmCmd});
+        WarmJvm warmJvm = new WarmJvm(process, jmxPort, platformLibClassPath);
+        warmJvm.classDataArchive = ClassDataArchiveCache.archiveInUse(jvmCmd);
+
+        try {
+            warmJvm.controlPort = readControlPort(process.getInputStream());
+        }
+        catch (IOException e) {
+            warmJvm.destroy();
+            logger.error("Warm job process errors :\n"+readAvailable(process.getErrorStream()));
+            throw e;
+        }
+        logger.info("Warm job process ready with control port "+warmJvm.controlPort+" and jmx port "+jmxPort);
+        return warmJvm;
+    }
+
+    /**
+     * Read process output till it announces its control port. Output is read byte wise so that nothing beyond the
+     * announcement is consumed, rest of it is logged by job runner once job starts
+     */
+    private static int readControlPort(InputStream processOut) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while((b = processOut.read()) != -1) {
+            if(b != '\n') {
+                line.append((char) b);
+                continue;
+            }
+            String outLine = line.toString().trim();
+            line.setLength(0);
+            if(outLine.startsWith("WARM_JVM_READY "))
+                return Integer.parseInt(outLine.substring("WARM_JVM_READY ".length()).trim());
+            logger.debug(outLine);
+        }
+        throw new IOException("Warm job process exited before getting ready");
+    }
+
+    private static String readAvailable(InputStream is) {
+        try {
+            byte[] bytes = new byte[Math.min(is.available(), 64 * 1024)];
+            int read = is.read(bytes);
+            return read > 0 ? new String(bytes, 0, read) : "";
+        }
+        catch (IOException e) {
+            return "";
+        }
+    }
+}
@@ -3,7 +3,10 @@ package com.flipkart.perf.agent.resource;
 import com.codahale.metrics.annotation.Timed;
 import com.flipkart.perf.agent.cache.LibCache;
 import com.flipkart.perf.agent.config.ResourceStorageFSConfig;
+import com.flipkart.perf.agent.job.WarmJvmPool;
+import com.flipkart.perf.agent.util.InputFileSwarm;
 import com.flipkart.perf.common.util.FileHelper;
+import com.flipkart.perf.server.domain.InputFileSwarmRequest;
 import com.sun.jersey.core.header.FormDataContentDisposition;
 import com.sun.jersey.multipart.FormDataParam;
 import org.slf4j.Logger;
@@ -11,7 +14,9 @@ import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import java.io.*;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -138,6 +143,9 @@ public class DeployResourcesResource {
             FileHelper.rename(resourceStorageFSConfig.getPlatformLibPath() + ".tmp", resourceStorageFSConfig.getPlatformLibPath());
         } finally {
             this.libCache.refreshPlatformLib();
+            // Pooled job processes have old platform libs loaded
+            if(WarmJvmPool.instance() != null)
+                WarmJvmPool.instance().recycle();
         }
         return "Successful Deployment";
     }
@@ -177,6 +185,208 @@ public class DeployResourcesResource {
     }
 
 
+    /**
+     * Status of artifact upload identified by its content hash. Server uses received bytes to resume a transfer
+     * which broke in between.
+     * @param contentHash sha1 of artifact content
+     */
+    @Path("/uploads/{contentHash}")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    synchronized public Map getUploadStatus(@PathParam("contentHash") String contentHash) {
+        return uploadStatus(contentHash);
+    }
+
+    /**
+     Appends a chunk of artifact to the upload. Once all bytes are received content is verified against hash.
+     curl
+        -X PUT
+        -H "Content-Type: application/octet-stream"
+        --data-binary @chunk
+        "http://localhost:8888/loader-agent/resourceTypes/uploads/{contentHash}?offset=0&length=1024"
+     * @param contentHash sha1 of whole artifact content
+     * @param offset position of this chunk in artifact. Has to be same as bytes received so far
+     * @param length total artifact length
+     */
+    @Path("/uploads/{contentHash}")
+    @PUT
+    @Timed
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.APPLICATION_JSON)
+    synchronized public Map uploadChunk(@PathParam("contentHash") String contentHash,
+                                        @QueryParam("offset") long offset,
+                                        @QueryParam("length") long length,
+                                        InputStream chunkStream) throws IOException {
+        File uploadFile = uploadFile(contentHash);
+        File partFile = new File(uploadFile.getAbsolutePath() + ".part");
+        if(uploadFile.exists())
+            return uploadStatus(contentHash);
+
+        if(partFile.length() != offset) {
+            throw new WebApplicationException(Response.status(Response.Status.CONFLICT).
+                    entity(uploadStatus(contentHash)).
+                    type(MediaType.APPLICATION_JSON).
+                    build());
+        }
+
+        FileHelper.createFilePath(partFile.getAbsolutePath());
+        FileHelper.persistStream(chunkStream, partFile.getAbsolutePath(), true);
+
+        if(partFile.length() >= length) {
+            if(partFile.length() == length && FileHelper.contentHash(partFile).equals(contentHash)) {
+                FileHelper.move(partFile.getAbsolutePath(), uploadFile.getAbsolutePath());
+            }
+            else {
+                partFile.delete();
+                logger.error("Upload "+contentHash+" didn't match its content hash. Discarded");
+                throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST).
+                        entity("Uploaded content doesn't match hash "+contentHash).
+                        build());
+            }
+        }
+        return uploadStatus(contentHash);
+    }
+
+    /**
+     * Deploy platform libs zip which was uploaded earlier
+     */
+    @Path("/platformLibs/{contentHash}")
+    @POST
+    @Timed
+    synchronized public String deployUploadedPlatformLib(@PathParam("contentHash") String contentHash) throws IOException {
+        File uploadFile = completedUploadOrException(contentHash);
+        InputStream libInputStream = new FileInputStream(uploadFile);
+        try {
+            deployPlatformLib(libInputStream);
+        }
+        finally {
+            libInputStream.close();
+        }
+        uploadFile.delete();
+        return "Successful Deployment";
+    }
+
+    /**
+     * Deploy udf lib which was uploaded earlier
+     */
+    @Path("/udfLibs/{contentHash}")
+    @POST
+    @Timed
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    synchronized public void deployUploadedLib(@PathParam("contentHash") String contentHash,
+                                  @FormParam("fileName") String fileName,
+                                  @FormParam("classList") String classListStr) throws IOException {
+        File uploadFile = completedUploadOrException(contentHash);
+        String libPath = resourceStorageFSConfig.getUdfLibsPath() + File.separator + new File(fileName).getName();
+        FileHelper.createFilePath(libPath);
+        new File(libPath).delete();
+        FileHelper.move(uploadFile.getAbsolutePath(), libPath);
+
+        mergeMappingFile(libPath, classListStr, resourceStorageFSConfig.getMappingFile());
+        this.libCache.refreshClassLibMap();
+    }
+
+    /**
+     * Deploy input file which was uploaded earlier
+     */
+    @Path("/inputFiles/{resourceName}/{contentHash}")
+    @POST
+    @Timed
+    synchronized public void deployUploadedInputFile(@PathParam("resourceName") String resourceName,
+                                        @PathParam("contentHash") String contentHash) throws IOException {
+        File uploadFile = completedUploadOrException(contentHash);
+        File resourceFile = new File(resourceStorageFSConfig.getInputFilePath(resourceName));
+        if(resourceFile.exists()) {
+            resourceFile.delete();
+        }
+        FileHelper.createFilePath(resourceFile.getAbsolutePath());
+        FileHelper.move(uploadFile.getAbsolutePath(), resourceFile.getAbsolutePath());
+    }
+
+    /**
+     * Start fetching an input file from peers and server. Once swarm is complete, content is available as completed
+     * upload and can be deployed using /inputFiles/{resourceName}/{contentHash}
+     */
+    @Path("/swarms")
+    @POST
+    @Timed
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map startSwarm(InputFileSwarmRequest swarmRequest) {
+        validHashOrException(swarmRequest.getContentHash());
+        for(String chunkHash : swarmRequest.getChunks())
+            validHashOrException(chunkHash);
+        return InputFileSwarm.start(swarmRequest, resourceStorageFSConfig).status();
+    }
+
+    /**
+     * Swarm status. Peers use available chunks from here to decide what to fetch from this agent
+     */
+    @Path("/swarms/{contentHash}")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map getSwarm(@PathParam("contentHash") String contentHash) {
+        InputFileSwarm swarm = InputFileSwarm.get(contentHash);
+        if(swarm == null)
+            throw new WebApplicationException(Response.status(Response.Status.NOT_FOUND).
+                    entity("No swarm found for "+contentHash).
+                    build());
+        return swarm.status();
+    }
+
+    @Path("/swarms/{contentHash}")
+    @DELETE
+    @Timed
+    public void endSwarm(@PathParam("contentHash") String contentHash) {
+        InputFileSwarm.end(contentHash);
+    }
+
+    @Path("/chunks/{chunkHash}")
+    @GET
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public File getChunk(@PathParam("chunkHash") String chunkHash) {
+        validHashOrException(chunkHash);
+        File chunkFile = InputFileSwarm.chunk(chunkHash, resourceStorageFSConfig);
+        if(chunkFile == null)
+            throw new WebApplicationException(Response.status(Response.Status.NOT_FOUND).
+                    entity("Chunk "+chunkHash+" not found").
+                    build());
+        return chunkFile;
+    }
+
+    private File uploadFile(String contentHash) {
+        validHashOrException(contentHash);
+        return new File(resourceStorageFSConfig.getUploadsPath() + File.separator + contentHash);
+    }
+
+    // Hashes end up as file names, so nothing but hex is allowed
+    private void validHashOrException(String hash) {
+        if(hash == null || !hash.matches("[0-9a-fA-F]+"))
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST).
+                    entity("Invalid content hash "+hash).
+                    build());
+    }
+
+    private File completedUploadOrException(String contentHash) {
+        File uploadFile = uploadFile(contentHash);
+        if(!uploadFile.exists())
+            throw new WebApplicationException(Response.status(Response.Status.NOT_FOUND).
+                    entity("No completed upload found for "+contentHash).
+                    build());
+        return uploadFile;
+    }
+
+    private Map uploadStatus(String contentHash) {
+        File uploadFile = uploadFile(contentHash);
+        Map<String, Object> status = new LinkedHashMap<String, Object>();
+        status.put("contentHash", contentHash);
+        status.put("complete", uploadFile.exists());
+        status.put("receivedBytes", uploadFile.exists() ?
+                uploadFile.length() :
+                new File(uploadFile.getAbsolutePath() + ".part").length());
+        return status;
+    }
+
     synchronized public static void mergeMappingFile(String libPath, String classListStr, String mappingFile) throws IOException {
         InputStream mappingFileIS = new FileInputStream(mappingFile);
         Properties prop = new Properties();
@@ -1,6 +1,7 @@
 package com.flipkart.perf.agent.resource;
 
 import com.codahale.metrics.annotation.Timed;
+import com.flipkart.perf.agent.cache.ClassDataArchiveCache;
 import com.flipkart.perf.agent.cache.LibCache;
 import com.flipkart.perf.agent.config.JobFSConfig;
 import com.flipkart.perf.agent.config.JobProcessorConfig;
@@ -49,14 +50,19 @@ public class JobResource {
         String jobClassPath = LibCache.getInstance().
                 buildJobClassPath(classList);
 
-        String jobCMD = this.jobProcessorConfig.getJobCLIFormat().
+        String udfClassPath = LibCache.getInstance().buildUDFClassPath(classList);
+        String jobJsonFile = ""+ FileHelper.persistStream(jobJson, "/tmp/" + System.currentTimeMillis());
+        String jobCMD = ClassDataArchiveCache.replaceOptions(this.jobProcessorConfig.getJobCLIFormat(), jobClassPath, udfClassPath).
                 replace("{classpath}", jobClassPath).
-                replace("{jobJson}", ""+ FileHelper.persistStream(jobJson, "/tmp/" + System.currentTimeMillis())).
+                replace("{jobJson}", jobJsonFile).
                 replace("{jobId}", jobId);
 
         AgentJob agentJob = new AgentJob().
                 setJobCmd(jobCMD).
-                setJobId(jobId);
+                setJobId(jobId).
+                setJobJsonFile(jobJsonFile).
+                setUdfClassPath(udfClassPath).
+                setClassDataArchive(ClassDataArchiveCache.archiveInUse(jobCMD));
 
         jobProcessorThread.addJobRequest(agentJob);
         return agentJob.getJobId();
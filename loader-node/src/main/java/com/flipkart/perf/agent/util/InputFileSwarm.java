@@ -0,0 +1,289 @@
+package com.flipkart.perf.agent.util;
+
+import com.flipkart.perf.agent.config.LoaderAgentConfiguration;
+import com.flipkart.perf.agent.config.ResourceStorageFSConfig;
+import com.flipkart.perf.agent.config.ServerInfo;
+import com.flipkart.perf.common.jackson.ObjectMapperUtil;
+import com.flipkart.perf.common.util.FileHelper;
+import com.flipkart.perf.server.domain.InputFileSwarmRequest;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.Response;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.URLEncoder;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fetches an input file chunk by chunk, swarm style. In every round agent asks peers which chunks they have and pulls
+ * missing chunks from them. Chunks which no peer has yet are pulled from server, one per round, so that server mostly
+ * seeds and peers do the rest. Chunks are visited in random order so that peers end up holding different chunks.
+ * Once all chunks are in, they are joined as a completed upload which then gets deployed like any other upload.
+ */
+public class InputFileSwarm extends Thread {
+    private static Logger logger = LoggerFactory.getLogger(InputFileSwarm.class);
+    private static ObjectMapper objectMapper = ObjectMapperUtil.instance();
+    private static AsyncHttpClient httpClient = new AsyncHttpClient();
+    private static Map<String, InputFileSwarm> swarms = new ConcurrentHashMap<String, InputFileSwarm>();
+    private static final int SERVER_FETCH_ATTEMPTS = 3;
+
+    private static final String RESOURCE_PEER_SWARM = "/loader-agent/resourceTypes/swarms/{contentHash}";
+    private static final String RESOURCE_PEER_CHUNK = "/loader-agent/resourceTypes/chunks/{chunkHash}";
+    private static final String RESOURCE_SERVER_CHUNK = "/loader-server/resourceTypes/inputFiles/{resourceName}/chunk?offset={offset}&length={length}";
+
+    public static enum SwarmStatus {
+        RUNNING, COMPLETE, FAILED
+    }
+
+    private final InputFileSwarmRequest request;
+    private final ResourceStorageFSConfig resourceStorageFSConfig;
+    private final Set<Integer> availableChunks = Collections.synchronizedSet(new TreeSet<Integer>());
+    private volatile SwarmStatus status = SwarmStatus.RUNNING;
+    private volatile String error;
+    private volatile boolean stopped;
+    private int chunksFromPeers, chunksFromServer;
+
+    private InputFileSwarm(InputFileSwarmRequest request, ResourceStorageFSConfig resourceStorageFSConfig) {
+        this.request = request;
+        this.resourceStorageFSConfig = resourceStorageFSConfig;
+        this.setName("InputFileSwarm-" + request.getResourceName());
+    }
+
+    /**
+     * Start swarm for request, unless one is already running (or done) for same content
+     */
+    synchronized public static InputFileSwarm start(InputFileSwarmRequest request, ResourceStorageFSConfig resourceStorageFSConfig) {
+        InputFileSwarm swarm = swarms.get(request.getContentHash());
+        if(swarm == null || swarm.status == SwarmStatus.FAILED) {
+            swarm = new InputFileSwarm(request, resourceStorageFSConfig);
+            swarms.put(request.getContentHash(), swarm);
+            swarm.start();
+        }
+        return swarm;
+    }
+
+    public static InputFileSwarm get(String contentHash) {
+        return swarms.get(contentHash);
+    }
+
+    /**
+     * Stop swarm and clean up its chunks. Server calls this once all agents are done, till then chunks are served to peers
+     */
+    synchronized public static void end(String contentHash) {
+        InputFileSwarm swarm = swarms.remove(contentHash);
+        if(swarm != null) {
+            swarm.stopped = true;
+            for(String chunkHash : swarm.request.getChunks())
+                swarm.chunkFile(chunkHash).delete();
+        }
+    }
+
+    /**
+     * @return chunk file if any swarm on this agent has it
+     */
+    public static File chunk(String chunkHash, ResourceStorageFSConfig resourceStorageFSConfig) {
+        File chunkFile = new File(chunksPath(resourceStorageFSConfig) + File.separator + chunkHash);
+        return chunkFile.exists() ? chunkFile : null;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> statusMap = new LinkedHashMap<String, Object>();
+        statusMap.put("contentHash", request.getContentHash());
+        statusMap.put("status", status);
+        statusMap.put("chunks", request.getChunks().size());
+        synchronized (availableChunks) {
+            statusMap.put("availableChunks", new ArrayList<Integer>(availableChunks));
+        }
+        statusMap.put("chunksFromPeers", chunksFromPeers);
+        statusMap.put("chunksFromServer", chunksFromServer);
+        statusMap.put("error", error);
+        return statusMap;
+    }
+
+    public void run() {
+        try {
+            List<Integer> missingChunks = new ArrayList<Integer>();
+            for(int chunkIndex = 0; chunkIndex < request.getChunks().size(); chunkIndex++) {
+                File chunkFile = chunkFile(request.getChunks().get(chunkIndex));
+                if(chunkFile.exists() && chunkFile.length() == request.chunkLength(chunkIndex))
+                    availableChunks.add(chunkIndex);
+                else
+                    missingChunks.add(chunkIndex);
+            }
+            Collections.shuffle(missingChunks);
+
+            while(missingChunks.size() > 0 && !stopped) {
+                Map<Integer, List<String>> chunkHolders = chunkHolders();
+
+                for(Integer chunkIndex : new ArrayList<Integer>(missingChunks)) {
+                    List<String> holders = chunkHolders.get(chunkIndex);
+                    if(holders == null)
+                        continue;
+                    Collections.shuffle(holders);
+                    for(String peer : holders) {
+                        if(fetchFromPeer(peer, chunkIndex)) {
+                            missingChunks.remove(chunkIndex);
+                            chunksFromPeers++;
+                            break;
+                        }
+                    }
+                }
+
+                if(missingChunks.size() > 0 && !stopped) {
+                    // Seed a chunk nobody has yet, so that peers get something new to share
+                    Integer seedChunk = missingChunks.get(0);
+                    for(Integer chunkIndex : missingChunks) {
+                        if(!chunkHolders.containsKey(chunkIndex)) {
+                            seedChunk = chunkIndex;
+                            break;
+                        }
+                    }
+                    fetchFromServer(seedChunk);
+                    missingChunks.remove(seedChunk);
+                    chunksFromServer++;
+                }
+            }
+
+            if(!stopped) {
+                joinChunks();
+                status = SwarmStatus.COMPLETE;
+                logger.info("Input file "+request.getResourceName()+" fetched. "+chunksFromPeers+" chunks from peers, "+chunksFromServer+" from server");
+            }
+        }
+        catch (Exception e) {
+            logger.error("Swarm for input file "+request.getResourceName()+" failed", e);
+            error = e.getMessage();
+            status = SwarmStatus.FAILED;
+        }
+    }
+
+    /**
+     * @return chunk index -> peers having it
+     */
+    private Map<Integer, List<String>> chunkHolders() {
+        Map<Integer, List<String>> chunkHolders = new HashMap<Integer, List<String>>();
+        for(String peer : request.getPeers()) {
+            try {
+                Response response = httpClient.
+                        prepareGet("http://" + peer + RESOURCE_PEER_SWARM.replace("{contentHash}", request.getContentHash())).
+                        execute().get();
+                if(response.getStatusCode() != 200)
+                    continue;
+                Map peerStatus = objectMapper.readValue(response.getResponseBodyAsStream(), Map.class);
+                for(Object chunkIndex : (List) peerStatus.get("availableChunks")) {
+                    Integer index = ((Number) chunkIndex).intValue();
+                    List<String> holders = chunkHolders.get(index);
+                    if(holders == null) {
+                        holders = new ArrayList<String>();
+                        chunkHolders.put(index, holders);
+                    }
+                    holders.add(peer);
+                }
+            }
+            catch (Exception e) {
+                logger.warn("Couldn't get swarm status from peer "+peer+". "+e.getMessage());
+            }
+        }
+        return chunkHolders;
+    }
+
+    private boolean fetchFromPeer(String peer, int chunkIndex) {
+        String chunkHash = request.getChunks().get(chunkIndex);
+        try {
+            Response response = httpClient.
+                    prepareGet("http://" + peer + RESOURCE_PEER_CHUNK.replace("{chunkHash}", chunkHash)).
+                    execute().get();
+            if(response.getStatusCode() != 200)
+                return false;
+            return storeChunk(chunkIndex, response.getResponseBodyAsBytes());
+        }
+        catch (Exception e) {
+            logger.warn("Couldn't get chunk "+chunkIndex+" from peer "+peer+". "+e.getMessage());
+            return false;
+        }
+    }
+
+    private void fetchFromServer(int chunkIndex) throws Exception {
+        ServerInfo serverInfo = LoaderAgentConfiguration.instance().getServerInfo();
+        String url = "http://" + serverInfo.getHost() + ":" + serverInfo.getPort() + RESOURCE_SERVER_CHUNK.
+                replace("{resourceName}", URLEncoder.encode(request.getResourceName(), "UTF-8")).
+                replace("{offset}", String.valueOf(request.chunkOffset(chunkIndex))).
+                replace("{length}", String.valueOf(request.chunkLength(chunkIndex)));
+
+        for(int attempt = 1; attempt <= SERVER_FETCH_ATTEMPTS; attempt++) {
+            Response response = httpClient.prepareGet(url).execute().get();
+            if(response.getStatusCode() == 200 && storeChunk(chunkIndex, response.getResponseBodyAsBytes()))
+                return;
+            logger.warn("Attempt "+attempt+" to get chunk "+chunkIndex+" of "+request.getResourceName()+" from server failed");
+        }
+        throw new IOException("Couldn't get chunk "+chunkIndex+" of "+request.getResourceName()+" from server");
+    }
+
+    private boolean storeChunk(int chunkIndex, byte[] chunk) throws IOException {
+        String chunkHash = request.getChunks().get(chunkIndex);
+        if(chunk.length != request.chunkLength(chunkIndex) || !chunkHash.equals(FileHelper.contentHash(chunk))) {
+            logger.warn("Chunk "+chunkIndex+" of "+request.getResourceName()+" didn't match its hash. Discarded");
+            return false;
+        }
+
+        File chunkFile = chunkFile(chunkHash);
+        File tmpChunkFile = new File(chunkFile.getAbsolutePath() + ".tmp");
+        FileHelper.createFilePath(tmpChunkFile.getAbsolutePath());
+        OutputStream os = new FileOutputStream(tmpChunkFile);
+        try {
+            os.write(chunk);
+        }
+        finally {
+            os.close();
+        }
+        FileHelper.move(tmpChunkFile.getAbsolutePath(), chunkFile.getAbsolutePath());
+        availableChunks.add(chunkIndex);
+        return true;
+    }
+
+    /**
+     * Join chunks as a completed upload for the content hash
+     */
+    private void joinChunks() throws IOException {
+        File uploadFile = new File(resourceStorageFSConfig.getUploadsPath() + File.separator + request.getContentHash());
+        File partFile = new File(uploadFile.getAbsolutePath() + ".part");
+        FileHelper.createFilePath(partFile.getAbsolutePath());
+
+        byte[] buffer = new byte[64 * 1024];
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(partFile));
+        try {
+            for(String chunkHash : request.getChunks()) {
+                InputStream is = new FileInputStream(chunkFile(chunkHash));
+                try {
+                    int bytesRead;
+                    while((bytesRead = is.read(buffer)) > 0)
+                        os.write(buffer, 0, bytesRead);
+                }
+                finally {
+                    is.close();
+                }
+            }
+        }
+        finally {
+            os.close();
+        }
+
+        if(!FileHelper.contentHash(partFile).equals(request.getContentHash())) {
+            partFile.delete();
+            throw new IOException("Joined input file "+request.getResourceName()+" didn't match its content hash");
+        }
+        uploadFile.delete();
+        FileHelper.move(partFile.getAbsolutePath(), uploadFile.getAbsolutePath());
+    }
+
+    private File chunkFile(String chunkHash) {
+        return new File(chunksPath(resourceStorageFSConfig) + File.separator + chunkHash);
+    }
+
+    private static String chunksPath(ResourceStorageFSConfig resourceStorageFSConfig) {
+        return resourceStorageFSConfig.getUploadsPath() + File.separator + "chunks";
+    }
+}
@@ -0,0 +1,476 @@
+package com.flipkart.perf.server.cache;
+
+import com.flipkart.perf.common.util.FileHelper;
+import com.flipkart.perf.server.config.JobFSConfig;
+import com.flipkart.perf.server.domain.Job;
+import com.flipkart.perf.server.domain.PerformanceRun;
+import com.flipkart.perf.server.util.ObjectMapperUtil;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.WebApplicationException;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Secondary index over all jobs on run name, status, business unit and start/end time. Updated every time a job is
+ * persisted. Index updates are appended to an index log which is replayed (and compacted) at start up.
+ */
+public class JobSearchIndex {
+    private static ObjectMapper objectMapper = ObjectMapperUtil.instance();
+    private static Logger logger = LoggerFactory.getLogger(JobSearchIndex.class);
+
+    private static JobFSConfig jobFSConfig;
+    private static Map<String, JobIndexEntry> entries = new LinkedHashMap<String, JobIndexEntry>();
+    private static Map<String, Set<String>> statusIndex = new HashMap<String, Set<String>>();
+    private static Map<String, Set<String>> runNameIndex = new HashMap<String, Set<String>>();
+    private static Map<String, Set<String>> businessUnitIndex = new HashMap<String, Set<String>>();
+    private static BufferedWriter indexLogWriter;
+    private static long sequence = 0;
+    private static int loggedUpdates = 0;
+
+    public static class JobIndexEntry {
+        private String jobId;
+        private String runName;
+        private String jobStatus;
+        private String businessUnit;
+        private Long startTime;
+        private Long endTime;
+        private long sequence;
+        private boolean removed;
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        public JobIndexEntry setJobId(String jobId) {
+            this.jobId = jobId;
+            return this;
+        }
+
+        public String getRunName() {
+            return runName;
+        }
+
+        public JobIndexEntry setRunName(String runName) {
+            this.runName = runName;
+            return this;
+        }
+
+        public String getJobStatus() {
+            return jobStatus;
+        }
+
+        public JobIndexEntry setJobStatus(String jobStatus) {
+            this.jobStatus = jobStatus;
+            return this;
+        }
+
+        public String getBusinessUnit() {
+            return businessUnit;
+        }
+
+        public JobIndexEntry setBusinessUnit(String businessUnit) {
+            this.businessUnit = businessUnit;
+            return this;
+        }
+
+        public Long getStartTime() {
+            return startTime;
+        }
+
+        public JobIndexEntry setStartTime(Long startTime) {
+            this.startTime = startTime;
+            return this;
+        }
+
+        public Long getEndTime() {
+            return endTime;
+        }
+
+        public JobIndexEntry setEndTime(Long endTime) {
+            this.endTime = endTime;
+            return this;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public JobIndexEntry setSequence(long sequence) {
+            this.sequence = sequence;
+            return this;
+        }
+
+        public boolean isRemoved() {
+            return removed;
+        }
+
+        public JobIndexEntry setRemoved(boolean removed) {
+            this.removed = removed;
+            return this;
+        }
+
+        private boolean sameAs(JobIndexEntry other) {
+            return other != null &&
+                    eq(runName, other.runName) &&
+                    eq(jobStatus, other.jobStatus) &&
+                    eq(businessUnit, other.businessUnit) &&
+                    eq(startTime, other.startTime) &&
+                    eq(endTime, other.endTime);
+        }
+
+        private static boolean eq(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /**
+     * Search criteria. Empty strings / -1 mean no filter on that attribute. Text filters are case insensitive
+     * contains match, same as earlier file system based search.
+     */
+    public static class JobSearchQuery {
+        private String jobId = "";
+        private String runName = "";
+        private List<String> jobStatuses = Arrays.asList("ALL");
+        private String businessUnit = "";
+        private long startedAfter = -1;
+        private long startedBefore = -1;
+        private long endedAfter = -1;
+        private long endedBefore = -1;
+        private int offset = 0;
+        private int limit = -1;
+
+        public JobSearchQuery setJobId(String jobId) {
+            this.jobId = jobId;
+            return this;
+        }
+
+        public JobSearchQuery setRunName(String runName) {
+            this.runName = runName;
+            return this;
+        }
+
+        public JobSearchQuery setJobStatuses(List<String> jobStatuses) {
+            this.jobStatuses = jobStatuses;
+            return this;
+        }
+
+        public JobSearchQuery setBusinessUnit(String businessUnit) {
+            this.businessUnit = businessUnit;
+            return this;
+        }
+
+        public JobSearchQuery setStartedAfter(long startedAfter) {
+            this.startedAfter = startedAfter;
+            return this;
+        }
+
+        public JobSearchQuery setStartedBefore(long startedBefore) {
+            this.startedBefore = startedBefore;
+            return this;
+        }
+
+        public JobSearchQuery setEndedAfter(long endedAfter) {
+            this.endedAfter = endedAfter;
+            return this;
+        }
+
+        public JobSearchQuery setEndedBefore(long endedBefore) {
+            this.endedBefore = endedBefore;
+            return this;
+        }
+
+        public JobSearchQuery setOffset(int offset) {
+            this.offset = offset;
+            return this;
+        }
+
+        public JobSearchQuery setLimit(int limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        private boolean matches(JobIndexEntry entry) {
+            if(!jobId.equals("") && !entry.jobId.toUpperCase().contains(jobId.toUpperCase()))
+                return false;
+            if(startedAfter != -1 && (entry.startTime == null || entry.startTime < startedAfter))
+                return false;
+            if(startedBefore != -1 && (entry.startTime == null || entry.startTime > startedBefore))
+                return false;
+            if(endedAfter != -1 && (entry.endTime == null || entry.endTime < endedAfter))
+                return false;
+            if(endedBefore != -1 && (entry.endTime == null || entry.endTime > endedBefore))
+                return false;
+            return true;
+        }
+    }
+
+    synchronized public static void initialize(JobFSConfig jobFSConfig) throws IOException {
+        JobSearchIndex.jobFSConfig = jobFSConfig;
+        File indexFile = new File(jobFSConfig.getJobSearchIndexFile());
+        if(indexFile.exists())
+            replay(indexFile);
+        else
+            rebuildFromFS();
+        compact();
+    }
+
+    /**
+     * Add or update job in index. Called whenever job state is persisted.
+     */
+    synchronized public static void update(Job job) throws IOException {
+        if(jobFSConfig == null)
+            return;
+
+        JobIndexEntry existing = entries.get(job.getJobId());
+        JobIndexEntry entry = new JobIndexEntry().
+                setJobId(job.getJobId()).
+                setRunName(job.getRunName()).
+                setJobStatus(job.getJobStatus().toString()).
+                setStartTime(job.getStartTime() == null ? null : job.getStartTime().getTime()).
+                setEndTime(job.getEndTime() == null ? null : job.getEndTime().getTime()).
+                setSequence(existing == null ? ++sequence : existing.sequence).
+                setBusinessUnit(existing == null ? businessUnit(job) : existing.businessUnit);
+
+        if(entry.sameAs(existing))
+            return;
+
+        index(entry);
+        log(entry);
+    }
+
+    synchronized public static void remove(String jobId) throws IOException {
+        if(jobFSConfig == null)
+            return;
+        JobIndexEntry entry = entries.get(jobId);
+        if(entry != null) {
+            unIndex(entry);
+            log(new JobIndexEntry().setJobId(jobId).setRemoved(true));
+        }
+    }
+
+    /**
+     * @return Job ids matching the query in the order jobs were created, paginated as per query offset and limit
+     */
+    synchronized public static List<String> search(JobSearchQuery query) {
+        Collection<String> candidates = null;
+        if(!query.jobStatuses.contains("ALL")) {
+            candidates = new HashSet<String>();
+            for(String jobStatus : query.jobStatuses) {
+                Set<String> statusJobs = statusIndex.get(jobStatus.trim());
+                if(statusJobs != null)
+                    candidates.addAll(statusJobs);
+            }
+        }
+        if(!query.runName.equals(""))
+            candidates = intersect(candidates, containsMatch(runNameIndex, query.runName));
+        if(!query.businessUnit.equals(""))
+            candidates = intersect(candidates, containsMatch(businessUnitIndex, query.businessUnit));
+
+        List<JobIndexEntry> matches = new ArrayList<JobIndexEntry>();
+        if(candidates == null) {
+            for(JobIndexEntry entry : entries.values())
+                if(query.matches(entry))
+                    matches.add(entry);
+        }
+        else {
+            for(String jobId : candidates) {
+                JobIndexEntry entry = entries.get(jobId);
+                if(entry != null && query.matches(entry))
+                    matches.add(entry);
+            }
+        }
+
+        // Pages stay stable only if every result set is in creation order, whatever order it was gathered in
+        Collections.sort(matches, new Comparator<JobIndexEntry>() {
+            public int compare(JobIndexEntry e1, JobIndexEntry e2) {
+                return e1.sequence < e2.sequence ? -1 : (e1.sequence == e2.sequence ? 0 : 1);
+            }
+        });
+
+        List<String> jobIds = new ArrayList<String>();
+        int end = query.limit < 0 ? matches.size() : Math.min(matches.size(), query.offset + query.limit);
+        for(int i = Math.max(0, query.offset); i < end; i++)
+            jobIds.add(matches.get(i).jobId);
+        return jobIds;
+    }
+
+    private static Set<String> containsMatch(Map<String, Set<String>> attributeIndex, String searchText) {
+        Set<String> jobIds = new HashSet<String>();
+        for(Map.Entry<String, Set<String>> attributeJobs : attributeIndex.entrySet()) {
+            if(attributeJobs.getKey().toUpperCase().contains(searchText.toUpperCase()))
+                jobIds.addAll(attributeJobs.getValue());
+        }
+        return jobIds;
+    }
+
+    private static Collection<String> intersect(Collection<String> candidates, Set<String> jobIds) {
+        if(candidates == null)
+            return jobIds;
+        candidates.retainAll(jobIds);
+        return candidates;
+    }
+
+    private static void index(JobIndexEntry entry) {
+        JobIndexEntry existing = entries.get(entry.jobId);
+        if(existing != null)
+            removeFromIndexes(existing);
+        // Replacing value of an existing key keeps job where it was in entries
+        entries.put(entry.jobId, entry);
+        addToIndex(statusIndex, entry.jobStatus, entry.jobId);
+        addToIndex(runNameIndex, entry.runName, entry.jobId);
+        addToIndex(businessUnitIndex, entry.businessUnit, entry.jobId);
+        sequence = Math.max(sequence, entry.sequence);
+    }
+
+    private static void unIndex(JobIndexEntry entry) {
+        entries.remove(entry.jobId);
+        removeFromIndexes(entry);
+    }
+
+    private static void removeFromIndexes(JobIndexEntry entry) {
+        removeFromIndex(statusIndex, entry.jobStatus, entry.jobId);
+        removeFromIndex(runNameIndex, entry.runName, entry.jobId);
+        removeFromIndex(businessUnitIndex, entry.businessUnit, entry.jobId);
+    }
+
+    private static void addToIndex(Map<String, Set<String>> attributeIndex, String attribute, String jobId) {
+        if(attribute == null)
+            return;
+        Set<String> jobIds = attributeIndex.get(attribute);
+        if(jobIds == null) {
+            jobIds = new HashSet<String>();
+            attributeIndex.put(attribute, jobIds);
+        }
+        jobIds.add(jobId);
+    }
+
+    private static void removeFromIndex(Map<String, Set<String>> attributeIndex, String attribute, String jobId) {
+        if(attribute == null)
+            return;
+        Set<String> jobIds = attributeIndex.get(attribute);
+        if(jobIds != null) {
+            jobIds.remove(jobId);
+            if(jobIds.size() == 0)
+                attributeIndex.remove(attribute);
+        }
+    }
+
+    private static void log(JobIndexEntry entry) throws IOException {
+        indexLogWriter.write(objectMapper.writeValueAsString(entry) + "\n");
+        indexLogWriter.flush();
+        loggedUpdates++;
+        if(loggedUpdates > 2 * entries.size() + 1000)
+            compact();
+    }
+
+    private static void replay(File indexFile) throws IOException {
+        BufferedReader br = FileHelper.bufferedReader(indexFile.getAbsolutePath());
+        try {
+            String line;
+            while((line = br.readLine()) != null) {
+                if(line.trim().equals(""))
+                    continue;
+                JobIndexEntry entry;
+                try {
+                    entry = objectMapper.readValue(line, JobIndexEntry.class);
+                }
+                catch (IOException e) {
+                    logger.warn("Skipping corrupt job index line '"+line+"'");
+                    continue;
+                }
+                if(entry.removed) {
+                    JobIndexEntry existing = entries.get(entry.jobId);
+                    if(existing != null)
+                        unIndex(existing);
+                }
+                else
+                    index(entry);
+            }
+        }
+        finally {
+            FileHelper.close(br);
+        }
+        logger.info("Loaded "+entries.size()+" jobs in job search index");
+    }
+
+    /**
+     * One time walk of jobs folder for servers which don't have the index yet
+     */
+    private static void rebuildFromFS() {
+        logger.info("Job search index not found. Building it from jobs folder");
+        List<JobIndexEntry> jobEntries = new ArrayList<JobIndexEntry>();
+        File[] jobPaths = new File(jobFSConfig.getJobsPath()).listFiles();
+        if(jobPaths != null) {
+            for(File jobPath : jobPaths) {
+                if(!new File(jobFSConfig.getJobStatusFile(jobPath.getName())).exists())
+                    continue;
+                try {
+                    Job job = JobsCache.peekJob(jobPath.getName());
+                    if(job == null)
+                        continue;
+                    jobEntries.add(new JobIndexEntry().
+                            setJobId(job.getJobId()).
+                            setRunName(job.getRunName()).
+                            setJobStatus(job.getJobStatus().toString()).
+                            setStartTime(job.getStartTime() == null ? null : job.getStartTime().getTime()).
+                            setEndTime(job.getEndTime() == null ? null : job.getEndTime().getTime()).
+                            setBusinessUnit(businessUnit(job)));
+                } catch (IOException e) {
+                    logger.error("Failed to index job "+jobPath.getName(), e);
+                } catch (RuntimeException e) {
+                    // One bad job shouldn't keep the rest out of index (and server from starting)
+                    logger.error("Failed to index job "+jobPath.getName()+". Skipping it", e);
+                }
+            }
+        }
+
+        // Queued jobs haven't started yet, so they go last
+        Collections.sort(jobEntries, new Comparator<JobIndexEntry>() {
+            public int compare(JobIndexEntry e1, JobIndexEntry e2) {
+                long t1 = e1.startTime == null ? Long.MAX_VALUE : e1.startTime;
+                long t2 = e2.startTime == null ? Long.MAX_VALUE : e2.startTime;
+                return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+            }
+        });
+        for(JobIndexEntry entry : jobEntries)
+            index(entry.setSequence(++sequence));
+    }
+
+    /**
+     * Rewrite index log with only latest entry per job
+     */
+    private static void compact() throws IOException {
+        if(indexLogWriter != null)
+            FileHelper.close(indexLogWriter);
+
+        String indexFile = jobFSConfig.getJobSearchIndexFile();
+        String tmpIndexFile = indexFile + ".tmp";
+        FileHelper.createFilePath(indexFile);
+        BufferedWriter bw = FileHelper.bufferedWriter(tmpIndexFile, false);
+        for(JobIndexEntry entry : entries.values())
+            bw.write(objectMapper.writeValueAsString(entry) + "\n");
+        bw.flush();
+        FileHelper.close(bw);
+        new File(indexFile).delete();
+        FileHelper.move(tmpIndexFile, indexFile);
+
+        indexLogWriter = FileHelper.bufferedWriter(indexFile, true);
+        loggedUpdates = 0;
+    }
+
+    /**
+     * @return null if performance run of the job is not around anymore
+     */
+    private static String businessUnit(Job job) {
+        try {
+            PerformanceRun performanceRun = job.performanceRun();
+            return performanceRun == null ? null : performanceRun.getBusinessUnit();
+        } catch (WebApplicationException e) {
+            logger.warn("Performance run "+job.getRunName()+" of job "+job.getJobId()+" not found. Indexing job without business unit");
+            return null;
+        }
+    }
+}
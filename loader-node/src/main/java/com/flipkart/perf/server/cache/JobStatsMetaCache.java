@@ -0,0 +1,225 @@
+package com.flipkart.perf.server.cache;
+
+import com.flipkart.perf.common.util.FileHelper;
+import com.flipkart.perf.server.config.JobFSConfig;
+import com.flipkart.perf.server.util.ObjectMapperUtil;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Keeps index of metrics (group/function/metricType/metric/agent) received for a job, so that stats meta can be
+ * served without walking job stats folder. Index is updated as agents publish stats and persisted in job folder.
+ */
+public class JobStatsMetaCache {
+    private static ObjectMapper objectMapper = ObjectMapperUtil.instance();
+    private static LoadingCache<String, JobStatsMetaIndex> indexes;
+    private static JobFSConfig jobFSConfig;
+    private static Logger logger = LoggerFactory.getLogger(JobStatsMetaCache.class);
+
+    /**
+     * Agents for which stats of a metric have been received. Agents move from pending to computed once crunched
+     * stats file shows up for them.
+     */
+    public static class MetricAgents {
+        private String groupName;
+        private String functionName;
+        private String metricType;
+        private String metricName;
+        private Set<String> agents = new LinkedHashSet<String>();
+        private Set<String> pendingAgents = new LinkedHashSet<String>();
+
+        public String getGroupName() {
+            return groupName;
+        }
+
+        public MetricAgents setGroupName(String groupName) {
+            this.groupName = groupName;
+            return this;
+        }
+
+        public String getFunctionName() {
+            return functionName;
+        }
+
+        public MetricAgents setFunctionName(String functionName) {
+            this.functionName = functionName;
+            return this;
+        }
+
+        public String getMetricType() {
+            return metricType;
+        }
+
+        public MetricAgents setMetricType(String metricType) {
+            this.metricType = metricType;
+            return this;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+
+        public MetricAgents setMetricName(String metricName) {
+            this.metricName = metricName;
+            return this;
+        }
+
+        public Set<String> getAgents() {
+            return agents;
+        }
+
+        public void setAgents(Set<String> agents) {
+            this.agents = agents;
+        }
+
+        public Set<String> getPendingAgents() {
+            return pendingAgents;
+        }
+
+        public void setPendingAgents(Set<String> pendingAgents) {
+            this.pendingAgents = pendingAgents;
+        }
+    }
+
+    public static class JobStatsMetaIndex {
+        private String jobId;
+        private boolean scanned;
+        private Map<String, MetricAgents> metrics = new LinkedHashMap<String, MetricAgents>();
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        public JobStatsMetaIndex setJobId(String jobId) {
+            this.jobId = jobId;
+            return this;
+        }
+
+        /**
+         * True once stats folder has been walked for this job. Needed for jobs which got stats before index existed.
+         */
+        public boolean isScanned() {
+            return scanned;
+        }
+
+        public JobStatsMetaIndex setScanned(boolean scanned) {
+            this.scanned = scanned;
+            return this;
+        }
+
+        public Map<String, MetricAgents> getMetrics() {
+            return metrics;
+        }
+
+        public void setMetrics(Map<String, MetricAgents> metrics) {
+            this.metrics = metrics;
+        }
+
+        /**
+         * @return true if index changed
+         */
+        synchronized public boolean addPendingAgent(String groupName, String functionName, String metricType, String metricName, String agent) {
+            MetricAgents metricAgents = metricAgents(groupName, functionName, metricType, metricName);
+            if(metricAgents.agents.contains(agent))
+                return false;
+            return metricAgents.pendingAgents.add(agent);
+        }
+
+        synchronized public boolean addAgent(String groupName, String functionName, String metricType, String metricName, String agent) {
+            MetricAgents metricAgents = metricAgents(groupName, functionName, metricType, metricName);
+            metricAgents.pendingAgents.remove(agent);
+            return metricAgents.agents.add(agent);
+        }
+
+        private MetricAgents metricAgents(String groupName, String functionName, String metricType, String metricName) {
+            String key = groupName + "/" + functionName + "/" + metricType + "/" + metricName;
+            MetricAgents metricAgents = metrics.get(key);
+            if(metricAgents == null) {
+                metricAgents = new MetricAgents().
+                        setGroupName(groupName).
+                        setFunctionName(functionName).
+                        setMetricType(metricType).
+                        setMetricName(metricName);
+                metrics.put(key, metricAgents);
+            }
+            return metricAgents;
+        }
+
+        /**
+         * Confirm pending agents whose crunched stats file is now present
+         * @return true if index changed
+         */
+        synchronized public boolean confirmComputedAgents() {
+            boolean changed = false;
+            for(MetricAgents metricAgents : metrics.values()) {
+                for(String agent : new LinkedHashSet<String>(metricAgents.pendingAgents)) {
+                    if(new File(jobFSConfig.getJobFunctionStatsFile(jobId,
+                            metricAgents.groupName,
+                            metricAgents.functionName,
+                            metricAgents.metricType,
+                            metricAgents.metricName,
+                            agent)).exists()) {
+                        metricAgents.pendingAgents.remove(agent);
+                        metricAgents.agents.add(agent);
+                        changed = true;
+                    }
+                }
+            }
+            return changed;
+        }
+
+        synchronized public void persist() throws IOException {
+            String indexFile = jobFSConfig.getJobStatsMetaFile(jobId);
+            FileHelper.createFilePath(indexFile);
+            objectMapper.writeValue(new File(indexFile), this);
+        }
+    }
+
+    public static void initiateCache(final JobFSConfig jobFSConfig) {
+        JobStatsMetaCache.jobFSConfig = jobFSConfig;
+        indexes = CacheBuilder.newBuilder()
+                .maximumSize(1000)
+                .build(
+                        new CacheLoader<String, JobStatsMetaIndex>() {
+                            public JobStatsMetaIndex load(String jobId) throws IOException {
+                                File indexFile = new File(jobFSConfig.getJobStatsMetaFile(jobId));
+                                if(indexFile.exists())
+                                    return objectMapper.readValue(indexFile, JobStatsMetaIndex.class);
+                                return new JobStatsMetaIndex().setJobId(jobId);
+                            }
+                        });
+    }
+
+    public static JobStatsMetaIndex getIndex(String jobId) throws ExecutionException {
+        return indexes.get(jobId);
+    }
+
+    /**
+     * Called as stats for a metric are received from an agent. Agent specific and combined stats both get crunched
+     * from these.
+     */
+    public static void metricReceived(String jobId, String groupName, String functionName, String metricType, String metricName, String agentIp) throws ExecutionException, IOException {
+        JobStatsMetaIndex index = getIndex(jobId);
+        boolean changed = index.addPendingAgent(groupName, functionName, metricType, metricName, agentIp);
+        changed = index.addPendingAgent(groupName, functionName, metricType, metricName, "combined") || changed;
+        if(changed)
+            index.persist();
+    }
+
+    public static void removeJob(String jobId) {
+        indexes.invalidate(jobId);
+        logger.info("Stats meta index for job "+jobId+" invalidated");
+    }
+}
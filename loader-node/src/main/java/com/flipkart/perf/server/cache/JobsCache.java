@@ -26,6 +26,7 @@ import java.util.concurrent.ExecutionException;
 public class JobsCache {
     private static ObjectMapper objectMapper;
     private static LoadingCache<String, Job> jobs;
+    private static JobFSConfig jobFSConfig;
     private static Logger logger = LoggerFactory.getLogger(Job.class);
 
     static {
@@ -36,6 +37,7 @@ public class JobsCache {
     }
 
     public static void initiateCache(final JobFSConfig jobFSConfig) {
+        JobsCache.jobFSConfig = jobFSConfig;
         jobs = CacheBuilder.newBuilder()
                 .maximumSize(1000)
                 .build(
@@ -60,6 +62,21 @@ public class JobsCache {
         return null;
     }
 
+    /**
+     * Get job without loading it in cache. Used while going through lots of (mostly historical) jobs so that
+     * active jobs don't get evicted.
+     */
+    public static Job peekJob(String jobId) throws IOException {
+        Job job = jobs.getIfPresent(jobId);
+        if(job != null)
+            return job;
+        File jobStatusFile = new File(jobFSConfig.getJobStatusFile(jobId));
+        if(jobStatusFile.exists())
+            return objectMapper.readValue(jobStatusFile, Job.class);
+        logger.error("Status File Not Found for Job Id '"+jobId+"'");
+        return null;
+    }
+
     public static void removeJob(String jobId) {
         jobs.invalidate(jobId);
     }
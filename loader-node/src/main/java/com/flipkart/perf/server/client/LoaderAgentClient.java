@@ -2,6 +2,7 @@ package com.flipkart.perf.server.client;
 
 import com.flipkart.perf.domain.Load;
 import com.flipkart.perf.server.cache.LibCache;
+import com.flipkart.perf.server.domain.InputFileSwarmRequest;
 import com.flipkart.perf.server.exception.JobException;
 import com.flipkart.perf.server.exception.LibNotDeployedException;
 import com.flipkart.perf.server.util.AsyncHttpClientUtil;
@@ -30,6 +31,12 @@ public class LoaderAgentClient {
     private static final String RESOURCE_PLATFORM_LIB = "/loader-agent/resourceTypes/platformLibs";
     private static final String RESOURCE_UDF_LIB = "/loader-agent/resourceTypes/udfLibs";
     private static final String RESOURCE_INPUT_FILE = "/loader-agent/resourceTypes/inputFiles";
+    private static final String RESOURCE_UPLOAD = "/loader-agent/resourceTypes/uploads/{contentHash}";
+    private static final String RESOURCE_UPLOADED_PLATFORM_LIB = "/loader-agent/resourceTypes/platformLibs/{contentHash}";
+    private static final String RESOURCE_UPLOADED_UDF_LIB = "/loader-agent/resourceTypes/udfLibs/{contentHash}";
+    private static final String RESOURCE_UPLOADED_INPUT_FILE = "/loader-agent/resourceTypes/inputFiles/{resourceName}/{contentHash}";
+    private static final String RESOURCE_SWARMS = "/loader-agent/resourceTypes/swarms";
+    private static final String RESOURCE_SWARM = "/loader-agent/resourceTypes/swarms/{contentHash}";
     private static final String RESOURCE_JOB = "/loader-agent/jobs";
     private static final String RESOURCE_JOB_KILL = "/loader-agent/jobs/{jobId}/kill";
     private static final String RESOURCE_JOB_LOGS = "/loader-agent/jobs/{jobId}/log?lines={lines}&grep={grepExp}";
@@ -116,6 +123,90 @@ public class LoaderAgentClient {
         return successfulDeployment;
     }
 
+    /**
+     * @return upload status map with contentHash, receivedBytes and complete keys
+     */
+    public Map uploadStatus(String contentHash) throws IOException, ExecutionException, InterruptedException {
+        AsyncHttpClient.BoundRequestBuilder b = asyncHttpClient.
+                prepareGet("http://" + this.getHost() + ":" + this.getPort() + RESOURCE_UPLOAD.replace("{contentHash}", contentHash));
+
+        Response response = b.execute().get();
+        if(response.getStatusCode() != 200)
+            throw new IOException("Upload status for "+contentHash+" failed on agent "+this.getHost()+" with status "+response.getStatusCode());
+        return objectMapper.readValue(response.getResponseBodyAsStream(), Map.class);
+    }
+
+    /**
+     * Upload part of an artifact. Offset has to be same as bytes agent has already received
+     * @return upload status after chunk was appended
+     */
+    public Map uploadChunk(String contentHash, byte[] chunk, long offset, long length) throws IOException, ExecutionException, InterruptedException {
+        AsyncHttpClient.BoundRequestBuilder b = asyncHttpClient.
+                preparePut("http://" + this.getHost() + ":" + this.getPort() + RESOURCE_UPLOAD.replace("{contentHash}", contentHash)).
+                addQueryParameter("offset", String.valueOf(offset)).
+                addQueryParameter("length", String.valueOf(length)).
+                setHeader("Content-Type", MediaType.APPLICATION_OCTET_STREAM).
+                setBody(chunk);
+
+        Response response = b.execute().get();
+        if(response.getStatusCode() != 200)
+            throw new IOException("Upload of "+contentHash+" at offset "+offset+" failed on agent "+this.getHost()+" with status "+response.getStatusCode());
+        return objectMapper.readValue(response.getResponseBodyAsStream(), Map.class);
+    }
+
+    public boolean deployUploadedPlatformLibs(String contentHash) throws IOException, ExecutionException, InterruptedException {
+        AsyncHttpClient.BoundRequestBuilder b = asyncHttpClient.
+                preparePost("http://" + this.getHost() + ":" + this.getPort() + RESOURCE_UPLOADED_PLATFORM_LIB.replace("{contentHash}", contentHash));
+        return b.execute().get().getStatusCode() == 200;
+    }
+
+    public boolean deployUploadedUDFLib(String contentHash, String libPath, String classList) throws IOException, ExecutionException, InterruptedException {
+        AsyncHttpClient.BoundRequestBuilder b = asyncHttpClient.
+                preparePost("http://" + this.getHost() + ":" + this.getPort() + RESOURCE_UPLOADED_UDF_LIB.replace("{contentHash}", contentHash)).
+                addParameter("fileName", new File(libPath).getName()).
+                addParameter("classList", classList);
+        return b.execute().get().getStatusCode() == 204;
+    }
+
+    public boolean deployUploadedInputFile(String resourceName, String contentHash) throws IOException, ExecutionException, InterruptedException {
+        AsyncHttpClient.BoundRequestBuilder b = asyncHttpClient.
+                preparePost("http://" + this.getHost() + ":" + this.getPort() + RESOURCE_UPLOADED_INPUT_FILE.
+                        replace("{resourceName}", URLEncoder.encode(resourceName, "UTF-8")).
+                        replace("{contentHash}", contentHash));
+        return b.execute().get().getStatusCode() == 204;
+    }
+
+    /**
+     * Ask agent to fetch input file from peers/server
+     * @return swarm status
+     */
+    public Map startInputFileSwarm(InputFileSwarmRequest swarmRequest) throws IOException, ExecutionException, InterruptedException {
+        AsyncHttpClient.BoundRequestBuilder b = asyncHttpClient.
+                preparePost("http://" + this.getHost() + ":" + this.getPort() + RESOURCE_SWARMS).
+                setHeader("Content-Type", MediaType.APPLICATION_JSON).
+                setBody(objectMapper.writeValueAsBytes(swarmRequest));
+
+        Response response = b.execute().get();
+        if(response.getStatusCode() != 200)
+            throw new IOException("Input file swarm couldn't be started on agent "+this.getHost()+". Status "+response.getStatusCode());
+        return objectMapper.readValue(response.getResponseBodyAsStream(), Map.class);
+    }
+
+    public Map inputFileSwarmStatus(String contentHash) throws IOException, ExecutionException, InterruptedException {
+        Response response = asyncHttpClient.
+                prepareGet("http://" + this.getHost() + ":" + this.getPort() + RESOURCE_SWARM.replace("{contentHash}", contentHash)).
+                execute().get();
+        if(response.getStatusCode() != 200)
+            throw new IOException("Input file swarm status failed on agent "+this.getHost()+". Status "+response.getStatusCode());
+        return objectMapper.readValue(response.getResponseBodyAsStream(), Map.class);
+    }
+
+    public void endInputFileSwarm(String contentHash) throws IOException, ExecutionException, InterruptedException {
+        asyncHttpClient.
+                prepareDelete("http://" + this.getHost() + ":" + this.getPort() + RESOURCE_SWARM.replace("{contentHash}", contentHash)).
+                execute().get();
+    }
+
     public void submitJob(String jobId, Load load, String classListStr)
             throws ExecutionException, InterruptedException, JobException, IOException {
         AsyncHttpClient.BoundRequestBuilder b = asyncHttpClient.
@@ -37,6 +37,7 @@ public class MonitoringClient {
     private static final String RESOURCE_ON_DEMAND_RESOURCE = "/monitoring-service/onDemandResources/{resource}";
     private static final String RESOURCE_ON_DEMAND_RESOURCES_REQUESTS = "/monitoring-service/onDemandResources/requests";
     private static final String RESOURCE_ON_DEMAND_RESOURCES_REQUEST = "/monitoring-service/onDemandResources/requests/{requestId}";
+    private static final String RESOURCE_ON_DEMAND_RESOURCES_REQUEST_BURST = "/monitoring-service/onDemandResources/requests/{requestId}/burst";
     private static final String RESOURCE_PUBLISH_RESOURCE_REQUESTS = "/monitoring-service/publishResourcesRequests";
     private static final String RESOURCE_PUBLISH_RESOURCE_REQUEST = "/monitoring-service/publishResourcesRequests/{requestId}";
     private static ObjectMapper objectMapper = ObjectMapperUtil.instance();
@@ -223,6 +224,33 @@ public class MonitoringClient {
 		});
     }
 
+    /**
+     * Make on demand collectors of the request sample every intervalMS for durationMS
+     */
+    public void raiseOnDemandResourceBurstRequest(final String requestId, int intervalMS, int durationMS) throws IOException {
+        final AsyncHttpClient asyncHttpClient = new AsyncHttpClient();
+        AsyncHttpClient.BoundRequestBuilder b = asyncHttpClient.
+                preparePost("http://" + this.getHost() + ":" +
+                        this.getPort() +
+                        RESOURCE_ON_DEMAND_RESOURCES_REQUEST_BURST.
+                                replace("{requestId}", requestId)).
+                addQueryParameter("intervalMS", String.valueOf(intervalMS)).
+                addQueryParameter("durationMS", String.valueOf(durationMS));
+
+        b.execute(new AsyncCompletionHandler<Response>() {
+
+			@Override
+			public Response onCompleted(Response r) throws Exception {
+				if(r.getStatusCode() != 204) {
+		            log.error("Post on "+RESOURCE_ON_DEMAND_RESOURCES_REQUEST_BURST.
+		                    replace("{requestId}", requestId));
+		        }
+				asyncHttpClient.close();
+				return r;
+			}
+		});
+    }
+
     public void raiseMetricPublishRequest(MetricPublisherRequest request) throws IOException, ExecutionException, InterruptedException {
         final AsyncHttpClient asyncHttpClient = new AsyncHttpClient();
         AsyncHttpClient.BoundRequestBuilder b = asyncHttpClient.
@@ -3,6 +3,10 @@ package com.flipkart.perf.server.config;
 public class AgentConfig {
     private int agentPort;
     private String agentsPath, agentInfoFile, agentPlatformLibInfoFile, agentClassLibInfoFile, jobLogUrl;
+    private int deploymentParallelism = 8;
+    private long inputFileSwarmThreshold = 256 * 1024 * 1024;
+    private int inputFileChunkSize = 16 * 1024 * 1024;
+    private long inputFileSwarmTimeoutMS = 30 * 60 * 1000;
 
     public int getAgentPort() {
         return agentPort;
@@ -59,4 +63,50 @@ public class AgentConfig {
     public void setJobLogUrl(String jobLogUrl) {
         this.jobLogUrl = jobLogUrl;
     }
+
+    /**
+     * Number of agents libraries and input files are deployed on at a time
+     */
+    public int getDeploymentParallelism() {
+        return deploymentParallelism;
+    }
+
+    public AgentConfig setDeploymentParallelism(int deploymentParallelism) {
+        this.deploymentParallelism = deploymentParallelism;
+        return this;
+    }
+
+    /**
+     * Input files bigger than this (in bytes) are fetched by agents from each other in chunks, instead of server
+     * uploading whole file to every agent
+     */
+    public long getInputFileSwarmThreshold() {
+        return inputFileSwarmThreshold;
+    }
+
+    public AgentConfig setInputFileSwarmThreshold(long inputFileSwarmThreshold) {
+        this.inputFileSwarmThreshold = inputFileSwarmThreshold;
+        return this;
+    }
+
+    public int getInputFileChunkSize() {
+        return inputFileChunkSize;
+    }
+
+    public AgentConfig setInputFileChunkSize(int inputFileChunkSize) {
+        this.inputFileChunkSize = inputFileChunkSize;
+        return this;
+    }
+
+    /**
+     * How long server waits for agents to swarm an input file. Agents not done by then get the file uploaded directly
+     */
+    public long getInputFileSwarmTimeoutMS() {
+        return inputFileSwarmTimeoutMS;
+    }
+
+    public AgentConfig setInputFileSwarmTimeoutMS(long inputFileSwarmTimeoutMS) {
+        this.inputFileSwarmTimeoutMS = inputFileSwarmTimeoutMS;
+        return this;
+    }
 }
@@ -35,6 +35,8 @@ public class JobFSConfig {
     private String runningJobsFile;
     private String queuedJobsFile;
     private String jobGroupConfFile;
+    private String jobStatsMetaFile;
+    private String jobSearchIndexFile;
 
     private String workflowJobsPath;
     private String workflowJobPath;
@@ -220,6 +222,26 @@ public class JobFSConfig {
                 replace("{groupName}", groupName);
     }
 
+    public String getJobStatsMetaFile(String jobId) {
+        if(jobStatsMetaFile == null)
+            return getJobPath(jobId) + "/statsMeta.json";
+        return jobStatsMetaFile.replace("{jobId}", jobId);
+    }
+
+    public void setJobStatsMetaFile(String jobStatsMetaFile) {
+        this.jobStatsMetaFile = jobStatsMetaFile;
+    }
+
+    public String getJobSearchIndexFile() {
+        if(jobSearchIndexFile == null)
+            return jobsPath + "/jobSearchIndex";
+        return jobSearchIndexFile;
+    }
+
+    public void setJobSearchIndexFile(String jobSearchIndexFile) {
+        this.jobSearchIndexFile = jobSearchIndexFile;
+    }
+
     public String getJobFunctionStatsPath(String jobId, String groupName, String functionName) {
         return jobFunctionStatsPath.
                 replace("{jobId}", jobId).
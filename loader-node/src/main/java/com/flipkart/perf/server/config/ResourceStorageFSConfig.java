@@ -87,6 +87,17 @@ public class ResourceStorageFSConfig {
         this.inputFileFolderPath = inputFileFolderPath;
     }
 
+    /**
+     * Folder keeping line aligned shards of an input file, one set per content and shard count
+     */
+    public String getInputFileShardsPath(String resourceName) {
+        return getInputFileFolderPath(resourceName) + File.separator + "shards";
+    }
+
+    public String getInputFileShardPath(String resourceName, String contentHash, int shards, int shard) {
+        return getInputFileShardsPath(resourceName) + File.separator + contentHash + "-" + shards + File.separator + shard;
+    }
+
     public String getUdfUnDeployedLibsPath() {
         return udfUnDeployedLibsPath;
     }
@@ -14,6 +14,9 @@ public class ScheduledExecutorConfig {
     private int groupConfConsolidationThreadInterval;
     private int jobDispatcherThreadInterval;
     private int timerComputationThreadInterval;
+    private int crunchThreads;                  // Threads crunching job stats files, <= 0 for as many as cores
+    private int fileWatchInterval = 1000;       // How often job stats folders are checked for changed files
+    private int fileReconcileInterval = 60000;  // How often all job stats files are listed again
 
     public int getThreadPoolSize() {
         return threadPoolSize;
@@ -62,4 +65,28 @@ public class ScheduledExecutorConfig {
     public void setTimerComputationThreadInterval(int timerComputationThreadInterval) {
         this.timerComputationThreadInterval = timerComputationThreadInterval;
     }
+
+    public int getCrunchThreads() {
+        return crunchThreads;
+    }
+
+    public void setCrunchThreads(int crunchThreads) {
+        this.crunchThreads = crunchThreads;
+    }
+
+    public int getFileWatchInterval() {
+        return fileWatchInterval;
+    }
+
+    public void setFileWatchInterval(int fileWatchInterval) {
+        this.fileWatchInterval = fileWatchInterval;
+    }
+
+    public int getFileReconcileInterval() {
+        return fileReconcileInterval;
+    }
+
+    public void setFileReconcileInterval(int fileReconcileInterval) {
+        this.fileReconcileInterval = fileReconcileInterval;
+    }
 }
@@ -2,6 +2,7 @@ package com.flipkart.perf.server.daemon;
 
 import com.flipkart.perf.common.constant.MathConstant;
 import com.flipkart.perf.common.util.FileHelper;
+import com.flipkart.perf.common.util.FileWatcher;
 import com.flipkart.perf.server.config.JobFSConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,16 +10,19 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Just sum up the counters and write to counter.cumulative
+ * Just sum up the counters and write to counter.cumulative. Files are crunched in parallel on CrunchExecutor
  */
 public class CounterCompoundThread extends Thread {
 
     private final JobFSConfig jobFSConfig;
     private List<String> aliveJobs;
+    private final CrunchFiles crunchFiles;
 
     private Map<String,List<String>> fileCachedContentMap; // Cached Content per counter throughput file
     private Map<String,FileTouchPoint> fileTouchPointMap;
@@ -29,6 +33,7 @@ public class CounterCompoundThread extends Thread {
     private static final long CRUNCH_DATA_OLDER_THAN_MS; // As long as job is alive crunch data which is older than 30 secs
     private static Logger logger;
     private static final String FILE_EXTENSION;
+    private static final String CRUNCH_NAME = "counters";
 
     static {
         CLUB_CRUNCH_DURATION_MS = 10 * MathConstant.THOUSAND;
@@ -83,18 +88,19 @@ public class CounterCompoundThread extends Thread {
         }
     }
 
-    private CounterCompoundThread(JobFSConfig jobFSConfig) {
+    private CounterCompoundThread(JobFSConfig jobFSConfig, FileWatcher watcher) {
         this.jobFSConfig = jobFSConfig;
-        this.aliveJobs = new ArrayList<String>();
+        this.aliveJobs = new CopyOnWriteArrayList<String>();
         this.fileCachedContentMap = new ConcurrentHashMap<String, List<String>>();
         this.fileTouchPointMap = new ConcurrentHashMap<String, FileTouchPoint>();
         this.fileLastCrunchPointMap = new ConcurrentHashMap<String, LastCrunchPoint>();
+        this.crunchFiles = new CrunchFiles(watcher, jobFSConfig, false, "counter", FILE_EXTENSION);
     }
 
-    public static CounterCompoundThread initialize(ScheduledExecutorService scheduledExecutorService, JobFSConfig jobFSConfig, int interval) {
+    public static CounterCompoundThread initialize(ScheduledExecutorService scheduledExecutorService, JobFSConfig jobFSConfig, int interval, FileWatcher watcher) {
         if(thread == null) {
         	synchronized(CounterCompoundThread.class) {
-        		thread = new CounterCompoundThread(jobFSConfig);
+        		thread = new CounterCompoundThread(jobFSConfig, watcher);
         	}
             scheduledExecutorService.scheduleWithFixedDelay(thread,
                     1000,
@@ -110,27 +116,34 @@ public class CounterCompoundThread extends Thread {
 
     public void run() {
         try {
-            synchronized (this.aliveJobs) {
-                for(String jobId : this.aliveJobs) {
-                    crunchJobCounters(jobId);
-                }
+            for(String jobId : this.aliveJobs) {
+                crunchJobCounters(jobId, crunchFiles.changedFiles(jobId, fileCachedContentMap));
             }
         } catch (Exception e) {
             logger.error("Error while crunching counters", e);
         }
     }
 
-    private void crunchJobCounters(String jobId) {
-        List<File> jobFiles = FileHelper.pathFiles(this.jobFSConfig.getJobPath(jobId), true);
-        for(File jobFile : jobFiles) {
-            if(jobFile.getAbsolutePath().contains("counter")
-                    && !jobFile.getAbsolutePath().contains(FILE_EXTENSION)) {
-                crunchJobFileCounter(jobId, jobFile);
-            }
+    private List<Future<?>> crunchJobCounters(final String jobId, List<File> jobFiles) {
+        List<Future<?>> crunches = new ArrayList<Future<?>>();
+        for(final File jobFile : jobFiles) {
+            crunches.add(CrunchExecutor.instance().crunch(jobId, jobFile, new Runnable() {
+                public void run() {
+                    try {
+                        crunchJobFileCounter(jobId, jobFile);
+                    } catch (Exception e) {
+                        logger.error("Error while crunching counter file " + jobFile.getAbsolutePath(), e);
+                    }
+                }
+            }));
         }
+        return crunches;
     }
 
-    synchronized public void crunchJobFileCounter(String jobId, File jobFile) {
+    /**
+     * Called for a file from one crunch thread at a time
+     */
+    public void crunchJobFileCounter(String jobId, File jobFile) {
         List<String> fileContentLines = readFileContentAsList(jobFile);
 
         List<String> cachedContent = this.fileCachedContentMap.get(jobFile.getAbsolutePath());
@@ -205,6 +218,7 @@ public class CounterCompoundThread extends Thread {
                             opsDone = 0;
                         }
                     }
+                    CrunchExecutor.instance().crunched(jobId, CRUNCH_NAME, jobFile, lastCrunchPoint.time);
                 }
             }
             catch (FileNotFoundException e) {
@@ -277,12 +291,20 @@ public class CounterCompoundThread extends Thread {
         return lines;
     }
 
-    synchronized public void addJob(String jobId) {
+    public void addJob(String jobId) {
+        CrunchExecutor.instance().jobStarted(jobId, CRUNCH_NAME);
         this.aliveJobs.add(jobId);
+        this.crunchFiles.jobStarted(jobId);
     }
 
-    synchronized public void removeJob(String jobId) {
+    /**
+     * Crunches whatever is left of the job
+     */
+    public void removeJob(String jobId) throws InterruptedException {
         this.aliveJobs.remove(jobId);
-        crunchJobCounters(jobId);
+        this.crunchFiles.reconcile(jobId);
+        CrunchExecutor.instance().await(crunchJobCounters(jobId, this.crunchFiles.allFiles(jobId)));
+        this.crunchFiles.jobOver(jobId);
+        CrunchExecutor.instance().jobOver(jobId, CRUNCH_NAME);
     }
 }
\ No newline at end of file
@@ -0,0 +1,220 @@
+package com.flipkart.perf.server.daemon;
+
+import com.flipkart.perf.common.util.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Shared pool on which crunch daemons (timer, counter, histogram, group conf) crunch job stats, a task per stats
+ * file. Any idle worker takes up the next file of any job. Files are taken up in rounds across jobs (1st file of every
+ * job, then 2nd file of every job and so on), so a job with lots of files doesn't hold up stats of other jobs.
+ *
+ * Tasks of a file run one after the other, in the order they were submitted. A crunch of a file submitted while
+ * another crunch of it is still waiting to start is folded in the waiting one, as a crunch picks up everything new in
+ * the file anyway.
+ *
+ * Daemons also report the newest stats time they have crunched per file of a job, which gives crunch lag of the job :
+ * the file that is furthest behind decides it. Reports are taken only between jobStarted and jobOver of the daemon.
+ */
+public class CrunchExecutor {
+    private static Logger logger = LoggerFactory.getLogger(CrunchExecutor.class);
+    private static volatile CrunchExecutor executor;
+
+    private final ExecutorService workers;
+    private final ConcurrentHashMap<String, FileTasks> fileTasksMap;
+    private final Map<String, Long> jobNextRoundMap;   // Round in which next file of the job would be taken up
+    private long currentRound, sequence;
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Map<String, Long>>> jobCrunchedTimeMap; // newest crunched stats time, per file per daemon per job
+
+    /**
+     * Crunch tasks of one file
+     */
+    private class FileTasks implements Runnable, Comparable<FileTasks> {
+        private final String jobId, filePath;
+        private final LinkedList<FutureTask<Object>> tasks = new LinkedList<FutureTask<Object>>();
+        private boolean running, retired;
+        private long round, sequence;
+
+        private FileTasks(String jobId, String filePath) {
+            this.jobId = jobId;
+            this.filePath = filePath;
+        }
+
+        public int compareTo(FileTasks other) {
+            if(round != other.round)
+                return round < other.round ? -1 : 1;
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+
+        public void run() {
+            started(this);
+            while(true) {
+                FutureTask<Object> task;
+                synchronized (this) {
+                    task = tasks.poll();
+                    if(task == null) {
+                        running = false;
+                        retired = true;
+                        fileTasksMap.remove(filePath, this);
+                        return;
+                    }
+                }
+                task.run();
+            }
+        }
+    }
+
+    private CrunchExecutor(int threads) {
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private int threadNo = 0;
+                    synchronized public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "Thread-Crunch-" + threadNo++);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        this.fileTasksMap = new ConcurrentHashMap<String, FileTasks>();
+        this.jobNextRoundMap = new HashMap<String, Long>();
+        this.jobCrunchedTimeMap = new ConcurrentHashMap<String, ConcurrentHashMap<String, Map<String, Long>>>();
+        logger.info("Crunching stats with " + threads + " threads");
+    }
+
+    /**
+     * @param threads <= 0 to have as many threads as cores
+     */
+    public static CrunchExecutor initialize(int threads) {
+        if(executor == null) {
+            synchronized (CrunchExecutor.class) {
+                if(executor == null)
+                    executor = new CrunchExecutor(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+            }
+        }
+        return executor;
+    }
+
+    public static CrunchExecutor instance() {
+        return executor;
+    }
+
+    /**
+     * Queue up crunch of a stats file
+     * @return future which is done once this (or the crunch it was folded in) is over
+     */
+    public Future<?> crunch(String jobId, File jobFile, Runnable crunch) {
+        String filePath = jobFile.getAbsolutePath();
+        while(true) {
+            FileTasks fileTasks = fileTasksMap.get(filePath);
+            if(fileTasks == null) {
+                fileTasks = new FileTasks(jobId, filePath);
+                FileTasks existing = fileTasksMap.putIfAbsent(filePath, fileTasks);
+                if(existing != null)
+                    fileTasks = existing;
+            }
+
+            synchronized (fileTasks) {
+                if(fileTasks.retired)
+                    continue;
+
+                if(fileTasks.tasks.size() > 0)
+                    return fileTasks.tasks.getLast();
+
+                FutureTask<Object> task = new FutureTask<Object>(crunch, null);
+                fileTasks.tasks.add(task);
+                if(!fileTasks.running) {
+                    fileTasks.running = true;
+                    schedule(fileTasks);
+                    workers.execute(fileTasks);
+                }
+                return task;
+            }
+        }
+    }
+
+    /**
+     * Next file of a job is taken up a round after its previous file, but never in a round already over, else a job
+     * that was idle for a while would jump ahead of everyone
+     */
+    synchronized private void schedule(FileTasks fileTasks) {
+        Long jobNextRound = jobNextRoundMap.get(fileTasks.jobId);
+        fileTasks.round = Math.max(currentRound, jobNextRound == null ? 0 : jobNextRound);
+        fileTasks.sequence = sequence++;
+        jobNextRoundMap.put(fileTasks.jobId, fileTasks.round + 1);
+    }
+
+    synchronized private void started(FileTasks fileTasks) {
+        currentRound = Math.max(currentRound, fileTasks.round);
+    }
+
+    /**
+     * Wait for crunches to get over. Failure of a crunch is logged, not thrown
+     */
+    public void await(List<Future<?>> crunches) throws InterruptedException {
+        for(Future<?> crunch : crunches) {
+            try {
+                crunch.get();
+            } catch (ExecutionException e) {
+                logger.error("Crunch failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Daemon would crunch stats of the job, till jobOver
+     */
+    synchronized public void jobStarted(String jobId, String daemon) {
+        ConcurrentHashMap<String, Map<String, Long>> daemonCrunchedTime = jobCrunchedTimeMap.get(jobId);
+        if(daemonCrunchedTime == null) {
+            daemonCrunchedTime = new ConcurrentHashMap<String, Map<String, Long>>();
+            jobCrunchedTimeMap.put(jobId, daemonCrunchedTime);
+        }
+        daemonCrunchedTime.putIfAbsent(daemon, new ConcurrentHashMap<String, Long>());
+    }
+
+    /**
+     * Daemon has crunched stats file of the job till timeMS. Ignored if daemon isn't on the job (anymore), as a run of
+     * the daemon can still be on its way when job gets over
+     */
+    public void crunched(String jobId, String daemon, File jobFile, long timeMS) {
+        Map<String, Map<String, Long>> daemonCrunchedTime = jobCrunchedTimeMap.get(jobId);
+        Map<String, Long> fileCrunchedTime = daemonCrunchedTime == null ? null : daemonCrunchedTime.get(daemon);
+        if(fileCrunchedTime != null)
+            fileCrunchedTime.put(jobFile.getAbsolutePath(), timeMS);
+    }
+
+    /**
+     * @return how far behind (ms) each daemon is in crunching stats of the job, now minus crunched stats time of the
+     * file furthest behind. Daemons which haven't crunched anything yet are left out
+     */
+    public Map<String, Long> crunchLag(String jobId) {
+        Map<String, Long> crunchLag = new TreeMap<String, Long>();
+        Map<String, Map<String, Long>> daemonCrunchedTime = jobCrunchedTimeMap.get(jobId);
+        if(daemonCrunchedTime != null) {
+            long now = Clock.milliTick();
+            for(Map.Entry<String, Map<String, Long>> entry : daemonCrunchedTime.entrySet()) {
+                Collection<Long> fileTimes = entry.getValue().values();
+                if(!fileTimes.isEmpty())
+                    crunchLag.put(entry.getKey(), Math.max(0, now - Collections.min(fileTimes)));
+            }
+        }
+        return crunchLag;
+    }
+
+    /**
+     * Daemon is done with the job, it won't crunch anything more of it
+     */
+    synchronized public void jobOver(String jobId, String daemon) {
+        jobNextRoundMap.remove(jobId);
+        Map<String, Map<String, Long>> daemonCrunchedTime = jobCrunchedTimeMap.get(jobId);
+        if(daemonCrunchedTime != null) {
+            daemonCrunchedTime.remove(daemon);
+            if(daemonCrunchedTime.isEmpty())
+                jobCrunchedTimeMap.remove(jobId);
+        }
+    }
+}
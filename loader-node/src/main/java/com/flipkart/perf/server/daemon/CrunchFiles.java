@@ -0,0 +1,120 @@
+package com.flipkart.perf.server.daemon;
+
+import com.flipkart.perf.common.util.FileWatcher;
+import com.flipkart.perf.server.config.JobFSConfig;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stats files of alive jobs that a crunch daemon crunches, as told by FileWatcher. Jobs are watched by job id.
+ * Daemon takes up files which changed since its last run, plus files which still have cached content waiting to be
+ * crunched (content is crunched only once its old enough).
+ */
+class CrunchFiles extends FileWatcher.Route {
+    private final FileWatcher watcher;
+    private final JobFSConfig jobFSConfig;
+    private final boolean jobStatsOnly;
+    private final String fileToken, skipToken;
+    private final ConcurrentHashMap<String, Set<File>> jobFilesMap;        // All known files per job
+    private final ConcurrentHashMap<String, Set<File>> jobChangedFilesMap; // Files changed since last taken up, per job
+
+    /**
+     * @param jobStatsOnly files are under job stats path of the job, else anywhere under job path
+     * @param fileToken file path has to contain it
+     * @param skipToken file path must not contain it (crunched output files)
+     */
+    CrunchFiles(FileWatcher watcher, JobFSConfig jobFSConfig, boolean jobStatsOnly, String fileToken, String skipToken) {
+        this.watcher = watcher;
+        this.jobFSConfig = jobFSConfig;
+        this.jobStatsOnly = jobStatsOnly;
+        this.fileToken = fileToken;
+        this.skipToken = skipToken;
+        this.jobFilesMap = new ConcurrentHashMap<String, Set<File>>();
+        this.jobChangedFilesMap = new ConcurrentHashMap<String, Set<File>>();
+        watcher.route(this);
+    }
+
+    public boolean accept(String jobId, File file) {
+        String filePath = file.getAbsolutePath();
+        return jobFilesMap.containsKey(jobId)
+                && filePath.startsWith(new File(jobPath(jobId)).getAbsolutePath())
+                && filePath.contains(fileToken)
+                && !filePath.contains(skipToken);
+    }
+
+    public void changed(String jobId, File file) {
+        Set<File> files = jobFilesMap.get(jobId);
+        Set<File> changedFiles = jobChangedFilesMap.get(jobId);
+        if(files != null && changedFiles != null) {
+            files.add(file);
+            changedFiles.add(file);
+        }
+    }
+
+    /**
+     * Start watching files of the job. Files already there are taken as changed
+     */
+    void jobStarted(String jobId) {
+        jobFilesMap.putIfAbsent(jobId, newFileSet());
+        jobChangedFilesMap.putIfAbsent(jobId, newFileSet());
+        watcher.watch(jobId, jobFSConfig.getJobPath(jobId));
+        for(File file : watcher.files(jobId, this))
+            changed(jobId, file);
+    }
+
+    /**
+     * Files changed since last call and files that still have cached content
+     * @param fileCachedContentMap cached content of files not yet crunched, by file path
+     */
+    List<File> changedFiles(String jobId, Map<String, ? extends List> fileCachedContentMap) {
+        Set<File> files = new TreeSet<File>();
+        Set<File> changedFiles = jobChangedFilesMap.get(jobId);
+        if(changedFiles != null) {
+            Iterator<File> changedFilesIterator = changedFiles.iterator();
+            while(changedFilesIterator.hasNext()) {
+                files.add(changedFilesIterator.next());
+                changedFilesIterator.remove();
+            }
+        }
+
+        for(File file : allFiles(jobId)) {
+            List cachedContent = fileCachedContentMap.get(file.getAbsolutePath());
+            if(cachedContent != null && cachedContent.size() > 0)
+                files.add(file);
+        }
+        return new ArrayList<File>(files);
+    }
+
+    /**
+     * Every known file of the job
+     */
+    List<File> allFiles(String jobId) {
+        Set<File> files = jobFilesMap.get(jobId);
+        if(files == null)
+            return new ArrayList<File>();
+        return new ArrayList<File>(new TreeSet<File>(files));
+    }
+
+    /**
+     * Lists files of the job once more, so that nothing written lately is missed while crunching job one last time
+     */
+    void reconcile(String jobId) {
+        watcher.reconcile(jobId);
+    }
+
+    void jobOver(String jobId) {
+        watcher.unwatch(jobId);
+        jobFilesMap.remove(jobId);
+        jobChangedFilesMap.remove(jobId);
+    }
+
+    private String jobPath(String jobId) {
+        return jobStatsOnly ? jobFSConfig.getJobStatsPath(jobId) : jobFSConfig.getJobPath(jobId);
+    }
+
+    private static Set<File> newFileSet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+    }
+}
@@ -3,6 +3,7 @@ package com.flipkart.perf.server.daemon;
 import com.flipkart.perf.common.constant.MathConstant;
 import com.flipkart.perf.common.util.Clock;
 import com.flipkart.perf.common.util.FileHelper;
+import com.flipkart.perf.common.util.FileWatcher;
 import com.flipkart.perf.server.cache.JobsCache;
 import com.flipkart.perf.server.config.JobFSConfig;
 import com.flipkart.perf.server.util.ObjectMapperUtil;
@@ -13,12 +14,14 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Compute both agent and overall timer files.
+ * Consolidate both agent and overall real time group conf files. Files are crunched in parallel on CrunchExecutor
  */
 public class GroupConfConsolidationThread extends Thread {
 
@@ -26,6 +29,7 @@ public class GroupConfConsolidationThread extends Thread {
     private final JobFSConfig jobFSConfig;
     private boolean stop = false;
     private List<String> aliveJobs;
+    private final CrunchFiles crunchFiles;
 
     private Map<String,Long> fileAlreadyReadLinesMap;       // This would be further improved once i implement small file approach for big timer files
     private Map<String,List> fileCachedContentMap;
@@ -33,11 +37,13 @@ public class GroupConfConsolidationThread extends Thread {
     private static GroupConfConsolidationThread thread;
     private static Logger logger;
     private static final String FILE_EXTENSION;
+    private static final String CRUNCH_NAME = "groupConf";
 
     static class RealTimeGroupConf {
         private long time;
         private float threads;
         private float throughput;
+        private float generatorSaturated;
 
         public long getTime() {
             return time;
@@ -62,6 +68,18 @@ public class GroupConfConsolidationThread extends Thread {
         public void setThroughput(float throughput) {
             this.throughput = throughput;
         }
+
+        /**
+         * Fraction of agent intervals in which load generator was found saturated. Numbers of such intervals carry
+         * generator side queuing
+         */
+        public float getGeneratorSaturated() {
+            return generatorSaturated;
+        }
+
+        public void setGeneratorSaturated(float generatorSaturated) {
+            this.generatorSaturated = generatorSaturated;
+        }
     }
 
     static {
@@ -70,17 +88,18 @@ public class GroupConfConsolidationThread extends Thread {
         FILE_EXTENSION = "stats";
     }
 
-    private GroupConfConsolidationThread(JobFSConfig jobFSConfig) {
+    private GroupConfConsolidationThread(JobFSConfig jobFSConfig, FileWatcher watcher) {
         this.jobFSConfig = jobFSConfig;
-        this.aliveJobs = new ArrayList<String>();
+        this.aliveJobs = new CopyOnWriteArrayList<String>();
         this.fileAlreadyReadLinesMap = new ConcurrentHashMap<String, Long>();
         this.fileCachedContentMap = new ConcurrentHashMap<String, List>();
+        this.crunchFiles = new CrunchFiles(watcher, jobFSConfig, true, "realTimeConf", "stats");
     }
 
-    public static GroupConfConsolidationThread initialize(ScheduledExecutorService scheduledExecutorService, JobFSConfig jobFSConfig, int interval) {
+    public static GroupConfConsolidationThread initialize(ScheduledExecutorService scheduledExecutorService, JobFSConfig jobFSConfig, int interval, FileWatcher watcher) {
         if(thread == null) {
         	synchronized(GroupConfConsolidationThread.class) {
-        		thread = new GroupConfConsolidationThread(jobFSConfig);
+        		thread = new GroupConfConsolidationThread(jobFSConfig, watcher);
         	}
             scheduledExecutorService.scheduleWithFixedDelay(thread,
                     1000,
@@ -96,31 +115,33 @@ public class GroupConfConsolidationThread extends Thread {
     }
 
     public void run() {
-        synchronized (this.aliveJobs) {
-            for(String jobId : this.aliveJobs) {
-                try {
-                    crunchRealTimeGroupConf(jobId);
-                } catch (FileNotFoundException e) {
-                    logger.error("Error While Crunching stats for job "+jobId,e);
-                } catch (IOException e) {
-                    logger.error("Error While Crunching stats for job "+jobId,e);
-                } catch (ExecutionException e) {
-                    logger.error("Error While Crunching stats for job "+jobId,e);
-                }
-            }
+        for(String jobId : this.aliveJobs) {
+            crunchRealTimeGroupConf(jobId, crunchFiles.changedFiles(jobId, fileCachedContentMap));
         }
     }
 
-    private void crunchRealTimeGroupConf(String jobId) throws IOException, ExecutionException {
-        List<File> jobFiles = FileHelper.pathFiles(this.jobFSConfig.getJobStatsPath(jobId), true);
-        for(File jobFile : jobFiles) {
-            if(jobFile.getAbsolutePath().contains("realTimeConf") && !jobFile.getAbsolutePath().contains("stats")) {
-                crunchRealTimeGroupConfFile(jobId, jobFile);
-            }
+    private List<Future<?>> crunchRealTimeGroupConf(final String jobId, List<File> jobFiles) {
+        List<Future<?>> crunches = new ArrayList<Future<?>>();
+        for(final File jobFile : jobFiles) {
+            crunches.add(CrunchExecutor.instance().crunch(jobId, jobFile, new Runnable() {
+                public void run() {
+                    try {
+                        crunchRealTimeGroupConfFile(jobId, jobFile);
+                    } catch (IOException e) {
+                        logger.error("Error While Crunching stats for job "+jobId,e);
+                    } catch (ExecutionException e) {
+                        logger.error("Error While Crunching stats for job "+jobId,e);
+                    }
+                }
+            }));
         }
+        return crunches;
     }
 
-    synchronized public void crunchRealTimeGroupConfFile(String jobId, File jobFile) throws IOException, ExecutionException {
+    /**
+     * Called for a file from one crunch thread at a time
+     */
+    public void crunchRealTimeGroupConfFile(String jobId, File jobFile) throws IOException, ExecutionException {
         BufferedReader br = FileHelper.bufferedReader(jobFile.getAbsolutePath());
 
         // Skip the number of lines that are already read from this file
@@ -133,6 +154,7 @@ public class GroupConfConsolidationThread extends Thread {
         Collections.sort(cachedContent);
 
         // Iterate and compute
+        long newestCrunchedTimeMS = -1;
         if(canParseContentNow(jobId, cachedContent, isAgentStats(jobFile))) {
 
             BufferedWriter bw = FileHelper.bufferedWriter(jobFile.getAbsolutePath() + "." + FILE_EXTENSION, true);
@@ -146,6 +168,8 @@ public class GroupConfConsolidationThread extends Thread {
                 realTimeGroupConf.time = Long.parseLong(tokens[0]);
                 realTimeGroupConf.threads = Float.parseFloat(tokens[1]);
                 realTimeGroupConf.throughput = Float.parseFloat(tokens[2]);
+                if(tokens.length > 3)
+                    realTimeGroupConf.generatorSaturated = Float.parseFloat(tokens[3]);
 
                 bw.write(objectMapper.writeValueAsString(realTimeGroupConf) + "\n");
                 bw.flush();
@@ -158,6 +182,7 @@ public class GroupConfConsolidationThread extends Thread {
             int lines = 0;
             int totalThreads = 0;
             float totalThroughput = 0.0f;
+            int saturatedLines = 0;
             long startTimeMS = 0l;
             while(cachedContent.size() > 0) {
                 String currentLine = cachedContent.remove(0);
@@ -177,7 +202,11 @@ public class GroupConfConsolidationThread extends Thread {
 
                 totalThreads += Integer.parseInt(tokenizer.nextElement().toString());
                 totalThroughput += Float.parseFloat(tokenizer.nextElement().toString());
+                // Stats from older agents don't have generator saturation
+                if(tokenizer.hasMoreElements() && Integer.parseInt(tokenizer.nextElement().toString()) > 0)
+                    saturatedLines++;
                 lines++;
+                newestCrunchedTimeMS = lineTimeMS;
 
                 if((lineTimeMS - startTimeMS) > 10 * MathConstant.THOUSAND ||
                         (jobOver(jobId) && cachedContent.size() == 0)) {
@@ -192,6 +221,7 @@ public class GroupConfConsolidationThread extends Thread {
                     realTimeGroupConf.time = lineTimeMS;
                     realTimeGroupConf.threads = totalThreadsAcrossAgents;
                     realTimeGroupConf.throughput = totalExpectedThroughputAcrossAgents;
+                    realTimeGroupConf.generatorSaturated = (float) saturatedLines / lines;
 
                     bw.write(objectMapper.writeValueAsString(realTimeGroupConf) + "\n");
                     bw.flush();
@@ -203,12 +233,15 @@ public class GroupConfConsolidationThread extends Thread {
                     lines = 0;
                     totalThreads = 0;
                     totalThroughput = 0.0f;
+                    saturatedLines = 0;
                     startTimeMS = 0l;
                 }
             }
             FileHelper.close(bw);
         }
         FileHelper.close(br);
+        if(newestCrunchedTimeMS > 0)
+            CrunchExecutor.instance().crunched(jobId, CRUNCH_NAME, jobFile, newestCrunchedTimeMS);
     }
 
     // simple skip the number of lines already read in previous iteration
@@ -272,16 +305,20 @@ public class GroupConfConsolidationThread extends Thread {
     }
 
     public void addJob(String jobId) {
-        synchronized (this.aliveJobs) {
-            this.aliveJobs.add(jobId);
-        }
+        CrunchExecutor.instance().jobStarted(jobId, CRUNCH_NAME);
+        this.aliveJobs.add(jobId);
+        this.crunchFiles.jobStarted(jobId);
     }
 
-    public void removeJob(String jobId) throws IOException, ExecutionException {
-        synchronized (this.aliveJobs) {
-            this.aliveJobs.remove(jobId);
-            crunchRealTimeGroupConf(jobId);
-        }
+    /**
+     * Crunches whatever is left of the job
+     */
+    public void removeJob(String jobId) throws InterruptedException {
+        this.aliveJobs.remove(jobId);
+        this.crunchFiles.reconcile(jobId);
+        CrunchExecutor.instance().await(crunchRealTimeGroupConf(jobId, this.crunchFiles.allFiles(jobId)));
+        this.crunchFiles.jobOver(jobId);
+        CrunchExecutor.instance().jobOver(jobId, CRUNCH_NAME);
     }
 
     private boolean jobOver(String jobId) {
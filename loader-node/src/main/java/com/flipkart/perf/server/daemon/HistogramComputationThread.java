@@ -3,6 +3,7 @@ package com.flipkart.perf.server.daemon;
 import com.flipkart.perf.common.constant.MathConstant;
 import com.flipkart.perf.common.util.Clock;
 import com.flipkart.perf.common.util.FileHelper;
+import com.flipkart.perf.common.util.FileWatcher;
 import com.flipkart.perf.server.config.JobFSConfig;
 import com.flipkart.perf.server.domain.HistogramStatsInstance;
 import com.flipkart.perf.server.util.ObjectMapperUtil;
@@ -17,9 +18,11 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
 
 /**
- * Compute both agent and overall timer files.
+ * Compute both agent and overall histogram files. Files are crunched in parallel on CrunchExecutor
  */
 public class HistogramComputationThread extends Thread {
 
@@ -28,6 +31,7 @@ public class HistogramComputationThread extends Thread {
     private final JobFSConfig jobFSConfig;
     private boolean stop = false;
     private List<String> aliveJobs;
+    private final CrunchFiles crunchFiles;
 
     private Map<String,Long> fileAlreadyReadLinesMap;       // This would be further improved once i implement small file approach for big timer files
     private Map<String,Histogram> fileHistogramMap;       // This would be further improved once i implement small file approach for big timer files
@@ -37,6 +41,7 @@ public class HistogramComputationThread extends Thread {
     private static volatile HistogramComputationThread thread;
     private static Logger logger;
     private static final String FILE_EXTENSION;
+    private static final String CRUNCH_NAME = "histograms";
 
     static {
         objectMapper = ObjectMapperUtil.instance();
@@ -80,20 +85,21 @@ public class HistogramComputationThread extends Thread {
         }
     }
 
-    private HistogramComputationThread(JobFSConfig jobFSConfig, int checkInterval) {
+    private HistogramComputationThread(JobFSConfig jobFSConfig, int checkInterval, FileWatcher watcher) {
         this.jobFSConfig = jobFSConfig;
         this.checkInterval = checkInterval;
-        this.aliveJobs = new ArrayList<String>();
+        this.aliveJobs = new CopyOnWriteArrayList<String>();
         this.fileAlreadyReadLinesMap = new ConcurrentHashMap<String, Long>();
         this.fileHistogramMap = new ConcurrentHashMap<String, Histogram>();
         this.fileTimerStatsMap = new ConcurrentHashMap<String, HistogramStatsStamp>();
         this.fileCachedContentMap = new ConcurrentHashMap<String, List>();
+        this.crunchFiles = new CrunchFiles(watcher, jobFSConfig, true, "histogram", "stats");
     }
 
-    public static HistogramComputationThread initialize(JobFSConfig jobFSConfig, int checkInterval) {
+    public static HistogramComputationThread initialize(JobFSConfig jobFSConfig, int checkInterval, FileWatcher watcher) {
         if(thread == null) {
         	synchronized(HistogramComputationThread.class) {
-        		thread = new HistogramComputationThread(jobFSConfig, checkInterval);
+        		thread = new HistogramComputationThread(jobFSConfig, checkInterval, watcher);
         	}
         }
         return thread;
@@ -105,16 +111,8 @@ public class HistogramComputationThread extends Thread {
 
     public void run() {
         while(keepRunning()) {
-            synchronized (this.aliveJobs) {
-                for(String jobId : this.aliveJobs) {
-                    try {
-                        crunchJobHistogram(jobId);
-                    } catch (FileNotFoundException e) {
-                        e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-                    } catch (IOException e) {
-                        e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-                    }
-                }
+            for(String jobId : this.aliveJobs) {
+                crunchJobHistogram(jobId, crunchFiles.changedFiles(jobId, fileCachedContentMap));
             }
             checkInterval();
         }
@@ -134,16 +132,26 @@ public class HistogramComputationThread extends Thread {
         }
     }
 
-    private void crunchJobHistogram(String jobId) throws IOException {
-        List<File> jobFiles = FileHelper.pathFiles(this.jobFSConfig.getJobStatsPath(jobId), true);
-        for(File jobFile : jobFiles) {
-            if(jobFile.getAbsolutePath().contains("histogram") && !jobFile.getAbsolutePath().contains("stats")) {
-                crunchJobFileHistogram(jobId, jobFile);
-            }
+    private List<Future<?>> crunchJobHistogram(final String jobId, List<File> jobFiles) {
+        List<Future<?>> crunches = new ArrayList<Future<?>>();
+        for(final File jobFile : jobFiles) {
+            crunches.add(CrunchExecutor.instance().crunch(jobId, jobFile, new Runnable() {
+                public void run() {
+                    try {
+                        crunchJobFileHistogram(jobId, jobFile);
+                    } catch (IOException e) {
+                        logger.error("Error while crunching histogram file " + jobFile.getAbsolutePath(), e);
+                    }
+                }
+            }));
         }
+        return crunches;
     }
 
-    synchronized public void crunchJobFileHistogram(String jobId, File jobFile) throws IOException {
+    /**
+     * Called for a file from one crunch thread at a time
+     */
+    public void crunchJobFileHistogram(String jobId, File jobFile) throws IOException {
         BufferedReader br = FileHelper.bufferedReader(jobFile.getAbsolutePath());
 
         // Skip the number of lines that are already read from this file
@@ -178,6 +186,7 @@ public class HistogramComputationThread extends Thread {
         }
 
         // Iterate and compute
+        long newestCrunchedTimeMS = -1;
         if(canParseContentNow(jobId, cachedContent, isAgentStats(jobFile))) {
 
             BufferedWriter bw = FileHelper.bufferedWriter(jobFile.getAbsolutePath()+"."+FILE_EXTENSION, true);
@@ -190,6 +199,7 @@ public class HistogramComputationThread extends Thread {
                 histogramStatsStamp = new HistogramStatsStamp(1, Double.parseDouble(tokens[1]), Long.parseLong(tokens[0])).
                         setFirstTimeMS(Long.parseLong(tokens[0]));
                 histogram.update((long) Double.parseDouble(tokens[1]));
+                newestCrunchedTimeMS = histogramStatsStamp.firstTimeMS;
 
                 // Group in performance run had only one repeat
                 if(cachedContent.size() == 0 && jobOver(jobId)) {
@@ -236,6 +246,7 @@ public class HistogramComputationThread extends Thread {
                 }
 
                 histogram.update((long)lineResponseTimeNS);
+                newestCrunchedTimeMS = lineTimeMS;
 
                 // Either you have collected 1 million instances or you have collected data worth 10 seconds
                 HistogramStatsInstance histogramStatsInstance;
@@ -281,6 +292,8 @@ public class HistogramComputationThread extends Thread {
             FileHelper.close(bw);
         }
         FileHelper.close(br);
+        if(newestCrunchedTimeMS > 0)
+            CrunchExecutor.instance().crunched(jobId, CRUNCH_NAME, jobFile, newestCrunchedTimeMS);
     }
 
     private boolean isAgentStats(File jobFile) {
@@ -323,16 +336,20 @@ public class HistogramComputationThread extends Thread {
     }
 
     public void addJob(String jobId) {
-        synchronized (this.aliveJobs) {
-            this.aliveJobs.add(jobId);
-        }
+        CrunchExecutor.instance().jobStarted(jobId, CRUNCH_NAME);
+        this.aliveJobs.add(jobId);
+        this.crunchFiles.jobStarted(jobId);
     }
 
-    public void removeJob(String jobId) throws IOException {
-        synchronized (this.aliveJobs) {
-            this.aliveJobs.remove(jobId);
-            crunchJobHistogram(jobId);
-        }
+    /**
+     * Crunches whatever is left of the job
+     */
+    public void removeJob(String jobId) throws InterruptedException {
+        this.aliveJobs.remove(jobId);
+        this.crunchFiles.reconcile(jobId);
+        CrunchExecutor.instance().await(crunchJobHistogram(jobId, this.crunchFiles.allFiles(jobId)));
+        this.crunchFiles.jobOver(jobId);
+        CrunchExecutor.instance().jobOver(jobId, CRUNCH_NAME);
     }
 
     private boolean jobOver(String jobId) {
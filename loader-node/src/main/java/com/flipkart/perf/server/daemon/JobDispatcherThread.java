@@ -1,6 +1,7 @@
 package com.flipkart.perf.server.daemon;
 
 import com.flipkart.perf.server.cache.AgentsCache;
+import com.flipkart.perf.server.cache.JobsCache;
 import com.flipkart.perf.server.domain.Job;
 import com.flipkart.perf.server.domain.LoadPart;
 import com.flipkart.perf.server.domain.LoaderAgent;
@@ -10,9 +11,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
@@ -31,51 +30,52 @@ public class JobDispatcherThread extends Thread{
         loadQueuedJobs();
     }
 
+    /**
+     * Starts head of the queue if matching free agents are available. Otherwise head gets agents reserved for the
+     * time it is estimated to start at, and later jobs are back filled on free agents as long as that doesn't delay
+     * the head job.
+     */
     public void run() {
         try {
-            Job job = jobRequestQueue.peek();
-            if(job == null) {
+            List<Job> queuedJobs = new ArrayList<Job>(jobRequestQueue);
+            if(queuedJobs.size() == 0) {
                 return;
             }
             List<LoaderAgent> freeAgents = AgentsCache.freeAgents();
-            PerformanceRun performanceRun = job.performanceRun();
-
-            if(freeAgents.size() >= performanceRun.agentsNeeded()) {
-
-                // Check if free agents match the tags from incoming jobs
-                boolean hasMatchingAgents = true;
-
-                List<LoaderAgent> matchingAgents = new ArrayList<LoaderAgent>();
-                for(LoadPart lp : performanceRun.getLoadParts()) {
-                    LoaderAgent matchingAgent = null;
-                    for(LoaderAgent la : freeAgents) {
-                        if(matchingAgents.contains(la))
-                            continue;
-
-                        // Pickup an agent which is free and has your tags or pick up an agent which has no tags
-                        if(la.getTags().containsAll(lp.getAgentTags()) || la.getTags().size() == 0) {
-                            matchingAgent = la;
-                            matchingAgents.add(matchingAgent);
-                        }
-                    }
-                    if(matchingAgent == null) {
-                        hasMatchingAgents = false;
-                        break;
-                    }
-                }
 
-                if(hasMatchingAgents) {
-                    logger.info("Checking if selected free agents are reachable or not");
-                    for(LoaderAgent matchingAgent : matchingAgents){
-                        AgentHelper.refreshAgentInfo(matchingAgent);
-                        if(!matchingAgent.getStatus().equals(LoaderAgent.LoaderAgentStatus.FREE)) {
-                            logger.warn("Agent " + matchingAgent.getIp() + " was found to be free but is in " + matchingAgent.getStatus() + " state");
-                            break;
-                        }
-                    }
-
-                    job = jobRequestQueue.remove();
-                    job.start(matchingAgents);
+            Job headJob = queuedJobs.get(0);
+            PerformanceRun headRun = headJob.performanceRun();
+            List<LoaderAgent> headAgents = matchAgents(headRun.getLoadParts(), freeAgents);
+            if(headAgents != null) {
+                startJob(headJob, headAgents);
+                return;
+            }
+
+            if(queuedJobs.size() == 1)
+                return;
+
+            Reservation reservation = reserveAgents(headRun, freeAgents);
+            long now = System.currentTimeMillis();
+            for(Job job : queuedJobs.subList(1, queuedJobs.size())) {
+                PerformanceRun performanceRun = job.performanceRun();
+                if(performanceRun == null || performanceRun.agentsNeeded() > freeAgents.size())
+                    continue;
+
+                // Job can use agents reserved for head job only if it would be done before head job can start
+                long duration = performanceRun.estimatedDurationMS();
+                boolean canUseReservedAgents = reservation.startTime != Long.MAX_VALUE &&
+                        duration >= 0 &&
+                        now + duration <= reservation.startTime;
+
+                List<LoaderAgent> candidateAgents = new ArrayList<LoaderAgent>(freeAgents);
+                if(!canUseReservedAgents)
+                    candidateAgents.removeAll(reservation.agents);
+
+                List<LoaderAgent> jobAgents = matchAgents(performanceRun.getLoadParts(), candidateAgents);
+                if(jobAgents != null) {
+                    logger.info("Back filling job "+job.getJobId()+" while head job "+headJob.getJobId()+" waits for agents");
+                    startJob(job, jobAgents);
+                    return;
                 }
             }
         } catch (Exception e) {
@@ -83,6 +83,163 @@ public class JobDispatcherThread extends Thread{
         }
     }
 
+    private void startJob(Job job, List<LoaderAgent> matchingAgents) throws IOException {
+        logger.info("Checking if selected free agents are reachable or not");
+        for(LoaderAgent matchingAgent : matchingAgents){
+            AgentHelper.refreshAgentInfo(matchingAgent);
+            if(!matchingAgent.getStatus().equals(LoaderAgent.LoaderAgentStatus.FREE)) {
+                logger.warn("Agent " + matchingAgent.getIp() + " was found to be free but is in " + matchingAgent.getStatus() + " state");
+                return;
+            }
+        }
+
+        synchronized (jobRequestQueue) {
+            if(!jobRequestQueue.remove(job))
+                return;
+        }
+        job.start(matchingAgents);
+    }
+
+    /**
+     * Agents head job is going to get, and the time they are estimated to be available by.
+     */
+    private static class Reservation {
+        private final long startTime;
+        private final List<LoaderAgent> agents;
+
+        private Reservation(long startTime, List<LoaderAgent> agents) {
+            this.startTime = startTime;
+            this.agents = agents;
+        }
+    }
+
+    /**
+     * Walk busy agents in order they are estimated to become free, till head job can be matched. Free agents part of
+     * that match are reserved for head job.
+     */
+    private Reservation reserveAgents(PerformanceRun headRun, List<LoaderAgent> freeAgents) throws ExecutionException {
+        final Map<LoaderAgent, Long> busyAgentsFreeTime = new HashMap<LoaderAgent, Long>();
+        for(LoaderAgent agent : AgentsCache.getAgentInfoMap().values()) {
+            if(agent.getStatus() == LoaderAgent.LoaderAgentStatus.BUSY)
+                busyAgentsFreeTime.put(agent, estimatedFreeTime(agent));
+        }
+        List<LoaderAgent> busyAgents = new ArrayList<LoaderAgent>(busyAgentsFreeTime.keySet());
+        Collections.sort(busyAgents, new Comparator<LoaderAgent>() {
+            public int compare(LoaderAgent a1, LoaderAgent a2) {
+                return busyAgentsFreeTime.get(a1).compareTo(busyAgentsFreeTime.get(a2));
+            }
+        });
+
+        List<LoaderAgent> agentPool = new ArrayList<LoaderAgent>(freeAgents);
+        for(LoaderAgent busyAgent : busyAgents) {
+            agentPool.add(busyAgent);
+            List<LoaderAgent> headAgents = matchAgents(headRun.getLoadParts(), agentPool);
+            if(headAgents != null) {
+                headAgents.retainAll(freeAgents);
+                return new Reservation(busyAgentsFreeTime.get(busyAgent), headAgents);
+            }
+        }
+
+        // Head job can't run even with all agents. It doesn't get to block others
+        return new Reservation(Long.MAX_VALUE, new ArrayList<LoaderAgent>());
+    }
+
+    private long estimatedFreeTime(LoaderAgent agent) throws ExecutionException {
+        long freeTime = System.currentTimeMillis();
+        if(agent.getRunningJobs() == null)
+            return Long.MAX_VALUE;
+        for(String runningJobId : agent.getRunningJobs()) {
+            Job runningJob = JobsCache.getJob(runningJobId);
+            if(runningJob == null || !runningJob.isRunning())
+                continue;
+            PerformanceRun performanceRun = runningJob.performanceRun();
+            long duration = performanceRun == null ? -1 : performanceRun.estimatedDurationMS();
+            if(duration < 0 || runningJob.getStartTime() == null)
+                return Long.MAX_VALUE;
+            freeTime = Math.max(freeTime, runningJob.getStartTime().getTime() + duration);
+        }
+        return freeTime;
+    }
+
+    /**
+     * Match load part agent slots to agents using augmenting paths (bipartite matching), so that a slot grabbing an
+     * agent never blocks another slot which could only use that agent.
+     * Agent can serve a slot if it has all tags of the load part or if it has no tags at all. Agents with fewer extra
+     * tags are tried first and tag-less agents last, so that agents remain usable for other jobs.
+     * @return agents in load part order (as Job.start expects) or null if load parts can't be served
+     */
+    static List<LoaderAgent> matchAgents(List<LoadPart> loadParts, List<LoaderAgent> agents) {
+        List<LoadPart> slots = new ArrayList<LoadPart>();
+        for(LoadPart loadPart : loadParts)
+            for(int i = 0; i < loadPart.getAgents(); i++)
+                slots.add(loadPart);
+        if(slots.size() > agents.size())
+            return null;
+
+        List<LoaderAgent> orderedAgents = new ArrayList<LoaderAgent>(agents);
+        Collections.sort(orderedAgents, new Comparator<LoaderAgent>() {
+            public int compare(LoaderAgent a1, LoaderAgent a2) {
+                return tagWeight(a1) - tagWeight(a2);
+            }
+        });
+
+        int[] slotAgent = new int[slots.size()];
+        int[] agentSlot = new int[orderedAgents.size()];
+        Arrays.fill(slotAgent, -1);
+        Arrays.fill(agentSlot, -1);
+
+        // Most constrained slots pick first
+        List<Integer> slotOrder = new ArrayList<Integer>();
+        for(int i = 0; i < slots.size(); i++)
+            slotOrder.add(i);
+        final List<LoadPart> finalSlots = slots;
+        Collections.sort(slotOrder, new Comparator<Integer>() {
+            public int compare(Integer s1, Integer s2) {
+                return finalSlots.get(s2).getAgentTags().size() - finalSlots.get(s1).getAgentTags().size();
+            }
+        });
+
+        for(int slot : slotOrder) {
+            if(!augment(slot, slots, orderedAgents, slotAgent, agentSlot, new boolean[orderedAgents.size()]))
+                return null;
+        }
+
+        List<LoaderAgent> matchedAgents = new ArrayList<LoaderAgent>();
+        for(int slot = 0; slot < slots.size(); slot++)
+            matchedAgents.add(orderedAgents.get(slotAgent[slot]));
+        return matchedAgents;
+    }
+
+    private static boolean augment(int slot, List<LoadPart> slots, List<LoaderAgent> agents, int[] slotAgent, int[] agentSlot, boolean[] visited) {
+        // Take an unassigned agent if there is one, before moving other slots around
+        for(int agent = 0; agent < agents.size(); agent++) {
+            if(agentSlot[agent] == -1 && canServe(agents.get(agent), slots.get(slot))) {
+                agentSlot[agent] = slot;
+                slotAgent[slot] = agent;
+                return true;
+            }
+        }
+        for(int agent = 0; agent < agents.size(); agent++) {
+            if(visited[agent] || !canServe(agents.get(agent), slots.get(slot)))
+                continue;
+            visited[agent] = true;
+            if(augment(agentSlot[agent], slots, agents, slotAgent, agentSlot, visited)) {
+                agentSlot[agent] = slot;
+                slotAgent[slot] = agent;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean canServe(LoaderAgent agent, LoadPart loadPart) {
+        return agent.getTags().size() == 0 || agent.getTags().containsAll(loadPart.getAgentTags());
+    }
+
+    private static int tagWeight(LoaderAgent agent) {
+        return agent.getTags().size() == 0 ? Integer.MAX_VALUE : agent.getTags().size();
+    }
+
     private void loadQueuedJobs()  {
         try {
             jobRequestQueue.addAll(Job.searchJobs("", "", Arrays.asList(new String[]{"QUEUED"})));
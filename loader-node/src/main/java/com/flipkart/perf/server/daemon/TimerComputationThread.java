@@ -3,6 +3,7 @@ package com.flipkart.perf.server.daemon;
 import com.flipkart.perf.common.constant.MathConstant;
 import com.flipkart.perf.common.util.Clock;
 import com.flipkart.perf.common.util.FileHelper;
+import com.flipkart.perf.common.util.FileWatcher;
 import com.flipkart.perf.server.config.JobFSConfig;
 import com.flipkart.perf.server.domain.TimerStatsInstance;
 import com.flipkart.perf.server.util.ObjectMapperUtil;
@@ -17,11 +18,13 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Compute both agent and overall timer files.
+ * Compute both agent and overall timer files. Files are crunched in parallel on CrunchExecutor
  */
 public class TimerComputationThread extends Thread {
 
@@ -29,6 +32,7 @@ public class TimerComputationThread extends Thread {
     private final JobFSConfig jobFSConfig;
     private boolean stop = false;
     private List<String> aliveJobs;
+    private final CrunchFiles crunchFiles;
 
     private Map<String,Long> fileAlreadyReadLinesMap;       // This would be further improved once i implement small file approach for big timer files
     private Map<String,Histogram> fileHistogramMap;       // This would be further improved once i implement small file approach for big timer files
@@ -38,6 +42,7 @@ public class TimerComputationThread extends Thread {
     private static TimerComputationThread thread;
     private static Logger logger;
     private static final String FILE_EXTENSION;
+    private static final String CRUNCH_NAME = "timers";
 
     static {
         objectMapper = ObjectMapperUtil.instance();
@@ -92,19 +97,20 @@ public class TimerComputationThread extends Thread {
         }
     }
 
-    private TimerComputationThread(JobFSConfig jobFSConfig) {
+    private TimerComputationThread(JobFSConfig jobFSConfig, FileWatcher watcher) {
         this.jobFSConfig = jobFSConfig;
-        this.aliveJobs = new ArrayList<String>();
+        this.aliveJobs = new CopyOnWriteArrayList<String>();
         this.fileAlreadyReadLinesMap = new ConcurrentHashMap<String, Long>();
         this.fileHistogramMap = new ConcurrentHashMap<String, Histogram>();
         this.fileTimerStatsMap = new ConcurrentHashMap<String, TimerStatsStamp>();
         this.fileCachedContentMap = new ConcurrentHashMap<String, List>();
+        this.crunchFiles = new CrunchFiles(watcher, jobFSConfig, true, "timer", "stats");
     }
 
-    public static TimerComputationThread initialize(ScheduledExecutorService scheduledExecutorService, JobFSConfig jobFSConfig, int interval) {
+    public static TimerComputationThread initialize(ScheduledExecutorService scheduledExecutorService, JobFSConfig jobFSConfig, int interval, FileWatcher watcher) {
         if(thread == null) {
         	synchronized(TimerComputationThread.class) {
-        		thread = new TimerComputationThread(jobFSConfig);
+        		thread = new TimerComputationThread(jobFSConfig, watcher);
         	}
             scheduledExecutorService.scheduleWithFixedDelay(thread,
                     1000,
@@ -120,29 +126,31 @@ public class TimerComputationThread extends Thread {
     }
 
     public void run() {
-        synchronized (this.aliveJobs) {
-            for(String jobId : this.aliveJobs) {
-                try {
-                    crunchJobTimers(jobId);
-                } catch (FileNotFoundException e) {
-                    e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-                } catch (IOException e) {
-                    e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-                }
-            }
+        for(String jobId : this.aliveJobs) {
+            crunchJobTimers(jobId, crunchFiles.changedFiles(jobId, fileCachedContentMap));
         }
     }
 
-    private void crunchJobTimers(String jobId) throws IOException {
-        List<File> jobFiles = FileHelper.pathFiles(this.jobFSConfig.getJobStatsPath(jobId), true);
-        for(File jobFile : jobFiles) {
-            if(jobFile.getAbsolutePath().contains("timer") && !jobFile.getAbsolutePath().contains("stats")) {
-                crunchJobFileTimer(jobId, jobFile);
-            }
+    private List<Future<?>> crunchJobTimers(final String jobId, List<File> jobFiles) {
+        List<Future<?>> crunches = new ArrayList<Future<?>>();
+        for(final File jobFile : jobFiles) {
+            crunches.add(CrunchExecutor.instance().crunch(jobId, jobFile, new Runnable() {
+                public void run() {
+                    try {
+                        crunchJobFileTimer(jobId, jobFile);
+                    } catch (IOException e) {
+                        logger.error("Error while crunching timer file " + jobFile.getAbsolutePath(), e);
+                    }
+                }
+            }));
         }
+        return crunches;
     }
 
-    synchronized public void crunchJobFileTimer(String jobId, File jobFile) throws IOException {
+    /**
+     * Called for a file from one crunch thread at a time
+     */
+    public void crunchJobFileTimer(String jobId, File jobFile) throws IOException {
         BufferedReader br = FileHelper.bufferedReader(jobFile.getAbsolutePath());
 
         // Skip the number of lines that are already read from this file
@@ -178,6 +186,7 @@ public class TimerComputationThread extends Thread {
         }
 
         // Iterate and compute
+        long newestCrunchedTimeMS = -1;
         if(canParseContentNow(jobId, cachedContent, isAgentStats(jobFile))) {
 
             BufferedWriter bw = FileHelper.bufferedWriter(jobFile.getAbsolutePath()+"."+FILE_EXTENSION, true);
@@ -190,6 +199,7 @@ public class TimerComputationThread extends Thread {
                 timerStatsStamp = new TimerStatsStamp(1, Double.parseDouble(tokens[1]), Long.parseLong(tokens[0])).
                         setFirstTimeMS(Long.parseLong(tokens[0]));
                 histogram.update((long) Double.parseDouble(tokens[1]));
+                newestCrunchedTimeMS = timerStatsStamp.firstTimeMS;
 
                 // Group in performance run had only one repeat
                 if(cachedContent.size() == 0 && jobOver(jobId)) {
@@ -241,6 +251,7 @@ public class TimerComputationThread extends Thread {
                 }
 
                 histogram.update((long)lineResponseTimeNS);
+                newestCrunchedTimeMS = lineTimeMS;
 
                 // Either you have collected 1 million instances or you have collected data worth 10 seconds
                 TimerStatsInstance timerStatsInstance;
@@ -291,6 +302,8 @@ public class TimerComputationThread extends Thread {
             FileHelper.close(bw);
         }
         FileHelper.close(br);
+        if(newestCrunchedTimeMS > 0)
+            CrunchExecutor.instance().crunched(jobId, CRUNCH_NAME, jobFile, newestCrunchedTimeMS);
     }
 
     private boolean isAgentStats(File jobFile) {
@@ -325,19 +338,22 @@ public class TimerComputationThread extends Thread {
     }
 
     public void addJob(String jobId) {
-        synchronized (this.aliveJobs) {
-            this.aliveJobs.add(jobId);
-        }
+        CrunchExecutor.instance().jobStarted(jobId, CRUNCH_NAME);
+        this.aliveJobs.add(jobId);
+        this.crunchFiles.jobStarted(jobId);
     }
 
-    public void removeJob(String jobId) throws IOException {
-        synchronized (this.aliveJobs) {
-            this.aliveJobs.remove(jobId);
-            crunchJobTimers(jobId);
-        }
+    /**
+     * Crunches whatever is left of the job
+     */
+    public void removeJob(String jobId) throws InterruptedException {
+        this.aliveJobs.remove(jobId);
+        this.crunchFiles.reconcile(jobId);
+        CrunchExecutor.instance().await(crunchJobTimers(jobId, this.crunchFiles.allFiles(jobId)));
+        this.crunchFiles.jobOver(jobId);
+        CrunchExecutor.instance().jobOver(jobId, CRUNCH_NAME);
     }
 
-    // called from within synchronized block only
     private boolean jobOver(String jobId) {
         return !this.aliveJobs.contains(jobId);
     }
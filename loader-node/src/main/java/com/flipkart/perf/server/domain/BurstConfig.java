@@ -0,0 +1,44 @@
+package com.flipkart.perf.server.domain;
+
+/**
+ * Burst sampling of an on demand collector in monitoring agent : collector samples every intervalMS for durationMS.
+ * Agent starts a burst when asked, or when metric of the collector is >= threshold
+ */
+public class BurstConfig {
+    private int intervalMS = 100;
+    private int durationMS = 10000;
+    private String metric;
+    private Double threshold;
+
+    public int getIntervalMS() {
+        return intervalMS;
+    }
+
+    public void setIntervalMS(int intervalMS) {
+        this.intervalMS = intervalMS;
+    }
+
+    public int getDurationMS() {
+        return durationMS;
+    }
+
+    public void setDurationMS(int durationMS) {
+        this.durationMS = durationMS;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public void setMetric(String metric) {
+        this.metric = metric;
+    }
+
+    public Double getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(Double threshold) {
+        this.threshold = threshold;
+    }
+}
@@ -0,0 +1,79 @@
+package com.flipkart.perf.server.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Asks an agent to fetch an input file chunk by chunk from its peers, falling back to server for chunks no peer has.
+ * Chunk i covers bytes [i * chunkSize, min(length, (i+1) * chunkSize)) and is identified by sha1 of its content.
+ */
+public class InputFileSwarmRequest {
+    private String resourceName;
+    private String contentHash;
+    private long length;
+    private int chunkSize;
+    private List<String> chunks = new ArrayList<String>();
+    private List<String> peers = new ArrayList<String>(); // host:port of agents fetching same file
+
+    public String getResourceName() {
+        return resourceName;
+    }
+
+    public InputFileSwarmRequest setResourceName(String resourceName) {
+        this.resourceName = resourceName;
+        return this;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public InputFileSwarmRequest setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+        return this;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public InputFileSwarmRequest setLength(long length) {
+        this.length = length;
+        return this;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public InputFileSwarmRequest setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public List<String> getChunks() {
+        return chunks;
+    }
+
+    public InputFileSwarmRequest setChunks(List<String> chunks) {
+        this.chunks = chunks;
+        return this;
+    }
+
+    public List<String> getPeers() {
+        return peers;
+    }
+
+    public InputFileSwarmRequest setPeers(List<String> peers) {
+        this.peers = peers;
+        return this;
+    }
+
+    public long chunkOffset(int chunkIndex) {
+        return (long) chunkIndex * chunkSize;
+    }
+
+    public int chunkLength(int chunkIndex) {
+        return (int) Math.min(chunkSize, length - chunkOffset(chunkIndex));
+    }
+}
@@ -3,6 +3,8 @@ package com.flipkart.perf.server.domain;
 import com.flipkart.perf.common.util.FileHelper;
 import com.flipkart.perf.domain.Load;
 import com.flipkart.perf.server.cache.AgentsCache;
+import com.flipkart.perf.server.cache.JobSearchIndex;
+import com.flipkart.perf.server.cache.JobStatsMetaCache;
 import com.flipkart.perf.server.cache.JobsCache;
 import com.flipkart.perf.server.client.LoaderAgentClient;
 import com.flipkart.perf.server.client.MonitoringClient;
@@ -10,7 +12,6 @@ import com.flipkart.perf.server.config.LoaderServerConfiguration;
 import com.flipkart.perf.server.daemon.*;
 import com.flipkart.perf.server.exception.InvalidJobStateException;
 import com.flipkart.perf.server.exception.JobException;
-import com.flipkart.perf.server.exception.LibNotDeployedException;
 import com.flipkart.perf.server.util.DeploymentHelper;
 import com.flipkart.perf.server.util.ObjectMapperUtil;
 import com.flipkart.perf.server.util.ResponseBuilder;
@@ -43,6 +44,8 @@ public  class Job {
     private String runName;
     private int runVersion;
     private Date startTime, endTime;
+    private Date queuedTime;
+    private long queueWaitTime = -1; // Time in ms job spent in queue before it started
     private JOB_STATUS jobStatus;
     private String failedToStartReason = ""; // Will be set only in case when job failed to start
     private Map<String,AgentJobStatus> agentsJobStatus = new ConcurrentHashMap<String, AgentJobStatus>();
@@ -245,6 +248,7 @@ public  class Job {
      */
     public void queued() throws IOException {
         this.jobStatus = JOB_STATUS.QUEUED;
+        this.queuedTime = new Date();
 
         // Adding to Queued Jobs File
         List<String> queuedJobs = objectMapper.readValue(new File(configuration.getJobFSConfig().getQueuedJobsFile()), List.class);
@@ -274,6 +278,10 @@ public  class Job {
         objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(configuration.getJobFSConfig().getQueuedJobsFile()), queuedJobs);
 
         this.startTime = new Date();
+        if(this.queuedTime != null) {
+            this.queueWaitTime = this.startTime.getTime() - this.queuedTime.getTime();
+            logger.info("Job "+jobId+" started after waiting "+queueWaitTime+"ms in queue");
+        }
         this.persist();
     }
 
@@ -332,11 +340,8 @@ public  class Job {
             // Raising request to monitoring agents to start publishing collected metrics to Loader server
             raiseMetricPublishRequest(performanceRun.getMetricCollections());
 
-            // Deploy Libraries on Agents
-            deployLibrariesOnAgents(performanceRun.getLoadParts(), agentsToUse);
-
-            // Deploy Input File Resource On Agents
-            deployInputFileResourcesOnAgents(performanceRun.getLoadParts(), agentsToUse);
+            // Deploy Libraries and Input File Resources on Agents
+            DeploymentHelper.instance().deployOnAgents(performanceRun.getLoadParts(), agentsToUse);
 
             // Submitting Jobs to Loader Agent
             submitJobToAgents(performanceRun.getLoadParts(), agentsToUse);
@@ -449,47 +454,6 @@ public  class Job {
     }
 
 
-    /**
-     * Deploy Platform Libs and Class Libs on Loader agents If Required
-     *
-     * @param loadParts
-     * @param agentsToUse
-     * @throws java.io.IOException
-     * @throws com.flipkart.perf.server.exception.JobException
-     * @throws java.util.concurrent.ExecutionException
-     * @throws InterruptedException
-     */
-    private void deployLibrariesOnAgents(List<LoadPart> loadParts, List<LoaderAgent> agentsToUse)
-            throws IOException, JobException, ExecutionException, InterruptedException, LibNotDeployedException {
-        for(LoadPart loadPart : loadParts) {
-            List<String> classes = loadPart.getClasses();
-
-            StringBuilder classListWithNewLine = new StringBuilder();
-            for(String clazz : classes)
-                classListWithNewLine.append(clazz+"\n");
-
-            for(LoaderAgent agent : agentsToUse) {
-                DeploymentHelper.instance().deployPlatformLibsOnAgent(agent.getIp());
-                DeploymentHelper.instance().deployUDFLibsOnAgent(agent.getIp(), classListWithNewLine.toString().trim());
-            }
-        }
-    }
-
-    /**
-     *
-     * @param loadParts
-     * @param agentsToUse
-     */
-    private void deployInputFileResourcesOnAgents(List<LoadPart> loadParts, List<LoaderAgent> agentsToUse)
-            throws InterruptedException, ExecutionException, LibNotDeployedException, IOException {
-        for(LoaderAgent agent : agentsToUse) {
-            for(LoadPart loadPart : loadParts) {
-                DeploymentHelper.instance().deployInputFilesOnAgent(agent.getIp(), loadPart.getInputFileResources());
-            }
-        }
-    }
-
-
     public void kill() throws InterruptedException, ExecutionException, IOException {
         if(this.isQueued()) {
             JobDispatcherThread.instance().removeJobRequest(this);
@@ -544,6 +508,16 @@ public  class Job {
         }
     }
 
+    /**
+     * Make on demand collectors of the job sample every intervalMS for durationMS in all monitoring agents
+     */
+    public void burstMonitoring(int intervalMS, int durationMS) throws IOException {
+        for(String agentIp : this.getMonitoringAgents()) {
+            new MonitoringClient(agentIp, configuration.getMonitoringAgentConfig().getAgentPort()).
+                    raiseOnDemandResourceBurstRequest(jobId, intervalMS, durationMS);
+        }
+    }
+
     /**
      * Check for completion
      * @return
@@ -565,6 +539,7 @@ public  class Job {
         if(!jobStatusFile.exists())
             FileHelper.createFilePath(jobStatusFile.getAbsolutePath());
         objectMapper.writerWithDefaultPrettyPrinter().writeValue(new FileOutputStream(jobStatusFile), this);
+        JobSearchIndex.update(this);
     }
 
     public void persistRunInfo() throws IOException {
@@ -617,43 +592,26 @@ public  class Job {
     }
 
     /**
-     * Search Jobs in File System
+     * Search Jobs using job search index
      * @param searchJobId
      * @param searchRunName
      * @param searchJobStatusList
      * @return
      */
     public static List<Job> searchJobs(String searchJobId, String searchRunName, List<String> searchJobStatusList) throws IOException, ExecutionException {
+        return searchJobs(new JobSearchIndex.JobSearchQuery().
+                setJobId(searchJobId).
+                setRunName(searchRunName).
+                setJobStatuses(searchJobStatusList));
+    }
+
+    public static List<Job> searchJobs(JobSearchIndex.JobSearchQuery searchQuery) throws ExecutionException {
         List<Job> jobs = new ArrayList<Job>();
-        File runsPath = new File(configuration.getJobFSConfig().getRunsPath());
-        for(File runPath : runsPath.listFiles()) {
-            if(runPath.getName().toUpperCase().contains(searchRunName.toUpperCase())) {
-                File runJobsFile = new File(configuration.getJobFSConfig().getRunAllJobsFile(runPath.getName()));
-                if(runJobsFile.exists()) {
-                    BufferedReader runJobsFileReader = FileHelper.bufferedReader(runJobsFile.getAbsolutePath());
-                    String runJobId;
-                    while((runJobId = runJobsFileReader.readLine()) != null) {
-                        if(runJobId.trim().equals("")) {
-                            logger.warn("Empty Job Id Found for run '"+runPath.getName()+"'");
-                            continue;
-                        }
-                        if(runJobId.toUpperCase().contains(searchJobId.toUpperCase())) {
-                            Job job = JobsCache.getJob(runJobId);
-                            //Job job = objectMapper.readValue(new File(configuration.getJobFSConfig().getJobStatusFile(runJobId)), Job.class);
-
-                            if(job != null) {
-                                // In some corner cases Job status file is not persisted and hence job found here would be null.
-                                if(searchJobStatusList.contains("ALL")) {
-                                    jobs.add(job);
-                                }
-                                else if(searchJobStatusList.contains(job.getJobStatus().toString())) {
-                                    jobs.add(job);
-                                }
-                            }
-                        }
-                    }
-                }
-            }
+        for(String jobId : JobSearchIndex.search(searchQuery)) {
+            Job job = JobsCache.getJob(jobId);
+            // In some corner cases Job status file is not persisted and hence job found here would be null.
+            if(job != null)
+                jobs.add(job);
         }
         return jobs;
     }
@@ -677,6 +635,24 @@ public  class Job {
         return jobStatus == JOB_STATUS.QUEUED;
     }
 
+    public Date getQueuedTime() {
+        return queuedTime;
+    }
+
+    public Job setQueuedTime(Date queuedTime) {
+        this.queuedTime = queuedTime;
+        return this;
+    }
+
+    public long getQueueWaitTime() {
+        return queueWaitTime;
+    }
+
+    public Job setQueueWaitTime(long queueWaitTime) {
+        this.queueWaitTime = queueWaitTime;
+        return this;
+    }
+
     public String getRemarks() {
         return remarks;
     }
@@ -715,6 +691,12 @@ public  class Job {
         if(this.isCompleted()) {
             FileHelper.remove(configuration.getJobFSConfig().getJobPath(this.jobId));
             JobsCache.removeJob(this.jobId);
+            JobStatsMetaCache.removeJob(this.jobId);
+            try {
+                JobSearchIndex.remove(this.jobId);
+            } catch (IOException e) {
+                logger.error("Failed to remove job "+this.jobId+" from search index", e);
+            }
         }
         else {
             throw new InvalidJobStateException("Job id "+this.jobId+" not completed yet");
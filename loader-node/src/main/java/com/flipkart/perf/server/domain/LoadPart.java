@@ -1,11 +1,9 @@
 package com.flipkart.perf.server.domain;
 
+import com.flipkart.perf.domain.Group;
 import com.flipkart.perf.domain.Load;
 
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 /**
  * Represents a Performance LoadPart in a Performance Run
@@ -15,6 +13,7 @@ public class LoadPart {
     private int agents;
     private List<String> classes;
     private List<String> inputFileResources = new ArrayList<String>();
+    private Set<String> shardedInputFileResources = new LinkedHashSet<String>();
     private Load load;
     private Set<String> agentTags;
 
@@ -67,6 +66,23 @@ public class LoadPart {
         return this;
     }
 
+    /**
+     * Input file resources (out of inputFileResources) which are split line wise across agents instead of being copied
+     * on every agent. Every agent then reads only its own share of rows.
+     */
+    public Set<String> getShardedInputFileResources() {
+        return shardedInputFileResources;
+    }
+
+    public LoadPart setShardedInputFileResources(Set<String> shardedInputFileResources) {
+        this.shardedInputFileResources = shardedInputFileResources;
+        return this;
+    }
+
+    public boolean isSharded(String inputFileResource) {
+        return shardedInputFileResources != null && shardedInputFileResources.contains(inputFileResource);
+    }
+
     public Set<String> getAgentTags() {
         return agentTags;
     }
@@ -74,4 +90,45 @@ public class LoadPart {
     public void setAgentTags(Set<String> agentTags) {
         this.agentTags = agentTags;
     }
+
+    /**
+     * Estimate how long this load part would run, using group durations, start delays and group dependencies.
+     * @return -1 if any group is repeat based and hence can't be estimated
+     */
+    public long estimatedDurationMS() {
+        if(load == null)
+            return -1;
+        Map<String, Group> groupMap = load.groupMap();
+        Map<String, Long> groupEndTimes = new HashMap<String, Long>();
+        long duration = 0;
+        for(Group group : load.getGroups()) {
+            long groupEndTime = groupEndTime(group, groupMap, groupEndTimes, new HashSet<String>());
+            if(groupEndTime < 0)
+                return -1;
+            duration = Math.max(duration, groupEndTime);
+        }
+        return duration;
+    }
+
+    private long groupEndTime(Group group, Map<String, Group> groupMap, Map<String, Long> groupEndTimes, Set<String> visiting) {
+        Long groupEndTime = groupEndTimes.get(group.getName());
+        if(groupEndTime != null)
+            return groupEndTime;
+        if(group.getDuration() <= 0 || !visiting.add(group.getName()))
+            return -1;
+
+        long groupStartTime = 0;
+        for(String dependOnGroup : group.getDependOnGroups()) {
+            Group dependency = groupMap.get(dependOnGroup);
+            if(dependency == null)
+                continue;
+            long dependencyEndTime = groupEndTime(dependency, groupMap, groupEndTimes, visiting);
+            if(dependencyEndTime < 0)
+                return -1;
+            groupStartTime = Math.max(groupStartTime, dependencyEndTime);
+        }
+        groupEndTime = groupStartTime + group.getGroupStartDelay() + group.getDuration();
+        groupEndTimes.put(group.getName(), groupEndTime);
+        return groupEndTime;
+    }
 }
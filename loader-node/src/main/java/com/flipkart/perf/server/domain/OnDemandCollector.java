@@ -14,6 +14,7 @@ public class OnDemandCollector {
     private String klass;
     private int interval;
     private Map<String,Object> params;
+    private BurstConfig burst;
 
     public String getName() {
         return name;
@@ -46,4 +47,12 @@ public class OnDemandCollector {
     public void setInterval(int interval) {
         this.interval = interval;
     }
-}
\ No newline at end of file
+
+    public BurstConfig getBurst() {
+        return burst;
+    }
+
+    public void setBurst(BurstConfig burst) {
+        this.burst = burst;
+    }
+}
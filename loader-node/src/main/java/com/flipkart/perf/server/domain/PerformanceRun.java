@@ -94,6 +94,20 @@ public class PerformanceRun {
         return totalAgentsNeeded;
     }
 
+    /**
+     * @return estimated run duration, -1 if it can't be estimated
+     */
+    public long estimatedDurationMS() {
+        long duration = 0;
+        for(LoadPart loadPart : this.getLoadParts()) {
+            long loadPartDuration = loadPart.estimatedDurationMS();
+            if(loadPartDuration < 0)
+                return -1;
+            duration = Math.max(duration, loadPartDuration);
+        }
+        return duration;
+    }
+
     public boolean exists() {
         return new File(jobFSConfig.getRunPath(runName)).exists();
     }
@@ -263,6 +263,38 @@ public class DeployResourcesResource {
         return new FileInputStream(resourceFile);
     }
 
+    /**
+     * Serves a chunk of input file to agents fetching it peer to peer. Server only seeds chunks which no agent has yet.
+     * @param resourceName
+     * @param offset chunk start
+     * @param length chunk length
+     */
+    @Path("/inputFiles/{resourceName}/chunk")
+    @GET
+    @Timed
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public byte[] getInputFileChunk(@PathParam("resourceName") String resourceName,
+                                    @QueryParam("offset") long offset,
+                                    @QueryParam("length") int length) throws IOException {
+        File resourceFile = new File(resourceStorageFSConfig.getInputFilePath(resourceName));
+        if(!resourceFile.exists()) {
+            throw new WebApplicationException(ResponseBuilder.resourceNotFound("inputFile", resourceName));
+        }
+        if(offset < 0 || length < 0 || offset + length > resourceFile.length())
+            throw new WebApplicationException(ResponseBuilder.badRequest("Chunk is out of input file range"));
+
+        byte[] chunk = new byte[length];
+        RandomAccessFile raf = new RandomAccessFile(resourceFile, "r");
+        try {
+            raf.seek(offset);
+            raf.readFully(chunk);
+        }
+        finally {
+            FileHelper.close(raf);
+        }
+        return chunk;
+    }
+
     @Path("/inputFiles/{resourceName}")
     @PUT
     @Timed
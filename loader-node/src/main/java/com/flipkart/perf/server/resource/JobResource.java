@@ -5,9 +5,11 @@ import com.flipkart.perf.LoaderNodeConfiguration;
 import com.flipkart.perf.common.util.FileHelper;
 import com.flipkart.perf.domain.Group;
 import com.flipkart.perf.domain.GroupFunction;
+import com.flipkart.perf.server.cache.JobSearchIndex;
 import com.flipkart.perf.server.cache.JobsCache;
 import com.flipkart.perf.server.config.AgentConfig;
 import com.flipkart.perf.server.config.JobFSConfig;
+import com.flipkart.perf.server.daemon.CrunchExecutor;
 import com.flipkart.perf.server.daemon.JobDispatcherThread;
 import com.flipkart.perf.server.domain.*;
 import com.flipkart.perf.server.exception.InvalidJobStateException;
@@ -16,8 +18,12 @@ import com.flipkart.perf.server.service.FunctionService;
 import com.flipkart.perf.server.util.JobStatsHelper;
 import com.flipkart.perf.server.util.ObjectMapperUtil;
 import com.flipkart.perf.server.util.ResponseBuilder;
+import com.flipkart.perf.server.util.StatsQueryHelper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.dropwizard.jackson.Jackson;
 import io.dropwizard.jersey.params.BooleanParam;
 import io.dropwizard.jersey.params.IntParam;
+import io.dropwizard.jersey.params.LongParam;
 import org.codehaus.jackson.JsonParser.Feature;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
@@ -27,10 +33,13 @@ import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -46,8 +55,11 @@ public class JobResource {
     private JobFSConfig jobFSConfig;
     private static JobStatsHelper jobStatsHelper;
     private static ObjectMapper objectMapper;
-    private static Map<String,Map<String,ResourceCollectionInstance>> jobLastResourceMetricInstanceMap;
+    // Same mapper setup as the one dropwizard uses for entities, so streamed jobs look same as before
+    private static com.fasterxml.jackson.databind.ObjectMapper jobsJsonMapper = Jackson.newObjectMapper();
+    private static Map<String,Map<String,ResourceCollectionInstance>> jobLastResourceMetricInstanceMap; // job -> agent/resource -> last instance
     private static Logger logger;
+    private static final String STATS_CURSOR_HEADER = "X-Stats-Cursor";
 
     static {
         objectMapper = new ObjectMapper();
@@ -232,8 +244,9 @@ public class JobResource {
     }
 
     /**
-     * Search Job based on runName, jobId and job status
-     * By default it would search all running jobs only (And its little slow)
+     * Search Job based on runName, jobId, job status, business unit and start/end time
+     * By default it would search all running and queued jobs. Results are in job creation order and can be paginated
+     * using offset and limit (limit -1 returns all matching jobs)
      * @param searchRunName
      * @param searchJobId
      * @param searchJobStatus
@@ -242,10 +255,44 @@ public class JobResource {
     @Produces(MediaType.APPLICATION_JSON)
     @GET
     @Timed
-    public List<Job> getJobs(@QueryParam("runName") @DefaultValue("") String searchRunName,
+    public Response getJobs(@QueryParam("runName") @DefaultValue("") String searchRunName,
                              @QueryParam("jobId") @DefaultValue("") String searchJobId,
-                             @QueryParam("jobStatus") @DefaultValue("RUNNING,QUEUED")String searchJobStatus) throws IOException, ExecutionException {
-        return Job.searchJobs(searchJobId, searchRunName, Arrays.asList(searchJobStatus.split(",")));
+                             @QueryParam("jobStatus") @DefaultValue("RUNNING,QUEUED")String searchJobStatus,
+                             @QueryParam("businessUnit") @DefaultValue("") String businessUnit,
+                             @QueryParam("startedAfter") @DefaultValue("-1") LongParam startedAfter,
+                             @QueryParam("startedBefore") @DefaultValue("-1") LongParam startedBefore,
+                             @QueryParam("endedAfter") @DefaultValue("-1") LongParam endedAfter,
+                             @QueryParam("endedBefore") @DefaultValue("-1") LongParam endedBefore,
+                             @QueryParam("offset") @DefaultValue("0") IntParam offset,
+                             @QueryParam("limit") @DefaultValue("-1") IntParam limit) throws IOException, ExecutionException {
+        final List<String> jobIds = JobSearchIndex.search(new JobSearchIndex.JobSearchQuery().
+                setJobId(searchJobId).
+                setRunName(searchRunName).
+                setJobStatuses(Arrays.asList(searchJobStatus.split(","))).
+                setBusinessUnit(businessUnit).
+                setStartedAfter(startedAfter.get()).
+                setStartedBefore(startedBefore.get()).
+                setEndedAfter(endedAfter.get()).
+                setEndedBefore(endedBefore.get()).
+                setOffset(offset.get()).
+                setLimit(limit.get()));
+
+        // Jobs are written one by one as they are read, instead of building whole list in memory
+        StreamingOutput jobsStream = new StreamingOutput() {
+            public void write(OutputStream output) throws IOException, WebApplicationException {
+                JsonGenerator generator = jobsJsonMapper.getFactory().createGenerator(output);
+                generator.writeStartArray();
+                for(String jobId : jobIds) {
+                    Job job = JobsCache.peekJob(jobId);
+                    // In some corner cases Job status file is not persisted and hence job found here would be null.
+                    if(job != null)
+                        generator.writeObject(job);
+                }
+                generator.writeEndArray();
+                generator.close();
+            }
+        };
+        return Response.ok(jobsStream, MediaType.APPLICATION_JSON).build();
     }
 
     /**
@@ -307,6 +354,21 @@ public class JobResource {
         return jobStatsHelper.getJobMetricsStatsMeta(jobId);
     }
 
+    /**
+     * How far behind server is in crunching stats of a running job, per crunch daemon (timers, counters, histograms,
+     * groupConf) : now minus newest stats time crunched, in ms
+     * @param jobId
+     * @return
+     */
+    @Path("/{jobId}/crunchLag")
+    @GET
+    @Timed
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<String, Long> getJobCrunchLag(@PathParam("jobId") String jobId) throws IOException, ExecutionException {
+        jobExistsOrException(jobId);
+        return CrunchExecutor.instance().crunchLag(jobId);
+    }
+
     /**
      * Get Real Group Conf
      * @param jobId
@@ -328,6 +390,8 @@ public class JobResource {
      * Returns particular function stats
      * Example /jobId/jobStats/groups/sampleGroup/timers/timer1/agents/127.0.0.1
      * Example /jobId/jobStats/groups/sampleGroup/counters/counter1/agents/127.0.0.1
+     * Example /jobId/jobStats/groups/sampleGroup/timers/timer1/agents/127.0.0.1?from=1380000000000&maxPoints=600&aggregation=minmax
+     * Example /jobId/jobStats/groups/sampleGroup/timers/timer1/agents/127.0.0.1?since=4096 (cursor from X-Stats-Cursor header)
      * @param jobId
      * @return
      */
@@ -335,15 +399,25 @@ public class JobResource {
     @GET
     @Timed
     @Produces(MediaType.TEXT_PLAIN)
-    public InputStream getJobMetricStats(@PathParam("jobId") String jobId,
-                                         @PathParam("groupName") String groupName,
-                                         @PathParam("functionName") String functionName,
-                                         @PathParam("metricType") String metricType,
-                                         @PathParam("metricName") String metricName,
-                                         @PathParam("agent") String agent,
-                                         @QueryParam("last") @DefaultValue("false") BooleanParam last) throws IOException, ExecutionException {
+    public Response getJobMetricStats(@PathParam("jobId") String jobId,
+                                      @PathParam("groupName") String groupName,
+                                      @PathParam("functionName") String functionName,
+                                      @PathParam("metricType") String metricType,
+                                      @PathParam("metricName") String metricName,
+                                      @PathParam("agent") String agent,
+                                      @QueryParam("last") @DefaultValue("false") BooleanParam last,
+                                      @QueryParam("from") @DefaultValue("-1") LongParam from,
+                                      @QueryParam("to") @DefaultValue("-1") LongParam to,
+                                      @QueryParam("maxPoints") @DefaultValue("-1") IntParam maxPoints,
+                                      @QueryParam("aggregation") @DefaultValue("minmax") String aggregation,
+                                      @QueryParam("since") @DefaultValue("-1") LongParam since) throws IOException, ExecutionException {
         jobExistsOrException(jobId);
-        return jobStatsHelper.getJobMetricStats(jobId, groupName, functionName, metricType, metricName, agent, last.get());
+        if(last.get())
+            return Response.ok(jobStatsHelper.getJobMetricStats(jobId, groupName, functionName, metricType, metricName, agent, true)).build();
+
+        StatsQueryHelper.StatsQueryResult result = jobStatsHelper.queryJobMetricStats(jobId, groupName, functionName, metricType, metricName, agent,
+                statsQuery(from, to, maxPoints, aggregation, since));
+        return statsResponse(result);
     }
 
     /**
@@ -370,6 +444,8 @@ public class JobResource {
             throw new WebApplicationException(ResponseBuilder.badRequest("Job "+jobId+" is already completed"));
         }
 
+        // Last instances are per monitoring agent, as every agent has its own files for a resource
+        String agentIp = request.getRemoteAddr();
         Map<String,ResourceCollectionInstance> resourcesLastInstance = jobLastResourceMetricInstanceMap.get(jobId);
 
         if(resourcesLastInstance == null)
@@ -377,33 +453,37 @@ public class JobResource {
 
         for(String resource : resourcesCollectionInstances.keySet()) {
             String jobMonitoringStatsPath = jobFSConfig.getJobResourceMonitoringFile(jobId,
-                    request.getRemoteAddr(),
+                    agentIp,
                     resource);
+            String lastInstanceKey = agentIp + "/" + resource;
 
-            List<ResourceCollectionInstance> resourceCollectionInstances = resourcesCollectionInstances.get(resource);
+            List<ResourceCollectionInstance> resourceCollectionInstances = new ArrayList<ResourceCollectionInstance>(resourcesCollectionInstances.get(resource));
             FileHelper.createFilePath(jobMonitoringStatsPath);
 
-            // Get Last Persisted Metric Instance. Compare it with new one, if changed then persist
-            ResourceCollectionInstance resourceLastInstance = resourcesLastInstance.get(resource);
-
-            for(ResourceCollectionInstance resourceCollectionInstance : resourceCollectionInstances) {
-                boolean persistStat = true;
-
-                if(resourceLastInstance != null) {
-                    persistStat = !resourceLastInstance.toString().equals(resourceCollectionInstance.toString());
+            // Publishers send instances that aren't acknowledged yet, so an instance comes again only if its
+            // acknowledgement was lost. Skip instances not newer than last persisted one, unless its a merged copy of
+            // it with more metrics (monitoring agent merges metrics that come in late for same time)
+            Collections.sort(resourceCollectionInstances, new Comparator<ResourceCollectionInstance>() {
+                public int compare(ResourceCollectionInstance one, ResourceCollectionInstance other) {
+                    return one.getTime().compareTo(other.getTime());
                 }
+            });
+            ResourceCollectionInstance resourceLastInstance = resourcesLastInstance.get(lastInstanceKey);
+            StringBuilder newInstances = new StringBuilder();
 
-                if(persistStat) {
-                    FileHelper.persistStream(new ByteArrayInputStream((objectMapper.writeValueAsString(resourceCollectionInstances) + "\n"). // knocking off resource name from the files
-                            getBytes()),
-                            jobMonitoringStatsPath, true);
-                    resourcesLastInstance.put(resource, resourceCollectionInstance);
+            for(ResourceCollectionInstance resourceCollectionInstance : resourceCollectionInstances) {
+                if(resourceLastInstance == null || resourceCollectionInstance.getTime() > resourceLastInstance.getTime()
+                        || (resourceCollectionInstance.getTime().equals(resourceLastInstance.getTime())
+                            && !resourceCollectionInstance.getMetrics().equals(resourceLastInstance.getMetrics()))) {
+                    newInstances.append(objectMapper.writeValueAsString(Arrays.asList(resourceCollectionInstance))).append("\n"); // knocking off resource name from the files
                     resourceLastInstance = resourceCollectionInstance;
                 }
             }
+            if(newInstances.length() > 0)
+                FileHelper.persistStream(new ByteArrayInputStream(newInstances.toString().getBytes()), jobMonitoringStatsPath, true);
             if(resourceLastInstance != null)
                 FileHelper.persistStream(new ByteArrayInputStream(objectMapper.writeValueAsString(resourceLastInstance).getBytes()), jobMonitoringStatsPath+".last", false);
-            resourcesLastInstance.put(resource, resourceLastInstance);
+            resourcesLastInstance.put(lastInstanceKey, resourceLastInstance);
         }
         jobLastResourceMetricInstanceMap.put(jobId, resourcesLastInstance);
     }
@@ -430,12 +510,22 @@ public class JobResource {
     @GET
     @Timed
     @Produces(MediaType.TEXT_PLAIN)
-    public InputStream getJobMonitoringResourceStats(@PathParam("jobId") String jobId,
-                                                     @PathParam("agent") String agent,
-                                                     @PathParam("resourceName") String resourceName,
-                                                     @QueryParam("last") @DefaultValue("false") BooleanParam last) throws IOException, ExecutionException {
+    public Response getJobMonitoringResourceStats(@PathParam("jobId") String jobId,
+                                                  @PathParam("agent") String agent,
+                                                  @PathParam("resourceName") String resourceName,
+                                                  @QueryParam("last") @DefaultValue("false") BooleanParam last,
+                                                  @QueryParam("from") @DefaultValue("-1") LongParam from,
+                                                  @QueryParam("to") @DefaultValue("-1") LongParam to,
+                                                  @QueryParam("maxPoints") @DefaultValue("-1") IntParam maxPoints,
+                                                  @QueryParam("aggregation") @DefaultValue("minmax") String aggregation,
+                                                  @QueryParam("since") @DefaultValue("-1") LongParam since) throws IOException, ExecutionException {
         jobExistsOrException(jobId);
-        return jobStatsHelper.getJobMonitoringResourceStats(jobId, agent, resourceName, last.get());
+        if(last.get())
+            return Response.ok(jobStatsHelper.getJobMonitoringResourceStats(jobId, agent, resourceName, true)).build();
+
+        StatsQueryHelper.StatsQueryResult result = jobStatsHelper.queryJobMonitoringResourceStats(jobId, agent, resourceName,
+                statsQuery(from, to, maxPoints, aggregation, since));
+        return statsResponse(result);
     }
 
     /**
@@ -492,6 +582,25 @@ public class JobResource {
     }
 
 
+    /**
+     * Sample monitoring of the job at high frequency for a while, to look closely at a spike
+     * @param jobId
+     * @param intervalMS
+     * @param durationMS
+     * @throws java.io.IOException
+     */
+    @Path("/{jobId}/monitoringBurst")
+    @PUT
+    @Timed
+    public void burstJobMonitoring(@PathParam("jobId") String jobId,
+                                   @QueryParam("intervalMS") @DefaultValue("100") int intervalMS,
+                                   @QueryParam("durationMS") @DefaultValue("10000") int durationMS) throws IOException, ExecutionException {
+        Job job = jobExistsOrException(jobId);
+        if(!job.isRunning())
+            throw new WebApplicationException(ResponseBuilder.badRequest("Job " + jobId + " isn't running"));
+        job.burstMonitoring(intervalMS, durationMS);
+    }
+
     /**
      * Will be called from Loader Server Management UI To kill the job in all agents
      * @param jobId
@@ -547,6 +656,24 @@ public class JobResource {
                 persist();
     }
 
+    private StatsQueryHelper.StatsQuery statsQuery(LongParam from, LongParam to, IntParam maxPoints, String aggregation, LongParam since) {
+        return new StatsQueryHelper.StatsQuery().
+                setFrom(from.get()).
+                setTo(to.get()).
+                setMaxPoints(maxPoints.get()).
+                setAggregation(StatsQueryHelper.aggregation(aggregation)).
+                setSince(since.get());
+    }
+
+    /**
+     * Stats lines are returned in body and the cursor to poll for newer lines in X-Stats-Cursor header
+     */
+    private Response statsResponse(StatsQueryHelper.StatsQueryResult result) throws IOException {
+        return Response.ok(result.asStream()).
+                header(STATS_CURSOR_HEADER, String.valueOf(result.getCursor())).
+                build();
+    }
+
     private Job raiseJobRequest(JobRequest jobRequest) throws IOException {
         Job job = new Job().
                 setJobId(UUID.randomUUID().toString()).
@@ -6,16 +6,16 @@ import com.flipkart.perf.server.cache.LibCache;
 import com.flipkart.perf.server.client.LoaderAgentClient;
 import com.flipkart.perf.server.config.AgentConfig;
 import com.flipkart.perf.server.config.ResourceStorageFSConfig;
+import com.flipkart.perf.server.domain.InputFileSwarmRequest;
+import com.flipkart.perf.server.domain.LoadPart;
+import com.flipkart.perf.server.domain.LoaderAgent;
 import com.flipkart.perf.server.exception.LibNotDeployedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.*;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.*;
 
 /**
  * Created with IntelliJ IDEA.
@@ -27,12 +27,22 @@ import java.util.concurrent.ExecutionException;
 public class DeploymentHelper {
     private static Logger logger = LoggerFactory.getLogger(DeploymentHelper.class);
     private static DeploymentHelper myInstance;
+    private static final int UPLOAD_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int UPLOAD_ATTEMPTS = 3;
+    private static final String CONTENT_HASH = "contentHash";
+
     private final AgentConfig agentConfig;
     private final ResourceStorageFSConfig resourceStorageFSConfig;
+    private final ExecutorService deploymentExecutor;
+    // file path -> {length:lastModified, content hash}. Saves re-hashing big artifacts for every job
+    private final Map<String, String[]> contentHashes = new ConcurrentHashMap<String, String[]>();
+    // input file content hash -> chunk hashes
+    private final Map<String, InputFileSwarmRequest> swarmManifests = new ConcurrentHashMap<String, InputFileSwarmRequest>();
 
     private DeploymentHelper(AgentConfig agentConfig, ResourceStorageFSConfig resourceStorageFSConfig) {
         this.agentConfig = agentConfig;
         this.resourceStorageFSConfig = resourceStorageFSConfig;
+        this.deploymentExecutor = Executors.newFixedThreadPool(agentConfig.getDeploymentParallelism());
     }
 
     public static DeploymentHelper initialize(AgentConfig agentConfig, ResourceStorageFSConfig resourceStorageFSConfig) {
@@ -45,6 +55,104 @@ public class DeploymentHelper {
         return myInstance;
     }
 
+    /**
+     * Deploy platform libs, udf libs and input files needed by load parts on agents. Agents are laid out in load part
+     * order (as done while submitting job), so every agent gets only what its load part needs. Agents are deployed in
+     * parallel (bounded by deploymentParallelism), deployments on one agent happen one after another.
+     */
+    public void deployOnAgents(List<LoadPart> loadParts, List<LoaderAgent> agents)
+            throws IOException, ExecutionException, InterruptedException, LibNotDeployedException {
+        // Hash shared artifacts once before fanning out
+        if(LibCache.instance().getPlatformZipPath() != null)
+            contentHash(new File(LibCache.instance().getPlatformZipPath()));
+
+        // Input file each agent should get, per resource. Sharded resources give every agent its own line aligned part
+        List<Map<String, File>> agentInputFiles = new ArrayList<Map<String, File>>();
+        Map<String, List<Integer>> shardedResourceAgents = new LinkedHashMap<String, List<Integer>>();
+        int agentI = 0;
+        for(LoadPart loadPart : loadParts) {
+            for(int i = 0; i < loadPart.getAgents() && agentI < agents.size(); i++, agentI++) {
+                Map<String, File> inputFiles = new LinkedHashMap<String, File>();
+                for(String inputFileResource : loadPart.getInputFileResources()) {
+                    inputFiles.put(inputFileResource, new File(resourceStorageFSConfig.getInputFilePath(inputFileResource)));
+                    if(loadPart.isSharded(inputFileResource)) {
+                        List<Integer> resourceAgents = shardedResourceAgents.get(inputFileResource);
+                        if(resourceAgents == null) {
+                            resourceAgents = new ArrayList<Integer>();
+                            shardedResourceAgents.put(inputFileResource, resourceAgents);
+                        }
+                        resourceAgents.add(agentI);
+                    }
+                }
+                agentInputFiles.add(inputFiles);
+            }
+        }
+        for(Map.Entry<String, List<Integer>> resourceAgents : shardedResourceAgents.entrySet()) {
+            List<File> shards = shardInputFile(resourceAgents.getKey(), resourceAgents.getValue().size());
+            for(int shard = 0; shard < shards.size(); shard++)
+                agentInputFiles.get(resourceAgents.getValue().get(shard)).put(resourceAgents.getKey(), shards.get(shard));
+        }
+
+        // Big input files needed by many agents are fetched by agents from each other first. Shards differ per agent
+        // so they are left out
+        Map<String, List<String>> inputFileAgents = new LinkedHashMap<String, List<String>>();
+        for(agentI = 0; agentI < agentInputFiles.size(); agentI++) {
+            for(String inputFileResource : agentInputFiles.get(agentI).keySet()) {
+                if(shardedResourceAgents.containsKey(inputFileResource))
+                    continue;
+                List<String> resourceAgents = inputFileAgents.get(inputFileResource);
+                if(resourceAgents == null) {
+                    resourceAgents = new ArrayList<String>();
+                    inputFileAgents.put(inputFileResource, resourceAgents);
+                }
+                resourceAgents.add(agents.get(agentI).getIp());
+            }
+        }
+        for(Map.Entry<String, List<String>> resourceAgents : inputFileAgents.entrySet())
+            swarmInputFileOnAgents(resourceAgents.getKey(), resourceAgents.getValue());
+
+        List<Future<Void>> deployments = new ArrayList<Future<Void>>();
+        agentI = 0;
+        for(LoadPart loadPart : loadParts) {
+            StringBuilder classListWithNewLine = new StringBuilder();
+            for(String clazz : loadPart.getClasses())
+                classListWithNewLine.append(clazz+"\n");
+            final String classListStr = classListWithNewLine.toString().trim();
+
+            for(String lib : makeLibClassListMap(classListStr).keySet())
+                contentHash(new File(lib));
+            for(String inputFileResource : loadPart.getInputFileResources())
+                contentHash(new File(resourceStorageFSConfig.getInputFilePath(inputFileResource)));
+
+            for(int i = 0; i < loadPart.getAgents() && agentI < agents.size(); i++, agentI++) {
+                final String agentIP = agents.get(agentI).getIp();
+                final Map<String, File> inputFiles = agentInputFiles.get(agentI);
+                deployments.add(deploymentExecutor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        deployPlatformLibsOnAgent(agentIP);
+                        deployUDFLibsOnAgent(agentIP, classListStr);
+                        deployInputFilesOnAgent(agentIP, inputFiles);
+                        return null;
+                    }
+                }));
+            }
+        }
+
+        try {
+            for(Future<Void> deployment : deployments)
+                deployment.get();
+        }
+        catch (ExecutionException e) {
+            for(Future<Void> deployment : deployments)
+                deployment.cancel(true);
+            Throwable cause = e.getCause();
+            if(cause instanceof LibNotDeployedException)
+                throw (LibNotDeployedException) cause;
+            if(cause instanceof IOException)
+                throw (IOException) cause;
+            throw e;
+        }
+    }
 
     /**
      * Deploy platform libs on agent if they are not already deployed at all or if new platform libs not deployed
@@ -66,123 +174,416 @@ public class DeploymentHelper {
      * @throws InterruptedException
      */
     public void deployPlatformLibsOnAgent(String agentIP, boolean force) throws IOException, ExecutionException, InterruptedException, LibNotDeployedException {
+        if(LibCache.instance().getPlatformZipPath() == null) {
+            throw new LibNotDeployedException("Platform Lib Not Deployed Yet on Loader Server. Deploy them before submitting another job");
+        }
+        File platformZip = new File(LibCache.instance().getPlatformZipPath());
+        String platformZipHash = contentHash(platformZip);
+
         String agentPlatformInfoFile = this.agentConfig.getAgentPlatformLibInfoFile(agentIP);
-        boolean deployPlatformLib;
         File platformFile = new File(agentPlatformInfoFile);
+        Properties prop = new Properties();
+        if(platformFile.exists())
+            loadProperties(prop, platformFile);
 
-        if(force)
-            deployPlatformLib = true;
-        else {
-            if(platformFile.exists()) {
-                Properties prop = new Properties();
-                prop.load(new FileInputStream(platformFile));
-                if(prop.get("deploymentTime") != null) {
-                    long deploymentTimeInAgent = Long.parseLong(prop.get("deploymentTime").toString());
-                    long deploymentTimeInServer = new File(this.resourceStorageFSConfig.getPlatformLibPath()).lastModified();
-                    deployPlatformLib = deploymentTimeInServer > deploymentTimeInAgent;
-                }
-                else
-                    deployPlatformLib = true;
-            }
-            else {
-                deployPlatformLib = true;
-            }
-        }
-
-        if(deployPlatformLib) {
+        if(force || !platformZipHash.equals(prop.get(CONTENT_HASH))) {
             logger.info("Deploying Platform Lib on Agent "+agentIP);
-            Properties prop = new Properties();
-            if(new LoaderAgentClient(agentIP,
-                    AgentsCache.getAgentPort(agentIP)).deployPlatformLibs()) {
+            LoaderAgentClient agentClient = new LoaderAgentClient(agentIP, AgentsCache.getAgentPort(agentIP));
+            upload(agentClient, platformZip, platformZipHash);
+            if(agentClient.deployUploadedPlatformLibs(platformZipHash)) {
+                prop.put(CONTENT_HASH, platformZipHash);
                 prop.put("deploymentTime", String.valueOf(System.currentTimeMillis()));
                 FileHelper.createFilePath(platformFile.getAbsolutePath());
-                prop.store(new FileOutputStream(platformFile), "Platform Lib Information");
+                storeProperties(prop, platformFile, "Platform Lib Information");
             }
             else {
                 logger.error("Platform Lib Deployment Failed on Agent "+agentIP);
                 throw new IOException("Platform Lib Deployment Failed on Agent "+agentIP);
             }
         }
+        else {
+            logger.info("Platform Lib "+platformZipHash+" already deployed on Agent "+agentIP);
+        }
     }
 
     public void deployUDFLibsOnAgent(String agentIP, String classListStr) throws IOException, ExecutionException, InterruptedException, LibNotDeployedException {
         deployUDFLibsOnAgent(agentIP, classListStr, false);
     }
 
+    /**
+     * Deploy libs having given classes on agent. Agent class lib info file keeps content hash of every lib deployed
+     * on agent, libs with same hash are skipped unless forced.
+     */
     public void deployUDFLibsOnAgent(String agentIP, String classListStr, boolean force) throws IOException, ExecutionException, InterruptedException, LibNotDeployedException {
         Map<String, String> libClassListMap = makeLibClassListMap(classListStr);
         String agentClassLibInfoFile = this.agentConfig.getAgentClassLibInfoFile(agentIP);
         File classLibDeploymentFile = new File (agentClassLibInfoFile);
 
         Properties prop = new Properties();
-        if(classLibDeploymentFile.exists()) {
-            prop.load(new FileInputStream(classLibDeploymentFile.getAbsolutePath()));
-            boolean deployLib;
-
-            for(String lib : libClassListMap.keySet()) {
-                Object libDeploymentTimeAgentObj = prop.get(lib);
-                if(libDeploymentTimeAgentObj == null)
-                    deployLib = true;
-                else {
-                    long libDeploymentTimeAgent = Long.parseLong(libDeploymentTimeAgentObj.toString());
-                    long libDeploymentTimeServer = new File(lib).lastModified();
-                    deployLib = libDeploymentTimeServer > libDeploymentTimeAgent;
+        if(classLibDeploymentFile.exists())
+            loadProperties(prop, classLibDeploymentFile);
+        else
+            FileHelper.createFilePath(classLibDeploymentFile.getAbsolutePath());
+
+        LoaderAgentClient agentClient = new LoaderAgentClient(agentIP,AgentsCache.getAgentPort(agentIP));
+        for(String lib : libClassListMap.keySet()) {
+            String libHash = contentHash(new File(lib));
+            if(!force && libHash.equals(prop.get(lib)))
+                continue;
+
+            logger.info("Deploying Lib "+lib+" on Agent "+agentIP);
+            upload(agentClient, new File(lib), libHash);
+            if(agentClient.deployUploadedUDFLib(libHash, lib, libClassListMap.get(lib))) {
+                prop.put(lib, libHash);
+            }
+            else {
+                logger.error("Class Lib Deployment Failed on Agent "+agentIP);
+                throw new IOException("Class Lib Deployment Failed on Agent "+agentIP);
+            }
+        }
+        storeProperties(prop, classLibDeploymentFile, "ClassLib Deployment content hashes");
+    }
+
+    public void deployInputFilesOnAgent(String agentIP, List<String> inputFileResourceNames) throws IOException, ExecutionException, InterruptedException, LibNotDeployedException {
+        Map<String, File> inputFiles = new LinkedHashMap<String, File>();
+        for(String inputFileResourceName : inputFileResourceNames)
+            inputFiles.put(inputFileResourceName, new File(resourceStorageFSConfig.getInputFilePath(inputFileResourceName)));
+        deployInputFilesOnAgent(agentIP, inputFiles);
+    }
+
+    /**
+     * Deploy input files on agent, each under its resource name. File deployed could be the whole input file or
+     * agent's shard of it. Agent deployment info keeps content hash of what was deployed, so switching between
+     * whole file and shards (or between shards) redeploys.
+     */
+    private void deployInputFilesOnAgent(String agentIP, Map<String, File> inputFiles) throws IOException, ExecutionException, InterruptedException {
+        for(Map.Entry<String, File> inputFile : inputFiles.entrySet()) {
+            String inputFileResourceName = inputFile.getKey();
+            File inputFileResource = inputFile.getValue();
+            String inputFileHash = contentHash(inputFileResource);
+            File agentDeploymentFile = new File(resourceStorageFSConfig.getInputFileAgentDeploymentPath(inputFileResourceName));
+
+            Map agentDeploymentInfoMap;
+            synchronized (this) {
+                agentDeploymentInfoMap = ObjectMapperUtil.instance().readValue(agentDeploymentFile, Map.class);
+            }
+            if(inputFileHash.equals(agentDeploymentInfoMap.get(agentIP)))
+                continue;
+
+            logger.info("Deploying Input File Resource '"+inputFileResourceName+"' ("+inputFileResource.getName()+") on agent "+agentIP);
+            LoaderAgentClient agentClient = new LoaderAgentClient(agentIP, AgentsCache.getAgentPort(agentIP));
+            upload(agentClient, inputFileResource, inputFileHash);
+            if(agentClient.deployUploadedInputFile(inputFileResourceName, inputFileHash)) {
+                // Other agents might be getting same input file in parallel
+                recordInputFileDeployment(agentDeploymentFile, agentIP, inputFileHash);
+            }
+            else {
+                logger.error("Input File Resource '"+inputFileResourceName+"' Failed on Agent "+agentIP);
+                throw new IOException("Input File Resource '"+inputFileResourceName+"' Failed on Agent "+agentIP);
+            }
+        }
+    }
+
+    /**
+     * Split input file in given number of line aligned shards of roughly equal size. Shards are kept per content hash
+     * and shard count, so repeated runs on same number of agents reuse them. Shard sets of older content are removed.
+     * A file with fewer lines than shards leaves trailing shards empty.
+     */
+    synchronized List<File> shardInputFile(String inputFileResourceName, int shards) throws IOException {
+        File inputFileResource = new File(resourceStorageFSConfig.getInputFilePath(inputFileResourceName));
+        String inputFileHash = contentHash(inputFileResource);
+
+        List<File> shardFiles = new ArrayList<File>(shards);
+        for(int shard = 0; shard < shards; shard++)
+            shardFiles.add(new File(resourceStorageFSConfig.getInputFileShardPath(inputFileResourceName, inputFileHash, shards, shard)));
+        File shardSetFolder = shardFiles.get(0).getParentFile();
+        File completeMarker = new File(shardSetFolder, "complete");
+        if(completeMarker.exists())
+            return shardFiles;
+
+        File shardsFolder = new File(resourceStorageFSConfig.getInputFileShardsPath(inputFileResourceName));
+        File[] shardSets = shardsFolder.listFiles();
+        if(shardSets != null)
+            for(File shardSet : shardSets)
+                if(!shardSet.getName().startsWith(inputFileHash + "-"))
+                    FileHelper.remove(shardSet.getAbsolutePath());
+
+        logger.info("Splitting input file '"+inputFileResourceName+"' in "+shards+" shards");
+        FileHelper.createFilePath(shardFiles.get(0).getAbsolutePath());
+        long shardSize = inputFileResource.length() / shards;
+        long written = 0;
+        int shard = 0;
+        byte[] buffer = new byte[64 * 1024];
+        InputStream is = new FileInputStream(inputFileResource);
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(shardFiles.get(shard)), buffer.length);
+        try {
+            int bytesRead;
+            while((bytesRead = is.read(buffer)) > 0) {
+                int from = 0;
+                for(int i = 0; i < bytesRead && shard < shards - 1; i++) {
+                    // Move to next shard only at line end, once this shard has its share of bytes
+                    if(buffer[i] == '\n' && written + (i - from + 1) >= shardSize * (shard + 1)) {
+                        os.write(buffer, from, i - from + 1);
+                        written += i - from + 1;
+                        from = i + 1;
+                        os.close();
+                        os = new BufferedOutputStream(new FileOutputStream(shardFiles.get(++shard)), buffer.length);
+                    }
                 }
+                os.write(buffer, from, bytesRead - from);
+                written += bytesRead - from;
+            }
+            os.close();
+            for(shard = shard + 1; shard < shards; shard++)
+                new FileOutputStream(shardFiles.get(shard)).close();
+        }
+        finally {
+            is.close();
+            FileHelper.close(os);
+        }
+        completeMarker.createNewFile();
+        return shardFiles;
+    }
+
+    /**
+     * Have agents fetch input file chunk by chunk from each other, with server only seeding chunks no agent has yet.
+     * Used when file is bigger than inputFileSwarmThreshold and more than one agent needs it. Agents on which swarm
+     * fails, or which aren't done in inputFileSwarmTimeoutMS, are left as is and get the file uploaded directly later.
+     */
+    private void swarmInputFileOnAgents(String inputFileResourceName, List<String> agentIPs) throws IOException, InterruptedException {
+        File inputFileResource = new File(resourceStorageFSConfig.getInputFilePath(inputFileResourceName));
+        if(inputFileResource.length() < agentConfig.getInputFileSwarmThreshold())
+            return;
+
+        String inputFileHash = contentHash(inputFileResource);
+        File agentDeploymentFile = new File(resourceStorageFSConfig.getInputFileAgentDeploymentPath(inputFileResourceName));
+        Map agentDeploymentInfoMap = ObjectMapperUtil.instance().readValue(agentDeploymentFile, Map.class);
+
+        List<String> swarmAgents = new ArrayList<String>();
+        Map<String, LoaderAgentClient> agentClients = new HashMap<String, LoaderAgentClient>();
+        for(String agentIP : new LinkedHashSet<String>(agentIPs)) {
+            if(!inputFileHash.equals(agentDeploymentInfoMap.get(agentIP))) {
+                swarmAgents.add(agentIP);
+                agentClients.put(agentIP, new LoaderAgentClient(agentIP, AgentsCache.getAgentPort(agentIP)));
+            }
+        }
+        if(swarmAgents.size() < 2)
+            return;
+
+        InputFileSwarmRequest swarmRequest = inputFileSwarmRequest(inputFileResourceName, inputFileResource, inputFileHash);
+        logger.info("Swarming input file '"+inputFileResourceName+"' ("+swarmRequest.getChunks().size()+" chunks) on agents "+swarmAgents);
+
+        Set<String> pendingAgents = new LinkedHashSet<String>();
+        for(String agentIP : swarmAgents) {
+            List<String> peers = new ArrayList<String>();
+            for(String peerIP : swarmAgents)
+                if(!peerIP.equals(agentIP))
+                    peers.add(peerIP + ":" + agentClients.get(peerIP).getPort());
+            try {
+                agentClients.get(agentIP).startInputFileSwarm(swarmRequest.setPeers(peers));
+                pendingAgents.add(agentIP);
+            }
+            catch (Exception e) {
+                logger.warn("Couldn't start input file swarm on agent "+agentIP, e);
+            }
+        }
 
-                if(deployLib || force) {
-                    if(new LoaderAgentClient(agentIP,AgentsCache.getAgentPort(agentIP)).
-                            deployUDFLib(lib,
-                                    libClassListMap.get(lib))) {
-                        prop.put(lib, String.valueOf(System.currentTimeMillis()));
+        Map<String, Integer> statusFailures = new HashMap<String, Integer>();
+        long swarmDeadline = System.currentTimeMillis() + agentConfig.getInputFileSwarmTimeoutMS();
+        try {
+            while(pendingAgents.size() > 0) {
+                if(System.currentTimeMillis() >= swarmDeadline) {
+                    logger.warn("Input file swarm of '"+inputFileResourceName+"' not done in "+agentConfig.getInputFileSwarmTimeoutMS()
+                            +"ms on agents "+pendingAgents+". File would be uploaded directly");
+                    pendingAgents.clear();
+                    break;
+                }
+                Thread.sleep(1000);
+                for(String agentIP : new ArrayList<String>(pendingAgents)) {
+                    LoaderAgentClient agentClient = agentClients.get(agentIP);
+                    try {
+                        String swarmStatus = agentClient.inputFileSwarmStatus(inputFileHash).get("status").toString();
+                        if(swarmStatus.equals("COMPLETE")) {
+                            pendingAgents.remove(agentIP);
+                            if(agentClient.deployUploadedInputFile(inputFileResourceName, inputFileHash))
+                                recordInputFileDeployment(agentDeploymentFile, agentIP, inputFileHash);
+                        }
+                        else if(swarmStatus.equals("FAILED")) {
+                            pendingAgents.remove(agentIP);
+                            logger.warn("Input file swarm failed on agent "+agentIP+". File would be uploaded directly");
+                        }
                     }
-                    else {
-                        logger.error("Class Lib Deployment Failed on Agent "+agentIP);
-                        throw new IOException("Class Lib Deployment Failed on Agent "+agentIP);
+                    catch (Exception e) {
+                        Integer failures = statusFailures.get(agentIP);
+                        failures = failures == null ? 1 : failures + 1;
+                        statusFailures.put(agentIP, failures);
+                        if(failures >= UPLOAD_ATTEMPTS) {
+                            pendingAgents.remove(agentIP);
+                            logger.warn("Lost track of input file swarm on agent "+agentIP+". File would be uploaded directly", e);
+                        }
                     }
                 }
             }
         }
-        else {
-            FileHelper.createFilePath(classLibDeploymentFile.getAbsolutePath());
-            for(String lib : libClassListMap.keySet()) {
-                if(new LoaderAgentClient(agentIP,AgentsCache.getAgentPort(agentIP)).
-                        deployUDFLib(lib,
-                                libClassListMap.get(lib))) {
-                    prop.put(lib, String.valueOf(System.currentTimeMillis()));
+        finally {
+            for(String agentIP : swarmAgents) {
+                try {
+                    agentClients.get(agentIP).endInputFileSwarm(inputFileHash);
                 }
-                else {
-                    logger.error("Class Lib Deployment Failed on Agent "+agentIP);
-                    throw new IOException("Class Lib Deployment Failed on Agent "+agentIP);
+                catch (Exception e) {
+                    logger.warn("Couldn't end input file swarm on agent "+agentIP+". "+e.getMessage());
                 }
             }
         }
-        prop.store(new FileOutputStream(classLibDeploymentFile), "ClassLib Deployment times");
     }
 
-    public void deployInputFilesOnAgent(String agentIP, List<String> inputFileResourceNames) throws IOException, ExecutionException, InterruptedException, LibNotDeployedException {
-        for(String inputFileResourceName : inputFileResourceNames) {
-            String inputFileResourcePath = resourceStorageFSConfig.getInputFilePath(inputFileResourceName);
-            Map agentDeploymentInfoMap = ObjectMapperUtil.instance().
-                    readValue(new File(resourceStorageFSConfig.getInputFileAgentDeploymentPath(inputFileResourceName)), Map.class);
-            boolean toDeploy = true;
-            if(agentDeploymentInfoMap.containsKey(agentIP)) {
-                toDeploy = Long.parseLong(agentDeploymentInfoMap.get(agentIP).toString()) < new File(inputFileResourcePath).lastModified();
-            }
-
-            if(toDeploy) {
-                logger.info("Deploying Input File Resource '"+inputFileResourceName+"' on agent "+agentIP);
-                if(new LoaderAgentClient(agentIP, AgentsCache.getAgentPort(agentIP)).
-                        deployInputFile(inputFileResourceName, inputFileResourcePath)) {
-                    agentDeploymentInfoMap.put(agentIP, System.currentTimeMillis());
-                    ObjectMapperUtil.instance().writerWithDefaultPrettyPrinter().
-                            writeValue(new File(resourceStorageFSConfig.getInputFileAgentDeploymentPath(inputFileResourceName)), agentDeploymentInfoMap);
+    /**
+     * Chunk hashes of input file, computed once per content
+     */
+    private InputFileSwarmRequest inputFileSwarmRequest(String inputFileResourceName, File inputFileResource, String inputFileHash) throws IOException {
+        InputFileSwarmRequest manifest = swarmManifests.get(inputFileHash);
+        if(manifest == null) {
+            int chunkSize = agentConfig.getInputFileChunkSize();
+            manifest = new InputFileSwarmRequest().
+                    setContentHash(inputFileHash).
+                    setLength(inputFileResource.length()).
+                    setChunkSize(chunkSize);
+
+            byte[] chunk = new byte[chunkSize];
+            InputStream is = new BufferedInputStream(new FileInputStream(inputFileResource));
+            try {
+                int chunkLength;
+                while((chunkLength = readFully(is, chunk)) > 0)
+                    manifest.getChunks().add(FileHelper.contentHash(chunkLength == chunkSize ? chunk : Arrays.copyOf(chunk, chunkLength)));
+            }
+            finally {
+                is.close();
+            }
+            swarmManifests.put(inputFileHash, manifest);
+        }
+
+        // Every swarm gets its own copy as peers differ
+        return new InputFileSwarmRequest().
+                setResourceName(inputFileResourceName).
+                setContentHash(manifest.getContentHash()).
+                setLength(manifest.getLength()).
+                setChunkSize(manifest.getChunkSize()).
+                setChunks(manifest.getChunks());
+    }
+
+    private static int readFully(InputStream is, byte[] buffer) throws IOException {
+        int total = 0;
+        int bytesRead;
+        while(total < buffer.length && (bytesRead = is.read(buffer, total, buffer.length - total)) > 0)
+            total += bytesRead;
+        return total;
+    }
+
+    private synchronized void recordInputFileDeployment(File agentDeploymentFile, String agentIP, String inputFileHash) throws IOException {
+        Map agentDeploymentInfoMap = ObjectMapperUtil.instance().readValue(agentDeploymentFile, Map.class);
+        agentDeploymentInfoMap.put(agentIP, inputFileHash);
+        ObjectMapperUtil.instance().writerWithDefaultPrettyPrinter().
+                writeValue(agentDeploymentFile, agentDeploymentInfoMap);
+    }
+
+    /**
+     * Upload artifact to agent in chunks. Transfer resumes from whatever agent already has, so a broken transfer (or
+     * a retry) doesn't start from scratch. A chunk gets UPLOAD_ATTEMPTS before upload is given up on.
+     */
+    private void upload(LoaderAgentClient agentClient, File artifact, String contentHash) throws IOException, ExecutionException, InterruptedException {
+        long length = artifact.length();
+        int failedAttempts = 0;
+        RandomAccessFile raf = new RandomAccessFile(artifact, "r");
+        try {
+            Map uploadStatus = agentClient.uploadStatus(contentHash);
+            if(Long.parseLong(uploadStatus.get("receivedBytes").toString()) > 0 && !(Boolean) uploadStatus.get("complete"))
+                logger.info("Resuming upload of "+artifact.getName()+" to agent "+agentClient.getHost()+" from byte "+uploadStatus.get("receivedBytes"));
+
+            byte[] buffer = new byte[(int) Math.min(UPLOAD_CHUNK_SIZE, Math.max(1, length))];
+            boolean refreshStatus = false;
+            while(refreshStatus || !(Boolean) uploadStatus.get("complete")) {
+                long offset = Long.parseLong(uploadStatus.get("receivedBytes").toString());
+                byte[] chunk = refreshStatus ? null : readChunk(raf, buffer, offset, length);
+                try {
+                    if(refreshStatus) {
+                        // Agent may have appended the chunk before connection broke
+                        uploadStatus = agentClient.uploadStatus(contentHash);
+                        refreshStatus = false;
+                    }
+                    else {
+                        uploadStatus = agentClient.uploadChunk(contentHash, chunk, offset, length);
+                    }
+                    // Attempts are per chunk, so that a long upload isn't given up on over failures far apart
+                    if(Long.parseLong(uploadStatus.get("receivedBytes").toString()) > offset)
+                        failedAttempts = 0;
                 }
-                else {
-                    logger.error("Input File Resource '"+inputFileResourceName+"' Failed on Agent "+agentIP);
-                    throw new IOException("Input File Resource '"+inputFileResourceName+"' Failed on Agent "+agentIP);
+                catch (IOException e) {
+                    uploadFailed(agentClient, artifact, offset, ++failedAttempts, e);
+                    refreshStatus = true;
+                }
+                catch (ExecutionException e) {
+                    // Broken connection, reset or time out
+                    uploadFailed(agentClient, artifact, offset, ++failedAttempts, e);
+                    refreshStatus = true;
                 }
             }
         }
+        finally {
+            FileHelper.close(raf);
+        }
+    }
+
+    private static byte[] readChunk(RandomAccessFile raf, byte[] buffer, long offset, long length) throws IOException {
+        int chunkSize = (int) Math.min(buffer.length, length - offset);
+        raf.seek(offset);
+        raf.readFully(buffer, 0, chunkSize);
+        return chunkSize == buffer.length ? buffer : Arrays.copyOf(buffer, chunkSize);
+    }
+
+    /**
+     * Gives up on upload once attempts run out
+     */
+    private void uploadFailed(LoaderAgentClient agentClient, File artifact, long offset, int failedAttempts, Exception e) throws IOException {
+        if(failedAttempts >= UPLOAD_ATTEMPTS) {
+            if(e instanceof IOException)
+                throw (IOException) e;
+            throw new IOException("Upload of "+artifact.getName()+" to agent "+agentClient.getHost()+" failed at byte "+offset, e);
+        }
+        logger.warn("Upload of "+artifact.getName()+" to agent "+agentClient.getHost()+" failed at byte "+offset+". Retrying", e);
+    }
+
+    /**
+     * Content hash of file, recomputed only if file length or modification time changed
+     */
+    public String contentHash(File file) throws IOException {
+        String fileVersion = file.length() + ":" + file.lastModified();
+        String[] cachedHash = contentHashes.get(file.getAbsolutePath());
+        if(cachedHash != null && cachedHash[0].equals(fileVersion))
+            return cachedHash[1];
+
+        String hash = FileHelper.contentHash(file);
+        contentHashes.put(file.getAbsolutePath(), new String[]{fileVersion, hash});
+        return hash;
+    }
+
+    private static void loadProperties(Properties prop, File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            prop.load(is);
+        }
+        finally {
+            is.close();
+        }
+    }
+
+    private static void storeProperties(Properties prop, File file, String comments) throws IOException {
+        OutputStream os = new FileOutputStream(file);
+        try {
+            prop.store(os, comments);
+        }
+        finally {
+            os.close();
+        }
     }
 
     private Map<String, String> makeLibClassListMap(String classListStr) throws LibNotDeployedException {
@@ -2,8 +2,10 @@ package com.flipkart.perf.server.util;
 
 
 import com.flipkart.perf.common.util.FileHelper;
+import com.flipkart.perf.common.util.FileWatcher;
 import com.flipkart.perf.domain.Group;
 import com.flipkart.perf.domain.GroupFunction;
+import com.flipkart.perf.server.cache.JobStatsMetaCache;
 import com.flipkart.perf.server.cache.JobsCache;
 import com.flipkart.perf.server.config.AgentConfig;
 import com.flipkart.perf.server.config.JobFSConfig;
@@ -26,18 +28,23 @@ import java.util.concurrent.ExecutionException;
  */
 public class JobStatsHelper {
     private JobFSConfig jobFSConfig;
+    private final FileWatcher watcher;
     private static JobStatsHelper instance;
     private static ObjectMapper objectMapper = ObjectMapperUtil.instance();
     private static Logger logger = LoggerFactory.getLogger(JobStatsHelper.class);
 
 
-    public JobStatsHelper(JobFSConfig jobFSConfig, AgentConfig agentConfig, MonitoringAgentConfig monitoringAgentConfig) {
+    /**
+     * @param watcher told about stats files written here, so that crunch daemons pick them up right away
+     */
+    public JobStatsHelper(JobFSConfig jobFSConfig, AgentConfig agentConfig, MonitoringAgentConfig monitoringAgentConfig, FileWatcher watcher) {
         this.jobFSConfig = jobFSConfig;
+        this.watcher = watcher;
     }
 
-    public static JobStatsHelper build(JobFSConfig jobFSConfig, AgentConfig agentConfig, MonitoringAgentConfig monitoringAgentConfig) {
+    public static JobStatsHelper build(JobFSConfig jobFSConfig, AgentConfig agentConfig, MonitoringAgentConfig monitoringAgentConfig, FileWatcher watcher) {
         if(instance == null)
-            instance = new JobStatsHelper(jobFSConfig, agentConfig, monitoringAgentConfig);
+            instance = new JobStatsHelper(jobFSConfig, agentConfig, monitoringAgentConfig, watcher);
         return instance;
     }
 
@@ -78,9 +85,25 @@ public class JobStatsHelper {
             FileHelper.createFilePath(jobStatsPath);
             FileHelper.persistStream(fis, jobStatsPath, true);
             fis.close();
+            watcher.changed(jobId, new File(jobStatsPath));
         }
 
         FileHelper.remove(tmpPath);
+        indexMetric(jobId, agentIp, relatedFilePath);
+    }
+
+    /**
+     * Record metric in job stats meta index. Related path looks like group/functions/function/metricType/metricName
+     */
+    private void indexMetric(String jobId, String agentIp, String relatedFilePath) throws IOException {
+        String[] tokens = relatedFilePath.split("\\/");
+        if(tokens.length < 5 || !tokens[1].equals("functions"))
+            return;
+        try {
+            JobStatsMetaCache.metricReceived(jobId, tokens[0], tokens[2], tokens[3], tokens[4], agentIp);
+        } catch (ExecutionException e) {
+            logger.error("Failed to index stats meta for job "+jobId+" file "+relatedFilePath, e);
+        }
     }
 
     public void persistJobHealthStatusComingFromAgent(String jobId, String agentIp, InputStream jobHealthStatusStream) throws IOException {
@@ -186,11 +209,57 @@ public class JobStatsHelper {
     }
 
     /**
-     * Get Meta information about all the metrics present for a job
+     * Get Meta information about all the metrics present for a job. Served from job stats meta index, stats folder is
+     * walked only once for jobs which received stats before the index was maintained.
      * @param jobId
      * @return
      */
     public List<GroupStatsMeta> getJobMetricsStatsMeta(String jobId) throws ExecutionException, IOException {
+        JobStatsMetaCache.JobStatsMetaIndex index = JobStatsMetaCache.getIndex(jobId);
+        boolean indexChanged = false;
+        if(!index.isScanned()) {
+            indexJobMetricsFromFS(jobId, index);
+            index.setScanned(true);
+            indexChanged = true;
+        }
+
+        indexChanged = index.confirmComputedAgents() || indexChanged;
+        if(indexChanged)
+            index.persist();
+
+        Map<String, GroupStatsMeta> groupStatsMap = new LinkedHashMap<String, GroupStatsMeta>();
+        synchronized (index) {
+            for(JobStatsMetaCache.MetricAgents metricAgents : index.getMetrics().values()) {
+                if(metricAgents.getAgents().size() == 0)
+                    continue;
+
+                GroupStatsMeta groupStatsMeta = groupStatsMap.get(metricAgents.getGroupName());
+                if(groupStatsMeta == null) {
+                    groupStatsMeta = new GroupStatsMeta(metricAgents.getGroupName());
+                    groupStatsMap.put(metricAgents.getGroupName(), groupStatsMeta);
+                }
+
+                FunctionStatsMeta functionStatsMeta = groupStatsMeta.getFunctions().get(metricAgents.getFunctionName());
+                if(functionStatsMeta == null) {
+                    functionStatsMeta = new FunctionStatsMeta(metricAgents.getFunctionName());
+                    groupStatsMeta.addFunction(functionStatsMeta);
+                }
+
+                MetricStatsMeta metricStatsMeta = new MetricStatsMeta();
+                metricStatsMeta.setName(metricAgents.getMetricName());
+                metricStatsMeta.setAgents(new ArrayList<String>(metricAgents.getAgents()));
+                functionStatsMeta.addMetric(metricAgents.getMetricType(), metricStatsMeta);
+            }
+        }
+        return new ArrayList<GroupStatsMeta>(groupStatsMap.values());
+    }
+
+    /**
+     * Walk job stats folder and add computed metrics to index
+     * @param jobId
+     * @param index
+     */
+    private void indexJobMetricsFromFS(String jobId, JobStatsMetaCache.JobStatsMetaIndex index) throws ExecutionException {
         Job job = JobsCache.getJob(jobId);
         PerformanceRun performanceRun = job.performanceRun();
         Set<Group> allGroups = new LinkedHashSet<Group>();
@@ -198,50 +267,40 @@ public class JobStatsHelper {
             allGroups.addAll(loadPart.getLoad().getGroups());
         }
 
-        List<GroupStatsMeta> groupStatsList = new ArrayList<GroupStatsMeta>();
-
         for(Group group : allGroups) {
             File groupPath = new File(jobFSConfig.getJobGroupStatsPath(jobId, group.getName()));
-            if(groupPath.exists()) {
-                GroupStatsMeta groupStatsMeta = new GroupStatsMeta(group.getName());
-                boolean groupHasStats = false;
-
-                for(GroupFunction groupFunction : group.getFunctions()) {
-                    if(groupFunction.isDumpData()) {
-                        String functionName = groupFunction.getFunctionalityName();
-                        FunctionStatsMeta functionStatsMeta = new FunctionStatsMeta(functionName);
-
-                        File functionPath = new File(jobFSConfig.getJobFunctionStatsPath(jobId, group.getName(), functionName));
-                        if(functionPath.exists()) {
-                            for(File metricTypePath : functionPath.listFiles()) {
-                                for(File metricPath : metricTypePath.listFiles()) {
-                                    MetricStatsMeta metricStatsMeta = new MetricStatsMeta();
-                                    metricStatsMeta.setName(metricPath.getName());
-                                    File agentsPath = new File(metricPath.getAbsoluteFile() + File.separator + "agents");
-                                    for(File agentPath : agentsPath.listFiles()) {
-                                        if(new File(jobFSConfig.getJobFunctionStatsFile(jobId,
-                                                groupPath.getName(),
-                                                groupFunction.getFunctionalityName(),
-                                                metricTypePath.getName(),
-                                                metricPath.getName(),
-                                                agentPath.getName())).exists()) {
-                                            metricStatsMeta.addAgent(agentPath.getName());
-                                            groupHasStats = true;
-                                        }
-                                    }
-                                    functionStatsMeta.addMetric(metricTypePath.getName(), metricStatsMeta);
-                                }
+            if(!groupPath.exists())
+                continue;
+
+            for(GroupFunction groupFunction : group.getFunctions()) {
+                if(!groupFunction.isDumpData())
+                    continue;
+
+                String functionName = groupFunction.getFunctionalityName();
+                File functionPath = new File(jobFSConfig.getJobFunctionStatsPath(jobId, group.getName(), functionName));
+                if(!functionPath.exists())
+                    continue;
+
+                for(File metricTypePath : functionPath.listFiles()) {
+                    for(File metricPath : metricTypePath.listFiles()) {
+                        File agentsPath = new File(metricPath.getAbsoluteFile() + File.separator + "agents");
+                        File[] agentPaths = agentsPath.listFiles();
+                        if(agentPaths == null)
+                            continue;
+                        for(File agentPath : agentPaths) {
+                            if(new File(jobFSConfig.getJobFunctionStatsFile(jobId,
+                                    groupPath.getName(),
+                                    functionName,
+                                    metricTypePath.getName(),
+                                    metricPath.getName(),
+                                    agentPath.getName())).exists()) {
+                                index.addAgent(group.getName(), functionName, metricTypePath.getName(), metricPath.getName(), agentPath.getName());
                             }
                         }
-
-                        groupStatsMeta.addFunction(functionStatsMeta);
                     }
                 }
-                if(groupHasStats)
-                    groupStatsList.add(groupStatsMeta);
             }
         }
-        return groupStatsList;
     }
 
     /**
@@ -283,6 +342,24 @@ public class JobStatsHelper {
         return new FileInputStream(statsFile.getAbsoluteFile());
     }
 
+    /**
+     * Query Stats for specific metric for a job within time range, downsampled or after a cursor
+     * @param jobId
+     * @param groupName
+     * @param metricType
+     * @param metricName
+     * @param agent
+     * @param statsQuery
+     * @return
+     * @throws java.io.IOException
+     */
+    public StatsQueryHelper.StatsQueryResult queryJobMetricStats(String jobId, String groupName, String functionName, String metricType, String metricName, String agent, StatsQueryHelper.StatsQuery statsQuery) throws IOException {
+        File statsFile = new File(jobFSConfig.getJobFunctionStatsFile(jobId, groupName, functionName, metricType, metricName, agent));
+        if(!statsFile.exists())
+            throw new WebApplicationException(ResponseBuilder.response(Response.Status.NOT_FOUND, String.format("Stats for %s %s Not computed yet",metricType,metricName)));
+        return StatsQueryHelper.query(statsFile, statsQuery);
+    }
+
     public static class MonitoringAgentStats {
         private String agent;
         private List<String> resources;
@@ -350,6 +427,22 @@ public class JobStatsHelper {
 
     }
 
+    /**
+     * Query collected resource stats that is being monitored for a job within time range, downsampled or after a cursor
+     * @param jobId
+     * @param agent
+     * @param resourceName
+     * @param statsQuery
+     * @return
+     * @throws java.io.IOException
+     */
+    public StatsQueryHelper.StatsQueryResult queryJobMonitoringResourceStats(String jobId, String agent, String resourceName, StatsQueryHelper.StatsQuery statsQuery) throws IOException {
+        File statsFile = new File(jobFSConfig.getJobResourceMonitoringFile(jobId, agent, resourceName));
+        if(!statsFile.exists())
+            throw new WebApplicationException(ResponseBuilder.response(Response.Status.NOT_FOUND, String.format("Monitoring Stats for %s %s Not collected yet",agent,resourceName)));
+        return StatsQueryHelper.query(statsFile, statsQuery);
+    }
+
     /**
      * Returns metric key value collected for a Resource
      * @param jobId
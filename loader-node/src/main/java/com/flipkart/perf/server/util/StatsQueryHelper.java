@@ -0,0 +1,385 @@
+package com.flipkart.perf.server.util;
+
+import com.google.common.io.ByteStreams;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Serves time range, cursor and downsampled reads over json line stats files (timer/counter/histogram .stats files and
+ * monitoring resource files). Stats files are append only, so a byte offset into the file is used as polling cursor.
+ */
+public class StatsQueryHelper {
+    private static ObjectMapper objectMapper = ObjectMapperUtil.instance();
+    private static Logger logger = LoggerFactory.getLogger(StatsQueryHelper.class);
+    private static final String TIME_FIELD = "time";
+    private static final int TAIL_BLOCK_SIZE = 8192;
+
+    public static enum Aggregation {
+        MINMAX, AVG, MIN, MAX, LAST;
+    }
+
+    /**
+     * Query parameters. Any parameter left at -1 is not applied.
+     */
+    public static class StatsQuery {
+        private long from = -1;
+        private long to = -1;
+        private int maxPoints = -1;
+        private long since = -1;
+        private Aggregation aggregation = Aggregation.MINMAX;
+
+        public long getFrom() {
+            return from;
+        }
+
+        public StatsQuery setFrom(long from) {
+            this.from = from;
+            return this;
+        }
+
+        public long getTo() {
+            return to;
+        }
+
+        public StatsQuery setTo(long to) {
+            this.to = to;
+            return this;
+        }
+
+        public int getMaxPoints() {
+            return maxPoints;
+        }
+
+        public StatsQuery setMaxPoints(int maxPoints) {
+            this.maxPoints = maxPoints;
+            return this;
+        }
+
+        public long getSince() {
+            return since;
+        }
+
+        public StatsQuery setSince(long since) {
+            this.since = since;
+            return this;
+        }
+
+        public Aggregation getAggregation() {
+            return aggregation;
+        }
+
+        public StatsQuery setAggregation(Aggregation aggregation) {
+            this.aggregation = aggregation;
+            return this;
+        }
+
+        private boolean filtersOrSamples() {
+            return from != -1 || to != -1 || maxPoints > 0;
+        }
+    }
+
+    public static class StatsQueryResult {
+        private final String content;
+        private final File rawFile;     // Unfiltered read : bytes [rawFrom, cursor) of the file, streamed as they are
+        private final long rawFrom;
+        private final long cursor;
+
+        private StatsQueryResult(String content, long cursor) {
+            this(content, null, -1, cursor);
+        }
+
+        private StatsQueryResult(File rawFile, long rawFrom, long cursor) {
+            this(null, rawFile, rawFrom, cursor);
+        }
+
+        private StatsQueryResult(String content, File rawFile, long rawFrom, long cursor) {
+            this.content = content;
+            this.rawFile = rawFile;
+            this.rawFrom = rawFrom;
+            this.cursor = cursor;
+        }
+
+        public String getContent() throws IOException {
+            if(rawFile == null)
+                return content;
+            InputStream is = asStream();
+            try {
+                return new String(ByteStreams.toByteArray(is));
+            }
+            finally {
+                is.close();
+            }
+        }
+
+        /**
+         * Pass as 'since' in next query to get only stats appended after this read
+         */
+        public long getCursor() {
+            return cursor;
+        }
+
+        public InputStream asStream() throws IOException {
+            if(rawFile == null)
+                return new ByteArrayInputStream(content.getBytes());
+
+            InputStream is = new FileInputStream(rawFile);
+            try {
+                ByteStreams.skipFully(is, rawFrom);
+            }
+            catch (IOException e) {
+                is.close();
+                throw e;
+            }
+            return new BufferedInputStream(ByteStreams.limit(is, cursor - rawFrom));
+        }
+    }
+
+    /**
+     * One json line of stats file. Monitoring files keep list of instances per line, so we remember the shape to
+     * write the downsampled line back the same way.
+     */
+    private static class StatsPoint {
+        private final long time;
+        private final Map<String, Object> values;
+        private final boolean wrapped;
+
+        private StatsPoint(long time, Map<String, Object> values, boolean wrapped) {
+            this.time = time;
+            this.values = values;
+            this.wrapped = wrapped;
+        }
+    }
+
+    public static StatsQueryResult query(File statsFile, StatsQuery statsQuery) throws IOException {
+        long startOffset = statsQuery.getSince() > 0 ? statsQuery.getSince() : 0;
+        if(startOffset > statsFile.length()) {
+            logger.warn("Cursor "+startOffset+" is beyond "+statsFile.getAbsolutePath()+". Reading from start");
+            startOffset = 0;
+        }
+
+        // Only complete lines move the cursor, a line still being written is picked up in next poll
+        if(!statsQuery.filtersOrSamples())
+            return new StatsQueryResult(statsFile, startOffset, lastLineEnd(statsFile, startOffset));
+
+        List<StatsPoint> points = new ArrayList<StatsPoint>();
+        long cursor = startOffset;
+
+        InputStream is = new BufferedInputStream(new FileInputStream(statsFile));
+        try {
+            long skipped = 0;
+            while(skipped < startOffset) {
+                long s = is.skip(startOffset - skipped);
+                if(s <= 0)
+                    break;
+                skipped += s;
+            }
+
+            ByteArrayOutputStream lineBytes = new ByteArrayOutputStream(512);
+            int b;
+            while((b = is.read()) != -1) {
+                if(b != '\n') {
+                    lineBytes.write(b);
+                    continue;
+                }
+                cursor += lineBytes.size() + 1;
+                String line = lineBytes.toString().trim();
+                lineBytes.reset();
+                if(line.equals(""))
+                    continue;
+
+                for(StatsPoint point : parse(line)) {
+                    if(statsQuery.getFrom() != -1 && point.time < statsQuery.getFrom())
+                        continue;
+                    if(statsQuery.getTo() != -1 && point.time > statsQuery.getTo())
+                        continue;
+                    points.add(point);
+                }
+            }
+        }
+        finally {
+            is.close();
+        }
+
+        if(statsQuery.getMaxPoints() > 0)
+            points = downSample(points, statsQuery.getMaxPoints(), statsQuery.getAggregation());
+
+        StringBuilder content = new StringBuilder();
+        for(StatsPoint point : points) {
+            Object lineObject = point.wrapped ? Arrays.asList(point.values) : point.values;
+            content.append(objectMapper.writeValueAsString(lineObject)).append('\n');
+        }
+        return new StatsQueryResult(content.toString(), cursor);
+    }
+
+    /**
+     * Offset just after the last new line of the file, looking back from the end till 'from'. 'from' if there is none
+     */
+    private static long lastLineEnd(File statsFile, long from) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(statsFile, "r");
+        try {
+            byte[] block = new byte[TAIL_BLOCK_SIZE];
+            long blockEnd = file.length();
+            while(blockEnd > from) {
+                long blockStart = Math.max(from, blockEnd - block.length);
+                int length = (int) (blockEnd - blockStart);
+                file.seek(blockStart);
+                file.readFully(block, 0, length);
+                for(int i = length - 1; i >= 0; i--) {
+                    if(block[i] == '\n')
+                        return blockStart + i + 1;
+                }
+                blockEnd = blockStart;
+            }
+            return from;
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    private static List<StatsPoint> parse(String line) throws IOException {
+        List<StatsPoint> points = new ArrayList<StatsPoint>();
+        if(line.startsWith("[")) {
+            List<Map<String, Object>> instances = objectMapper.readValue(line, List.class);
+            for(Map<String, Object> instance : instances)
+                points.add(new StatsPoint(timeOf(instance), instance, true));
+        }
+        else {
+            Map<String, Object> instance = objectMapper.readValue(line, Map.class);
+            points.add(new StatsPoint(timeOf(instance), instance, false));
+        }
+        return points;
+    }
+
+    private static long timeOf(Map<String, Object> instance) {
+        Object time = instance.get(TIME_FIELD);
+        return time instanceof Number ? ((Number) time).longValue() : -1;
+    }
+
+    /**
+     * Club consecutive points in equal sized buckets. MINMAX emits the per field minimum and maximum of every bucket so
+     * that spikes survive downsampling, other aggregations emit one point per bucket.
+     */
+    private static List<StatsPoint> downSample(List<StatsPoint> points, int maxPoints, Aggregation aggregation) {
+        int pointsPerBucket = aggregation == Aggregation.MINMAX ? 2 : 1;
+        int buckets = Math.max(1, maxPoints / pointsPerBucket);
+        if(points.size() <= maxPoints)
+            return points;
+
+        List<StatsPoint> sampled = new ArrayList<StatsPoint>(buckets * pointsPerBucket);
+        double bucketSize = points.size() / (double) buckets;
+        for(int bucket = 0; bucket < buckets; bucket++) {
+            int start = (int) Math.floor(bucket * bucketSize);
+            int end = Math.min(points.size(), (int) Math.floor((bucket + 1) * bucketSize));
+            if(start >= end)
+                continue;
+            List<StatsPoint> bucketPoints = points.subList(start, end);
+            boolean wrapped = bucketPoints.get(0).wrapped;
+
+            switch (aggregation) {
+                case MINMAX:
+                    Map<String, Object> min = aggregate(bucketPoints, Aggregation.MIN);
+                    Map<String, Object> max = aggregate(bucketPoints, Aggregation.MAX);
+                    sampled.add(new StatsPoint(timeOf(min), min, wrapped));
+                    sampled.add(new StatsPoint(timeOf(max), max, wrapped));
+                    break;
+                case LAST:
+                    sampled.add(bucketPoints.get(bucketPoints.size() - 1));
+                    break;
+                default:
+                    Map<String, Object> aggregated = aggregate(bucketPoints, aggregation);
+                    sampled.add(new StatsPoint(timeOf(aggregated), aggregated, wrapped));
+            }
+        }
+        return sampled;
+    }
+
+    private static Map<String, Object> aggregate(List<StatsPoint> bucketPoints, Aggregation aggregation) {
+        List<Map<String, Object>> values = new ArrayList<Map<String, Object>>(bucketPoints.size());
+        for(StatsPoint point : bucketPoints)
+            values.add(point.values);
+        return aggregate(values, aggregation);
+    }
+
+    /**
+     * Aggregate numeric fields (including one level of nested maps like monitoring 'metrics'). Non numeric fields are
+     * taken from the last instance of the bucket.
+     */
+    private static Map<String, Object> aggregate(Collection<Map<String, Object>> instances, Aggregation aggregation) {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        Map<String, List<Map<String, Object>>> nested = new LinkedHashMap<String, List<Map<String, Object>>>();
+        Map<String, double[]> numeric = new LinkedHashMap<String, double[]>();  // {min, max, sum, count}
+
+        for(Map<String, Object> instance : instances) {
+            for(Map.Entry<String, Object> field : instance.entrySet()) {
+                Object value = field.getValue();
+                if(value instanceof Number) {
+                    double d = ((Number) value).doubleValue();
+                    double[] acc = numeric.get(field.getKey());
+                    if(acc == null) {
+                        acc = new double[] {d, d, 0, 0};
+                        numeric.put(field.getKey(), acc);
+                    }
+                    acc[0] = Math.min(acc[0], d);
+                    acc[1] = Math.max(acc[1], d);
+                    acc[2] += d;
+                    acc[3]++;
+                    result.put(field.getKey(), value);
+                }
+                else if(value instanceof Map) {
+                    List<Map<String, Object>> nestedInstances = nested.get(field.getKey());
+                    if(nestedInstances == null) {
+                        nestedInstances = new ArrayList<Map<String, Object>>();
+                        nested.put(field.getKey(), nestedInstances);
+                    }
+                    nestedInstances.add((Map<String, Object>) value);
+                    result.put(field.getKey(), value);
+                }
+                else {
+                    result.put(field.getKey(), value);
+                }
+            }
+        }
+
+        for(Map.Entry<String, double[]> field : numeric.entrySet()) {
+            double[] acc = field.getValue();
+            double value;
+            switch (aggregation) {
+                case MIN:
+                    value = acc[0];
+                    break;
+                case MAX:
+                    value = acc[1];
+                    break;
+                default:
+                    value = acc[2] / acc[3];
+            }
+            if(field.getKey().equals(TIME_FIELD))
+                result.put(field.getKey(), (long) value);
+            else
+                result.put(field.getKey(), value);
+        }
+
+        for(Map.Entry<String, List<Map<String, Object>>> field : nested.entrySet())
+            result.put(field.getKey(), aggregate(field.getValue(), aggregation));
+
+        return result;
+    }
+
+    /**
+     * Parse aggregation query param, defaulting to MINMAX for unknown values
+     */
+    public static Aggregation aggregation(String aggregation) {
+        try {
+            return Aggregation.valueOf(aggregation.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            logger.warn("Unknown aggregation '"+aggregation+"'. Using "+Aggregation.MINMAX);
+            return Aggregation.MINMAX;
+        }
+    }
+}
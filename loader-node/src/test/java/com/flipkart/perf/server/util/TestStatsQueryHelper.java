@@ -0,0 +1,171 @@
+package com.flipkart.perf.server.util;
+
+import com.flipkart.perf.server.util.StatsQueryHelper.Aggregation;
+import com.flipkart.perf.server.util.StatsQueryHelper.StatsQuery;
+import com.flipkart.perf.server.util.StatsQueryHelper.StatsQueryResult;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class TestStatsQueryHelper {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testRangeIncludesLinesExactlyOnEdges() throws IOException {
+        File statsFile = statsFile(points(1, 5));
+
+        StatsQueryResult result = StatsQueryHelper.query(statsFile, new StatsQuery().setFrom(2000).setTo(4000));
+        assertThat(times(result), is(Arrays.asList(2000L, 3000L, 4000L)));
+        assertThat(result.getCursor(), is(statsFile.length()));
+
+        result = StatsQueryHelper.query(statsFile, new StatsQuery().setFrom(5000));
+        assertThat(times(result), is(Arrays.asList(5000L)));
+
+        result = StatsQueryHelper.query(statsFile, new StatsQuery().setTo(1000));
+        assertThat(times(result), is(Arrays.asList(1000L)));
+
+        result = StatsQueryHelper.query(statsFile, new StatsQuery().setFrom(4001).setTo(4999));
+        assertThat(times(result), is(Collections.<Long>emptyList()));
+    }
+
+    @Test
+    public void testDownSamplingWithEachAggregation() throws IOException {
+        // value of point i is i, at time i * 1000
+        File statsFile = statsFile(points(1, 10));
+
+        assertThat(values(downSampled(statsFile, 5, Aggregation.MIN)), is(Arrays.asList(1.0, 3.0, 5.0, 7.0, 9.0)));
+        assertThat(values(downSampled(statsFile, 5, Aggregation.MAX)), is(Arrays.asList(2.0, 4.0, 6.0, 8.0, 10.0)));
+        assertThat(values(downSampled(statsFile, 5, Aggregation.AVG)), is(Arrays.asList(1.5, 3.5, 5.5, 7.5, 9.5)));
+        assertThat(times(downSampled(statsFile, 5, Aggregation.AVG)), is(Arrays.asList(1500L, 3500L, 5500L, 7500L, 9500L)));
+        assertThat(values(downSampled(statsFile, 5, Aggregation.LAST)), is(Arrays.asList(2.0, 4.0, 6.0, 8.0, 10.0)));
+        assertThat(times(downSampled(statsFile, 5, Aggregation.LAST)), is(Arrays.asList(2000L, 4000L, 6000L, 8000L, 10000L)));
+
+        // Min and max of every bucket, so 2 buckets for 4 points
+        assertThat(values(downSampled(statsFile, 4, Aggregation.MINMAX)), is(Arrays.asList(1.0, 5.0, 6.0, 10.0)));
+
+        // Nothing to sample when file has no more than maxPoints
+        assertThat(values(downSampled(statsFile, 10, Aggregation.AVG)).size(), is(10));
+    }
+
+    @Test
+    public void testDownSamplingMonitoringLines() throws IOException {
+        // Monitoring files have a list of instances per line, with metrics nested
+        List<String> lines = new ArrayList<String>();
+        for(int i = 1; i <= 4; i++)
+            lines.add("[{\"time\":" + (i * 1000) + ",\"metrics\":{\"cpu\":" + (i * 10) + "}}]");
+        File statsFile = statsFile(lines);
+
+        List<Object> sampled = lines(downSampled(statsFile, 2, Aggregation.AVG));
+        assertThat(sampled.size(), is(2));
+        for(Object line : sampled)
+            assertThat(line instanceof List, is(true));
+        Map first = (Map) ((List) sampled.get(0)).get(0);
+        assertThat(((Number) ((Map) first.get("metrics")).get("cpu")).doubleValue(), is(15.0));
+        assertThat(((Number) first.get("time")).longValue(), is(1500L));
+    }
+
+    @Test
+    public void testCursorResumesAfterPartialLine() throws IOException {
+        List<String> complete = points(1, 3);
+        String partialLine = "{\"time\":4000,\"va";
+        File statsFile = statsFile(complete);
+        append(statsFile, partialLine);
+        long completeLength = statsFile.length() - partialLine.length();
+
+        // Line still being written is left for next poll, on raw and filtered reads alike
+        StatsQueryResult raw = StatsQueryHelper.query(statsFile, new StatsQuery());
+        assertThat(raw.getContent(), is(join(complete)));
+        assertThat(raw.getCursor(), is(completeLength));
+        StatsQueryResult filtered = StatsQueryHelper.query(statsFile, new StatsQuery().setFrom(0));
+        assertThat(times(filtered), is(Arrays.asList(1000L, 2000L, 3000L)));
+        assertThat(filtered.getCursor(), is(completeLength));
+
+        append(statsFile, "lue\":4}\n" + point(5));
+
+        raw = StatsQueryHelper.query(statsFile, new StatsQuery().setSince(raw.getCursor()));
+        assertThat(raw.getContent(), is("{\"time\":4000,\"value\":4}\n" + point(5)));
+        assertThat(raw.getCursor(), is(statsFile.length()));
+        filtered = StatsQueryHelper.query(statsFile, new StatsQuery().setFrom(0).setSince(filtered.getCursor()));
+        assertThat(times(filtered), is(Arrays.asList(4000L, 5000L)));
+        assertThat(filtered.getCursor(), is(statsFile.length()));
+
+        // Nothing new
+        raw = StatsQueryHelper.query(statsFile, new StatsQuery().setSince(raw.getCursor()));
+        assertThat(raw.getContent(), is(""));
+        assertThat(raw.getCursor(), is(statsFile.length()));
+    }
+
+    @Test
+    public void testCursorBeyondFileReadsFromStart() throws IOException {
+        File statsFile = statsFile(points(1, 2));
+        StatsQueryResult result = StatsQueryHelper.query(statsFile, new StatsQuery().setSince(statsFile.length() + 100));
+        assertThat(result.getContent(), is(join(points(1, 2))));
+    }
+
+    private static StatsQueryResult downSampled(File statsFile, int maxPoints, Aggregation aggregation) throws IOException {
+        return StatsQueryHelper.query(statsFile, new StatsQuery().setMaxPoints(maxPoints).setAggregation(aggregation));
+    }
+
+    private static List<String> points(int from, int to) {
+        List<String> points = new ArrayList<String>();
+        for(int i = from; i <= to; i++)
+            points.add(point(i).trim());
+        return points;
+    }
+
+    private static String point(int i) {
+        return "{\"time\":" + (i * 1000) + ",\"value\":" + i + "}\n";
+    }
+
+    private static List<Object> lines(StatsQueryResult result) throws IOException {
+        List<Object> lines = new ArrayList<Object>();
+        BufferedReader reader = new BufferedReader(new StringReader(result.getContent()));
+        String line;
+        while((line = reader.readLine()) != null)
+            lines.add(objectMapper.readValue(line, Object.class));
+        return lines;
+    }
+
+    private static List<Long> times(StatsQueryResult result) throws IOException {
+        List<Long> times = new ArrayList<Long>();
+        for(Object line : lines(result))
+            times.add(((Number) ((Map) line).get("time")).longValue());
+        return times;
+    }
+
+    private static List<Double> values(StatsQueryResult result) throws IOException {
+        List<Double> values = new ArrayList<Double>();
+        for(Object line : lines(result))
+            values.add(((Number) ((Map) line).get("value")).doubleValue());
+        return values;
+    }
+
+    private static File statsFile(List<String> lines) throws IOException {
+        File statsFile = File.createTempFile("timer", ".stats");
+        statsFile.deleteOnExit();
+        append(statsFile, join(lines));
+        return statsFile;
+    }
+
+    private static String join(List<String> lines) {
+        StringBuilder joined = new StringBuilder();
+        for(String line : lines)
+            joined.append(line).append('\n');
+        return joined.toString();
+    }
+
+    private static void append(File file, String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, true));
+        try {
+            writer.write(content);
+        }
+        finally {
+            writer.close();
+        }
+    }
+}
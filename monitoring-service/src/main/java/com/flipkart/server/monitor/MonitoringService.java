@@ -5,7 +5,6 @@ package com.flipkart.server.monitor;
  */
 
 import java.io.File;
-import java.lang.reflect.InvocationTargetException;
 
 import com.flipkart.server.monitor.collector.CollectorThread;
 import com.flipkart.server.monitor.config.ServerMonitoringConfig;
@@ -30,7 +29,9 @@ public class MonitoringService extends Service<ServerMonitoringConfig> {
     public void run(ServerMonitoringConfig configuration, Environment environment) throws Exception {
     	FilterBuilder filterConfig = environment.addFilter(CrossOriginFilter.class, "/*");
         filterConfig.setInitParam(CrossOriginFilter.PREFLIGHT_MAX_AGE_PARAM, String.valueOf(60*60*24));
-        CollectorThread collectorThread = startCollectorThread(1000);
+        CollectorThread collectorThread = startCollectorThread(1000,
+                configuration.getCollectorThreads(),
+                configuration.getCollectorJitterPercent());
         MetricPublisherThread metricPublisherThread = startStartThread(1000);
         //new MonitorLocalJavaProcesses(60000, collectorThread).start();
         environment.addResource(new CollectorResource());
@@ -45,13 +46,8 @@ public class MonitoringService extends Service<ServerMonitoringConfig> {
         return metricPublisherThread;
     }
 
-    private CollectorThread startCollectorThread(int collectionCheckInterval) throws InvocationTargetException,
-            ClassNotFoundException,
-            NoSuchMethodException,
-            InstantiationException,
-            IllegalAccessException {
-
-        CollectorThread collectorThread = new CollectorThread(collectionCheckInterval);
+    private CollectorThread startCollectorThread(int deadlineCheckInterval, int collectorThreads, int jitterPercent) {
+        CollectorThread collectorThread = new CollectorThread(deadlineCheckInterval, collectorThreads, jitterPercent);
         collectorThread.start();
         return collectorThread;
     }
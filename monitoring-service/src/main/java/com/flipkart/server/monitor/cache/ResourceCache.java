@@ -3,6 +3,7 @@ package com.flipkart.server.monitor.cache;
 import com.flipkart.server.monitor.domain.ResourceCollectionInstance;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by IntelliJ IDEA.
@@ -10,56 +11,65 @@ import java.util.*;
  * Date: 4/1/13
  * Time: 3:05 PM
  * To change this template use File | Settings | File Templates.
+ *
+ * Keeps last MAX_CACHE_SIZE collection instances of every resource, in a ResourceRing per resource. Resources don't
+ * contend with each other and reads don't block writers.
  */
 public class ResourceCache {
     private static final int MAX_CACHE_SIZE = 10000;
-    private static Map<String,List<ResourceCollectionInstance>> resourceStatsCache;
+    private static final ConcurrentHashMap<String,ResourceRing> resourceStatsCache;
 
     static {
-        resourceStatsCache = new HashMap<String, List<ResourceCollectionInstance>>();
+        resourceStatsCache = new ConcurrentHashMap<String, ResourceRing>();
     }
 
-    synchronized public static void addStats(ResourceCollectionInstance currentCollectionInstance) {
-        List<ResourceCollectionInstance> cachedCollectionInstances = resourceStatsCache.get(currentCollectionInstance.getResourceName());
-        if(cachedCollectionInstances == null) {
-            cachedCollectionInstances = new ArrayList<ResourceCollectionInstance>();
+    public static void addStats(ResourceCollectionInstance currentCollectionInstance) {
+        String resource = currentCollectionInstance.getResourceName();
+        ResourceRing resourceRing = resourceStatsCache.get(resource);
+        if(resourceRing == null) {
+            resourceStatsCache.putIfAbsent(resource, new ResourceRing(MAX_CACHE_SIZE));
+            resourceRing = resourceStatsCache.get(resource);
         }
-        else {
-            if(cachedCollectionInstances.size() == MAX_CACHE_SIZE) {
-                cachedCollectionInstances.remove(0);
-            }
-        }
-        ResourceCollectionInstance prevCollectionInstance = null;
+        resourceRing.append(currentCollectionInstance);
+    }
 
-        // Taking care of the situation where some of the metrics for the resource with old time came now.
-        if(cachedCollectionInstances.size() > 0) {
-            prevCollectionInstance = cachedCollectionInstances.get(cachedCollectionInstances.size()-1);
-            if(prevCollectionInstance.getTime().equals(currentCollectionInstance.getTime())) {
-                prevCollectionInstance.addMetrics(currentCollectionInstance.getMetrics());
-                return;
-            }
-        }
+    /**
+     * @return last howMany instances of the resource, newest first
+     */
+    public static List<ResourceCollectionInstance> getStats(String resource, int howMany) {
+        ResourceRing resourceRing = resourceStatsCache.get(resource);
+        if(resourceRing == null)
+            return new ArrayList<ResourceCollectionInstance>();
+        return resourceRing.latest(howMany);
+    }
 
-        cachedCollectionInstances.add(currentCollectionInstance);
-        resourceStatsCache.put(currentCollectionInstance.getResourceName(), cachedCollectionInstances);
+    /**
+     * Instances of the resource from cursor onwards, oldest first. Use cursor of returned slice to read next time
+     * @param cursor 0 to start from oldest instance
+     * @return null if resource isn't there
+     */
+    public static ResourceRing.Slice getStatsAfter(String resource, long cursor, int max) {
+        ResourceRing resourceRing = resourceStatsCache.get(resource);
+        if(resourceRing == null)
+            return null;
+        return resourceRing.after(cursor, max);
     }
 
-    synchronized public static List<ResourceCollectionInstance> getStats(String resource, int howMany) {
-        List<ResourceCollectionInstance> toSendBack = new ArrayList<ResourceCollectionInstance>();
-        List<ResourceCollectionInstance> resourceStats = resourceStatsCache.get(resource);
-        if(resourceStats != null && resourceStats.size() > 0) {
-            for(int last=resourceStats.size()-1; last >= 0 && howMany > 0; last--, howMany--) {
-                toSendBack.add(resourceStats.get(last));
-            }
-        }
-        return toSendBack;
+    /**
+     * Cursor to read last howMany instances of the resource (and whatever comes after them). 0 if resource isn't there
+     */
+    public static long getLatestCursor(String resource, int howMany) {
+        ResourceRing resourceRing = resourceStatsCache.get(resource);
+        if(resourceRing == null)
+            return 0;
+        return Math.max(0, resourceRing.getPublished() - howMany);
     }
 
-    synchronized public static Set<String> getResources() {
-        return resourceStatsCache.keySet();
+    public static Set<String> getResources() {
+        return new HashSet<String>(resourceStatsCache.keySet());
     }
 
-    synchronized public static void removeResource(String resource) {
+    public static void removeResource(String resource) {
         resourceStatsCache.remove(resource);
     }
 }
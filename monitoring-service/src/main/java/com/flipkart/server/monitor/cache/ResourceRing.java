@@ -0,0 +1,166 @@
+package com.flipkart.server.monitor.cache;
+
+import com.flipkart.server.monitor.domain.ResourceCollectionInstance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed capacity ring of collection instances of one resource. Every instance gets a sequence number, the ring keeps
+ * the newest ones and overwrites the oldest. Appends are made one at a time (a resource normally has a single writer,
+ * so the lock is uncontended). Reads don't lock : reader takes what is published, then drops whatever writer may
+ * have overwritten while it was reading.
+ *
+ * Published instances are never changed. An instance with same time as the newest one is merged with it, and the
+ * merged copy is appended as a new instance, so that readers who have read past the newest one get it too. Readers
+ * don't get the partial instance it supersedes along with it.
+ */
+public final class ResourceRing {
+    private final AtomicReferenceArray<ResourceCollectionInstance> slots;
+    private final int capacity;
+    private volatile long published;    // Instances with sequence below this are readable
+
+    /**
+     * Instances read after a cursor
+     */
+    public static class Slice {
+        private final List<ResourceCollectionInstance> instances;
+        private final long cursor;
+        private final long missed;
+
+        private Slice(List<ResourceCollectionInstance> instances, long cursor, long missed) {
+            this.instances = instances;
+            this.cursor = cursor;
+            this.missed = missed;
+        }
+
+        /**
+         * Oldest first
+         */
+        public List<ResourceCollectionInstance> getInstances() {
+            return instances;
+        }
+
+        /**
+         * Cursor to read next instances from
+         */
+        public long getCursor() {
+            return cursor;
+        }
+
+        /**
+         * Instances after given cursor that were overwritten before they could be read
+         */
+        public long getMissed() {
+            return missed;
+        }
+    }
+
+    /**
+     * @param size instances to keep
+     */
+    public ResourceRing(int size) {
+        // One slot more, as slot of the instance being appended can't be read
+        this.capacity = size + 1;
+        this.slots = new AtomicReferenceArray<ResourceCollectionInstance>(this.capacity);
+    }
+
+    synchronized public void append(ResourceCollectionInstance instance) {
+        long sequence = this.published;
+        if(sequence > 0) {
+            // Taking care of the situation where some of the metrics for the resource with old time came now.
+            ResourceCollectionInstance newest = this.slots.get(slot(sequence - 1));
+            if(newest.getTime().equals(instance.getTime()))
+                instance = merge(newest, instance);
+        }
+        this.slots.set(slot(sequence), instance);
+        this.published = sequence + 1;
+    }
+
+    /**
+     * @return newest instances, newest first
+     */
+    public List<ResourceCollectionInstance> latest(int howMany) {
+        long published = this.published;
+        List<ResourceCollectionInstance> instances = dropSuperseded(read(Math.max(0, published - howMany), published));
+        Collections.reverse(instances);
+        return instances;
+    }
+
+    /**
+     * Instances from cursor onwards, oldest first
+     * @param cursor 0 to read from the oldest. A cursor beyond what ring has published (resource was removed and
+     *               added again) reads from the oldest too
+     * @param max most instances to read
+     */
+    public Slice after(long cursor, int max) {
+        long published = this.published;
+        if(cursor > published)
+            cursor = 0;
+        long from = Math.max(cursor, oldest(published));
+        long to = Math.min(published, from + max);
+        List<ResourceCollectionInstance> instances = read(from, to);
+
+        // Read may have lost instances at the start of it to the writer
+        long readFrom = to - instances.size();
+        return new Slice(dropSuperseded(instances), to, readFrom - cursor);
+    }
+
+    /**
+     * Sequence next instance would get
+     */
+    public long getPublished() {
+        return published;
+    }
+
+    /**
+     * Read [from, to) and drop instances that could have been overwritten meanwhile
+     */
+    private List<ResourceCollectionInstance> read(long from, long to) {
+        from = Math.max(from, oldest(this.published));
+        List<ResourceCollectionInstance> instances = new ArrayList<ResourceCollectionInstance>((int) Math.max(0, to - from));
+        for(long sequence = from; sequence < to; sequence++)
+            instances.add(this.slots.get(slot(sequence)));
+
+        long valid = oldest(this.published);
+        if(valid > from)
+            instances = instances.subList((int) Math.min(instances.size(), valid - from), instances.size());
+        return instances;
+    }
+
+    /**
+     * Drop instances that a merged copy right after them has superseded
+     */
+    private static List<ResourceCollectionInstance> dropSuperseded(List<ResourceCollectionInstance> instances) {
+        List<ResourceCollectionInstance> latest = new ArrayList<ResourceCollectionInstance>(instances.size());
+        for(int i=0; i<instances.size(); i++) {
+            if(i + 1 < instances.size() && instances.get(i).getTime().equals(instances.get(i + 1).getTime()))
+                continue;
+            latest.add(instances.get(i));
+        }
+        return latest;
+    }
+
+    /**
+     * Oldest sequence safe to read. Writer may be writing slot of sequence 'published', which holds
+     * published - capacity
+     */
+    private long oldest(long published) {
+        return Math.max(0, published - this.capacity + 1);
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % this.capacity);
+    }
+
+    private static ResourceCollectionInstance merge(ResourceCollectionInstance newest, ResourceCollectionInstance instance) {
+        ResourceCollectionInstance merged = new ResourceCollectionInstance().
+                setResourceName(newest.getResourceName()).
+                setTime(newest.getTime()).
+                setMetrics(new HashMap<String, Double>(newest.getMetrics()));
+        return merged.addMetrics(instance.getMetrics());
+    }
+}
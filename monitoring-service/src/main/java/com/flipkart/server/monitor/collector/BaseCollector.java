@@ -1,6 +1,7 @@
 package com.flipkart.server.monitor.collector;
 
 import com.flipkart.perf.common.jackson.ObjectMapperUtil;
+import com.flipkart.server.monitor.domain.BurstConfig;
 import com.flipkart.server.monitor.domain.ResourceCollectionInstance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +17,8 @@ enum OS {
 public abstract class BaseCollector{
     private String name;
     private int collectionInterval = 60000;
+    private int collectionTimeout;          // ms a collection can take, <= 0 for collection interval
+    private BurstConfig burstConfig;        // Burst sampling, null if collector doesn't burst by itself
     private Map<String,Object> params;
     public static Map<String,Object> SYSTEM_PROPERTIES;
     public static OS CLIENT_OS;
@@ -109,6 +112,37 @@ public abstract class BaseCollector{
         this.collectionInterval = collectionInterval;
     }
 
+    public int getCollectionTimeout() {
+        return collectionTimeout > 0 ? collectionTimeout : collectionInterval;
+    }
+
+    public BaseCollector setCollectionTimeout(int collectionTimeout) {
+        this.collectionTimeout = collectionTimeout;
+        return this;
+    }
+
+    public BurstConfig getBurstConfig() {
+        return burstConfig;
+    }
+
+    public BaseCollector setBurstConfig(BurstConfig burstConfig) {
+        this.burstConfig = burstConfig;
+        return this;
+    }
+
+    /**
+     * Collection has overrun its timeout. Collectors holding connections should drop them here, so that stuck
+     * collection fails and next collection reconnects. Called from a thread other than the collecting one
+     */
+    public void abort() {
+    }
+
+    /**
+     * Collector is stopped and won't collect again. Release connections if any
+     */
+    public void close() {
+    }
+
     abstract public boolean supported();
     abstract public ResourceCollectionInstance collect() throws Exception;
 }
@@ -15,7 +15,7 @@ public class CollectorFactory {
             NoSuchMethodException,
             InstantiationException,
             IllegalAccessException {
-        return (BaseCollector) ClassHelper.createInstance(Class.forName(onDemandConfig.getKlass()),
+        BaseCollector collector = (BaseCollector) ClassHelper.createInstance(Class.forName(onDemandConfig.getKlass()),
                 new Class[]{
                         String.class,
                         Map.class,
@@ -24,5 +24,7 @@ public class CollectorFactory {
                         onDemandConfig.getName(),
                         onDemandConfig.getParams(),
                         onDemandConfig.getInterval()});
+        return collector.setCollectionTimeout(onDemandConfig.getTimeout()).
+                setBurstConfig(onDemandConfig.getBurst());
     }
 }
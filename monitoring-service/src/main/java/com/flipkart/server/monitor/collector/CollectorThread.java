@@ -1,59 +1,222 @@
 package com.flipkart.server.monitor.collector;
 
 import com.flipkart.server.monitor.cache.ResourceCache;
+import com.flipkart.server.monitor.cache.ResourceRing;
+import com.flipkart.server.monitor.domain.BurstConfig;
 import com.flipkart.server.monitor.domain.ResourceCollectionInstance;
+import com.flipkart.server.monitor.publisher.MetricPublisherThread;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
- * Created by IntelliJ IDEA.
- * User: nitinka
- * Date: 4/1/13
- * Time: 12:35 PM
- * To change this template use File | Settings | File Templates.
+ * Runs collectors in parallel on a scheduled pool, so that a slow or hung collector doesn't hold up the others.
+ * A collector runs again its collection interval (give or take jitter) after its last run got over, so runs of a
+ * collector never overlap and collectors started together drift apart instead of hitting endpoints at the same time.
+ *
+ * This thread watches deadlines : a collection running longer than collector's timeout is interrupted and
+ * collector is aborted (drops its connection, so that blocked io fails and next run reconnects).
+ *
+ * Collection latency, failures and timeouts of every collector are kept as resource COLLECTOR_STATS_RESOURCE, with
+ * metrics named collectorName.latencyMS, collectorName.failures and collectorName.timeouts
+ *
+ * A collector can be made to burst : sample every few ms for a while, on request or when its burst metric crosses
+ * threshold. Burst samples are kept in a ring of their own and go to resource cache together when burst is over. Burst
+ * duration is capped so that a burst has no more samples than publisher sends of a resource in one post
+ * (MetricPublisherThread.MAX_INSTANCES_PER_RESOURCE), so that it can go out in a single post. Burst runs are not
+ * recorded in collector stats.
  */
 public class CollectorThread extends Thread{
-    private boolean keepRunning = true;
-    private Map<String,BaseCollector> collectors;
-    private Map<String,Long> collectorLastExecutionTimeMap;
+    public static final String COLLECTOR_STATS_RESOURCE = "collectorStats";
+    public static final int MIN_BURST_INTERVAL_MS = 50;
+    public static final int MAX_BURST_DURATION_MS = 60000;
     private static final Logger log = LoggerFactory.getLogger(CollectorThread.class);
-    private int interval;
 
-    public CollectorThread(int interval) throws ClassNotFoundException,
-            InvocationTargetException,
-            NoSuchMethodException,
-            IllegalAccessException,
-            InstantiationException {
+    private boolean keepRunning = true;
+    private final Map<String,ScheduledCollector> collectors;
+    private final ScheduledExecutorService scheduler;
+    private final Random random;
+    private final int interval, jitterPercent;
+
+    /**
+     * A collector and its runs
+     */
+    private class ScheduledCollector {
+        private final BaseCollector collector;
+        private ScheduledFuture<?> nextRun;
+        private int ticket;                 // Guarded by this. A scheduled run with an older ticket has been superseded
+        private Thread runningThread;       // Guarded by this
+        private long runStartTime;
+        private boolean timedOut;
+        private long failures, timeouts;
+        private ResourceRing burstSamples;  // Samples of current (or just over) burst
+        private int burstIntervalMS;
+        private long burstEndTime, burstCoolOffTime;
+
+        private ScheduledCollector(BaseCollector collector) {
+            this.collector = collector;
+        }
+
+        private void run(int ticket) {
+            synchronized (this) {
+                if(ticket != this.ticket || runningThread != null)
+                    return;
+                runningThread = Thread.currentThread();
+                runStartTime = System.currentTimeMillis();
+                timedOut = false;
+            }
+
+            // Flush burst that got over, before anything collected after it reaches cache
+            flushBurst();
+
+            boolean failed = false, burstRun = false;
+            try {
+                // Collect Metrics
+                ResourceCollectionInstance instanceResource = collector.collect0();
+
+                // Keep in Cache, or aside if bursting
+                burstRun = keep(instanceResource);
+            }
+            catch (Exception e) {
+                failed = true;
+                log.error("Collector " + collector.getName() + " failed", e);
+            }
+            finally {
+                long latencyMS;
+                synchronized (this) {
+                    runningThread = null;
+                    latencyMS = System.currentTimeMillis() - runStartTime;
+                    if(failed && !timedOut)
+                        failures++;
+                }
+                // Clear interrupt deadline watch may have raised, this pool thread would run other collectors
+                Thread.interrupted();
+                if(!burstRun)
+                    collected(this, latencyMS);
+                // A burst asked for once this run let go has scheduled a run of its own, which carries on
+                schedule(this, nextRunDelay(this, false), ticket);
+            }
+        }
+
+        /**
+         * @return true if instance is kept aside as burst sample
+         */
+        private boolean keep(ResourceCollectionInstance instance) {
+            ResourceRing samples;
+            synchronized (this) {
+                samples = System.currentTimeMillis() < burstEndTime ? burstSamples : null;
+            }
+            if(samples != null) {
+                samples.append(instance);
+                return true;
+            }
+
+            ResourceCache.addStats(instance);
+            BurstConfig burstConfig = collector.getBurstConfig();
+            if(burstConfig != null && burstConfig.crossed(instance)
+                    && startBurst(burstConfig.getIntervalMS(), burstConfig.getDurationMS(), true))
+                log.info("Collector " + collector.getName() + " crossed " + burstConfig.getMetric() + " threshold " + burstConfig.getThreshold() + ". Bursting");
+            return false;
+        }
+
+        /**
+         * @param onThreshold burst wasn't asked for. Such a burst doesn't start till as long after last burst
+         * @return false if collector is already bursting
+         */
+        synchronized private boolean startBurst(int intervalMS, int durationMS, boolean onThreshold) {
+            long now = System.currentTimeMillis();
+            if(burstSamples != null || (onThreshold && now < burstCoolOffTime))
+                return false;
 
-        this.collectors = new HashMap<String, BaseCollector>();
-        this.collectorLastExecutionTimeMap = new HashMap<String, Long>();
+            burstIntervalMS = Math.max(MIN_BURST_INTERVAL_MS, intervalMS);
+            // A burst takes a sample at start and then every burst interval
+            durationMS = Math.min(Math.min(MAX_BURST_DURATION_MS, durationMS),
+                    (MetricPublisherThread.MAX_INSTANCES_PER_RESOURCE - 1) * burstIntervalMS);
+            burstEndTime = now + durationMS;
+            burstCoolOffTime = burstEndTime + durationMS;
+            burstSamples = new ResourceRing(durationMS / burstIntervalMS + 1);
+            return true;
+        }
+
+        /**
+         * Move samples of a burst that is over to resource cache
+         */
+        private void flushBurst() {
+            ResourceRing samples;
+            synchronized (this) {
+                if(burstSamples == null || System.currentTimeMillis() < burstEndTime)
+                    return;
+                samples = burstSamples;
+                burstSamples = null;
+            }
+            List<ResourceCollectionInstance> instances = samples.after(0, Integer.MAX_VALUE).getInstances();
+            for(ResourceCollectionInstance instance : instances)
+                ResourceCache.addStats(instance);
+            log.info("Collector " + collector.getName() + " burst is over with " + instances.size() + " samples");
+        }
+
+        /**
+         * Burst interval if collector is bursting (or has burst samples to flush), else 0
+         */
+        synchronized private int burstInterval() {
+            return burstSamples != null ? burstIntervalMS : 0;
+        }
+
+        /**
+         * @return true if run has just been found overrunning its deadline
+         */
+        synchronized private boolean overran(long now) {
+            if(runningThread == null || timedOut || now - runStartTime <= collector.getCollectionTimeout())
+                return false;
+            timedOut = true;
+            timeouts++;
+            runningThread.interrupt();
+            return true;
+        }
+    }
+
+    /**
+     * @param interval how often deadlines are checked
+     * @param threads collectors that can run at the same time
+     * @param jitterPercent runs of a collector are spaced its interval +- these many percent of it
+     */
+    public CollectorThread(int interval, int threads, int jitterPercent) {
+        this.collectors = new HashMap<String, ScheduledCollector>();
         this.interval = interval;
+        this.jitterPercent = jitterPercent;
+        this.random = new Random();
+        this.scheduler = Executors.newScheduledThreadPool(threads, new ThreadFactory() {
+            private int threadNo = 0;
+            synchronized public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Thread-Collector-" + threadNo++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.setDaemon(true);
     }
 
     public void run() {
         log.info("Starting Collector Thread");
 
         while(keepRunning) {
+            List<ScheduledCollector> scheduledCollectors;
+            synchronized (this.collectors) {
+                scheduledCollectors = new ArrayList<ScheduledCollector>(this.collectors.values());
+            }
 
-            for(String collectorName : this.collectors.keySet()) {
-                BaseCollector collector = this.collectors.get(collectorName);
-                if(canCollectorRun(collector)) {
+            long now = System.currentTimeMillis();
+            for(ScheduledCollector scheduledCollector : scheduledCollectors) {
+                if(scheduledCollector.overran(now)) {
+                    log.warn("Collector " + scheduledCollector.collector.getName() + " is taking more than "
+                            + scheduledCollector.collector.getCollectionTimeout() + "ms. Aborting it");
                     try {
-                        // Collect Metrics
-                        ResourceCollectionInstance instanceResource = collector.collect0();
-
-                        // Keep in Cache
-                        ResourceCache.addStats(instanceResource);
+                        scheduledCollector.collector.abort();
                     }
                     catch (Exception e) {
-                        e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-                    }
-                    finally {
-                        this.collectorLastExecutionTimeMap.put(collectorName, System.currentTimeMillis());
+                        log.error("Error while aborting collector " + scheduledCollector.collector.getName(), e);
                     }
                 }
             }
@@ -61,29 +224,139 @@ public class CollectorThread extends Thread{
             try {
                 sleep(this.interval);
             } catch (InterruptedException e) {
-                e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
+                break;
             }
         }
     }
 
-    private boolean canCollectorRun(BaseCollector collector) {
-        Long lastExecutionTime =  this.collectorLastExecutionTimeMap.get(collector.getName());
-        if(lastExecutionTime != null) {
-            return (System.currentTimeMillis() - lastExecutionTime) > collector.getCollectionInterval();
+    public void startCollector(BaseCollector collector) {
+        ScheduledCollector scheduledCollector = new ScheduledCollector(collector);
+        ScheduledCollector previous;
+        synchronized (this.collectors){
+            previous = this.collectors.put(collector.getName(), scheduledCollector);
         }
-        return true;
+        if(previous != null)
+            stop(previous);
+
+        // First run is spread over jitter, so that collectors started together don't run together
+        schedule(scheduledCollector, nextRunDelay(scheduledCollector, true), 0);
     }
 
-    public void startCollector(BaseCollector collector) {
-        synchronized (this.collectors){
-            this.collectors.put(collector.getName(), collector);
+    /**
+     * Make a running collector sample every intervalMS for durationMS
+     * @return false if collector isn't running or is already bursting
+     */
+    public boolean burst(BaseCollector collector, int intervalMS, int durationMS) {
+        ScheduledCollector scheduledCollector;
+        synchronized (this.collectors) {
+            scheduledCollector = this.collectors.get(collector.getName());
         }
+        if(scheduledCollector == null || scheduledCollector.collector != collector
+                || !scheduledCollector.startBurst(intervalMS, durationMS, false))
+            return false;
+
+        // Don't wait for next run at collection interval. If collector is running now, run reschedules itself
+        boolean runNow;
+        int ticket = 0;
+        synchronized (scheduledCollector) {
+            runNow = scheduledCollector.runningThread == null;
+            if(runNow) {
+                ticket = ++scheduledCollector.ticket;
+                if(scheduledCollector.nextRun != null)
+                    scheduledCollector.nextRun.cancel(false);
+            }
+        }
+        if(runNow)
+            schedule(scheduledCollector, 0, ticket);
+        log.info("Collector " + collector.getName() + " is bursting every " + intervalMS + "ms for " + durationMS + "ms");
+        return true;
     }
 
     public void stopCollector(BaseCollector collector) {
+        ScheduledCollector scheduledCollector;
         synchronized (this.collectors){
-            this.collectors.remove(collector.getName());
+            scheduledCollector = this.collectors.get(collector.getName());
+            if(scheduledCollector == null || scheduledCollector.collector != collector)
+                scheduledCollector = null;
+            else
+                this.collectors.remove(collector.getName());
             ResourceCache.removeResource(collector.getName());
         }
+        if(scheduledCollector != null)
+            stop(scheduledCollector);
+    }
+
+    public void stopIt() {
+        this.keepRunning = false;
+        this.interrupt();
+        this.scheduler.shutdownNow();
+    }
+
+    private void stop(ScheduledCollector scheduledCollector) {
+        synchronized (scheduledCollector) {
+            if(scheduledCollector.nextRun != null)
+                scheduledCollector.nextRun.cancel(false);
+        }
+        scheduledCollector.collector.close();
+    }
+
+    /**
+     * Collection interval give or take jitter, burst interval while bursting
+     */
+    private long nextRunDelay(ScheduledCollector scheduledCollector, boolean firstRun) {
+        int burstIntervalMS = scheduledCollector.burstInterval();
+        if(burstIntervalMS > 0)
+            return burstIntervalMS;
+
+        long afterMS = firstRun ? 0 : scheduledCollector.collector.getCollectionInterval();
+        long jitterMS = (long) scheduledCollector.collector.getCollectionInterval() * jitterPercent / 100;
+        long delayMS = afterMS;
+        if(jitterMS > 0)
+            delayMS += firstRun ? nextLong(jitterMS) : nextLong(2 * jitterMS) - jitterMS;
+        return delayMS;
+    }
+
+    /**
+     * Schedule next run of collector if its still to be collected, and no one has scheduled a run after ticket
+     */
+    private void schedule(final ScheduledCollector scheduledCollector, long delayMS, final int ticket) {
+        synchronized (this.collectors) {
+            if(this.collectors.get(scheduledCollector.collector.getName()) != scheduledCollector)
+                return;
+            try {
+                synchronized (scheduledCollector) {
+                    if(ticket != scheduledCollector.ticket)
+                        return;
+                    scheduledCollector.nextRun = this.scheduler.schedule(new Runnable() {
+                        public void run() {
+                            scheduledCollector.run(ticket);
+                        }
+                    }, Math.max(0, delayMS), TimeUnit.MILLISECONDS);
+                }
+            }
+            catch (RejectedExecutionException e) {
+                log.warn("Collector " + scheduledCollector.collector.getName() + " not scheduled, collection is stopped");
+            }
+        }
+    }
+
+    private void collected(ScheduledCollector scheduledCollector, long latencyMS) {
+        String name = scheduledCollector.collector.getName();
+        Map<String, Double> metrics = new HashMap<String, Double>();
+        synchronized (scheduledCollector) {
+            metrics.put(name + ".latencyMS", (double) latencyMS);
+            metrics.put(name + ".failures", (double) scheduledCollector.failures);
+            metrics.put(name + ".timeouts", (double) scheduledCollector.timeouts);
+        }
+        ResourceCache.addStats(new ResourceCollectionInstance().
+                setResourceName(COLLECTOR_STATS_RESOURCE).
+                setTime(System.currentTimeMillis()).
+                setMetrics(metrics));
+    }
+
+    private long nextLong(long bound) {
+        synchronized (this.random) {
+            return (long) (this.random.nextDouble() * bound);
+        }
     }
 }
@@ -0,0 +1,230 @@
+package com.flipkart.server.monitor.collector;
+
+import com.flipkart.perf.common.jackson.ObjectMapperUtil;
+import com.flipkart.server.monitor.domain.ResourceCollectionInstance;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Scrapes metrics a service exposes over http, like admin metrics of dropwizard services. Param "url" is polled, and
+ * response is flattened into metrics as it is read :
+ *   json : numbers and booleans (as 1/0), named by their path with '.' in between, array elements by index.
+ *          {"gauges":{"heap":{"value":10}}} gives gauges.heap.value = 10
+ *   text : lines of "name value", or "name{labels} value [timestamp]". Lines starting with '#' are skipped.
+ * Format is taken from content type of the response, unless param "format" (json or text) says so.
+ *
+ * Optional params "include" and "exclude" are regexes looked for in metric names, to pick metrics.
+ *
+ * Connection is kept alive across collections. Requests are conditional (ETag, Last-Modified) : if service says
+ * nothing has changed, last metrics are reported again without reading a response.
+ */
+public class HttpScraperCollector extends BaseCollector {
+    private static final int DRAIN_BUFFER_SIZE = 4096;
+
+    private final String url;
+    private final String format;
+    private final Pattern include, exclude;
+    private String etag, lastModified;
+    private Map<String, Double> lastMetrics;
+    private volatile HttpURLConnection connection;      // Of collection in progress, for abort
+
+    public HttpScraperCollector(String name, Map<String, Object> params, int interval) {
+        super(name, params, interval);
+        this.url = stringParam(params, "url");
+        this.format = stringParam(params, "format");
+        String include = stringParam(params, "include");
+        String exclude = stringParam(params, "exclude");
+        this.include = include == null ? null : Pattern.compile(include);
+        this.exclude = exclude == null ? null : Pattern.compile(exclude);
+    }
+
+    @Override
+    public boolean supported() {
+        if(url == null)
+            return false;
+        try {
+            new URL(url);
+            return true;
+        } catch (MalformedURLException e) {
+            log.error("Collector " + getName() + " has invalid url " + url);
+            return false;
+        }
+    }
+
+    @Override
+    public ResourceCollectionInstance collect() throws IOException {
+        long now = System.currentTimeMillis();
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(getCollectionTimeout());
+        connection.setReadTimeout(getCollectionTimeout());
+        connection.setRequestProperty("Accept", "application/json, text/plain;q=0.9, */*;q=0.5");
+        if(etag != null)
+            connection.setRequestProperty("If-None-Match", etag);
+        if(lastModified != null)
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+
+        this.connection = connection;
+        Map<String, Double> metrics;
+        try {
+            int status = connection.getResponseCode();
+            if(status == HttpURLConnection.HTTP_NOT_MODIFIED && lastMetrics != null) {
+                // No body, closing the stream still lets connection be reused
+                connection.getInputStream().close();
+                metrics = new HashMap<String, Double>(lastMetrics);
+            }
+            else if(status == HttpURLConnection.HTTP_OK) {
+                InputStream in = connection.getInputStream();
+                try {
+                    metrics = isJson(connection.getContentType()) ? parseJson(in) : parseText(in);
+                    drain(in);
+                } finally {
+                    in.close();
+                }
+                etag = connection.getHeaderField("ETag");
+                lastModified = connection.getHeaderField("Last-Modified");
+                lastMetrics = metrics;
+            }
+            else {
+                throw new IOException("Scraping " + url + " failed with status " + status);
+            }
+        }
+        catch (IOException e) {
+            // Reading error response lets connection be reused
+            InputStream error = connection.getErrorStream();
+            if(error != null) {
+                try {
+                    drain(error);
+                } catch (IOException ignored) {
+                } finally {
+                    error.close();
+                }
+            }
+            throw e;
+        }
+        finally {
+            this.connection = null;
+        }
+
+        return new ResourceCollectionInstance().
+                setResourceName(this.getName()).
+                setTime(now).
+                setMetrics(metrics);
+    }
+
+    /**
+     * Closing connection fails the read that is stuck
+     */
+    @Override
+    public void abort() {
+        HttpURLConnection connection = this.connection;
+        if(connection != null)
+            connection.disconnect();
+    }
+
+    private boolean isJson(String contentType) {
+        if(format != null)
+            return format.equalsIgnoreCase("json");
+        return contentType != null && contentType.toLowerCase().contains("json");
+    }
+
+    private Map<String, Double> parseJson(InputStream in) throws IOException {
+        Map<String, Double> metrics = new HashMap<String, Double>();
+        JsonParser parser = ObjectMapperUtil.instance().getJsonFactory().createJsonParser(in);
+        JsonToken token = parser.nextToken();
+        if(token != null)
+            flatten(parser, token, "", metrics);
+        return metrics;
+    }
+
+    private void flatten(JsonParser parser, JsonToken token, String path, Map<String, Double> metrics) throws IOException {
+        switch (token) {
+            case START_OBJECT:
+                while((token = parser.nextToken()) != JsonToken.END_OBJECT) {
+                    String field = parser.getCurrentName();
+                    flatten(parser, parser.nextToken(), join(path, field), metrics);
+                }
+                break;
+            case START_ARRAY:
+                int index = 0;
+                while((token = parser.nextToken()) != JsonToken.END_ARRAY)
+                    flatten(parser, token, join(path, String.valueOf(index++)), metrics);
+                break;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                add(metrics, path, parser.getDoubleValue());
+                break;
+            case VALUE_TRUE:
+                add(metrics, path, 1d);
+                break;
+            case VALUE_FALSE:
+                add(metrics, path, 0d);
+                break;
+            default:
+                // Strings and nulls aren't metrics
+        }
+    }
+
+    private Map<String, Double> parseText(InputStream in) throws IOException {
+        Map<String, Double> metrics = new HashMap<String, Double>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        String line;
+        while((line = reader.readLine()) != null) {
+            line = line.trim();
+            if(line.isEmpty() || line.startsWith("#"))
+                continue;
+
+            // Labels can have spaces in them
+            int nameEnd = line.indexOf('{') > 0 ? line.lastIndexOf('}') + 1 : 0;
+            while(nameEnd < line.length() && !Character.isWhitespace(line.charAt(nameEnd)))
+                nameEnd++;
+            if(nameEnd <= 0 || nameEnd >= line.length())
+                continue;
+
+            String value = line.substring(nameEnd).trim();
+            int valueEnd = 0;
+            while(valueEnd < value.length() && !Character.isWhitespace(value.charAt(valueEnd)))
+                valueEnd++;
+            try {
+                add(metrics, line.substring(0, nameEnd), Double.parseDouble(value.substring(0, valueEnd)));
+            } catch (NumberFormatException e) {
+                // +Inf, NaN and the like
+            }
+        }
+        return metrics;
+    }
+
+    private void add(Map<String, Double> metrics, String metric, double value) {
+        if(Double.isNaN(value) || Double.isInfinite(value))
+            return;
+        if(include != null && !include.matcher(metric).find())
+            return;
+        if(exclude != null && exclude.matcher(metric).find())
+            return;
+        metrics.put(metric, value);
+    }
+
+    private static String join(String path, String field) {
+        return path.isEmpty() ? field : path + "." + field;
+    }
+
+    /**
+     * Read what is left, so that connection goes back to keep alive cache
+     */
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+        while(in.read(buffer) >= 0);
+    }
+
+    private static String stringParam(Map<String, Object> params, String param) {
+        Object value = params == null ? null : params.get(param);
+        return value == null || value.toString().trim().isEmpty() ? null : value.toString().trim();
+    }
+}
@@ -40,8 +40,33 @@ public class JMXCollector extends BaseCollector {
     public static final String  CLASS_CURRENTLY_LOADED  = "currentlyLoaded";
     public static final String  SYSTEM_AVERAGE_LOAD     = "systemAverageLoad";
 
+    /**
+     * JMX connections, by host:port or connector address
+     */
+    private static final SessionPool<JMXConnection> JMX_SESSIONS = new SessionPool<JMXConnection>() {
+        protected JMXConnection open(String endpoint, Map<String, Object> params) throws IOException {
+            if(params.get("host") != null && params.get("port") != null)
+                return new JMXConnection(params.get("host").toString(), Integer.parseInt(params.get("port").toString()));
+            return new JMXConnection(endpoint);
+        }
+
+        protected void close(JMXConnection session) throws IOException {
+            session.close();
+        }
+    };
+
+    private final String endpoint;
+    private boolean registered, closed;     // Guarded by this
+    private volatile JMXConnection jmxConnection;
+
     public JMXCollector(String name, Map<String, Object> params, int interval) {
         super(name, params, interval);
+        if(this.getParam("host") != null && this.getParam("port") != null)
+            this.endpoint = this.getParam("host") + ":" + this.getParam("port");
+        else if(this.getParam("jmxConnectorAddress") != null)
+            this.endpoint = this.getParam("jmxConnectorAddress").toString();
+        else
+            this.endpoint = null;
     }
 
     @Override
@@ -51,26 +76,54 @@ public class JMXCollector extends BaseCollector {
 
     @Override
     public ResourceCollectionInstance collect() throws Exception {
-        JMXConnection jmxConnection = null;
+        if(this.endpoint == null)
+            throw new IllegalArgumentException("Either host and port or jmxConnectorAddress is needed");
+
+        synchronized (this) {
+            // A run can still be on its way when collector is stopped. It mustn't register again after close
+            if(this.closed)
+                throw new IllegalStateException("Collector " + this.getName() + " is closed");
+            if(!this.registered) {
+                JMX_SESSIONS.register(this.endpoint);
+                this.registered = true;
+            }
+        }
 
-        if(this.getParam("host") != null && this.getParam("port") != null) {
-            jmxConnection = new JMXConnection(this.getParam("host").toString(),
-                    Integer.parseInt(this.getParam("port").toString()));
+        // Connection is kept across collections. If it breaks, it is dropped and opened again next time
+        JMXConnection jmxConnection = JMX_SESSIONS.get(this.endpoint, this.getParams());
+        this.jmxConnection = jmxConnection;
+        try {
+            ResourceCollectionInstance collectionInstance = new ResourceCollectionInstance().
+                    setResourceName(this.getName());
+
+            collectionInstance.addMetrics(getMemoryMetrics(jmxConnection));
+            collectionInstance.addMetrics(getGCMetrics(jmxConnection));
+            collectionInstance.addMetrics(getThreadsMetric(jmxConnection));
+            collectionInstance.addMetrics(getClassLoadingMetrics(jmxConnection));
+            collectionInstance.addMetrics(getOSMetrics(jmxConnection));
+            return collectionInstance.setTime(System.currentTimeMillis());
         }
-        else if(this.getParam("jmxConnectorAddress") != null) {
-            jmxConnection = new JMXConnection(this.getParam("jmxConnectorAddress").toString());
+        catch (Exception e) {
+            JMX_SESSIONS.invalidate(this.endpoint, jmxConnection);
+            throw e;
         }
+        finally {
+            this.jmxConnection = null;
+        }
+    }
 
-        ResourceCollectionInstance collectionInstance = new ResourceCollectionInstance().
-                setResourceName(this.getName());
+    @Override
+    public void abort() {
+        JMX_SESSIONS.invalidate(this.endpoint, this.jmxConnection);
+    }
 
-        collectionInstance.addMetrics(getMemoryMetrics(jmxConnection));
-        collectionInstance.addMetrics(getGCMetrics(jmxConnection));
-        collectionInstance.addMetrics(getThreadsMetric(jmxConnection));
-        collectionInstance.addMetrics(getClassLoadingMetrics(jmxConnection));
-        collectionInstance.addMetrics(getOSMetrics(jmxConnection));
-        jmxConnection.close();
-        return collectionInstance.setTime(System.currentTimeMillis());
+    @Override
+    synchronized public void close() {
+        this.closed = true;
+        if(this.registered) {
+            JMX_SESSIONS.unregister(this.endpoint);
+            this.registered = false;
+        }
     }
 
     private Map<String, Double> getOSMetrics(JMXConnection JMXConnection) throws IOException {
@@ -12,8 +12,30 @@ import com.flipkart.server.monitor.domain.ResourceCollectionInstance;
  */
 public class MysqlConnectionCollector extends BaseCollector {
 
+    /**
+     * Mysql connections, by user@host:port/db. A connection is used by one collection at a time
+     */
+    private static final SessionPool<SQLHelper> SQL_SESSIONS = new SessionPool<SQLHelper>() {
+        protected SQLHelper open(String endpoint, Map<String, Object> params) throws SQLException, ClassNotFoundException {
+            return new SQLHelper(params.get("host").toString(),
+                    Integer.parseInt(params.get("port").toString()),
+                    params.get("user").toString(),
+                    params.get("password").toString(),
+                    params.get("db").toString());
+        }
+
+        protected void close(SQLHelper session) throws SQLException {
+            session.closeConnection();
+        }
+    };
+
+    private final String endpoint;
+    private boolean registered, closed;     // Guarded by this
+    private volatile SQLHelper sqlHelper;
+
     public MysqlConnectionCollector(String name, Map<String, Object> params, int interval) {
         super(name, params, interval);
+        this.endpoint = this.getParam("user") + "@" + this.getParam("host") + ":" + this.getParam("port") + "/" + this.getParam("db");
     }
 
     @Override
@@ -22,45 +44,71 @@ public class MysqlConnectionCollector extends BaseCollector {
     }
 
     @Override
-    public ResourceCollectionInstance collect() throws SQLException, ClassNotFoundException {
+    public ResourceCollectionInstance collect() throws Exception {
         ResourceCollectionInstance collectionInstance = new ResourceCollectionInstance().
                 setResourceName(this.getName());
 
-        String host = this.getParam("host").toString();
-        int port = Integer.parseInt(this.getParam("port").toString());
-        String user = this.getParam("user").toString();
-        String pass = this.getParam("password").toString();
-        String db = this.getParam("db").toString();
+        synchronized (this) {
+            // A run can still be on its way when collector is stopped. It mustn't register again after close
+            if(this.closed)
+                throw new IllegalStateException("Collector " + this.getName() + " is closed");
+            if(!this.registered) {
+                SQL_SESSIONS.register(this.endpoint);
+                this.registered = true;
+            }
+        }
 
         int totalConnections = 0;
-        SQLHelper sqlHelper = new SQLHelper(host, port, user, pass, db);
+        SQLHelper sqlHelper = SQL_SESSIONS.get(this.endpoint, this.getParams());
+        this.sqlHelper = sqlHelper;
         Map<String, Double> connectionsStats = new HashMap<String, Double>();
-        try {
-            ResultSet rs = sqlHelper.executeQuery("show processlist");
-            while(rs.next()) {
-                String connectingHost = rs.getString(3).split(":")[0].trim();
-                String connectedDB = rs.getString(4);
-                String hostDBConnection = connectingHost+"."+connectedDB;
-                Double dbConnections = connectionsStats.get(hostDBConnection);
-                if(dbConnections == null)
-                    dbConnections = 0d;
-
-                dbConnections++;
-
-                connectionsStats.put(hostDBConnection, dbConnections);
-                totalConnections++;
+        synchronized (sqlHelper) {
+            ResultSet rs = null;
+            try {
+                rs = sqlHelper.executeQuery("show processlist");
+                while(rs.next()) {
+                    String connectingHost = rs.getString(3).split(":")[0].trim();
+                    String connectedDB = rs.getString(4);
+                    String hostDBConnection = connectingHost+"."+connectedDB;
+                    Double dbConnections = connectionsStats.get(hostDBConnection);
+                    if(dbConnections == null)
+                        dbConnections = 0d;
+
+                    dbConnections++;
+
+                    connectionsStats.put(hostDBConnection, dbConnections);
+                    totalConnections++;
+                }
+                connectionsStats.put("total.connections", (double) totalConnections);
+            }
+            catch(SQLException e) {
+                // Connection may be gone, open it again next time
+                SQL_SESSIONS.invalidate(this.endpoint, sqlHelper);
+                throw e;
+            }
+            finally {
+                if(rs != null)
+                    rs.close();
+                this.sqlHelper = null;
             }
-            connectionsStats.put("total.connections", (double) totalConnections);
-        }
-        catch(SQLException e) {
-            e.printStackTrace();
-        }
-        finally {
-            sqlHelper.closeConnection();
         }
 
         return collectionInstance.
                 setTime(System.currentTimeMillis()).
                 setMetrics(connectionsStats);
     }
-}
\ No newline at end of file
+
+    @Override
+    public void abort() {
+        SQL_SESSIONS.invalidate(this.endpoint, this.sqlHelper);
+    }
+
+    @Override
+    synchronized public void close() {
+        this.closed = true;
+        if(this.registered) {
+            SQL_SESSIONS.unregister(this.endpoint);
+            this.registered = false;
+        }
+    }
+}
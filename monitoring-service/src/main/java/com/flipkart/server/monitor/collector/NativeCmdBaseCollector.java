@@ -4,6 +4,7 @@ import com.flipkart.perf.common.util.ProcessHelper;
 import com.flipkart.server.monitor.domain.ResourceCollectionInstance;
 import com.flipkart.server.monitor.exception.ProcessExecutionFailedException;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Map;
 
@@ -30,25 +31,32 @@ public abstract class NativeCmdBaseCollector extends BaseCollector{
             return process;
     }
 
+    /**
+     * Supported if command can be found, checked without running it
+     */
     @Override
     public boolean supported() {
         // Currently Going live only with LINUX
         if(CLIENT_OS != OS.LINUX)
             return false;
 
-        boolean supported = true;
-        try {
-            executeCmd();
-        } catch (IOException e) {
-            e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-            supported = false;
-        } catch (InterruptedException e) {
-            e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-            supported = false;
-        } catch (ProcessExecutionFailedException e) {
-            e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
+        String cmd = getCmd();
+        if(cmd == null || cmd.trim().isEmpty())
+            return false;
+
+        String executable = cmd.trim().split("\\s+")[0];
+        if(executable.contains(File.separator))
+            return new File(executable).canExecute();
+
+        String path = System.getenv("PATH");
+        if(path != null) {
+            for(String dir : path.split(File.pathSeparator)) {
+                if(new File(dir, executable).canExecute())
+                    return true;
+            }
         }
-        return supported;
+        log.warn("Command " + executable + " not found in PATH");
+        return false;
     }
 
     /**
@@ -0,0 +1,67 @@
+package com.flipkart.server.monitor.collector;
+
+import com.flipkart.server.monitor.domain.ResourceCollectionInstance;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generic Resource Collector which reads Linux /proc files in process, instead of forking commands.
+ * Files are kept open and read into reusable buffers. Collectors of counters keep last reading and publish rates
+ * from second collection onwards.
+ */
+public abstract class ProcBaseCollector extends BaseCollector{
+    private final ProcFile procFile;
+    private long lastCollectionTime = -1;
+
+    public ProcBaseCollector(String name, Map<String, Object> params, int interval, String procPath) {
+        super(name, params, interval);
+        this.procFile = new ProcFile(procPath);
+    }
+
+    @Override
+    public boolean supported() {
+        return CLIENT_OS == OS.LINUX && procFile.exists();
+    }
+
+    @Override
+    public ResourceCollectionInstance collect() throws IOException {
+        long now = System.currentTimeMillis();
+        procFile.read();
+
+        Map<String, Double> metrics = new HashMap<String, Double>();
+        collect(procFile, lastCollectionTime < 0 ? 0 : now - lastCollectionTime, metrics);
+        lastCollectionTime = now;
+
+        return new ResourceCollectionInstance().
+                setResourceName(this.getName()).
+                setTime(now).
+                setMetrics(metrics);
+    }
+
+    @Override
+    public void close() {
+        procFile.close();
+    }
+
+    /**
+     * Per second rate of a counter, null if there isn't a previous reading
+     */
+    protected static Double rate(long current, long previous, long elapsedMS) {
+        if(elapsedMS <= 0 || previous < 0)
+            return null;
+        return Math.max(0, current - previous) * 1000d / elapsedMS;
+    }
+
+    protected static void put(Map<String, Double> metrics, String metric, Double value) {
+        if(value != null)
+            metrics.put(metric, value);
+    }
+
+    /**
+     * Parse freshly read file into metrics
+     * @param elapsedMS time since last collection, 0 on first collection
+     */
+    abstract protected void collect(ProcFile procFile, long elapsedMS, Map<String, Double> metrics);
+}
@@ -0,0 +1,83 @@
+package com.flipkart.server.monitor.collector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects cpu usage from /proc/stat : percent of time spent in each state, all cores together (as "total") and per
+ * core (as "cpuN"). Also context switches and interrupts per second, running and blocked processes.
+ */
+public class ProcCPUCollector extends ProcBaseCollector {
+    private static final String[] STATES = {"user", "nice", "system", "idle", "iowait", "irq", "softirq", "steal"};
+
+    private final Map<String, Cpu> cpus;
+    private long lastContextSwitches = -1, lastInterrupts = -1;
+
+    private static class Cpu {
+        private final String[] metricNames;
+        private final long[] ticks = new long[STATES.length];
+        private final long[] lastTicks = new long[STATES.length];
+        private boolean collectedOnce;
+
+        private Cpu(String cpu) {
+            metricNames = new String[STATES.length];
+            for(int i=0; i<STATES.length; i++)
+                metricNames[i] = cpu + "." + STATES[i];
+        }
+    }
+
+    public ProcCPUCollector(String name, Map<String, Object> params, int interval) {
+        super(name, params, interval, "/proc/stat");
+        this.cpus = new HashMap<String, Cpu>();
+    }
+
+    @Override
+    protected void collect(ProcFile procFile, long elapsedMS, Map<String, Double> metrics) {
+        while(procFile.nextLine()) {
+            if(!procFile.nextToken())
+                continue;
+
+            if(procFile.tokenStartsWith("cpu")) {
+                String cpuName = procFile.tokenEquals("cpu") ? "total" : procFile.tokenName();
+                collectCpu(procFile, cpuName, metrics);
+            }
+            else if(procFile.tokenEquals("ctxt")) {
+                long contextSwitches = procFile.nextLong();
+                put(metrics, "contextSwitches", rate(contextSwitches, lastContextSwitches, elapsedMS));
+                lastContextSwitches = contextSwitches;
+            }
+            else if(procFile.tokenEquals("intr")) {
+                long interrupts = procFile.nextLong();
+                put(metrics, "interrupts", rate(interrupts, lastInterrupts, elapsedMS));
+                lastInterrupts = interrupts;
+            }
+            else if(procFile.tokenEquals("procs_running")) {
+                metrics.put("procsRunning", (double) procFile.nextLong());
+            }
+            else if(procFile.tokenEquals("procs_blocked")) {
+                metrics.put("procsBlocked", (double) procFile.nextLong());
+            }
+        }
+    }
+
+    private void collectCpu(ProcFile procFile, String cpuName, Map<String, Double> metrics) {
+        Cpu cpu = cpus.get(cpuName);
+        if(cpu == null) {
+            cpu = new Cpu(cpuName);
+            cpus.put(cpuName, cpu);
+        }
+
+        long totalTicks = 0;
+        for(int i=0; i<STATES.length; i++) {
+            cpu.ticks[i] = procFile.nextLong();
+            totalTicks += cpu.ticks[i] - cpu.lastTicks[i];
+        }
+
+        if(cpu.collectedOnce && totalTicks > 0) {
+            for(int i=0; i<STATES.length; i++)
+                metrics.put(cpu.metricNames[i], Math.max(0, cpu.ticks[i] - cpu.lastTicks[i]) * 100d / totalTicks);
+        }
+        System.arraycopy(cpu.ticks, 0, cpu.lastTicks, 0, STATES.length);
+        cpu.collectedOnce = true;
+    }
+}
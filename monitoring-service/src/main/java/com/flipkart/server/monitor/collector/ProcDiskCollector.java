@@ -0,0 +1,85 @@
+package com.flipkart.server.monitor.collector;
+
+import java.util.*;
+
+/**
+ * Collects disk io from /proc/diskstats, per device : iops, throughput (KB per second), average latency of an io,
+ * percent of time device was busy and ios in flight. Devices which haven't done any io are left out.
+ * Optional param "devices" (comma separated) restricts collection to those devices.
+ */
+public class ProcDiskCollector extends ProcBaseCollector {
+    private static final int READS = 0, SECTORS_READ = 2, MS_READING = 3, WRITES = 4, SECTORS_WRITTEN = 6,
+            MS_WRITING = 7, IN_FLIGHT = 8, MS_IO = 9, FIELDS = 11;
+    private static final String[] METRICS = {"readIOPS", "writeIOPS", "readKBps", "writeKBps", "readLatencyMS",
+            "writeLatencyMS", "utilPercent", "inFlight"};
+    private static final double SECTOR_KB = 0.5;
+
+    private final Map<String, Device> devices;
+    private final Set<String> onlyDevices;
+
+    private static class Device {
+        private final String[] metricNames;
+        private final long[] fields = new long[FIELDS];
+        private final long[] lastFields = new long[FIELDS];
+        private boolean collectedOnce;
+
+        private Device(String device) {
+            metricNames = new String[METRICS.length];
+            for(int i=0; i<METRICS.length; i++)
+                metricNames[i] = device + "." + METRICS[i];
+        }
+    }
+
+    public ProcDiskCollector(String name, Map<String, Object> params, int interval) {
+        super(name, params, interval, "/proc/diskstats");
+        this.devices = new HashMap<String, Device>();
+        this.onlyDevices = new HashSet<String>();
+        Object devicesParam = params == null ? null : params.get("devices");
+        if(devicesParam != null && !devicesParam.toString().trim().isEmpty())
+            for(String device : devicesParam.toString().split(","))
+                this.onlyDevices.add(device.trim());
+    }
+
+    @Override
+    protected void collect(ProcFile procFile, long elapsedMS, Map<String, Double> metrics) {
+        while(procFile.nextLine()) {
+            // major minor name fields...
+            procFile.skipTokens(2);
+            if(!procFile.nextToken())
+                continue;
+            String deviceName = procFile.tokenName();
+            if(!onlyDevices.isEmpty() && !onlyDevices.contains(deviceName))
+                continue;
+
+            Device device = devices.get(deviceName);
+            if(device == null) {
+                device = new Device(deviceName);
+                devices.put(deviceName, device);
+            }
+            for(int i=0; i<FIELDS; i++)
+                device.fields[i] = procFile.nextLong();
+
+            if(device.fields[READS] + device.fields[WRITES] > 0 && device.collectedOnce && elapsedMS > 0)
+                collectDevice(device, elapsedMS, metrics);
+
+            System.arraycopy(device.fields, 0, device.lastFields, 0, FIELDS);
+            device.collectedOnce = true;
+        }
+    }
+
+    private void collectDevice(Device device, long elapsedMS, Map<String, Double> metrics) {
+        long reads = delta(device, READS), writes = delta(device, WRITES);
+        metrics.put(device.metricNames[0], reads * 1000d / elapsedMS);
+        metrics.put(device.metricNames[1], writes * 1000d / elapsedMS);
+        metrics.put(device.metricNames[2], delta(device, SECTORS_READ) * SECTOR_KB * 1000d / elapsedMS);
+        metrics.put(device.metricNames[3], delta(device, SECTORS_WRITTEN) * SECTOR_KB * 1000d / elapsedMS);
+        metrics.put(device.metricNames[4], reads == 0 ? 0d : (double) delta(device, MS_READING) / reads);
+        metrics.put(device.metricNames[5], writes == 0 ? 0d : (double) delta(device, MS_WRITING) / writes);
+        metrics.put(device.metricNames[6], Math.min(100d, delta(device, MS_IO) * 100d / elapsedMS));
+        metrics.put(device.metricNames[7], (double) device.fields[IN_FLIGHT]);
+    }
+
+    private static long delta(Device device, int field) {
+        return Math.max(0, device.fields[field] - device.lastFields[field]);
+    }
+}
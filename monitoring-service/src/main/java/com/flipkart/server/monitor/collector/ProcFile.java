@@ -0,0 +1,225 @@
+package com.flipkart.server.monitor.collector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * A /proc file kept open and read again into the same buffer on every collection. Content is parsed in place : a
+ * cursor walks lines and whitespace separated tokens, numbers are parsed off the bytes. Names (devices, cores) are
+ * turned into Strings only the first time they are seen.
+ *
+ * Not thread safe, meant for collections of one collector which never overlap.
+ */
+class ProcFile {
+    private static final int MAX_NAMES = 1024;
+
+    private File file;
+    private RandomAccessFile in;
+    private byte[] buffer;
+    private int length;
+    private int lineStart = -1, lineEnd = -1;
+    private int position;
+    private int tokenStart, tokenEnd;
+    private String[] names;
+    private int nameCount;
+
+    ProcFile(String path) {
+        this.file = new File(path);
+        this.buffer = new byte[4096];
+        this.names = new String[16];
+    }
+
+    /**
+     * Point to another file. Buffer is kept
+     */
+    ProcFile open(String path) {
+        close();
+        this.file = new File(path);
+        return this;
+    }
+
+    boolean exists() {
+        return file.canRead();
+    }
+
+    /**
+     * Read the file afresh. Cursor is placed before first line
+     */
+    void read() throws IOException {
+        if(in == null)
+            in = new RandomAccessFile(file, "r");
+
+        try {
+            in.seek(0);
+            length = 0;
+            int read;
+            while((read = in.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+                if(length == buffer.length)
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        catch (IOException e) {
+            close();
+            throw e;
+        }
+        lineStart = lineEnd = -1;
+    }
+
+    /**
+     * Copy of what was read
+     */
+    byte[] content() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Move to next line
+     * @return false if there are no more lines
+     */
+    boolean nextLine() {
+        int start = lineEnd + 1;
+        if(start >= length)
+            return false;
+        int end = start;
+        while(end < length && buffer[end] != '\n')
+            end++;
+        lineStart = start;
+        lineEnd = end;
+        position = start;
+        return true;
+    }
+
+    /**
+     * Move to next token of current line. ':' ends a token as well, so that "eth0:123" is two tokens
+     * @return false if line has no more tokens
+     */
+    boolean nextToken() {
+        while(position < lineEnd && isSeparator(buffer[position]))
+            position++;
+        if(position >= lineEnd)
+            return false;
+        tokenStart = position;
+        while(position < lineEnd && !isSeparator(buffer[position]))
+            position++;
+        tokenEnd = position;
+        return true;
+    }
+
+    /**
+     * Make text between first '(' and last ')' of current line the token, and move past it. Used for command names
+     * in stat files, which can have spaces and parentheses in them
+     * @return false if line has no parentheses
+     */
+    boolean parenthesized() {
+        int open = lineStart;
+        while(open < lineEnd && buffer[open] != '(')
+            open++;
+        int close = lineEnd - 1;
+        while(close > open && buffer[close] != ')')
+            close--;
+        if(close <= open)
+            return false;
+        tokenStart = open + 1;
+        tokenEnd = close;
+        position = close + 1;
+        return true;
+    }
+
+    /**
+     * Skip these many tokens of current line
+     */
+    ProcFile skipTokens(int tokens) {
+        for(int i=0; i<tokens; i++)
+            nextToken();
+        return this;
+    }
+
+    boolean tokenEquals(String value) {
+        if(tokenEnd - tokenStart != value.length())
+            return false;
+        return tokenStartsWith(value);
+    }
+
+    boolean tokenStartsWith(String prefix) {
+        if(tokenEnd - tokenStart < prefix.length())
+            return false;
+        for(int i=0; i<prefix.length(); i++)
+            if(buffer[tokenStart + i] != prefix.charAt(i))
+                return false;
+        return true;
+    }
+
+    /**
+     * Next token as long, 0 if line has no more tokens
+     */
+    long nextLong() {
+        if(!nextToken())
+            return 0;
+        long value = 0;
+        for(int i=tokenStart; i<tokenEnd; i++) {
+            byte b = buffer[i];
+            if(b < '0' || b > '9')
+                break;
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Next token as a plain decimal number (no exponent), 0 if line has no more tokens
+     */
+    double nextDouble() {
+        if(!nextToken())
+            return 0;
+        long value = 0, scale = 1;
+        boolean fraction = false;
+        for(int i=tokenStart; i<tokenEnd; i++) {
+            byte b = buffer[i];
+            if(b == '.' && !fraction) {
+                fraction = true;
+                continue;
+            }
+            if(b < '0' || b > '9')
+                break;
+            value = value * 10 + (b - '0');
+            if(fraction)
+                scale *= 10;
+        }
+        return (double) value / scale;
+    }
+
+    /**
+     * Current token as a String. Same String instance is returned every time for same token content
+     */
+    String tokenName() {
+        for(int n=0; n<nameCount; n++)
+            if(tokenEquals(names[n]))
+                return names[n];
+
+        String name = new String(buffer, tokenStart, tokenEnd - tokenStart);
+        if(nameCount < MAX_NAMES) {
+            if(nameCount == names.length)
+                names = Arrays.copyOf(names, names.length * 2);
+            names[nameCount++] = name;
+        }
+        return name;
+    }
+
+    void close() {
+        if(in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Nothing to be done
+            }
+            in = null;
+        }
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t' || b == ':';
+    }
+}
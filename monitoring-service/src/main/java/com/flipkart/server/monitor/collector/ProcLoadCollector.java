@@ -0,0 +1,24 @@
+package com.flipkart.server.monitor.collector;
+
+import java.util.Map;
+
+/**
+ * Collects load averages and runnable tasks from /proc/loadavg
+ */
+public class ProcLoadCollector extends ProcBaseCollector {
+
+    public ProcLoadCollector(String name, Map<String, Object> params, int interval) {
+        super(name, params, interval, "/proc/loadavg");
+    }
+
+    @Override
+    protected void collect(ProcFile procFile, long elapsedMS, Map<String, Double> metrics) {
+        if(!procFile.nextLine())
+            return;
+        // 0.52 0.58 0.59 2/1234 5678
+        metrics.put("load.1min", procFile.nextDouble());
+        metrics.put("load.5min", procFile.nextDouble());
+        metrics.put("load.15min", procFile.nextDouble());
+        metrics.put("load.runnable", (double) procFile.nextLong());
+    }
+}
@@ -0,0 +1,50 @@
+package com.flipkart.server.monitor.collector;
+
+import java.util.Map;
+
+/**
+ * Collects memory and swap usage (in KB) from /proc/meminfo
+ */
+public class ProcMemoryCollector extends ProcBaseCollector {
+    private static final String[] FIELDS = {"MemTotal", "MemFree", "MemAvailable", "Buffers", "Cached", "SwapTotal", "SwapFree"};
+    private static final int MEM_TOTAL = 0, MEM_FREE = 1, MEM_AVAILABLE = 2, BUFFERS = 3, CACHED = 4, SWAP_TOTAL = 5, SWAP_FREE = 6;
+
+    private final long[] values = new long[FIELDS.length];
+
+    public ProcMemoryCollector(String name, Map<String, Object> params, int interval) {
+        super(name, params, interval, "/proc/meminfo");
+    }
+
+    @Override
+    protected void collect(ProcFile procFile, long elapsedMS, Map<String, Double> metrics) {
+        for(int i=0; i<values.length; i++)
+            values[i] = -1;
+
+        while(procFile.nextLine()) {
+            if(!procFile.nextToken())
+                continue;
+            for(int i=0; i<FIELDS.length; i++) {
+                if(procFile.tokenEquals(FIELDS[i])) {
+                    values[i] = procFile.nextLong();
+                    break;
+                }
+            }
+        }
+
+        long buffers = Math.max(0, values[BUFFERS]), cached = Math.max(0, values[CACHED]);
+        metrics.put("memory.totalKB", (double) values[MEM_TOTAL]);
+        metrics.put("memory.freeKB", (double) values[MEM_FREE]);
+        metrics.put("memory.buffersKB", (double) buffers);
+        metrics.put("memory.cachedKB", (double) cached);
+        metrics.put("memory.usedKB", (double) (values[MEM_TOTAL] - values[MEM_FREE] - buffers - cached));
+        // Older kernels don't have MemAvailable
+        long available = values[MEM_AVAILABLE] >= 0 ? values[MEM_AVAILABLE] : values[MEM_FREE] + buffers + cached;
+        metrics.put("memory.availableKB", (double) available);
+
+        if(values[SWAP_TOTAL] >= 0) {
+            metrics.put("swap.totalKB", (double) values[SWAP_TOTAL]);
+            metrics.put("swap.freeKB", (double) values[SWAP_FREE]);
+            metrics.put("swap.usedKB", (double) (values[SWAP_TOTAL] - values[SWAP_FREE]));
+        }
+    }
+}
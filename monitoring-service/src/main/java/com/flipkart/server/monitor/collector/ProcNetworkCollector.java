@@ -0,0 +1,67 @@
+package com.flipkart.server.monitor.collector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects network throughput from /proc/net/dev, per interface : KB and packets per second received and sent, errors
+ * and drops per second.
+ */
+public class ProcNetworkCollector extends ProcBaseCollector {
+    // Receive : bytes packets errs drop fifo frame compressed multicast, Transmit : bytes packets errs drop ...
+    private static final int RX_BYTES = 0, RX_PACKETS = 1, RX_ERRORS = 2, RX_DROPS = 3,
+            TX_BYTES = 8, TX_PACKETS = 9, TX_ERRORS = 10, TX_DROPS = 11, FIELDS = 12;
+    private static final int[] RATE_FIELDS = {RX_BYTES, TX_BYTES, RX_PACKETS, TX_PACKETS, RX_ERRORS, TX_ERRORS, RX_DROPS, TX_DROPS};
+    private static final String[] METRICS = {"rxKBps", "txKBps", "rxPacketsps", "txPacketsps", "rxErrorsps",
+            "txErrorsps", "rxDropsps", "txDropsps"};
+
+    private final Map<String, Interface> interfaces;
+
+    private static class Interface {
+        private final String[] metricNames;
+        private final long[] fields = new long[FIELDS];
+        private final long[] lastFields = new long[FIELDS];
+        private boolean collectedOnce;
+
+        private Interface(String networkInterface) {
+            metricNames = new String[METRICS.length];
+            for(int i=0; i<METRICS.length; i++)
+                metricNames[i] = networkInterface + "." + METRICS[i];
+        }
+    }
+
+    public ProcNetworkCollector(String name, Map<String, Object> params, int interval) {
+        super(name, params, interval, "/proc/net/dev");
+        this.interfaces = new HashMap<String, Interface>();
+    }
+
+    @Override
+    protected void collect(ProcFile procFile, long elapsedMS, Map<String, Double> metrics) {
+        // Two header lines
+        procFile.nextLine();
+        procFile.nextLine();
+
+        while(procFile.nextLine()) {
+            if(!procFile.nextToken())
+                continue;
+            String interfaceName = procFile.tokenName();
+            Interface networkInterface = interfaces.get(interfaceName);
+            if(networkInterface == null) {
+                networkInterface = new Interface(interfaceName);
+                interfaces.put(interfaceName, networkInterface);
+            }
+            for(int i=0; i<FIELDS; i++)
+                networkInterface.fields[i] = procFile.nextLong();
+
+            if(networkInterface.collectedOnce && elapsedMS > 0) {
+                for(int i=0; i<RATE_FIELDS.length; i++) {
+                    int field = RATE_FIELDS[i];
+                    double perSecond = rate(networkInterface.fields[field], networkInterface.lastFields[field], elapsedMS);
+                    metrics.put(networkInterface.metricNames[i], field == RX_BYTES || field == TX_BYTES ? perSecond / 1024 : perSecond);
+                }
+            }
+            System.arraycopy(networkInterface.fields, 0, networkInterface.lastFields, 0, FIELDS);
+            networkInterface.collectedOnce = true;
+        }
+    }
+}
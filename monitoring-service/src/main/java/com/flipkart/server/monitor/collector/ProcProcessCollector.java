@@ -0,0 +1,345 @@
+package com.flipkart.server.monitor.collector;
+
+import com.flipkart.server.monitor.domain.ResourceCollectionInstance;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Collects resource usage of one process (need not be java) from /proc/<pid>/stat, status, io and fd, and of its
+ * threads from /proc/<pid>/task/<tid>/stat.
+ *
+ * Process is given by param "pid", or by param "namePattern" (regex looked for in command line of processes). A
+ * process found by name is looked up again if it goes away.
+ * Optional params : "topThreads" (default 5), hottest threads to report, and "clockTicks" (default 100), clock ticks
+ * per second of the kernel (USER_HZ).
+ *
+ * Reports process.cpuPercent (100 per core fully used), user and system split of it, rss, threads, open fds, context
+ * switches, page faults and disk bytes read/written per second. Hottest threads are reported as
+ * thread.threadName(tid).cpuPercent. Rates start from second collection, and restart if process restarts.
+ */
+public class ProcProcessCollector extends BaseCollector {
+    private static final int DEFAULT_TOP_THREADS = 5;
+    private static final int DEFAULT_CLOCK_TICKS = 100;
+    private static final int PAGE_KB = 4;
+    // Fields of stat file after command name, counting from state as 0
+    private static final int MINOR_FAULTS = 7, MAJOR_FAULTS = 9, UTIME = 11, STIME = 12, THREADS = 17,
+            START_TIME = 19, VSIZE = 20, RSS = 21, STAT_FIELDS = 22;
+
+    private final String pidParam;
+    private final Pattern namePattern;
+    private final int topThreads;
+    private final int clockTicks;
+    private final String ownPid;
+    private final String procRoot;
+
+    private final ProcFile statFile, statusFile, ioFile, threadStatFile;
+    private final long[] stat = new long[STAT_FIELDS];
+    private final Map<String, ThreadStat> threads;
+    private String pid;
+    private long lastCollectionTime = -1, lastStartTime = -1;
+    private long lastUtime, lastStime, lastMinorFaults, lastMajorFaults;
+    private long lastVoluntarySwitches = -1, lastInvoluntarySwitches = -1, lastReadBytes = -1, lastWriteBytes = -1;
+
+    private static class ThreadStat {
+        private String name;
+        private long ticks;
+        private long lastTicks = -1;
+        private double cpuPercent;
+        private boolean alive;
+    }
+
+    public ProcProcessCollector(String name, Map<String, Object> params, int interval) {
+        this(name, params, interval, "/proc");
+    }
+
+    /**
+     * @param procRoot directory to look for process files in, in place of /proc
+     */
+    ProcProcessCollector(String name, Map<String, Object> params, int interval, String procRoot) {
+        super(name, params, interval);
+        Object pid = params == null ? null : params.get("pid");
+        Object namePattern = params == null ? null : params.get("namePattern");
+        this.pidParam = pid == null || pid.toString().trim().isEmpty() ? null : pid.toString().trim();
+        this.namePattern = namePattern == null || namePattern.toString().trim().isEmpty() ? null : Pattern.compile(namePattern.toString().trim());
+        this.topThreads = intParam(params, "topThreads", DEFAULT_TOP_THREADS);
+        this.clockTicks = intParam(params, "clockTicks", DEFAULT_CLOCK_TICKS);
+        this.ownPid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+        this.procRoot = procRoot;
+
+        this.statFile = new ProcFile("/proc/self/stat");
+        this.statusFile = new ProcFile("/proc/self/status");
+        this.ioFile = new ProcFile("/proc/self/io");
+        this.threadStatFile = new ProcFile("/proc/self/stat");
+        this.threads = new HashMap<String, ThreadStat>();
+    }
+
+    @Override
+    public boolean supported() {
+        return CLIENT_OS == OS.LINUX && new File("/proc/self/stat").exists() && (pidParam != null || namePattern != null);
+    }
+
+    @Override
+    public ResourceCollectionInstance collect() throws IOException {
+        if(pid == null)
+            attach();
+
+        long now = System.currentTimeMillis();
+        try {
+            statFile.read();
+        }
+        catch (IOException e) {
+            // Process has gone, look for it again next time
+            detach();
+            throw new IOException("Process " + (pidParam != null ? pidParam : namePattern.pattern()) + " isn't running", e);
+        }
+
+        Map<String, Double> metrics = new HashMap<String, Double>();
+        long elapsedMS = lastCollectionTime < 0 ? 0 : now - lastCollectionTime;
+        collectStat(elapsedMS, metrics);
+        collectStatus(elapsedMS, metrics);
+        collectIO(elapsedMS, metrics);
+        collectFds(metrics);
+        collectThreads(elapsedMS, metrics);
+        lastCollectionTime = now;
+
+        return new ResourceCollectionInstance().
+                setResourceName(this.getName()).
+                setTime(now).
+                setMetrics(metrics);
+    }
+
+    @Override
+    public void close() {
+        detach();
+    }
+
+    private void collectStat(long elapsedMS, Map<String, Double> metrics) {
+        statFile.nextLine();
+        statFile.parenthesized();
+        for(int i=0; i<STAT_FIELDS; i++)
+            stat[i] = statFile.nextLong();
+
+        // Same pid but a new process
+        if(stat[START_TIME] != lastStartTime) {
+            resetRates();
+            elapsedMS = 0;
+            lastStartTime = stat[START_TIME];
+        }
+
+        metrics.put("process.pid", Double.parseDouble(pid));
+        metrics.put("process.threads", (double) stat[THREADS]);
+        metrics.put("process.vsizeKB", stat[VSIZE] / 1024d);
+        metrics.put("process.rssKB", (double) stat[RSS] * PAGE_KB);
+
+        if(elapsedMS > 0) {
+            double userPercent = cpuPercent(stat[UTIME] - lastUtime, elapsedMS);
+            double systemPercent = cpuPercent(stat[STIME] - lastStime, elapsedMS);
+            metrics.put("process.cpuPercent", userPercent + systemPercent);
+            metrics.put("process.userCpuPercent", userPercent);
+            metrics.put("process.systemCpuPercent", systemPercent);
+            metrics.put("process.minorFaultsps", ProcBaseCollector.rate(stat[MINOR_FAULTS], lastMinorFaults, elapsedMS));
+            metrics.put("process.majorFaultsps", ProcBaseCollector.rate(stat[MAJOR_FAULTS], lastMajorFaults, elapsedMS));
+        }
+        lastUtime = stat[UTIME];
+        lastStime = stat[STIME];
+        lastMinorFaults = stat[MINOR_FAULTS];
+        lastMajorFaults = stat[MAJOR_FAULTS];
+    }
+
+    private void collectStatus(long elapsedMS, Map<String, Double> metrics) {
+        long voluntarySwitches = -1, involuntarySwitches = -1;
+        try {
+            statusFile.read();
+        } catch (IOException e) {
+            return;
+        }
+        while(statusFile.nextLine()) {
+            if(!statusFile.nextToken())
+                continue;
+            if(statusFile.tokenEquals("voluntary_ctxt_switches"))
+                voluntarySwitches = statusFile.nextLong();
+            else if(statusFile.tokenEquals("nonvoluntary_ctxt_switches"))
+                involuntarySwitches = statusFile.nextLong();
+        }
+
+        ProcBaseCollector.put(metrics, "process.voluntaryCtxSwitchesps", rateOrNull(voluntarySwitches, lastVoluntarySwitches, elapsedMS));
+        ProcBaseCollector.put(metrics, "process.involuntaryCtxSwitchesps", rateOrNull(involuntarySwitches, lastInvoluntarySwitches, elapsedMS));
+        lastVoluntarySwitches = voluntarySwitches;
+        lastInvoluntarySwitches = involuntarySwitches;
+    }
+
+    /**
+     * io file is readable only by owner of the process (or root)
+     */
+    private void collectIO(long elapsedMS, Map<String, Double> metrics) {
+        long readBytes = -1, writeBytes = -1;
+        try {
+            ioFile.read();
+        } catch (IOException e) {
+            return;
+        }
+        while(ioFile.nextLine()) {
+            if(!ioFile.nextToken())
+                continue;
+            if(ioFile.tokenEquals("read_bytes"))
+                readBytes = ioFile.nextLong();
+            else if(ioFile.tokenEquals("write_bytes"))
+                writeBytes = ioFile.nextLong();
+        }
+
+        ProcBaseCollector.put(metrics, "process.readBytesps", rateOrNull(readBytes, lastReadBytes, elapsedMS));
+        ProcBaseCollector.put(metrics, "process.writeBytesps", rateOrNull(writeBytes, lastWriteBytes, elapsedMS));
+        lastReadBytes = readBytes;
+        lastWriteBytes = writeBytes;
+    }
+
+    private void collectFds(Map<String, Double> metrics) {
+        String[] fds = new File(procRoot + "/" + pid + "/fd").list();
+        if(fds != null)
+            metrics.put("process.fds", (double) fds.length);
+    }
+
+    /**
+     * Thread stat files are opened one after the other with same buffer and closed, so that a process with
+     * thousands of threads doesn't cost as many open files
+     */
+    private void collectThreads(long elapsedMS, Map<String, Double> metrics) {
+        String[] tids = new File(procRoot + "/" + pid + "/task").list();
+        if(tids == null)
+            return;
+
+        for(ThreadStat threadStat : threads.values())
+            threadStat.alive = false;
+
+        List<ThreadStat> activeThreads = new ArrayList<ThreadStat>();
+        for(String tid : tids) {
+            try {
+                threadStatFile.open(procRoot + "/" + pid + "/task/" + tid + "/stat").read();
+            } catch (IOException e) {
+                // Thread is over
+                continue;
+            } finally {
+                threadStatFile.close();
+            }
+            if(!threadStatFile.nextLine() || !threadStatFile.parenthesized())
+                continue;
+
+            ThreadStat threadStat = threads.get(tid);
+            if(threadStat == null) {
+                threadStat = new ThreadStat();
+                threads.put(tid, threadStat);
+            }
+            threadStat.name = threadStatFile.tokenName() + "(" + tid + ")";
+            threadStatFile.skipTokens(UTIME);
+            threadStat.ticks = threadStatFile.nextLong() + threadStatFile.nextLong();
+            threadStat.alive = true;
+
+            if(threadStat.lastTicks >= 0 && elapsedMS > 0) {
+                threadStat.cpuPercent = cpuPercent(threadStat.ticks - threadStat.lastTicks, elapsedMS);
+                activeThreads.add(threadStat);
+            }
+            threadStat.lastTicks = threadStat.ticks;
+        }
+
+        Iterator<ThreadStat> threadStats = threads.values().iterator();
+        while(threadStats.hasNext())
+            if(!threadStats.next().alive)
+                threadStats.remove();
+
+        Collections.sort(activeThreads, new Comparator<ThreadStat>() {
+            public int compare(ThreadStat thread1, ThreadStat thread2) {
+                return Double.compare(thread2.cpuPercent, thread1.cpuPercent);
+            }
+        });
+        for(int i=0; i<Math.min(topThreads, activeThreads.size()); i++)
+            metrics.put("thread." + activeThreads.get(i).name + ".cpuPercent", activeThreads.get(i).cpuPercent);
+    }
+
+    private double cpuPercent(long ticks, long elapsedMS) {
+        return Math.max(0, ticks) * 100d * 1000 / clockTicks / elapsedMS;
+    }
+
+    private static Double rateOrNull(long current, long previous, long elapsedMS) {
+        if(current < 0)
+            return null;
+        return ProcBaseCollector.rate(current, previous, elapsedMS);
+    }
+
+    /**
+     * Find the process and point proc files to it
+     */
+    private void attach() throws IOException {
+        String pid = pidParam != null ? pidParam : findPid();
+        if(pid == null)
+            throw new IOException("No process matching " + namePattern.pattern());
+
+        this.pid = pid;
+        statFile.open(procRoot + "/" + pid + "/stat");
+        statusFile.open(procRoot + "/" + pid + "/status");
+        ioFile.open(procRoot + "/" + pid + "/io");
+        resetRates();
+        log.info("Collector " + getName() + " is collecting for process " + pid);
+    }
+
+    private void detach() {
+        pid = null;
+        statFile.close();
+        statusFile.close();
+        ioFile.close();
+        threadStatFile.close();
+    }
+
+    private void resetRates() {
+        lastCollectionTime = -1;
+        lastStartTime = -1;
+        lastVoluntarySwitches = lastInvoluntarySwitches = lastReadBytes = lastWriteBytes = -1;
+        threads.clear();
+    }
+
+    /**
+     * Lowest pid, other than this process, whose command line matches name pattern
+     */
+    private String findPid() {
+        String[] entries = new File(procRoot).list();
+        if(entries == null)
+            return null;
+
+        long foundPid = -1;
+        ProcFile cmdlineFile = new ProcFile("/proc/self/cmdline");
+        for(String entry : entries) {
+            if(entry.isEmpty() || !Character.isDigit(entry.charAt(0)) || entry.equals(ownPid))
+                continue;
+            try {
+                String cmdline = new String(readFully(cmdlineFile.open(procRoot + "/" + entry + "/cmdline"))).replace('\0', ' ').trim();
+                if(namePattern.matcher(cmdline).find()) {
+                    long entryPid = Long.parseLong(entry);
+                    if(foundPid < 0 || entryPid < foundPid)
+                        foundPid = entryPid;
+                }
+            }
+            catch (Exception e) {
+                // Process went away meanwhile
+            }
+            finally {
+                cmdlineFile.close();
+            }
+        }
+        return foundPid < 0 ? null : String.valueOf(foundPid);
+    }
+
+    private static byte[] readFully(ProcFile procFile) throws IOException {
+        procFile.read();
+        return procFile.content();
+    }
+
+    private static int intParam(Map<String, Object> params, String param, int defaultValue) {
+        Object value = params == null ? null : params.get(param);
+        if(value == null || value.toString().trim().isEmpty())
+            return defaultValue;
+        return Integer.parseInt(value.toString().trim());
+    }
+}
@@ -0,0 +1,130 @@
+package com.flipkart.server.monitor.collector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Long lived sessions (connections) to monitored endpoints, shared by all collectors of an endpoint. Session is opened
+ * when first asked for and kept till last collector of the endpoint is closed. A collector that finds session broken
+ * invalidates it, next collection opens it again.
+ *
+ * Opening a session can take long (or hang), so endpoint is locked only while opening its own session.
+ */
+abstract class SessionPool<S> {
+    private static Logger log = LoggerFactory.getLogger(SessionPool.class);
+    private final Map<String, Endpoint<S>> endpoints;
+
+    private static class Endpoint<S> {
+        private final Object openLock = new Object();
+        private S session;
+        private int collectors;
+        private boolean removed;    // Last collector is gone, session opened after this is closed right away
+    }
+
+    SessionPool() {
+        this.endpoints = new HashMap<String, Endpoint<S>>();
+    }
+
+    /**
+     * Collector of the endpoint has started using the pool
+     */
+    synchronized void register(String endpoint) {
+        Endpoint<S> registered = this.endpoints.get(endpoint);
+        if(registered == null) {
+            registered = new Endpoint<S>();
+            this.endpoints.put(endpoint, registered);
+        }
+        registered.collectors++;
+    }
+
+    /**
+     * Collector of the endpoint is closed. Session is closed with last collector
+     */
+    void unregister(String endpoint) {
+        S session = null;
+        synchronized (this) {
+            Endpoint<S> registered = this.endpoints.get(endpoint);
+            if(registered == null || --registered.collectors > 0)
+                return;
+            this.endpoints.remove(endpoint);
+            synchronized (registered) {
+                session = registered.session;
+                registered.session = null;
+                registered.removed = true;
+            }
+        }
+        closeQuietly(endpoint, session);
+    }
+
+    /**
+     * Session of a registered endpoint, opened if there isn't one
+     * @param params collector params, to open session with
+     */
+    S get(String endpoint, Map<String, Object> params) throws Exception {
+        Endpoint<S> registered;
+        synchronized (this) {
+            registered = this.endpoints.get(endpoint);
+        }
+        if(registered == null)
+            throw new IllegalStateException("Endpoint " + endpoint + " isn't registered");
+
+        synchronized (registered) {
+            if(registered.session != null)
+                return registered.session;
+        }
+
+        synchronized (registered.openLock) {
+            synchronized (registered) {
+                if(registered.session != null)
+                    return registered.session;
+            }
+            S session = open(endpoint, params);
+            synchronized (registered) {
+                if(!registered.removed) {
+                    log.info("Opened session to " + endpoint);
+                    registered.session = session;
+                    return session;
+                }
+            }
+            closeQuietly(endpoint, session);
+            throw new IllegalStateException("Endpoint " + endpoint + " was unregistered while opening its session");
+        }
+    }
+
+    /**
+     * Session is broken (or stuck). Closed, unless someone has already replaced it
+     */
+    void invalidate(String endpoint, S session) {
+        if(session == null)
+            return;
+
+        Endpoint<S> registered;
+        synchronized (this) {
+            registered = this.endpoints.get(endpoint);
+        }
+        if(registered != null) {
+            synchronized (registered) {
+                if(registered.session != session)
+                    return;
+                registered.session = null;
+            }
+        }
+        closeQuietly(endpoint, session);
+    }
+
+    private void closeQuietly(String endpoint, S session) {
+        if(session == null)
+            return;
+        try {
+            close(session);
+        } catch (Exception e) {
+            log.warn("Error while closing session to " + endpoint + ". " + e.getMessage());
+        }
+    }
+
+    abstract protected S open(String endpoint, Map<String, Object> params) throws Exception;
+    abstract protected void close(S session) throws Exception;
+}
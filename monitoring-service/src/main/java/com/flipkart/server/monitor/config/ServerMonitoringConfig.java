@@ -14,6 +14,8 @@ import java.util.List;
 public class ServerMonitoringConfig extends Configuration {
     private String boxName;
     private List<OnDemandCollectorConfig> onDemandCollectors;
+    private int collectorThreads = 4;           // Collectors that can run at the same time
+    private int collectorJitterPercent = 10;    // Runs of a collector are spaced its interval +- these many percent
 
     public String getBoxName() {
         return boxName;
@@ -30,4 +32,20 @@ public class ServerMonitoringConfig extends Configuration {
     public void setCollectors(List<OnDemandCollectorConfig> onDemandCollectorConfigs) {
         this.onDemandCollectors = onDemandCollectorConfigs;
     }
+
+    public int getCollectorThreads() {
+        return collectorThreads;
+    }
+
+    public void setCollectorThreads(int collectorThreads) {
+        this.collectorThreads = collectorThreads;
+    }
+
+    public int getCollectorJitterPercent() {
+        return collectorJitterPercent;
+    }
+
+    public void setCollectorJitterPercent(int collectorJitterPercent) {
+        this.collectorJitterPercent = collectorJitterPercent;
+    }
 }
@@ -0,0 +1,60 @@
+package com.flipkart.server.monitor.domain;
+
+/**
+ * Burst sampling of an on demand collector : collector samples every intervalMS for durationMS, then goes back to
+ * its collection interval (durationMS is capped, see CollectorThread). Samples of a burst are kept aside and go to
+ * resource cache together once burst is over.
+ * Burst is started on request, or by collector itself when given metric reaches threshold.
+ */
+public class BurstConfig {
+    private int intervalMS = 100;
+    private int durationMS = 10000;
+    private String metric;          // Burst when this metric of the collector is >= threshold. Optional
+    private Double threshold;
+
+    public int getIntervalMS() {
+        return intervalMS;
+    }
+
+    public BurstConfig setIntervalMS(int intervalMS) {
+        this.intervalMS = intervalMS;
+        return this;
+    }
+
+    public int getDurationMS() {
+        return durationMS;
+    }
+
+    public BurstConfig setDurationMS(int durationMS) {
+        this.durationMS = durationMS;
+        return this;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public BurstConfig setMetric(String metric) {
+        this.metric = metric;
+        return this;
+    }
+
+    public Double getThreshold() {
+        return threshold;
+    }
+
+    public BurstConfig setThreshold(Double threshold) {
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * @return true if metric of collected instance calls for a burst
+     */
+    public boolean crossed(ResourceCollectionInstance instance) {
+        if(metric == null || threshold == null || instance == null || instance.getMetrics() == null)
+            return false;
+        Double value = instance.getMetrics().get(metric);
+        return value != null && value >= threshold;
+    }
+}
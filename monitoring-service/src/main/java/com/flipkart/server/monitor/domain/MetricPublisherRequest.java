@@ -2,17 +2,13 @@ package com.flipkart.server.monitor.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.flipkart.server.monitor.cache.ResourceCache;
-import com.ning.http.client.AsyncHttpClient;
-import com.ning.http.client.Response;
-import com.flipkart.perf.common.jackson.ObjectMapperUtil;
+import com.flipkart.server.monitor.cache.ResourceRing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 
 /**
  * Created by IntelliJ IDEA.
@@ -20,8 +16,13 @@ import java.util.concurrent.Future;
  * Date: 24/1/13
  * Time: 4:17 PM
  * To change this template use File | Settings | File Templates.
+ *
+ * Publisher keeps a cursor per resource : instances after the cursor are sent, cursor moves once target acknowledges
+ * them. First publish of a resource sends its last lastHowManyInstances instances.
  */
 public class MetricPublisherRequest {
+    private static final Logger logger = LoggerFactory.getLogger(MetricPublisherRequest.class);
+
     private String requestId;
     private Set<String> resources;
     private int lastHowManyInstances;
@@ -29,6 +30,8 @@ public class MetricPublisherRequest {
     private long forHowLong; // ms
     private long interval = 60000; // ms
     private long startTime = -1;
+    private long nextPublishTime;
+    private final Map<String, Long> resourceCursors = new HashMap<String, Long>();
 
     public String  getRequestId() {
         return requestId;
@@ -93,25 +96,49 @@ public class MetricPublisherRequest {
     }
 
     @JsonIgnore
-    public void publish() throws IOException, ExecutionException, InterruptedException {
+    public long getNextPublishTime() {
+        return nextPublishTime;
+    }
+
+    public void setNextPublishTime(long nextPublishTime) {
+        this.nextPublishTime = nextPublishTime;
+    }
+
+    /**
+     * Instances not yet acknowledged by target, by resource. Resources with nothing new are left out
+     * @param max most instances per resource
+     */
+    @JsonIgnore
+    synchronized public Map<String, ResourceRing.Slice> pendingInstances(int max) {
         if(this.startTime == -1) {
             this.startTime = System.currentTimeMillis();
         }
 
-        Map<String, List<ResourceCollectionInstance>> resourceCollectionInstances = new HashMap<String, List<ResourceCollectionInstance>>();
+        Map<String, ResourceRing.Slice> pending = new HashMap<String, ResourceRing.Slice>();
         for(String resource : this.resources) {
-            resourceCollectionInstances.put(resource, ResourceCache.getStats(resource, this.lastHowManyInstances));
+            Long cursor = this.resourceCursors.get(resource);
+            if(cursor == null)
+                cursor = ResourceCache.getLatestCursor(resource, this.lastHowManyInstances);
+
+            ResourceRing.Slice slice = ResourceCache.getStatsAfter(resource, cursor, max);
+            if(slice == null)
+                continue;
+            if(slice.getMissed() > 0)
+                logger.warn("Request " + requestId + " missed " + slice.getMissed() + " instances of " + resource + " as they were evicted before being published");
+            if(slice.getInstances().size() > 0)
+                pending.put(resource, slice);
+            else
+                this.resourceCursors.put(resource, slice.getCursor());
         }
+        return pending;
+    }
 
-        String metrics = ObjectMapperUtil.instance().writeValueAsString(resourceCollectionInstances);
-        AsyncHttpClient asyncHttpClient = new AsyncHttpClient();
-        AsyncHttpClient.BoundRequestBuilder b = asyncHttpClient.preparePost(this.publishUrl).
-                addHeader("Content-Type", "application/json").
-                setBody(metrics);
-
-        Future<Response> r = b.execute();
-        r.get();
-        asyncHttpClient.close();
+    /**
+     * Target has got these instances
+     */
+    synchronized public void acknowledged(Map<String, ResourceRing.Slice> published) {
+        for(Map.Entry<String, ResourceRing.Slice> entry : published.entrySet())
+            this.resourceCursors.put(entry.getKey(), entry.getValue().getCursor());
     }
 
     @JsonIgnore
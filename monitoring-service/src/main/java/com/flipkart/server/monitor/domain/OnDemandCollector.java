@@ -13,6 +13,8 @@ public class OnDemandCollector {
     private String name;
     private String klass;
     private int interval;
+    private int timeout;        // ms a collection can take, 0 for interval
+    private BurstConfig burst;  // Optional
     private Map<String,Object> params;
 
     public String getName() {
@@ -46,4 +48,20 @@ public class OnDemandCollector {
     public void setInterval(int interval) {
         this.interval = interval;
     }
-}
\ No newline at end of file
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    public BurstConfig getBurst() {
+        return burst;
+    }
+
+    public void setBurst(BurstConfig burst) {
+        this.burst = burst;
+    }
+}
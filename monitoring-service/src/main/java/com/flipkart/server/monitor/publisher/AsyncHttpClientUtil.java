@@ -0,0 +1,40 @@
+package com.flipkart.server.monitor.publisher;
+
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClientConfig;
+
+/**
+ * Http client shared by all publishers. Connections to publish targets are pooled and kept alive across publishes.
+ */
+public class AsyncHttpClientUtil {
+    private static final int CONNECTION_TIMEOUT_MS = 5000;
+    private static final int REQUEST_TIMEOUT_MS = 30000;
+    private static final int IDLE_CONNECTION_TIMEOUT_MS = 120000;
+
+    private static AsyncHttpClient asyncHttpClient;
+    static {
+        asyncHttpClient = new AsyncHttpClient(new AsyncHttpClientConfig.Builder().
+                setAllowPoolingConnection(true).
+                setConnectionTimeoutInMs(CONNECTION_TIMEOUT_MS).
+                setRequestTimeoutInMs(REQUEST_TIMEOUT_MS).
+                setIdleConnectionInPoolTimeoutInMs(IDLE_CONNECTION_TIMEOUT_MS).
+                build());
+    }
+
+    public static AsyncHttpClient instance() {
+        return asyncHttpClient;
+    }
+
+    /**
+     * Time a publish can take, after which its given up
+     */
+    public static int requestTimeoutMS() {
+        return REQUEST_TIMEOUT_MS;
+    }
+
+    public static void close() {
+        if(asyncHttpClient != null) {
+            asyncHttpClient.close();
+        }
+    }
+}
@@ -1,14 +1,19 @@
 package com.flipkart.server.monitor.publisher;
 
-import com.flipkart.perf.common.util.Clock;
+import com.flipkart.perf.common.jackson.ObjectMapperUtil;
+import com.flipkart.server.monitor.cache.ResourceRing;
 import com.flipkart.server.monitor.domain.MetricPublisherRequest;
+import com.flipkart.server.monitor.domain.ResourceCollectionInstance;
+import com.ning.http.client.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Created by IntelliJ IDEA.
@@ -16,63 +21,218 @@ import java.util.concurrent.ExecutionException;
  * Date: 24/1/13
  * Time: 4:14 PM
  * To change this template use File | Settings | File Templates.
+ *
+ * Publishes requests in order of their next publish time, sleeping till the earliest one is due. Requests due together
+ * and having same publish url go as one gzipped post, carrying only instances target hasn't acknowledged yet.
+ * A failed post is retried with next publish, as cursors of its requests don't move.
  */
 public class MetricPublisherThread extends Thread{
     private static final Logger logger = LoggerFactory.getLogger(MetricPublisherThread.class);
-    private Map<String,MetricPublisherRequest> requestPublisherMap;
-    private Map<String,Long> requestLastExecutionTimeMap;
+    public static final int MAX_INSTANCES_PER_RESOURCE = 1000;     // Most instances of a resource in one post
+
+    private boolean keepRunning = true;
+    private final Map<String,MetricPublisherRequest> requestPublisherMap;
+    private final PriorityQueue<MetricPublisherRequest> publishQueue;   // Guarded by requestPublisherMap
     private int interval;
 
+    /**
+     * Requests of one publish url, published together
+     */
+    private static class Publish {
+        private final String publishUrl;
+        private final Map<MetricPublisherRequest, Map<String, ResourceRing.Slice>> requestInstances;
+        private Future<Response> response;
+
+        private Publish(String publishUrl) {
+            this.publishUrl = publishUrl;
+            this.requestInstances = new HashMap<MetricPublisherRequest, Map<String, ResourceRing.Slice>>();
+        }
+    }
+
+    /**
+     * @param interval most time thread waits without looking for due requests
+     */
     public MetricPublisherThread(int interval) {
         this.interval = interval;
         this.requestPublisherMap = new HashMap<String, MetricPublisherRequest>();
-        this.requestLastExecutionTimeMap = new HashMap<String, Long>();
+        this.publishQueue = new PriorityQueue<MetricPublisherRequest>(11, new Comparator<MetricPublisherRequest>() {
+            public int compare(MetricPublisherRequest request1, MetricPublisherRequest request2) {
+                long diff = request1.getNextPublishTime() - request2.getNextPublishTime();
+                return diff < 0 ? -1 : (diff == 0 ? 0 : 1);
+            }
+        });
     }
 
     public void run() {
-        while(true) {
-            for(MetricPublisherRequest metricPublisherRequest : requestPublisherMap.values()) {
-                if(!metricPublisherRequest.requestExpired() &&
-                        canPublisherRun(metricPublisherRequest)) {
-                    try {
-                        metricPublisherRequest.publish();
-                    } catch (IOException e) {
-                        e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-                    } catch (ExecutionException e) {
-                        e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-                    } finally {
-                        this.requestLastExecutionTimeMap.put(metricPublisherRequest.getRequestId(),System.currentTimeMillis());
-                    }
-
-                }
-            }
+        while(keepRunning) {
+            List<MetricPublisherRequest> dueRequests;
             try {
-                Clock.sleep(interval);
+                dueRequests = waitForDueRequests();
             } catch (InterruptedException e) {
-                logger.error("Error while sleeping", e);
+                logger.error("Error while waiting for requests to publish", e);
+                continue;
+            }
+
+            try {
+                publish(dueRequests);
+            }
+            catch (Exception e) {
+                logger.error("Error while publishing", e);
+            }
+            finally {
+                reschedule(dueRequests);
             }
         }
     }
 
     public void addRequest(MetricPublisherRequest metricPublisherRequest) {
-        synchronized (metricPublisherRequest) {
+        synchronized (this.requestPublisherMap) {
+            metricPublisherRequest.setNextPublishTime(System.currentTimeMillis());
             this.requestPublisherMap.put(metricPublisherRequest.getRequestId(), metricPublisherRequest);
+            this.publishQueue.offer(metricPublisherRequest);
+            this.requestPublisherMap.notifyAll();
         }
     }
+
+    /**
+     * Request is dropped from the queue when it comes up next
+     */
     public void removeRequest(MetricPublisherRequest metricPublisherRequest) {
-        synchronized (metricPublisherRequest) {
-            this.requestPublisherMap.remove(metricPublisherRequest.getRequestId());
+        synchronized (this.requestPublisherMap) {
+            if(this.requestPublisherMap.get(metricPublisherRequest.getRequestId()) == metricPublisherRequest)
+                this.requestPublisherMap.remove(metricPublisherRequest.getRequestId());
+        }
+    }
+
+    public void stopIt() {
+        this.keepRunning = false;
+        this.interrupt();
+    }
+
+    /**
+     * Waits till earliest request is due and takes out all requests due by then
+     */
+    private List<MetricPublisherRequest> waitForDueRequests() throws InterruptedException {
+        List<MetricPublisherRequest> dueRequests = new ArrayList<MetricPublisherRequest>();
+        synchronized (this.requestPublisherMap) {
+            while(dueRequests.size() == 0 && keepRunning) {
+                long now = System.currentTimeMillis();
+                MetricPublisherRequest nextRequest;
+                while((nextRequest = this.publishQueue.peek()) != null && nextRequest.getNextPublishTime() <= now) {
+                    this.publishQueue.poll();
+                    if(isRegistered(nextRequest))
+                        dueRequests.add(nextRequest);
+                }
+
+                if(dueRequests.size() == 0) {
+                    long waitMS = this.interval;
+                    if(nextRequest != null)
+                        waitMS = Math.min(waitMS, nextRequest.getNextPublishTime() - now);
+                    this.requestPublisherMap.wait(Math.max(1, waitMS));
+                }
+            }
+        }
+        return dueRequests;
+    }
+
+    private void reschedule(List<MetricPublisherRequest> publishedRequests) {
+        long now = System.currentTimeMillis();
+        synchronized (this.requestPublisherMap) {
+            for(MetricPublisherRequest metricPublisherRequest : publishedRequests) {
+                if(isRegistered(metricPublisherRequest)) {
+                    metricPublisherRequest.setNextPublishTime(now + metricPublisherRequest.getInterval());
+                    this.publishQueue.offer(metricPublisherRequest);
+                }
+            }
         }
     }
 
-    private boolean canPublisherRun(MetricPublisherRequest metricPublisherRequest) {
-        Long lastExecutionTime =  this.requestLastExecutionTimeMap.get(metricPublisherRequest.getRequestId());
-        if(lastExecutionTime != null) {
-            return (System.currentTimeMillis() - lastExecutionTime) > metricPublisherRequest.getInterval();
+    private boolean isRegistered(MetricPublisherRequest metricPublisherRequest) {
+        return this.requestPublisherMap.get(metricPublisherRequest.getRequestId()) == metricPublisherRequest;
+    }
+
+    /**
+     * Post pending instances of due requests, one post per publish url, and wait for all of them
+     */
+    private void publish(List<MetricPublisherRequest> dueRequests) throws IOException {
+        Map<String, Publish> publishes = new LinkedHashMap<String, Publish>();
+        for(MetricPublisherRequest metricPublisherRequest : dueRequests) {
+            if(metricPublisherRequest.requestExpired())
+                continue;
+
+            Map<String, ResourceRing.Slice> pendingInstances = metricPublisherRequest.pendingInstances(MAX_INSTANCES_PER_RESOURCE);
+            if(pendingInstances.size() == 0)
+                continue;
+
+            Publish publish = publishes.get(metricPublisherRequest.getPublishUrl());
+            if(publish == null) {
+                publish = new Publish(metricPublisherRequest.getPublishUrl());
+                publishes.put(publish.publishUrl, publish);
+            }
+            publish.requestInstances.put(metricPublisherRequest, pendingInstances);
+        }
+
+        for(Publish publish : publishes.values()) {
+            try {
+                publish.response = AsyncHttpClientUtil.instance().
+                        preparePost(publish.publishUrl).
+                        addHeader("Content-Type", "application/json").
+                        addHeader("Content-Encoding", "gzip").
+                        setBody(gzip(ObjectMapperUtil.instance().writeValueAsBytes(resourceInstances(publish)))).
+                        execute();
+            }
+            catch (Exception e) {
+                logger.error("Error while publishing to " + publish.publishUrl, e);
+            }
+        }
+
+        for(Publish publish : publishes.values()) {
+            if(publish.response == null)
+                continue;
+            try {
+                Response response = publish.response.get(AsyncHttpClientUtil.requestTimeoutMS(), TimeUnit.MILLISECONDS);
+                if(response.getStatusCode() / 100 == 2) {
+                    for(Map.Entry<MetricPublisherRequest, Map<String, ResourceRing.Slice>> requestInstances : publish.requestInstances.entrySet())
+                        requestInstances.getKey().acknowledged(requestInstances.getValue());
+                }
+                else {
+                    logger.warn("Publish to " + publish.publishUrl + " failed with status " + response.getStatusCode() + ". Will retry with next publish");
+                }
+            }
+            catch (Exception e) {
+                publish.response.cancel(true);
+                logger.error("Error while publishing to " + publish.publishUrl + ". Will retry with next publish", e);
+            }
         }
-        return true;
     }
 
+    /**
+     * Instances of all requests of the publish, by resource
+     */
+    private static Map<String, List<ResourceCollectionInstance>> resourceInstances(Publish publish) {
+        Map<String, List<ResourceCollectionInstance>> resourceInstances = new HashMap<String, List<ResourceCollectionInstance>>();
+        for(Map<String, ResourceRing.Slice> requestInstances : publish.requestInstances.values()) {
+            for(Map.Entry<String, ResourceRing.Slice> slice : requestInstances.entrySet()) {
+                List<ResourceCollectionInstance> instances = resourceInstances.get(slice.getKey());
+                if(instances == null) {
+                    instances = new ArrayList<ResourceCollectionInstance>();
+                    resourceInstances.put(slice.getKey(), instances);
+                }
+                instances.addAll(slice.getValue().getInstances());
+            }
+        }
+        return resourceInstances;
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(content.length / 4 + 64);
+        GZIPOutputStream gos = new GZIPOutputStream(bos);
+        try {
+            gos.write(content);
+        }
+        finally {
+            gos.close();
+        }
+        return bos.toByteArray();
+    }
 }
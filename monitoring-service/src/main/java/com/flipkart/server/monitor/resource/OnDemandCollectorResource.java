@@ -133,5 +133,27 @@ public class OnDemandCollectorResource {
         else
             throw new WebApplicationException(404);
     }
-}
 
+    /**
+     * Make collectors of the request sample every intervalMS for durationMS. Loader server asks for it around the
+     * time it wants to look closely at.
+     * @param collectorName burst only this collector of the request. All collectors if empty
+     */
+    @POST
+    @Path("/requests/{requestId}/burst")
+    public void burstCollectors(@PathParam("requestId") String requestId,
+                                @QueryParam("collector") @DefaultValue("") String collectorName,
+                                @QueryParam("intervalMS") @DefaultValue("100") int intervalMS,
+                                @QueryParam("durationMS") @DefaultValue("10000") int durationMS) {
+        List<BaseCollector> collectors = this.onDemandCollectorsRequestMap.get(requestId);
+        if(collectors == null)
+            throw new WebApplicationException(404);
+
+        for(BaseCollector collector : collectors) {
+            if(collectorName.isEmpty() || collector.getName().equals(collectorName)) {
+                if(!this.collectorThread.burst(collector, intervalMS, durationMS))
+                    logger.info("Collector " + collector.getName() + " is already bursting");
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.flipkart.server.monitor.cache;
+
+import com.flipkart.server.monitor.domain.ResourceCollectionInstance;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class TestResourceRing {
+
+    @Test
+    public void testMergedInstanceReachesCursorReader() {
+        ResourceRing ring = new ResourceRing(10);
+        ring.append(instance(1000, "a", 1));
+        ring.append(instance(2000, "a", 2));
+
+        ResourceRing.Slice slice = ring.after(0, 100);
+        assertThat(slice.getInstances().size(), is(2));
+
+        // Metrics of same time come in late
+        ring.append(instance(2000, "b", 3));
+        slice = ring.after(slice.getCursor(), 100);
+        assertThat(slice.getInstances().size(), is(1));
+        assertThat(slice.getMissed(), is(0L));
+        ResourceCollectionInstance merged = slice.getInstances().get(0);
+        assertThat(merged.getTime(), is(2000L));
+        assertThat(merged.getMetrics().get("a"), is(2.0));
+        assertThat(merged.getMetrics().get("b"), is(3.0));
+    }
+
+    @Test
+    public void testReadersDontGetSupersededInstance() {
+        ResourceRing ring = new ResourceRing(10);
+        ring.append(instance(1000, "a", 1));
+        ring.append(instance(2000, "a", 2));
+        ring.append(instance(2000, "b", 3));
+        ring.append(instance(2000, "c", 4));
+
+        List<ResourceCollectionInstance> latest = ring.latest(10);
+        assertThat(latest.size(), is(2));
+        assertThat(latest.get(0).getMetrics().size(), is(3));
+        assertThat(latest.get(1).getTime(), is(1000L));
+
+        ResourceRing.Slice slice = ring.after(0, 100);
+        assertThat(slice.getInstances().size(), is(2));
+        assertThat(slice.getCursor(), is(4L));
+        assertThat(slice.getMissed(), is(0L));
+    }
+
+    private static ResourceCollectionInstance instance(long time, String metric, double value) {
+        return new ResourceCollectionInstance().
+                setResourceName("resource").
+                setTime(time).
+                setMetrics(new HashMap<String, Double>()).
+                addMetric(metric, value);
+    }
+}
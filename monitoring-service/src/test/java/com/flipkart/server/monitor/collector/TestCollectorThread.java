@@ -0,0 +1,74 @@
+package com.flipkart.server.monitor.collector;
+
+import com.flipkart.server.monitor.domain.ResourceCollectionInstance;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class TestCollectorThread {
+    private static final int BURST_INTERVAL_MS = 50;
+    private static final int BURST_DURATION_MS = 500;
+
+    /**
+     * Asks for a burst right after its first run, once run has let go of the collector but before it has scheduled
+     * its next run (next run delay is worked out from collection interval). Delay of that run is half a burst
+     * interval, so that a run chain it would start runs in between runs of the burst
+     */
+    private static class BurstAfterRunCollector extends BaseCollector {
+        private final AtomicInteger collections = new AtomicInteger();
+        private final AtomicBoolean burstAsked = new AtomicBoolean(false);
+        private CollectorThread collectorThread;
+
+        private BurstAfterRunCollector() {
+            super("burstAfterRun", new HashMap<String, Object>(), 60000);
+        }
+
+        @Override
+        public int getCollectionInterval() {
+            if(collections.get() > 0 && burstAsked.compareAndSet(false, true)) {
+                collectorThread.burst(this, BURST_INTERVAL_MS, BURST_DURATION_MS);
+                return BURST_INTERVAL_MS / 2;
+            }
+            return super.getCollectionInterval();
+        }
+
+        @Override
+        public boolean supported() {
+            return true;
+        }
+
+        @Override
+        public ResourceCollectionInstance collect() throws Exception {
+            collections.incrementAndGet();
+            return new ResourceCollectionInstance().
+                    setResourceName(getName()).
+                    setTime(System.currentTimeMillis()).
+                    setMetrics(new HashMap<String, Double>());
+        }
+    }
+
+    @Test
+    public void testBurstBetweenRunsKeepsOneRunChain() throws InterruptedException {
+        CollectorThread collectorThread = new CollectorThread(1000, 4, 0);
+        BurstAfterRunCollector collector = new BurstAfterRunCollector();
+        collector.collectorThread = collectorThread;
+
+        collectorThread.startCollector(collector);
+        Thread.sleep(BURST_DURATION_MS + 4 * BURST_INTERVAL_MS);
+        collectorThread.stopCollector(collector);
+        collectorThread.stopIt();
+
+        // First run, a run every burst interval while bursting and the run that flushes burst, after which next run is
+        // a collection interval away. A second run chain would about double it
+        assertThat(collector.burstAsked.get(), is(true));
+        assertThat(collector.collections.get(), greaterThan(1));
+        assertThat(collector.collections.get(), lessThanOrEqualTo(BURST_DURATION_MS / BURST_INTERVAL_MS + 4));
+    }
+}
@@ -0,0 +1,282 @@
+package com.flipkart.server.monitor.collector;
+
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TestProcFile {
+    private static final String STAT_1 =
+            "cpu  100 0 100 800 0 0 0 0\n" +
+            "cpu0 50 0 50 400 0 0 0 0\n" +
+            "cpu1 50 0 50 400 0 0 0 0\n" +
+            "intr 500 1 2 3\n" +
+            "ctxt 1000\n" +
+            "procs_running 2\n" +
+            "procs_blocked 1\n";
+    private static final String STAT_2 =
+            "cpu  200 0 150 1050 0 0 0 0\n" +
+            "cpu0 150 0 50 400 0 0 0 0\n" +
+            "cpu1 50 0 100 550 0 0 0 0\n" +
+            "intr 1500 1 2 3\n" +
+            "ctxt 3000\n" +
+            "procs_running 3\n" +
+            "procs_blocked 0\n";
+
+    private static final String NET_HEADER =
+            "Inter-|   Receive                                                |  Transmit\n" +
+            " face |bytes    packets errs drop fifo frame compressed multicast|bytes    packets errs drop fifo colls carrier compressed\n";
+    private static final String NET_1 = NET_HEADER +
+            "    lo:       0       0    0    0    0     0          0         0        0       0    0    0    0     0       0          0\n" +
+            "  eth0:1024 10 0 0 0 0 0 0 2048 20 0 0 0 0 0 0\n";
+    private static final String NET_2 = NET_HEADER +
+            "    lo:       0       0    0    0    0     0          0         0        0       0    0    0    0     0       0          0\n" +
+            "  eth0:21504 110 2 0 0 0 0 0 43008 220 0 4 0 0 0 0\n";
+
+    private static final String DISK_1 =
+            "   7       0 loop0 0 0 0 0 0 0 0 0 0 0 0\n" +
+            "   8       0 sda 100 0 800 50 200 0 1600 100 0 300 150\n";
+    private static final String DISK_2 =
+            "   7       0 loop0 0 0 0 0 0 0 0 0 0 0 0\n" +
+            "   8       0 sda 300 0 2800 250 600 0 5600 500 2 1300 950\n";
+
+    private static final String PROCESS_STAT_1 =
+            "123 (my (weird) proc) S 1 123 123 0 -1 4194304 500 0 7 0 250 50 0 0 20 0 4 0 1000 104857600 2560 18446744073709551615\n";
+    private static final String PROCESS_STAT_2 =
+            "123 (my (weird) proc) S 1 123 123 0 -1 4194304 900 0 9 0 350 100 0 0 20 0 4 0 1000 104857600 3072 18446744073709551615\n";
+
+    @Test
+    public void testTokens() throws IOException {
+        ProcFile procFile = new ProcFile(fixture(STAT_1 + "btime 1.25\n").getPath());
+        procFile.read();
+
+        assertThat(procFile.nextLine(), is(true));
+        assertThat(procFile.nextToken(), is(true));
+        assertThat(procFile.tokenEquals("cpu"), is(true));
+        String cpu = procFile.tokenName();
+        assertThat(cpu, is("cpu"));
+        assertThat(procFile.nextLong(), is(100L));
+        assertThat(procFile.skipTokens(2).nextLong(), is(800L));
+
+        assertThat(procFile.nextLine(), is(true));
+        assertThat(procFile.nextToken(), is(true));
+        assertThat(procFile.tokenEquals("cpu"), is(false));
+        assertThat(procFile.tokenStartsWith("cpu"), is(true));
+        assertThat(procFile.tokenName(), is("cpu0"));
+
+        // Same String instance for same token
+        procFile.read();
+        procFile.nextLine();
+        procFile.nextToken();
+        assertThat(procFile.tokenName() == cpu, is(true));
+
+        while(procFile.nextLine() && procFile.nextToken() && !procFile.tokenEquals("btime"));
+        assertThat(procFile.nextDouble(), is(1.25));
+        assertThat(procFile.nextToken(), is(false));
+        assertThat(procFile.nextLong(), is(0L));
+        assertThat(procFile.nextLine(), is(false));
+        procFile.close();
+
+        // ':' ends a token, with or without space after it
+        procFile = new ProcFile(fixture(NET_1).getPath());
+        procFile.read();
+        procFile.nextLine();
+        procFile.nextLine();
+        procFile.nextLine();
+        procFile.nextToken();
+        assertThat(procFile.tokenName(), is("lo"));
+        assertThat(procFile.nextLong(), is(0L));
+        procFile.nextLine();
+        procFile.nextToken();
+        assertThat(procFile.tokenName(), is("eth0"));
+        assertThat(procFile.nextLong(), is(1024L));
+        assertThat(procFile.nextLong(), is(10L));
+        procFile.close();
+
+        procFile = new ProcFile(fixture(DISK_1).getPath());
+        procFile.read();
+        procFile.nextLine();
+        procFile.nextLine();
+        assertThat(procFile.nextLong(), is(8L));
+        assertThat(procFile.skipTokens(1).nextToken(), is(true));
+        assertThat(procFile.tokenName(), is("sda"));
+        assertThat(procFile.nextLong(), is(100L));
+        procFile.close();
+    }
+
+    @Test
+    public void testParenthesizedCommandName() throws IOException {
+        ProcFile procFile = new ProcFile(fixture(PROCESS_STAT_1).getPath());
+        procFile.read();
+        procFile.nextLine();
+
+        assertThat(procFile.parenthesized(), is(true));
+        assertThat(procFile.tokenName(), is("my (weird) proc"));
+        // Fields after command name, from state as 0
+        long[] fields = new long[22];
+        for(int i=0; i<fields.length; i++)
+            fields[i] = procFile.nextLong();
+        assertThat(fields[1], is(1L));
+        assertThat(fields[7], is(500L));
+        assertThat(fields[11], is(250L));
+        assertThat(fields[12], is(50L));
+        assertThat(fields[17], is(4L));
+        assertThat(fields[19], is(1000L));
+        assertThat(fields[21], is(2560L));
+        procFile.close();
+
+        procFile = new ProcFile(fixture("123 no command name\n").getPath());
+        procFile.read();
+        procFile.nextLine();
+        assertThat(procFile.parenthesized(), is(false));
+        procFile.close();
+    }
+
+    @Test
+    public void testCPURates() throws IOException {
+        File stat = fixture(STAT_1);
+        ProcCPUCollector collector = new ProcCPUCollector("cpu", null, 1000);
+        ProcFile procFile = new ProcFile(stat.getPath());
+
+        Map<String, Double> metrics = collect(collector, procFile, 0);
+        assertThat(metrics.get("total.user"), is(nullValue()));
+        assertThat(metrics.get("contextSwitches"), is(nullValue()));
+        assertThat(metrics.get("procsRunning"), is(2.0));
+
+        write(stat, STAT_2);
+        metrics = collect(collector, procFile, 2000);
+        assertThat(metrics.get("total.user"), is(25.0));
+        assertThat(metrics.get("total.system"), is(12.5));
+        assertThat(metrics.get("total.idle"), is(62.5));
+        assertThat(metrics.get("cpu0.user"), is(100.0));
+        assertThat(metrics.get("cpu0.idle"), is(0.0));
+        assertThat(metrics.get("cpu1.system"), is(25.0));
+        assertThat(metrics.get("cpu1.idle"), is(75.0));
+        assertThat(metrics.get("contextSwitches"), is(1000.0));
+        assertThat(metrics.get("interrupts"), is(500.0));
+        assertThat(metrics.get("procsRunning"), is(3.0));
+        assertThat(metrics.get("procsBlocked"), is(0.0));
+        procFile.close();
+    }
+
+    @Test
+    public void testNetworkRates() throws IOException {
+        File dev = fixture(NET_1);
+        ProcNetworkCollector collector = new ProcNetworkCollector("network", null, 1000);
+        ProcFile procFile = new ProcFile(dev.getPath());
+
+        assertThat(collect(collector, procFile, 0).isEmpty(), is(true));
+
+        write(dev, NET_2);
+        Map<String, Double> metrics = collect(collector, procFile, 2000);
+        assertThat(metrics.get("eth0.rxKBps"), is(10.0));
+        assertThat(metrics.get("eth0.txKBps"), is(20.0));
+        assertThat(metrics.get("eth0.rxPacketsps"), is(50.0));
+        assertThat(metrics.get("eth0.txPacketsps"), is(100.0));
+        assertThat(metrics.get("eth0.rxErrorsps"), is(1.0));
+        assertThat(metrics.get("eth0.txDropsps"), is(2.0));
+        assertThat(metrics.get("lo.rxKBps"), is(0.0));
+        procFile.close();
+    }
+
+    @Test
+    public void testDiskRates() throws IOException {
+        File diskstats = fixture(DISK_1);
+        ProcDiskCollector collector = new ProcDiskCollector("disk", null, 1000);
+        ProcFile procFile = new ProcFile(diskstats.getPath());
+
+        assertThat(collect(collector, procFile, 0).isEmpty(), is(true));
+
+        write(diskstats, DISK_2);
+        Map<String, Double> metrics = collect(collector, procFile, 2000);
+        assertThat(metrics.get("sda.readIOPS"), is(100.0));
+        assertThat(metrics.get("sda.writeIOPS"), is(200.0));
+        assertThat(metrics.get("sda.readKBps"), is(500.0));
+        assertThat(metrics.get("sda.writeKBps"), is(1000.0));
+        assertThat(metrics.get("sda.readLatencyMS"), is(1.0));
+        assertThat(metrics.get("sda.writeLatencyMS"), is(1.0));
+        assertThat(metrics.get("sda.utilPercent"), is(50.0));
+        assertThat(metrics.get("sda.inFlight"), is(2.0));
+        // Device without any io
+        assertThat(metrics.containsKey("loop0.readIOPS"), is(false));
+        procFile.close();
+    }
+
+    @Test
+    public void testProcessRates() throws Exception {
+        File procRoot = File.createTempFile("proc", "");
+        procRoot.delete();
+        File process = new File(procRoot, "123");
+        File thread = new File(process, "task/124");
+        thread.mkdirs();
+        new File(process, "fd").mkdirs();
+        new File(process, "fd/0").createNewFile();
+        File stat = write(new File(process, "stat"), PROCESS_STAT_1);
+        File status = write(new File(process, "status"), "Name:\tproc\nvoluntary_ctxt_switches:\t10\nnonvoluntary_ctxt_switches:\t5\n");
+        File threadStat = write(new File(thread, "stat"), PROCESS_STAT_1.replace("123 (", "124 ("));
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("pid", "123");
+        ProcProcessCollector collector = new ProcProcessCollector("process", params, 1000, procRoot.getPath());
+        try {
+            Map<String, Double> metrics = collector.collect().getMetrics();
+            assertThat(metrics.get("process.pid"), is(123.0));
+            assertThat(metrics.get("process.threads"), is(4.0));
+            assertThat(metrics.get("process.rssKB"), is(10240.0));
+            assertThat(metrics.get("process.vsizeKB"), is(102400.0));
+            assertThat(metrics.get("process.fds"), is(1.0));
+            assertThat(metrics.get("process.cpuPercent"), is(nullValue()));
+
+            write(stat, PROCESS_STAT_2);
+            write(status, "Name:\tproc\nvoluntary_ctxt_switches:\t30\nnonvoluntary_ctxt_switches:\t15\n");
+            write(threadStat, PROCESS_STAT_2.replace("123 (", "124 ("));
+            Thread.sleep(20);
+            metrics = collector.collect().getMetrics();
+
+            // Rates depend on time between collections, their ratios don't
+            assertThat(metrics.get("process.rssKB"), is(12288.0));
+            assertThat(metrics.get("process.userCpuPercent") / metrics.get("process.systemCpuPercent"), is(2.0));
+            assertThat(metrics.get("process.minorFaultsps") / metrics.get("process.majorFaultsps"), closeTo(200.0, 0.000001));
+            assertThat(metrics.get("process.voluntaryCtxSwitchesps") / metrics.get("process.involuntaryCtxSwitchesps"), is(2.0));
+            assertThat(metrics.get("thread.my (weird) proc(124).cpuPercent"), closeTo(metrics.get("process.cpuPercent"), 0.000001));
+            // io file isn't there
+            assertThat(metrics.containsKey("process.readBytesps"), is(false));
+        }
+        finally {
+            collector.close();
+        }
+    }
+
+    private static Map<String, Double> collect(ProcBaseCollector collector, ProcFile procFile, long elapsedMS) throws IOException {
+        Map<String, Double> metrics = new HashMap<String, Double>();
+        procFile.read();
+        collector.collect(procFile, elapsedMS, metrics);
+        return metrics;
+    }
+
+    private static File fixture(String content) throws IOException {
+        File file = File.createTempFile("proc", ".fixture");
+        file.deleteOnExit();
+        return write(file, content);
+    }
+
+    /**
+     * Overwrites in place, as /proc files keep being the same open file
+     */
+    private static File write(File file, String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file));
+        try {
+            writer.write(content);
+        }
+        finally {
+            writer.close();
+        }
+        return file;
+    }
+}
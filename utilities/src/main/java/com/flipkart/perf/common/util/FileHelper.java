@@ -2,6 +2,8 @@ package com.flipkart.perf.common.util;
 
 import java.io.*;
 import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -230,6 +232,43 @@ public class FileHelper {
         return new BufferedReader(new InputStreamReader(new FileInputStream(absolutePath)));
     }
 
+    /**
+     * SHA-1 of file content as hex string. Used to identify deployable artifacts irrespective of their timestamps
+     */
+    public static String contentHash(File file) throws IOException {
+        MessageDigest digest = sha1Digest();
+        byte[] buffer = new byte[64 * 1024];
+        InputStream is = new FileInputStream(file);
+        try {
+            int bytesRead;
+            while((bytesRead = is.read(buffer)) > 0)
+                digest.update(buffer, 0, bytesRead);
+        }
+        finally {
+            is.close();
+        }
+        return hex(digest.digest());
+    }
+
+    public static String contentHash(byte[] content) throws IOException {
+        return hex(sha1Digest().digest(content));
+    }
+
+    private static MessageDigest sha1Digest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for(byte b : bytes)
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
     public static void close(BufferedReader br) throws IOException {
         br.close();
     }
@@ -0,0 +1,311 @@
+package com.flipkart.perf.common.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Keeps track of files under watched folders and tells routes which of them changed, so that daemons don't have to
+ * walk whole folder trees every time they run. A watched folder is walked once when watch starts, after which :
+ *
+ *  - Writers in this process report files they change (changed())
+ *  - Folders are polled for modified time, which changes when files are created, renamed or deleted in them. Only
+ *    modified folders (and folders modified very recently, as modified time can be coarse) are listed again
+ *  - Once in a reconcile interval every known folder is listed again and files are compared on length and
+ *    modified time. This catches appends by other processes
+ *
+ * Routes get changed files of watched folders they accept. Deletions aren't reported.
+ */
+public class FileWatcher extends Thread {
+    private static final long HOT_FOLDER_MS = 2000;
+    private static Logger logger = LoggerFactory.getLogger(FileWatcher.class);
+
+    private final int pollIntervalMS, reconcileIntervalMS;
+    private final List<Route> routes;
+    private final Map<String, Watched> watchedMap;
+    private volatile boolean keepRunning = true;
+
+    /**
+     * Gets changed files it accepts. Called from watcher thread and from threads reporting changes, so it has to be
+     * thread safe and quick
+     */
+    public static abstract class Route {
+        public abstract boolean accept(String key, File file);
+        public abstract void changed(String key, File file);
+    }
+
+    private static class FileState {
+        private final long length, lastModified;
+
+        private FileState(File file) {
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+        private boolean same(FileState other) {
+            return other != null && length == other.length && lastModified == other.lastModified;
+        }
+    }
+
+    private static class Folder {
+        private long lastModified;
+        private final Map<String, FileState> files = new HashMap<String, FileState>(); // file path -> state
+    }
+
+    /**
+     * A watched folder tree
+     */
+    private static class Watched {
+        private final String root;
+        private final Map<String, Folder> folders = new HashMap<String, Folder>(); // folder path -> folder
+        private int watchers;
+        private long lastReconcileTime;
+
+        private Watched(String root) {
+            this.root = root;
+        }
+    }
+
+    public FileWatcher(String name, int pollIntervalMS, int reconcileIntervalMS) {
+        this.setName("Thread-" + name);
+        this.setDaemon(true);
+        this.pollIntervalMS = pollIntervalMS;
+        this.reconcileIntervalMS = reconcileIntervalMS;
+        this.routes = new ArrayList<Route>();
+        this.watchedMap = new HashMap<String, Watched>();
+    }
+
+    public FileWatcher route(Route route) {
+        synchronized (this.routes) {
+            this.routes.add(route);
+        }
+        return this;
+    }
+
+    /**
+     * Start watching folder tree. Watches of a key are counted, it is watched till as many unwatch calls
+     * @param key watched tree is known by it to routes
+     */
+    public void watch(String key, String root) {
+        Watched watched;
+        synchronized (this.watchedMap) {
+            watched = this.watchedMap.get(key);
+            if(watched == null) {
+                watched = new Watched(new File(root).getAbsolutePath());
+                this.watchedMap.put(key, watched);
+            }
+        }
+
+        synchronized (watched) {
+            if(watched.watchers++ == 0) {
+                walk(key, watched, watched.root);
+                watched.lastReconcileTime = Clock.milliTick();
+            }
+        }
+    }
+
+    public void unwatch(String key) {
+        synchronized (this.watchedMap) {
+            Watched watched = this.watchedMap.get(key);
+            if(watched != null && --watched.watchers <= 0)
+                this.watchedMap.remove(key);
+        }
+    }
+
+    /**
+     * Writer has changed the file. Ignored if file isn't in the watched tree
+     */
+    public void changed(String key, File file) {
+        Watched watched = watched(key);
+        if(watched == null)
+            return;
+
+        synchronized (watched) {
+            String folderPath = file.getAbsoluteFile().getParent();
+            Folder folder = watched.folders.get(folderPath);
+            if(folder == null) {
+                if(!folderPath.startsWith(watched.root))
+                    return;
+                // New folder. Poll would list it (and any new folders above it)
+                folder = new Folder();
+                watched.folders.put(folderPath, folder);
+            }
+            folder.files.put(file.getAbsolutePath(), new FileState(file));
+        }
+        routeChange(key, file);
+    }
+
+    /**
+     * Known files of watched tree that route accepts
+     */
+    public List<File> files(String key, Route route) {
+        List<File> files = new ArrayList<File>();
+        Watched watched = watched(key);
+        if(watched != null) {
+            synchronized (watched) {
+                for(Folder folder : watched.folders.values())
+                    for(String filePath : folder.files.keySet()) {
+                        File file = new File(filePath);
+                        if(route.accept(key, file))
+                            files.add(file);
+                    }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * List every folder of watched tree again and report whatever changed
+     */
+    public void reconcile(String key) {
+        Watched watched = watched(key);
+        if(watched != null) {
+            synchronized (watched) {
+                walk(key, watched, watched.root);
+                watched.lastReconcileTime = Clock.milliTick();
+            }
+        }
+    }
+
+    /**
+     * Poll watched tree, or reconcile it if its due. Watcher thread does it every poll interval. Users who would
+     * rather check at their own pace can call it without starting the thread
+     */
+    public void check(String key) {
+        Watched watched = watched(key);
+        if(watched == null)
+            return;
+
+        synchronized (watched) {
+            if(Clock.milliTick() - watched.lastReconcileTime >= reconcileIntervalMS) {
+                walk(key, watched, watched.root);
+                watched.lastReconcileTime = Clock.milliTick();
+            }
+            else
+                poll(key, watched);
+        }
+    }
+
+    public void run() {
+        while(keepRunning) {
+            try {
+                Clock.sleep(pollIntervalMS);
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            for(String key : watchedKeys()) {
+                try {
+                    check(key);
+                }
+                catch (Exception e) {
+                    logger.error("Error while watching files of " + key, e);
+                }
+            }
+        }
+    }
+
+    public void stopIt() {
+        this.keepRunning = false;
+        this.interrupt();
+    }
+
+    /**
+     * List folders which have been modified since they were listed last
+     */
+    private void poll(String key, Watched watched) {
+        long now = System.currentTimeMillis();
+        for(String folderPath : new ArrayList<String>(watched.folders.keySet())) {
+            Folder folder = watched.folders.get(folderPath);
+            if(folder == null)
+                continue; // Went away with a folder above it
+            long lastModified = new File(folderPath).lastModified();
+            if(lastModified != folder.lastModified || now - lastModified < HOT_FOLDER_MS) {
+                // Sub folders not known yet are new, everything under them is
+                for(String subFolder : list(key, watched, folderPath))
+                    if(!watched.folders.containsKey(subFolder))
+                        walk(key, watched, subFolder);
+            }
+        }
+        if(!watched.folders.containsKey(watched.root))
+            walk(key, watched, watched.root);
+    }
+
+    /**
+     * List folder and all folders under it
+     */
+    private void walk(String key, Watched watched, String folderPath) {
+        List<String> subFolders = list(key, watched, folderPath);
+        for(String subFolder : subFolders)
+            walk(key, watched, subFolder);
+    }
+
+    /**
+     * List folder, report new and changed files. Sub folders are left to the caller.
+     * @return sub folders
+     */
+    private List<String> list(String key, Watched watched, String folderPath) {
+        File folderFile = new File(folderPath);
+        long lastModified = folderFile.lastModified();
+        File[] children = folderFile.listFiles();
+        List<String> subFolders = new ArrayList<String>();
+
+        if(children == null) {
+            // Folder is gone, so is everything under it
+            Iterator<String> folderPaths = watched.folders.keySet().iterator();
+            while(folderPaths.hasNext()) {
+                String knownFolderPath = folderPaths.next();
+                if(knownFolderPath.equals(folderPath) || knownFolderPath.startsWith(folderPath + File.separator))
+                    folderPaths.remove();
+            }
+            return subFolders;
+        }
+
+        Folder folder = watched.folders.get(folderPath);
+        if(folder == null) {
+            folder = new Folder();
+            watched.folders.put(folderPath, folder);
+        }
+        folder.lastModified = lastModified;
+
+        Set<String> listedFiles = new HashSet<String>();
+        for(File child : children) {
+            String childPath = child.getAbsolutePath();
+            if(child.isDirectory()) {
+                subFolders.add(childPath);
+                continue;
+            }
+
+            listedFiles.add(childPath);
+            FileState fileState = new FileState(child);
+            if(!fileState.same(folder.files.get(childPath))) {
+                folder.files.put(childPath, fileState);
+                routeChange(key, child);
+            }
+        }
+        folder.files.keySet().retainAll(listedFiles);
+        return subFolders;
+    }
+
+    private void routeChange(String key, File file) {
+        synchronized (this.routes) {
+            for(Route route : this.routes)
+                if(route.accept(key, file))
+                    route.changed(key, file);
+        }
+    }
+
+    private Watched watched(String key) {
+        synchronized (this.watchedMap) {
+            return this.watchedMap.get(key);
+        }
+    }
+
+    private List<String> watchedKeys() {
+        synchronized (this.watchedMap) {
+            return new ArrayList<String>(this.watchedMap.keySet());
+        }
+    }
+}